@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.benchmark;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ease.jupyter.kernel.Protocol;
+import org.eclipse.ease.jupyter.kernel.Session;
+import org.eclipse.ease.jupyter.kernel.channels.ChannelOutputStream;
+import org.eclipse.ease.jupyter.kernel.channels.IOPubChannel;
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Write and flush throughput of {@link ChannelOutputStream}.
+ * <p>
+ * Published messages are discarded instead of being sent, so only buffering,
+ * decoding and creating stream messages is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelOutputStreamBenchmark {
+	/**
+	 * Typical line of script output.
+	 */
+	private static final byte[] LINE = "Iteration 42: loss=0.0123 accuracy=0.987\n".getBytes(Protocol.ENCODING);
+
+	/**
+	 * {@link Session} for discarding channel.
+	 */
+	private Session fSession;
+
+	/**
+	 * Stream under test.
+	 */
+	private ChannelOutputStream fStream;
+
+	/**
+	 * Last published message, only stored so publishing is not optimized
+	 * away.
+	 */
+	private volatile Message fPublished;
+
+	/**
+	 * Creates stream publishing to a discarding {@link IOPubChannel}.
+	 */
+	@Setup
+	public void setup() {
+		fSession = new Session(new Protocol(), 1000, 1);
+		IOPubChannel channel = new IOPubChannel("inproc://benchmark-iopub-" + UUID.randomUUID(), fSession) {
+			@Override
+			public void send(Message message) {
+				fPublished = message;
+			}
+		};
+		fStream = new ChannelOutputStream("stdout", channel);
+	}
+
+	/**
+	 * Closes stream and session.
+	 *
+	 * @throws IOException
+	 *             If stream or session could not be closed.
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		fStream.close();
+		fSession.close();
+	}
+
+	/**
+	 * Writing a line and flushing like <code>println</code>, flushes are
+	 * coalesced.
+	 *
+	 * @throws IOException
+	 *             If data could not be written.
+	 */
+	@Benchmark
+	public void writeLine() throws IOException {
+		fStream.write(LINE, 0, LINE.length);
+		fStream.flush();
+	}
+
+	/**
+	 * Writing single bytes without flushing.
+	 *
+	 * @throws IOException
+	 *             If data could not be written.
+	 */
+	@Benchmark
+	public void writeByte() throws IOException {
+		fStream.write('x');
+	}
+
+	/**
+	 * Writing a line and publishing it immediately as stream message.
+	 *
+	 * @throws IOException
+	 *             If data could not be written.
+	 */
+	@Benchmark
+	public void writeLineForceFlush() throws IOException {
+		fStream.write(LINE, 0, LINE.length);
+		fStream.forceFlush();
+	}
+}
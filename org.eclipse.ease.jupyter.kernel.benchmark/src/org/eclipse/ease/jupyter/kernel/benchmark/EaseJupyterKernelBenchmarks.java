@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main entry point running all EASE Jupyter Kernel benchmarks.
+ * <p>
+ * An optional command line argument restricts the run to benchmarks matching
+ * the given regular expression. The GC profiler is always enabled so
+ * allocations per operation are reported as <code>gc.alloc.rate.norm</code>.
+ */
+public class EaseJupyterKernelBenchmarks {
+	/**
+	 * Runs all benchmarks in this package.
+	 * 
+	 * @param args
+	 *            Optional regular expression for benchmarks to be run.
+	 * @throws RunnerException
+	 *             If benchmarks could not be run.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : EaseJupyterKernelBenchmarks.class.getPackage().getName() + ".*";
+		new Runner(new OptionsBuilder().include(include).addProfiler(GCProfiler.class).shouldFailOnError(true)
+				.build()).run();
+	}
+}
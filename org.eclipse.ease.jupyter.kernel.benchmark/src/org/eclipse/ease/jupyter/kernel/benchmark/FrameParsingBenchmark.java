@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.HmacAlgorithms;
+import org.eclipse.ease.jupyter.kernel.HmacSigner;
+import org.eclipse.ease.jupyter.kernel.Protocol;
+import org.eclipse.ease.jupyter.kernel.messages.Header;
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.eclipse.ease.jupyter.kernel.messages.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeromq.ZMsg;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares the index based frame parser of {@link Protocol} against the
+ * former enum based state machine.
+ * <p>
+ * Run with the GC profiler (default for {@link EaseJupyterKernelBenchmarks})
+ * and compare <code>gc.alloc.rate.norm</code> to get the allocations per
+ * parsed message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameParsingBenchmark {
+	/**
+	 * Signature key as used by Jupyter connection files.
+	 */
+	private static final String KEY = "a0436f6c-1916-498b-8eb9-e81ab9368e84";
+
+	/**
+	 * {@link ObjectMapper} for legacy parsing.
+	 */
+	private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
+
+	/**
+	 * {@link Protocol#DELIMITER} in byte form.
+	 */
+	private static final byte[] DELIMITER_BYTES = Protocol.DELIMITER.getBytes(Protocol.ENCODING);
+
+	/**
+	 * Former enum based frame handling as used before the index based parser.
+	 */
+	private enum LegacyFrameHandler {
+		ZMQ_ID {
+			@Override
+			boolean handle(final byte[] frame, final List<byte[]> jsonFrames, final Message message) {
+				if (Arrays.equals(frame, DELIMITER_BYTES)) {
+					return true;
+				} else {
+					message.withZmqIdentity(frame);
+					return false;
+				}
+			}
+		},
+		HMAC_SIGNATURE {
+			@Override
+			boolean handle(final byte[] frame, final List<byte[]> jsonFrames, final Message message) {
+				message.withHmacSignature(frame);
+				return true;
+			}
+		},
+		HEADER, PARENT_HEADER, METADATA, CONTENT, EXTRA_DATA {
+			@Override
+			boolean handle(final byte[] frame, final List<byte[]> jsonFrames, final Message message) {
+				message.withExtraDatum(frame);
+				return false;
+			}
+		};
+
+		boolean handle(final byte[] frame, final List<byte[]> jsonFrames, final Message message) {
+			jsonFrames.add(frame);
+			return true;
+		}
+	}
+
+	/**
+	 * Message frames as received from ZMQ socket.
+	 */
+	private List<byte[]> fFrames;
+
+	/**
+	 * Message frames as array.
+	 */
+	private byte[][] fFrameArray;
+
+	/**
+	 * Message frames as {@link ZMsg}.
+	 */
+	private ZMsg fZmqMessage;
+
+	/**
+	 * Protocol under test.
+	 */
+	private Protocol fProtocol;
+
+	/**
+	 * Signer for legacy verification.
+	 */
+	private HmacSigner fSigner;
+
+	/**
+	 * Creates frames and protocol.
+	 *
+	 * @throws IOException
+	 *             If message could not be serialized.
+	 */
+	@Setup
+	public void setup() throws IOException {
+		fProtocol = new Protocol(KEY, "hmac-sha256");
+		fSigner = new HmacSigner(KEY.getBytes(), HmacAlgorithms.HMAC_SHA_256);
+
+		Message message = new Message().withZmqIdentity("benchmark-identity".getBytes(Protocol.ENCODING))
+				.withContent(new Stream().withName("stdout").withText("benchmark"));
+		message.getHeader().withMsgId(Message.randomId()).withMsgType("stream").withSession("benchmark")
+				.withUsername("benchmark");
+
+		fFrames = fProtocol.toFrames(message);
+		fFrameArray = fFrames.toArray(new byte[fFrames.size()][]);
+		fZmqMessage = new ZMsg();
+		for (byte[] frame : fFrames) {
+			fZmqMessage.add(frame);
+		}
+	}
+
+	/**
+	 * Parsing using the former enum based state machine.
+	 *
+	 * @return Parsed message to be consumed.
+	 * @throws IOException
+	 *             If message is invalid.
+	 */
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public Message legacyParse() throws IOException {
+		final Message message = new Message();
+		final List<byte[]> jsonFrames = new ArrayList<byte[]>();
+		final Iterator<LegacyFrameHandler> i = Arrays.asList(LegacyFrameHandler.values()).iterator();
+
+		LegacyFrameHandler handler = i.next();
+		for (final byte[] frame : fFrames) {
+			if (handler.handle(frame, jsonFrames, message)) {
+				handler = i.next();
+			}
+		}
+		if (handler != LegacyFrameHandler.EXTRA_DATA) {
+			throw new IOException("Not enough frames received, last frame: " + handler);
+		}
+		if (!fSigner.verify(message.getHmacSignature(), jsonFrames)) {
+			throw new IOException("Invalid HMAC signature in received message");
+		}
+
+		message.withHeader(JSON_OBJECT_MAPPER.readValue(jsonFrames.get(0), Header.class));
+		message.withParentHeader(JSON_OBJECT_MAPPER.readValue(jsonFrames.get(1), Header.class));
+		message.withMetadata(JSON_OBJECT_MAPPER.readValue(jsonFrames.get(2), Map.class));
+		message.withRawContent(jsonFrames.get(3));
+		return message;
+	}
+
+	/**
+	 * Parsing from frame list.
+	 *
+	 * @return Parsed message to be consumed.
+	 * @throws IOException
+	 *             If message is invalid.
+	 */
+	@Benchmark
+	public Message listParse() throws IOException {
+		return fProtocol.fromFrames(fFrames);
+	}
+
+	/**
+	 * Parsing from frame array.
+	 *
+	 * @return Parsed message to be consumed.
+	 * @throws IOException
+	 *             If message is invalid.
+	 */
+	@Benchmark
+	public Message arrayParse() throws IOException {
+		return fProtocol.fromFrames(fFrameArray, fFrameArray.length);
+	}
+
+	/**
+	 * Parsing from {@link ZMsg}.
+	 *
+	 * @return Parsed message to be consumed.
+	 * @throws IOException
+	 *             If message is invalid.
+	 */
+	@Benchmark
+	public Message zmqMessageParse() throws IOException {
+		return fProtocol.fromFrames(fZmqMessage);
+	}
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.HmacAlgorithms;
+import org.apache.commons.codec.digest.HmacUtils;
+import org.eclipse.ease.jupyter.kernel.HmacSigner;
+import org.eclipse.ease.jupyter.kernel.Protocol;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares signing and verification using {@link HmacSigner} against creating
+ * a new {@link Mac} for every message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HmacSignatureBenchmark {
+	/**
+	 * Signature key as used by Jupyter connection files.
+	 */
+	private static final byte[] KEY = "a0436f6c-1916-498b-8eb9-e81ab9368e84".getBytes(Protocol.ENCODING);
+
+	/**
+	 * Size of the content frame in bytes.
+	 */
+	@Param({ "64", "4096", "65536" })
+	public int fContentSize;
+
+	/**
+	 * Frames to be signed (header, parent header, metadata, content).
+	 */
+	private List<byte[]> fFrames;
+
+	/**
+	 * Valid signature for {@link #fFrames}.
+	 */
+	private byte[] fSignature;
+
+	/**
+	 * Signer under test.
+	 */
+	private HmacSigner fSigner;
+
+	/**
+	 * Creates frames and signer.
+	 */
+	@Setup
+	public void setup() {
+		byte[] content = new byte[fContentSize];
+		Arrays.fill(content, (byte) 'x');
+		fFrames = Arrays.asList("{\"msg_id\":\"EASE.benchmark\",\"msg_type\":\"stream\"}".getBytes(Protocol.ENCODING),
+				"{}".getBytes(Protocol.ENCODING), "{}".getBytes(Protocol.ENCODING), content);
+		fSigner = new HmacSigner(KEY, HmacAlgorithms.HMAC_SHA_256);
+		fSignature = fSigner.sign(fFrames);
+	}
+
+	/**
+	 * Signing path used before {@link HmacSigner}.
+	 * 
+	 * @return Signature to be consumed.
+	 */
+	@Benchmark
+	public byte[] legacySign() {
+		Mac mac = HmacUtils.getInitializedMac(HmacAlgorithms.HMAC_SHA_256, KEY);
+		for (byte[] frame : fFrames) {
+			mac.update(frame);
+		}
+		return Hex.encodeHexString(mac.doFinal()).getBytes(Protocol.ENCODING);
+	}
+
+	/**
+	 * Verification path used before {@link HmacSigner}.
+	 * 
+	 * @return Verification result to be consumed.
+	 */
+	@Benchmark
+	public boolean legacyVerify() {
+		return Arrays.equals(fSignature, legacySign());
+	}
+
+	/**
+	 * Signing using {@link HmacSigner}.
+	 * 
+	 * @return Signature to be consumed.
+	 */
+	@Benchmark
+	public byte[] signerSign() {
+		return fSigner.sign(fFrames);
+	}
+
+	/**
+	 * Verification using {@link HmacSigner}.
+	 * 
+	 * @return Verification result to be consumed.
+	 */
+	@Benchmark
+	public boolean signerVerify() {
+		return fSigner.verify(fSignature, fFrames);
+	}
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ease.jupyter.kernel.handlers.ListPublishable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Baseline for creating MIME type dictionaries of list results using
+ * {@link ListPublishable}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListPublishableBenchmark {
+	/**
+	 * Number of list elements, below and above the size threshold for
+	 * printing all elements.
+	 */
+	@Param({ "5", "20", "10000" })
+	public int fSize;
+
+	/**
+	 * Publishable under test.
+	 */
+	private ListPublishable fPublishable;
+
+	/**
+	 * Creates list of given size.
+	 */
+	@Setup
+	public void setup() {
+		List<Double> values = new ArrayList<Double>(fSize);
+		for (int i = 0; i < fSize; i++) {
+			values.add(i / 3.0);
+		}
+		fPublishable = new ListPublishable(values);
+	}
+
+	/**
+	 * Creating the MIME type dictionary.
+	 *
+	 * @return Dictionary to be consumed.
+	 */
+	@Benchmark
+	public Map<String, Object> toMimeTypeDict() {
+		return fPublishable.toMimeTypeDict();
+	}
+}
@@ -0,0 +1,977 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.ease.jupyter.kernel.Config;
+import org.eclipse.ease.jupyter.kernel.Kernel;
+import org.eclipse.ease.jupyter.kernel.Protocol;
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.eclipse.ease.jupyter.kernel.metrics.Histogram;
+import org.eclipse.ease.service.EngineDescription;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Context;
+import org.zeromq.ZMQ.Socket;
+
+/**
+ * End-to-end load generator simulating many Jupyter clients against a single
+ * {@link Kernel}.
+ * <p>
+ * The kernel runs a {@link StubScriptEngine}, so only the messaging layer is
+ * loaded. Every client is a DEALER socket sending a configurable mix of
+ * requests in a closed loop, i.e. the next request is sent once the reply to
+ * the previous one was received. An additional SUB socket checks that all
+ * IOPub messages expected for execute requests are published.
+ * <p>
+ * The generator reports latency percentiles per request type, throughput and
+ * the number of lost or misrouted messages. It can either be run via
+ * {@link #main(String[])} or be configured using the <code>withX</code>
+ * methods and started using {@link #run()}.
+ */
+public class LoadGenerator {
+	/**
+	 * Types of requests sent by clients.
+	 */
+	public enum RequestType {
+		EXECUTE("execute_request", "execute_reply"), COMPLETE("complete_request", "complete_reply"), INSPECT(
+				"inspect_request", "inspect_reply"), HISTORY("history_request", "history_reply");
+
+		/**
+		 * Message type of request.
+		 */
+		private final String fRequestType;
+
+		/**
+		 * Message type of expected reply.
+		 */
+		private final String fReplyType;
+
+		/**
+		 * Constructor only stores parameters to members.
+		 *
+		 * @param requestType
+		 *            Message type of request.
+		 * @param replyType
+		 *            Message type of expected reply.
+		 */
+		private RequestType(final String requestType, final String replyType) {
+			fRequestType = requestType;
+			fReplyType = replyType;
+		}
+
+		/**
+		 * Getter for message type of request.
+		 *
+		 * @return Message type of request.
+		 */
+		public String getRequestType() {
+			return fRequestType;
+		}
+
+		/**
+		 * Getter for message type of expected reply.
+		 *
+		 * @return Message type of expected reply.
+		 */
+		public String getReplyType() {
+			return fReplyType;
+		}
+	}
+
+	/**
+	 * Signature key used by kernel and clients.
+	 */
+	private static final String KEY = "a0436f6c-1916-498b-8eb9-e81ab9368e84";
+
+	/**
+	 * Signature scheme used by kernel and clients.
+	 */
+	private static final String SIGNATURE_SCHEME = "hmac-sha256";
+
+	/**
+	 * Line printed by stub engine for every execution.
+	 */
+	private static final String OUTPUT_LINE = "Iteration 42: loss=0.0123 accuracy=0.987\n";
+
+	/**
+	 * Code sent with execute, complete and inspect requests.
+	 */
+	private static final String CODE = "print('load')";
+
+	/**
+	 * Receive timeout of all client sockets in milliseconds.
+	 */
+	private static final int POLL_MILLIS = 100;
+
+	/**
+	 * Time to wait for the IOPub subscription to be established.
+	 */
+	private static final long CONNECT_TIMEOUT_MILLIS = 10000;
+
+	/**
+	 * Counter for unique ipc and inproc channel names.
+	 */
+	private static final AtomicInteger NEXT_INPROC_PORT = new AtomicInteger(50000);
+
+	/**
+	 * IOPub messages expected for a single execute request.
+	 */
+	private static class Expectation {
+		/**
+		 * Number of output characters still expected.
+		 */
+		private final AtomicLong fPendingOutput;
+
+		/**
+		 * Flag to check if execute result was received.
+		 */
+		private volatile boolean fResult;
+
+		/**
+		 * Flag to check if idle status was received.
+		 */
+		private volatile boolean fIdle;
+
+		/**
+		 * Constructor stores expected output length.
+		 *
+		 * @param outputLength
+		 *            Number of output characters expected.
+		 */
+		public Expectation(final long outputLength) {
+			fPendingOutput = new AtomicLong(outputLength);
+		}
+
+		/**
+		 * Checks if all expected messages were received.
+		 *
+		 * @return <code>true</code> if nothing is missing.
+		 */
+		public boolean isComplete() {
+			return fResult && fIdle && fPendingOutput.get() <= 0;
+		}
+	}
+
+	/**
+	 * Results of a load run.
+	 */
+	public static class Report {
+		/**
+		 * Latencies in nanoseconds per request type.
+		 */
+		private final Map<RequestType, Histogram> fLatencies = new EnumMap<RequestType, Histogram>(RequestType.class);
+
+		/**
+		 * Number of requests sent.
+		 */
+		private final AtomicLong fSent = new AtomicLong();
+
+		/**
+		 * Number of requests without reply within timeout.
+		 */
+		private final AtomicLong fTimedOut = new AtomicLong();
+
+		/**
+		 * Number of replies received after their timeout.
+		 */
+		private final AtomicLong fLate = new AtomicLong();
+
+		/**
+		 * Number of replies for requests of other clients or of wrong type.
+		 */
+		private final AtomicLong fMisrouted = new AtomicLong();
+
+		/**
+		 * Number of execute requests with all IOPub messages received.
+		 */
+		private final AtomicLong fIoPubComplete = new AtomicLong();
+
+		/**
+		 * Number of execute requests with missing IOPub messages.
+		 */
+		private final AtomicLong fIoPubIncomplete = new AtomicLong();
+
+		/**
+		 * Number of IOPub messages received.
+		 */
+		private final AtomicLong fIoPubMessages = new AtomicLong();
+
+		/**
+		 * Duration of the run in nanoseconds.
+		 */
+		private long fElapsedNanos;
+
+		/**
+		 * Constructor creates a histogram per request type.
+		 */
+		public Report() {
+			for (RequestType type : RequestType.values()) {
+				fLatencies.put(type, new Histogram());
+			}
+		}
+
+		/**
+		 * Getter for latency histogram of given request type.
+		 *
+		 * @param type
+		 *            Request type to get latencies for.
+		 * @return Latencies in nanoseconds.
+		 */
+		public Histogram getLatency(final RequestType type) {
+			return fLatencies.get(type);
+		}
+
+		/**
+		 * Getter for number of replies received.
+		 *
+		 * @return Number of replies received within timeout.
+		 */
+		public long getReceived() {
+			long received = 0;
+			for (Histogram histogram : fLatencies.values()) {
+				received += histogram.getCount();
+			}
+			return received;
+		}
+
+		/**
+		 * Getter for throughput of the run.
+		 *
+		 * @return Replies per second.
+		 */
+		public double getThroughput() {
+			return fElapsedNanos > 0 ? getReceived() * 1e9 / fElapsedNanos : 0;
+		}
+
+		/**
+		 * Getter for number of requests without reply within timeout.
+		 *
+		 * @return Number of lost replies.
+		 */
+		public long getShellLoss() {
+			return fTimedOut.get();
+		}
+
+		/**
+		 * Getter for number of replies for requests of other clients.
+		 *
+		 * @return Number of misrouted replies.
+		 */
+		public long getMisrouted() {
+			return fMisrouted.get();
+		}
+
+		/**
+		 * Getter for number of execute requests with missing IOPub messages.
+		 *
+		 * @return Number of execute requests with IOPub loss.
+		 */
+		public long getIoPubLoss() {
+			return fIoPubIncomplete.get();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(String.format(Locale.ROOT, "%-10s %10s %12s %12s %12s%n", "type", "count", "p50 [us]",
+					"p99 [us]", "max [us]"));
+			for (Map.Entry<RequestType, Histogram> entry : fLatencies.entrySet()) {
+				Histogram histogram = entry.getValue();
+				builder.append(String.format(Locale.ROOT, "%-10s %10d %12.1f %12.1f %12.1f%n",
+						entry.getKey().name().toLowerCase(Locale.ROOT), histogram.getCount(),
+						histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(99) / 1e3,
+						histogram.getMax() / 1e3));
+			}
+			builder.append(String.format(Locale.ROOT, "throughput: %.1f replies/s in %.2f s%n", getThroughput(),
+					fElapsedNanos / 1e9));
+			builder.append(String.format(Locale.ROOT, "shell: %d sent, %d received, %d lost, %d late, %d misrouted%n",
+					fSent.get(), getReceived(), fTimedOut.get(), fLate.get(), fMisrouted.get()));
+			builder.append(String.format(Locale.ROOT, "iopub: %d messages, %d executes complete, %d incomplete%n",
+					fIoPubMessages.get(), fIoPubComplete.get(), fIoPubIncomplete.get()));
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Number of simulated clients.
+	 */
+	private int fClients = 8;
+
+	/**
+	 * Number of requests sent by every client.
+	 */
+	private int fRequestsPerClient = 1000;
+
+	/**
+	 * ZMQ transport, either <code>tcp</code>, <code>ipc</code> or
+	 * <code>inproc</code>.
+	 */
+	private String fTransport = "tcp";
+
+	/**
+	 * Relative weights of request types.
+	 */
+	private final Map<RequestType, Integer> fWeights = new EnumMap<RequestType, Integer>(RequestType.class);
+
+	/**
+	 * Time every execution takes in microseconds.
+	 */
+	private long fExecuteMicros = 0;
+
+	/**
+	 * Number of lines printed per execution.
+	 */
+	private int fOutputLines = 1;
+
+	/**
+	 * Time to wait for a reply in milliseconds.
+	 */
+	private int fReplyTimeoutMillis = 5000;
+
+	/**
+	 * Time to wait for outstanding IOPub messages after the last reply in
+	 * milliseconds.
+	 */
+	private int fIoPubTimeoutMillis = 2000;
+
+	/**
+	 * Constructor sets default request mix.
+	 */
+	public LoadGenerator() {
+		fWeights.put(RequestType.EXECUTE, 4);
+		fWeights.put(RequestType.COMPLETE, 2);
+		fWeights.put(RequestType.INSPECT, 1);
+		fWeights.put(RequestType.HISTORY, 1);
+	}
+
+	/**
+	 * Sets the number of simulated clients.
+	 *
+	 * @param clients
+	 *            Number of clients.
+	 * @return Generator for chaining.
+	 */
+	public LoadGenerator withClients(final int clients) {
+		fClients = clients;
+		return this;
+	}
+
+	/**
+	 * Sets the number of requests sent by every client.
+	 *
+	 * @param requestsPerClient
+	 *            Number of requests per client.
+	 * @return Generator for chaining.
+	 */
+	public LoadGenerator withRequestsPerClient(final int requestsPerClient) {
+		fRequestsPerClient = requestsPerClient;
+		return this;
+	}
+
+	/**
+	 * Sets the ZMQ transport.
+	 *
+	 * @param transport
+	 *            Either <code>tcp</code>, <code>ipc</code> or
+	 *            <code>inproc</code>.
+	 * @return Generator for chaining.
+	 */
+	public LoadGenerator withTransport(final String transport) {
+		if (!"tcp".equals(transport) && !"ipc".equals(transport) && !"inproc".equals(transport)) {
+			throw new IllegalArgumentException("Unsupported transport: " + transport);
+		}
+		fTransport = transport;
+		return this;
+	}
+
+	/**
+	 * Sets the relative weight of a request type.
+	 *
+	 * @param type
+	 *            Request type to set weight for.
+	 * @param weight
+	 *            Relative weight, <code>0</code> to not send requests of type.
+	 * @return Generator for chaining.
+	 */
+	public LoadGenerator withWeight(final RequestType type, final int weight) {
+		if (weight < 0) {
+			throw new IllegalArgumentException("Weight must not be negative");
+		}
+		fWeights.put(type, weight);
+		return this;
+	}
+
+	/**
+	 * Sets the time every execution takes.
+	 *
+	 * @param executeMicros
+	 *            Execution time in microseconds.
+	 * @return Generator for chaining.
+	 */
+	public LoadGenerator withExecuteMicros(final long executeMicros) {
+		fExecuteMicros = executeMicros;
+		return this;
+	}
+
+	/**
+	 * Sets the number of lines printed per execution.
+	 *
+	 * @param outputLines
+	 *            Number of output lines.
+	 * @return Generator for chaining.
+	 */
+	public LoadGenerator withOutputLines(final int outputLines) {
+		fOutputLines = outputLines;
+		return this;
+	}
+
+	/**
+	 * Sets the time to wait for a reply.
+	 *
+	 * @param replyTimeoutMillis
+	 *            Reply timeout in milliseconds.
+	 * @return Generator for chaining.
+	 */
+	public LoadGenerator withReplyTimeoutMillis(final int replyTimeoutMillis) {
+		fReplyTimeoutMillis = replyTimeoutMillis;
+		return this;
+	}
+
+	/**
+	 * Sets the time to wait for outstanding IOPub messages.
+	 *
+	 * @param ioPubTimeoutMillis
+	 *            IOPub timeout in milliseconds.
+	 * @return Generator for chaining.
+	 */
+	public LoadGenerator withIoPubTimeoutMillis(final int ioPubTimeoutMillis) {
+		fIoPubTimeoutMillis = ioPubTimeoutMillis;
+		return this;
+	}
+
+	/**
+	 * Starts a kernel, runs all clients against it and stops the kernel.
+	 *
+	 * @return {@link Report} of the run.
+	 * @throws IOException
+	 *             If kernel could not be set up.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting for clients.
+	 */
+	public Report run() throws IOException, InterruptedException {
+		int totalWeight = 0;
+		for (int weight : fWeights.values()) {
+			totalWeight += weight;
+		}
+		if (totalWeight == 0) {
+			throw new IllegalArgumentException("At least one request type needs a positive weight");
+		}
+
+		final Report report = new Report();
+		final Protocol protocol = new Protocol(KEY, SIGNATURE_SCHEME);
+		final ConcurrentMap<String, Expectation> expectations = new ConcurrentHashMap<String, Expectation>();
+
+		// Create kernel running stub engine
+		final boolean named = !"tcp".equals(fTransport);
+		final String ip = named ? "load-" + UUID.randomUUID() : "127.0.0.1";
+		final Config config = new Config(ip, fTransport, KEY, SIGNATURE_SCHEME, getFreePort(named),
+				getFreePort(named), getFreePort(named), getFreePort(named), getFreePort(named), null);
+		final Kernel kernel = new Kernel(config,
+				StubScriptEngine.createDescription(fExecuteMicros, OUTPUT_LINE, fOutputLines));
+		kernel.start();
+
+		// Clients use their own context, inproc requires the kernel's
+		final Context context = "inproc".equals(fTransport) ? null : ZMQ.context(1);
+		final String shellAddress = Kernel.getChannelAddress(config.getShellPort(), config);
+		final String ioPubAddress = Kernel.getChannelAddress(config.getIopubPort(), config);
+
+		final List<Socket> sockets = new ArrayList<Socket>();
+		try {
+			// Sockets are created here and handed over to their threads
+			final Socket subscriber = createSocket(kernel, context, ZMQ.SUB, sockets);
+			subscriber.subscribe(new byte[0]);
+			subscriber.connect(ioPubAddress);
+
+			final Socket[] clients = new Socket[fClients];
+			for (int i = 0; i < fClients; i++) {
+				clients[i] = createSocket(kernel, context, ZMQ.DEALER, sockets);
+				clients[i].setIdentity(("load-client-" + i).getBytes(Protocol.ENCODING));
+				clients[i].connect(shellAddress);
+			}
+
+			final AtomicInteger running = new AtomicInteger(1);
+			final Thread ioPubThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					receiveIoPub(subscriber, protocol, expectations, report, running);
+				}
+			}, "LoadGenerator-IOPub");
+			ioPubThread.start();
+
+			try {
+				// Wait until IOPub is connected, messages before are dropped
+				warmUp(clients[0], protocol, expectations);
+
+				// Run all clients
+				final List<Thread> threads = new ArrayList<Thread>();
+				final long start = System.nanoTime();
+				for (int i = 0; i < fClients; i++) {
+					final Socket client = clients[i];
+					final long seed = i;
+					Thread thread = new Thread(new Runnable() {
+						@Override
+						public void run() {
+							runClient(client, protocol, new Random(seed), expectations, report);
+						}
+					}, "LoadGenerator-Client-" + i);
+					threads.add(thread);
+					thread.start();
+				}
+				for (Thread thread : threads) {
+					thread.join();
+				}
+				report.fElapsedNanos = System.nanoTime() - start;
+
+				// Give IOPub time to catch up
+				final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(fIoPubTimeoutMillis);
+				while (System.nanoTime() < deadline && !isComplete(expectations)) {
+					Thread.sleep(10);
+				}
+			} finally {
+				running.set(0);
+				ioPubThread.join();
+			}
+
+			for (Expectation expectation : expectations.values()) {
+				if (expectation.isComplete()) {
+					report.fIoPubComplete.incrementAndGet();
+				} else {
+					report.fIoPubIncomplete.incrementAndGet();
+				}
+			}
+		} finally {
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+			if (context != null) {
+				context.term();
+			}
+			kernel.stop();
+		}
+
+		return report;
+	}
+
+	/**
+	 * Creates a client socket and remembers it for closing.
+	 *
+	 * @param kernel
+	 *            Kernel to create inproc sockets with.
+	 * @param context
+	 *            Client ZMQ context, <code>null</code> for inproc.
+	 * @param type
+	 *            ZMQ socket type.
+	 * @param sockets
+	 *            List of sockets to be closed after the run.
+	 * @return New ZMQ {@link Socket}.
+	 */
+	private static Socket createSocket(final Kernel kernel, final Context context, final int type,
+			final List<Socket> sockets) {
+		final Socket socket = context != null ? context.socket(type) : kernel.createSocket(type);
+		socket.setLinger(0L);
+		socket.setReceiveTimeOut(POLL_MILLIS);
+		sockets.add(socket);
+		return socket;
+	}
+
+	/**
+	 * Sends execute requests until IOPub messages are received for one of
+	 * them.
+	 *
+	 * @param client
+	 *            Client socket to send requests with.
+	 * @param protocol
+	 *            {@link Protocol} to serialize messages.
+	 * @param expectations
+	 *            Expectations updated by IOPub thread.
+	 * @throws IOException
+	 *             If IOPub subscription could not be established in time.
+	 */
+	private void warmUp(final Socket client, final Protocol protocol, final Map<String, Expectation> expectations)
+			throws IOException {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONNECT_TIMEOUT_MILLIS);
+		while (System.nanoTime() < deadline) {
+			final Message request = createRequest(RequestType.EXECUTE, "warmup");
+			final String msgId = request.getHeader().getMsgId();
+			final Expectation expectation = new Expectation(0);
+			expectations.put(msgId, expectation);
+			send(client, protocol.toFrames(request));
+			receiveReply(client, protocol, msgId, fReplyTimeoutMillis);
+
+			// Idle status is the last message published for a request
+			final long idleDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS);
+			while (!expectation.fIdle && System.nanoTime() < idleDeadline) {
+				Thread.yield();
+			}
+			expectations.remove(msgId);
+			if (expectation.fIdle) {
+				return;
+			}
+		}
+		throw new IOException("IOPub subscription not established");
+	}
+
+	/**
+	 * Closed loop of a single client.
+	 *
+	 * @param client
+	 *            Client socket, only used by the calling thread.
+	 * @param protocol
+	 *            {@link Protocol} to serialize messages.
+	 * @param random
+	 *            Random generator to pick request types.
+	 * @param expectations
+	 *            Expectations to be checked by IOPub thread.
+	 * @param report
+	 *            {@link Report} to store results to.
+	 */
+	private void runClient(final Socket client, final Protocol protocol, final Random random,
+			final Map<String, Expectation> expectations, final Report report) {
+		final String session = UUID.randomUUID().toString();
+		final Set<String> timedOut = new HashSet<String>();
+		final long outputLength = (long) fOutputLines * OUTPUT_LINE.length();
+
+		for (int i = 0; i < fRequestsPerClient; i++) {
+			final RequestType type = pickType(random);
+			final Message request = createRequest(type, session);
+			final String msgId = request.getHeader().getMsgId();
+
+			try {
+				final List<byte[]> frames = protocol.toFrames(request);
+
+				// Register before sending, IOPub may be faster than reply
+				if (type == RequestType.EXECUTE) {
+					expectations.put(msgId, new Expectation(outputLength));
+				}
+
+				final long sent = System.nanoTime();
+				send(client, frames);
+				report.fSent.incrementAndGet();
+
+				final long deadline = sent + TimeUnit.MILLISECONDS.toNanos(fReplyTimeoutMillis);
+				while (true) {
+					final Message reply = receiveReply(client, protocol, null,
+							(int) TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+					if (reply == null) {
+						report.fTimedOut.incrementAndGet();
+						timedOut.add(msgId);
+						break;
+					}
+
+					final String parentId = reply.getParentHeader().getMsgId();
+					if (msgId.equals(parentId)) {
+						if (type.getReplyType().equals(reply.getHeader().getMsgType())) {
+							report.getLatency(type).record(System.nanoTime() - sent);
+						} else {
+							report.fMisrouted.incrementAndGet();
+						}
+						break;
+					} else if (timedOut.remove(parentId)) {
+						report.fLate.incrementAndGet();
+					} else {
+						report.fMisrouted.incrementAndGet();
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				report.fTimedOut.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Receives IOPub messages and updates expectations until stopped.
+	 *
+	 * @param subscriber
+	 *            SUB socket, only used by the calling thread.
+	 * @param protocol
+	 *            {@link Protocol} to parse messages.
+	 * @param expectations
+	 *            Expectations to be updated.
+	 * @param report
+	 *            {@link Report} to store results to.
+	 * @param running
+	 *            Set to <code>0</code> to stop receiving.
+	 */
+	private static void receiveIoPub(final Socket subscriber, final Protocol protocol,
+			final Map<String, Expectation> expectations, final Report report, final AtomicInteger running) {
+		final List<byte[]> frames = new ArrayList<byte[]>();
+		while (running.get() != 0) {
+			if (!receiveFrames(subscriber, frames)) {
+				continue;
+			}
+
+			final Message message;
+			try {
+				message = protocol.fromFrames(frames);
+			} catch (IOException e) {
+				e.printStackTrace();
+				continue;
+			}
+			report.fIoPubMessages.incrementAndGet();
+
+			final Expectation expectation = expectations.get(message.getParentHeader().getMsgId());
+			if (expectation == null) {
+				continue;
+			}
+
+			@SuppressWarnings("unchecked")
+			final Map<String, Object> content = (Map<String, Object>) message.getContent();
+			final String msgType = message.getHeader().getMsgType();
+			if ("execute_result".equals(msgType)) {
+				expectation.fResult = true;
+			} else if ("stream".equals(msgType)) {
+				expectation.fPendingOutput.addAndGet(-String.valueOf(content.get("text")).length());
+			} else if ("status".equals(msgType) && "idle".equals(content.get("execution_state"))) {
+				expectation.fIdle = true;
+			}
+		}
+	}
+
+	/**
+	 * Checks if all expected IOPub messages were received.
+	 *
+	 * @param expectations
+	 *            Expectations to be checked.
+	 * @return <code>true</code> if all expectations are complete.
+	 */
+	private static boolean isComplete(final Map<String, Expectation> expectations) {
+		for (Expectation expectation : expectations.values()) {
+			if (!expectation.isComplete()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Picks a request type based on the configured weights.
+	 *
+	 * @param random
+	 *            Random generator of client.
+	 * @return Request type to be sent.
+	 */
+	private RequestType pickType(final Random random) {
+		int totalWeight = 0;
+		for (int weight : fWeights.values()) {
+			totalWeight += weight;
+		}
+
+		int value = random.nextInt(totalWeight);
+		for (Map.Entry<RequestType, Integer> entry : fWeights.entrySet()) {
+			value -= entry.getValue();
+			if (value < 0) {
+				return entry.getKey();
+			}
+		}
+		return RequestType.EXECUTE;
+	}
+
+	/**
+	 * Creates a request of the given type.
+	 *
+	 * @param type
+	 *            Request type to be created.
+	 * @param session
+	 *            Session identifier of client.
+	 * @return Request message.
+	 */
+	private static Message createRequest(final RequestType type, final String session) {
+		final Map<String, Object> content = new HashMap<String, Object>();
+		switch (type) {
+		case EXECUTE:
+			content.put("code", CODE);
+			content.put("silent", false);
+			content.put("store_history", true);
+			content.put("user_expressions", new HashMap<String, Object>());
+			content.put("allow_stdin", false);
+			content.put("stop_on_error", false);
+			break;
+		case COMPLETE:
+		case INSPECT:
+			content.put("code", CODE);
+			content.put("cursor_pos", 5);
+			content.put("detail_level", 0);
+			break;
+		case HISTORY:
+			content.put("output", false);
+			content.put("raw", true);
+			content.put("hist_access_type", "tail");
+			content.put("n", 10);
+			break;
+		}
+
+		final Message request = new Message().withContent(content);
+		request.getHeader().withMsgId(Message.randomId()).withMsgType(type.getRequestType()).withSession(session)
+				.withUsername("load");
+		return request;
+	}
+
+	/**
+	 * Sends all frames of a message.
+	 *
+	 * @param socket
+	 *            Socket to send frames with.
+	 * @param frames
+	 *            Frames to be sent.
+	 */
+	private static void send(final Socket socket, final List<byte[]> frames) {
+		final int last = frames.size() - 1;
+		for (int i = 0; i < last; i++) {
+			socket.sendMore(frames.get(i));
+		}
+		socket.send(frames.get(last));
+	}
+
+	/**
+	 * Receives the next reply, optionally waiting for a specific one.
+	 *
+	 * @param socket
+	 *            Socket to receive reply with.
+	 * @param protocol
+	 *            {@link Protocol} to parse reply.
+	 * @param msgId
+	 *            Message identifier of request to wait for, <code>null</code>
+	 *            to return any reply.
+	 * @param timeoutMillis
+	 *            Time to wait for reply.
+	 * @return Received reply, <code>null</code> if nothing received in time.
+	 * @throws IOException
+	 *             If reply could not be parsed.
+	 */
+	private static Message receiveReply(final Socket socket, final Protocol protocol, final String msgId,
+			final int timeoutMillis) throws IOException {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(timeoutMillis, 0));
+		final List<byte[]> frames = new ArrayList<byte[]>();
+		do {
+			if (receiveFrames(socket, frames)) {
+				final Message reply = protocol.fromFrames(frames);
+				if (msgId == null || msgId.equals(reply.getParentHeader().getMsgId())) {
+					return reply;
+				}
+			}
+		} while (System.nanoTime() < deadline);
+		return null;
+	}
+
+	/**
+	 * Receives all frames of a message. Frames are received directly as
+	 * {@link org.zeromq.ZMsg} does not support empty frames.
+	 *
+	 * @param socket
+	 *            Socket to receive frames with.
+	 * @param frames
+	 *            List to store frames to, cleared before receiving.
+	 * @return <code>true</code> if a message was received.
+	 */
+	private static boolean receiveFrames(final Socket socket, final List<byte[]> frames) {
+		frames.clear();
+		byte[] frame = socket.recv();
+		if (frame == null) {
+			return false;
+		}
+		frames.add(frame);
+		while (socket.hasReceiveMore()) {
+			frames.add(socket.recv());
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a port for a kernel channel.
+	 *
+	 * @param named
+	 *            Flag to signalize that any unique number is sufficient.
+	 * @return Free TCP port or unique number for ipc and inproc.
+	 * @throws IOException
+	 *             If no free port could be found.
+	 */
+	private static int getFreePort(final boolean named) throws IOException {
+		if (named) {
+			return NEXT_INPROC_PORT.incrementAndGet();
+		}
+
+		final ServerSocket socket = new ServerSocket(0);
+		try {
+			return socket.getLocalPort();
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Runs the load generator with settings given as
+	 * <code>name=value</code> arguments, e.g.
+	 * <code>clients=16 requests=500 transport=inproc execute=1 complete=0</code>.
+	 *
+	 * @param args
+	 *            Settings of the run.
+	 * @throws Exception
+	 *             If run failed.
+	 */
+	public static void main(final String[] args) throws Exception {
+		final LoadGenerator generator = new LoadGenerator();
+		for (String arg : args) {
+			final int separator = arg.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Expected name=value: " + arg);
+			}
+			final String name = arg.substring(0, separator);
+			final String value = arg.substring(separator + 1);
+
+			if ("clients".equals(name)) {
+				generator.withClients(Integer.parseInt(value));
+			} else if ("requests".equals(name)) {
+				generator.withRequestsPerClient(Integer.parseInt(value));
+			} else if ("transport".equals(name)) {
+				generator.withTransport(value);
+			} else if ("executeMicros".equals(name)) {
+				generator.withExecuteMicros(Long.parseLong(value));
+			} else if ("outputLines".equals(name)) {
+				generator.withOutputLines(Integer.parseInt(value));
+			} else if ("timeout".equals(name)) {
+				generator.withReplyTimeoutMillis(Integer.parseInt(value));
+			} else {
+				generator.withWeight(RequestType.valueOf(name.toUpperCase(Locale.ROOT)), Integer.parseInt(value));
+			}
+		}
+
+		System.out.print(generator.run());
+	}
+}
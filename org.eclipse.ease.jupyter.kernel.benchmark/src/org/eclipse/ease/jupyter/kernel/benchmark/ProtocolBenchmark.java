@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.benchmark;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ease.jupyter.kernel.Protocol;
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.eclipse.ease.jupyter.kernel.messages.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Baseline for serializing and parsing messages using {@link Protocol}, with
+ * and without message signatures.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+	/**
+	 * Signature key as used by Jupyter connection files.
+	 */
+	private static final String KEY = "a0436f6c-1916-498b-8eb9-e81ab9368e84";
+
+	/**
+	 * Size of the stream text in characters.
+	 */
+	@Param({ "64", "4096", "65536" })
+	public int fContentSize;
+
+	/**
+	 * Flag to check if messages are signed.
+	 */
+	@Param({ "true", "false" })
+	public boolean fSigning;
+
+	/**
+	 * Protocol under test.
+	 */
+	private Protocol fProtocol;
+
+	/**
+	 * Message to be serialized.
+	 */
+	private Message fMessage;
+
+	/**
+	 * Serialized {@link #fMessage} to be parsed.
+	 */
+	private byte[][] fFrames;
+
+	/**
+	 * Creates protocol, message and frames.
+	 *
+	 * @throws IOException
+	 *             If message could not be serialized.
+	 */
+	@Setup
+	public void setup() throws IOException {
+		fProtocol = fSigning ? new Protocol(KEY, "hmac-sha256") : new Protocol();
+
+		char[] text = new char[fContentSize];
+		Arrays.fill(text, 'x');
+		fMessage = new Message().withZmqIdentity("benchmark-identity".getBytes(Protocol.ENCODING))
+				.withContent(new Stream().withName("stdout").withText(new String(text)));
+		fMessage.getHeader().withMsgId(Message.randomId()).withMsgType("stream").withSession("benchmark")
+				.withUsername("benchmark");
+
+		List<byte[]> frames = fProtocol.toFrames(fMessage);
+		fFrames = frames.toArray(new byte[frames.size()][]);
+	}
+
+	/**
+	 * Serializing (and signing) a message.
+	 *
+	 * @return Frames to be consumed.
+	 * @throws IOException
+	 *             If message could not be serialized.
+	 */
+	@Benchmark
+	public List<byte[]> toFrames() throws IOException {
+		return fProtocol.toFrames(fMessage);
+	}
+
+	/**
+	 * Parsing (and verifying) a message.
+	 *
+	 * @return Parsed message to be consumed.
+	 * @throws IOException
+	 *             If message is invalid.
+	 */
+	@Benchmark
+	public Message fromFrames() throws IOException {
+		return fProtocol.fromFrames(fFrames, fFrames.length);
+	}
+}
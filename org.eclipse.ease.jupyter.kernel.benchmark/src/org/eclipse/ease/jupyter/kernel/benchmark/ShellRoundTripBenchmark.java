@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.benchmark;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ease.IScriptEngine;
+import org.eclipse.ease.jupyter.kernel.IEngineProvider;
+import org.eclipse.ease.jupyter.kernel.Protocol;
+import org.eclipse.ease.jupyter.kernel.RequestScheduler;
+import org.eclipse.ease.jupyter.kernel.Session;
+import org.eclipse.ease.jupyter.kernel.channels.IOPubChannel;
+import org.eclipse.ease.jupyter.kernel.channels.Reactor;
+import org.eclipse.ease.jupyter.kernel.channels.ShellChannel;
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Socket;
+
+/**
+ * End-to-end round trip of shell requests over inproc ZMQ.
+ * <p>
+ * Requests pass the {@link Reactor}, the shell queue of the
+ * {@link RequestScheduler} and the message handler before the reply is
+ * received and parsed by the client. Handlers run against a stub
+ * {@link IEngineProvider}, so only requests not executing code are used.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShellRoundTripBenchmark {
+	/**
+	 * Signature key as used by Jupyter connection files.
+	 */
+	private static final String KEY = "a0436f6c-1916-498b-8eb9-e81ab9368e84";
+
+	/**
+	 * Receive timeout of client socket in milliseconds.
+	 */
+	private static final int RECEIVE_TIMEOUT_MILLIS = 1000;
+
+	/**
+	 * Message type of requests.
+	 */
+	@Param({ "kernel_info_request", "is_complete_request" })
+	public String fMessageType;
+
+	/**
+	 * {@link Session} shared by kernel channels and client socket, necessary
+	 * for inproc transport.
+	 */
+	private Session fSession;
+
+	/**
+	 * {@link IOPubChannel} for handlers.
+	 */
+	private IOPubChannel fIoPub;
+
+	/**
+	 * {@link RequestScheduler} running handlers.
+	 */
+	private RequestScheduler fScheduler;
+
+	/**
+	 * {@link ShellChannel} under test.
+	 */
+	private ShellChannel fShell;
+
+	/**
+	 * {@link Reactor} reading requests.
+	 */
+	private Reactor fReactor;
+
+	/**
+	 * Client socket sending requests.
+	 */
+	private Socket fClient;
+
+	/**
+	 * Serialized request.
+	 */
+	private List<byte[]> fRequest;
+
+	/**
+	 * Starts shell channel and connects client.
+	 *
+	 * @throws IOException
+	 *             If request could not be serialized.
+	 */
+	@Setup
+	public void setup() throws IOException {
+		fSession = new Session(new Protocol(KEY, "hmac-sha256"), 1000, 1);
+
+		IEngineProvider engineProvider = new IEngineProvider() {
+			@Override
+			public IScriptEngine getEngine() {
+				return null;
+			}
+
+			@Override
+			public void resetEngine() {
+				// nothing to reset
+			}
+
+			@Override
+			public void interruptEngine() {
+				// nothing to interrupt
+			}
+
+			@Override
+			public Object startExecution() {
+				return null;
+			}
+
+			@Override
+			public boolean finishExecution(Object execution) {
+				return false;
+			}
+
+			@Override
+			public void shutdown() {
+				// nothing to shut down
+			}
+		};
+
+		String id = UUID.randomUUID().toString();
+		fIoPub = new IOPubChannel("inproc://benchmark-iopub-" + id, fSession);
+		fScheduler = new RequestScheduler(RequestScheduler.DEFAULT_SHELL_QUEUE_CAPACITY);
+		fShell = new ShellChannel("inproc://benchmark-shell-" + id, fSession, engineProvider, fIoPub, fScheduler);
+		fReactor = new Reactor(fSession);
+		fReactor.register(fShell);
+		fScheduler.setCapacityListener(new Runnable() {
+			@Override
+			public void run() {
+				fReactor.wakeUp();
+			}
+		});
+
+		fShell.start();
+		fIoPub.start();
+		fScheduler.start();
+		fReactor.start();
+
+		// inproc endpoints need to be bound before connecting
+		fClient = fSession.createSocket(ZMQ.DEALER);
+		fClient.setReceiveTimeOut(RECEIVE_TIMEOUT_MILLIS);
+		fClient.connect(fShell.getAddress());
+
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("code", "print('benchmark')");
+		Message request = new Message().withContent(content);
+		request.getHeader().withMsgId(Message.randomId()).withMsgType(fMessageType).withUsername("benchmark");
+		fRequest = fSession.serialize(request);
+	}
+
+	/**
+	 * Stops all channels and closes session.
+	 *
+	 * @throws IOException
+	 *             If session could not be closed.
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		fReactor.stop();
+		fScheduler.stop();
+		fShell.stop();
+		fIoPub.stop();
+		fSession.close();
+	}
+
+	/**
+	 * Sending a request and waiting for its reply.
+	 *
+	 * @return Reply to be consumed.
+	 * @throws IOException
+	 *             If no reply received.
+	 */
+	@Benchmark
+	public Message roundTrip() throws IOException {
+		fSession.send(fRequest, fClient);
+		return fSession.receive(fClient);
+	}
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.benchmark;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ease.IReplEngine;
+import org.eclipse.ease.IScriptEngine;
+import org.eclipse.ease.ScriptResult;
+import org.eclipse.ease.service.EngineDescription;
+
+/**
+ * Lightweight script engine for driving a kernel without a real interpreter.
+ * <p>
+ * Executing code takes a configurable time and prints a configurable number of
+ * lines to the output stream. The engine is created as dynamic proxy so only
+ * the methods used by the kernel need to be handled, all others return default
+ * values.
+ */
+public class StubScriptEngine implements InvocationHandler {
+	/**
+	 * Result returned for every execution.
+	 */
+	public static final String RESULT = "ok";
+
+	/**
+	 * Creates an {@link EngineDescription} creating stub engines.
+	 *
+	 * @param executeMicros
+	 *            Time every execution takes in microseconds.
+	 * @param outputLine
+	 *            Line printed to output stream, should end with a line
+	 *            break.
+	 * @param outputLines
+	 *            Number of lines printed per execution.
+	 * @return {@link EngineDescription} for stub engines.
+	 */
+	public static EngineDescription createDescription(final long executeMicros, final String outputLine,
+			final int outputLines) {
+		return new EngineDescription(null) {
+			@Override
+			public IScriptEngine createEngine() {
+				return (IScriptEngine) Proxy.newProxyInstance(StubScriptEngine.class.getClassLoader(),
+						new Class<?>[] { IReplEngine.class },
+						new StubScriptEngine(this, executeMicros, outputLine, outputLines));
+			}
+		};
+	}
+
+	/**
+	 * {@link EngineDescription} the engine was created for.
+	 */
+	private final EngineDescription fDescription;
+
+	/**
+	 * Time every execution takes in microseconds.
+	 */
+	private final long fExecuteMicros;
+
+	/**
+	 * Line printed to output stream.
+	 */
+	private final String fOutputLine;
+
+	/**
+	 * Number of lines printed per execution.
+	 */
+	private final int fOutputLines;
+
+	/**
+	 * Output stream set by kernel.
+	 */
+	private volatile PrintStream fOutputStream;
+
+	/**
+	 * Error stream set by kernel.
+	 */
+	private volatile PrintStream fErrorStream;
+
+	/**
+	 * Input stream set by kernel.
+	 */
+	private volatile InputStream fInputStream;
+
+	/**
+	 * Thread currently executing code, <code>null</code> if idle.
+	 */
+	private volatile Thread fCurrentThread;
+
+	/**
+	 * Constructor only stores parameters to members.
+	 *
+	 * @param description
+	 *            {@link EngineDescription} the engine was created for.
+	 * @param executeMicros
+	 *            Time every execution takes in microseconds.
+	 * @param outputLine
+	 *            Line printed to output stream.
+	 * @param outputLines
+	 *            Number of lines printed per execution.
+	 */
+	private StubScriptEngine(final EngineDescription description, final long executeMicros,
+			final String outputLine, final int outputLines) {
+		fDescription = description;
+		fExecuteMicros = executeMicros;
+		fOutputLine = outputLine;
+		fOutputLines = outputLines;
+	}
+
+	/**
+	 * Simulates executing code.
+	 *
+	 * @return Result of execution.
+	 * @throws InterruptedException
+	 *             If execution was interrupted.
+	 */
+	private ScriptResult execute() throws InterruptedException {
+		fCurrentThread = Thread.currentThread();
+		try {
+			if (fExecuteMicros > 0) {
+				TimeUnit.MICROSECONDS.sleep(fExecuteMicros);
+			}
+
+			final PrintStream output = fOutputStream;
+			for (int i = 0; i < fOutputLines && output != null; i++) {
+				output.print(fOutputLine);
+			}
+
+			final ScriptResult result = new ScriptResult();
+			result.setResult(RESULT);
+			return result;
+		} finally {
+			fCurrentThread = null;
+		}
+	}
+
+	@Override
+	public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+		final String name = method.getName();
+
+		if ("executeSync".equals(name) || "executeAsync".equals(name)) {
+			return execute();
+		} else if ("inject".equals(name)) {
+			return execute().getResult();
+		} else if ("terminateCurrent".equals(name)) {
+			final Thread thread = fCurrentThread;
+			if (thread != null) {
+				thread.interrupt();
+			}
+			return null;
+		} else if ("setOutputStream".equals(name)) {
+			fOutputStream = toPrintStream(args[0]);
+			return null;
+		} else if ("getOutputStream".equals(name)) {
+			return fOutputStream;
+		} else if ("setErrorStream".equals(name)) {
+			fErrorStream = toPrintStream(args[0]);
+			return null;
+		} else if ("getErrorStream".equals(name)) {
+			return fErrorStream;
+		} else if ("setInputStream".equals(name)) {
+			fInputStream = (InputStream) args[0];
+			return null;
+		} else if ("getInputStream".equals(name)) {
+			return fInputStream;
+		} else if ("getDescription".equals(name)) {
+			return fDescription;
+		} else if ("isIdle".equals(name)) {
+			return fCurrentThread == null;
+		} else if ("equals".equals(name)) {
+			return proxy == args[0];
+		} else if ("hashCode".equals(name)) {
+			return System.identityHashCode(proxy);
+		} else if ("toString".equals(name)) {
+			return "StubScriptEngine";
+		}
+
+		// All other methods are not needed by the kernel
+		return getDefaultValue(method.getReturnType());
+	}
+
+	/**
+	 * Converts a stream set by the kernel to a {@link PrintStream}.
+	 *
+	 * @param stream
+	 *            Stream given to engine.
+	 * @return Given stream if already a {@link PrintStream}, wrapped stream
+	 *         otherwise.
+	 */
+	private static PrintStream toPrintStream(final Object stream) {
+		if (stream == null || stream instanceof PrintStream) {
+			return (PrintStream) stream;
+		}
+		return new PrintStream((OutputStream) stream, true);
+	}
+
+	/**
+	 * Returns the default value for the given return type.
+	 *
+	 * @param type
+	 *            Return type of method.
+	 * @return <code>null</code> for objects, <code>0</code> or
+	 *         <code>false</code> for primitives.
+	 */
+	private static Object getDefaultValue(final Class<?> type) {
+		if (!type.isPrimitive() || type == void.class) {
+			return null;
+		} else if (type == boolean.class) {
+			return false;
+		} else if (type == char.class) {
+			return '\0';
+		} else if (type == long.class) {
+			return 0L;
+		} else if (type == float.class) {
+			return 0f;
+		} else if (type == double.class) {
+			return 0d;
+		} else if (type == byte.class) {
+			return (byte) 0;
+		} else if (type == short.class) {
+			return (short) 0;
+		}
+		return 0;
+	}
+}
@@ -15,6 +15,7 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -22,11 +23,31 @@ import java.nio.file.Paths;
 /**
  * Simple command line tool reading a Jupyter connection file, connecting to a
  * running Eclipse instance and passing the content of the file on to Eclipse.
+ * <p>
+ * The connection file is sent as a single length-prefixed frame. Eclipse
+ * answers with an acknowledgement frame once the kernel is bound (or failed
+ * to start). The launcher then keeps the connection open until Eclipse closes
+ * it, as Jupyter treats the launcher process as the kernel.
  * 
  * @author Martin Kloesch (martin.kloesch@gmail.com)
  *
  */
 public class Launcher {
+	/**
+	 * Status byte of acknowledgement if kernel was started.
+	 */
+	private static final byte ACK_OK = 0;
+
+	/**
+	 * Maximum size of acknowledgement payload.
+	 */
+	private static final int MAX_ACK_SIZE = 64 * 1024;
+
+	/**
+	 * Time to wait for the kernel to be started in milliseconds.
+	 */
+	private static final int ACK_TIMEOUT_MILLIS = 60000;
+
 	/**
 	 * Main function for kernel launcher.
 	 * 
@@ -86,31 +107,48 @@ public class Launcher {
 				throw new RuntimeException("Dead code.");
 			}
 
-			// Send data
+			// Send data as single frame
 			try {
 				DataOutputStream outputStream = new DataOutputStream(socket.getOutputStream());
+				outputStream.writeInt(connectionBytes.length);
 				outputStream.write(connectionBytes);
+				outputStream.flush();
 			} catch (IOException e) {
 				System.err.println("Could not send data to Eclipse.");
 				System.exit(-4);
 			}
 
+			// Wait until kernel is bound
 			DataInputStream inputStream;
 			try {
+				socket.setSoTimeout(ACK_TIMEOUT_MILLIS);
 				inputStream = new DataInputStream(socket.getInputStream());
+
+				int length = inputStream.readInt();
+				if (length < 1 || length > MAX_ACK_SIZE) {
+					throw new IOException("Invalid acknowledgement received.");
+				}
+				byte[] ack = new byte[length];
+				inputStream.readFully(ack);
+				if (ack[0] != ACK_OK) {
+					System.err.println("Eclipse could not start kernel: "
+							+ new String(ack, 1, length - 1, StandardCharsets.UTF_8));
+					System.exit(-5);
+				}
 			} catch (IOException e) {
-				System.err.println("Could not establish connection to Eclipse.");
+				System.err.println("Eclipse did not acknowledge kernel start.");
 				System.exit(-4);
 				throw new RuntimeException("Dead code.");
 			}
 
-			while (true) {
-				try {
-					inputStream.read();
-					break;
-				} catch (IOException e) {
-					// Ignore
+			// Keep process alive until Eclipse closes the connection
+			try {
+				socket.setSoTimeout(0);
+				while (inputStream.read() >= 0) {
+					// Ignore unexpected data
 				}
+			} catch (IOException e) {
+				// Connection lost, kernel is gone
 			}
 		} finally {
 			if (socket != null) {
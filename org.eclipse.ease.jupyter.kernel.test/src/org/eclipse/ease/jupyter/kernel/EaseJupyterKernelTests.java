@@ -11,6 +11,11 @@
 
 package org.eclipse.ease.jupyter.kernel;
 
+import org.eclipse.ease.jupyter.kernel.channels.ChannelOutputStreamTest;
+import org.eclipse.ease.jupyter.kernel.channels.PublishQueueTest;
+import org.eclipse.ease.jupyter.kernel.channels.ReactorTest;
+import org.eclipse.ease.jupyter.kernel.handlers.HistoryStoreTest;
+import org.eclipse.ease.jupyter.kernel.metrics.HistogramTest;
 import org.eclipse.ease.jupyter.kernel.test.messages.ReplyParsingTest;
 import org.eclipse.ease.jupyter.kernel.test.messages.ExecuteRequestTest;
 import org.eclipse.ease.jupyter.kernel.test.messages.HistoryRequestTest;
@@ -22,8 +27,11 @@ import org.junit.runners.Suite.SuiteClasses;
  * Main test suite for all EASE Jupyter Kernel tests.
  */
 @RunWith(Suite.class)
-@SuiteClasses({ DispatcherTest.class, ProtocolTest.class, ExecuteRequestTest.class, HistoryRequestTest.class,
-		ReplyParsingTest.class })
+@SuiteClasses({ DispatcherTest.class, KernelTest.class, LauncherConnectionTest.class, ProtocolTest.class,
+		HmacSignerTest.class, SessionTest.class, SharedZmqContextTest.class, SocketOptionsTest.class,
+		ReactorTest.class, RequestSchedulerTest.class, EnginePoolTest.class, ChannelOutputStreamTest.class,
+		PublishQueueTest.class, HistoryStoreTest.class, HistogramTest.class, ExecuteRequestTest.class,
+		HistoryRequestTest.class, ReplyParsingTest.class })
 public class EaseJupyterKernelTests {
 
 }
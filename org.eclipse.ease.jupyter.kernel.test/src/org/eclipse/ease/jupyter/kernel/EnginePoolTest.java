@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.ease.IScriptEngine;
+import org.eclipse.ease.service.EngineDescription;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link EnginePool}.
+ * <p>
+ * Test cases focus on background refilling, idle eviction and that engines
+ * are scheduled before being handed out.
+ */
+public class EnginePoolTest {
+	/**
+	 * Maximum time to wait for background tasks in milliseconds.
+	 */
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	/**
+	 * Number of engines created.
+	 */
+	private final AtomicInteger fCreated = new AtomicInteger();
+
+	/**
+	 * Number of engines scheduled.
+	 */
+	private final AtomicInteger fScheduled = new AtomicInteger();
+
+	/**
+	 * Number of engines terminated.
+	 */
+	private final AtomicInteger fTerminated = new AtomicInteger();
+
+	/**
+	 * Number of initialization code snippets executed.
+	 */
+	private final AtomicInteger fExecuted = new AtomicInteger();
+
+	/**
+	 * {@link EngineDescription} creating counting engines.
+	 */
+	private EngineDescription fDescription;
+
+	/**
+	 * {@link EnginePool} under test.
+	 */
+	private EnginePool fPool;
+
+	/**
+	 * Creates description for engines only counting calls.
+	 */
+	@Before
+	public void setUp() {
+		final InvocationHandler handler = new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if ("schedule".equals(method.getName())) {
+					fScheduled.incrementAndGet();
+				} else if ("terminate".equals(method.getName())) {
+					fTerminated.incrementAndGet();
+				} else if ("executeAsync".equals(method.getName())) {
+					fExecuted.incrementAndGet();
+				} else if (method.getReturnType() == boolean.class) {
+					return false;
+				}
+				return null;
+			}
+		};
+
+		fDescription = new EngineDescription(null) {
+			@Override
+			public IScriptEngine createEngine() {
+				fCreated.incrementAndGet();
+				return (IScriptEngine) Proxy.newProxyInstance(EnginePoolTest.class.getClassLoader(),
+						new Class<?>[] { IScriptEngine.class }, handler);
+			}
+		};
+	}
+
+	/**
+	 * Closes pool.
+	 */
+	@After
+	public void tearDown() {
+		if (fPool != null) {
+			fPool.close();
+		}
+	}
+
+	/**
+	 * Waits until the given counter reaches the expected value.
+	 *
+	 * @param counter
+	 *            Counter to be checked.
+	 * @param expected
+	 *            Expected value.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting.
+	 */
+	private static void awaitCount(AtomicInteger counter, int expected) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+		while (counter.get() < expected && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(expected, counter.get());
+	}
+
+	/**
+	 * Tests that a pool of size 0 creates and schedules engines on demand.
+	 */
+	@Test
+	public void testEmptyPoolCreatesOnDemand() {
+		fPool = new EnginePool(fDescription, 0, 0);
+		fPool.fill();
+		assertEquals(0, fCreated.get());
+
+		assertNotNull(fPool.acquire());
+		assertEquals(1, fCreated.get());
+		assertEquals(1, fScheduled.get());
+		assertEquals(0, fPool.getIdleCount());
+	}
+
+	/**
+	 * Tests that filled pool hands out scheduled and initialized engines and
+	 * refills in the background.
+	 *
+	 * @throws InterruptedException
+	 *             If interrupted while waiting.
+	 */
+	@Test
+	public void testAcquireRefills() throws InterruptedException {
+		fPool = new EnginePool(fDescription, 2, 0).withInitializationCode("loadModule('/System/Resources')");
+		fPool.fill();
+		awaitCount(fCreated, 2);
+		awaitCount(fScheduled, 2);
+		awaitCount(fExecuted, 2);
+
+		// Idle engine is taken, replacement created in background
+		assertNotNull(fPool.acquire());
+		awaitCount(fCreated, 3);
+		awaitCount(fScheduled, 3);
+	}
+
+	/**
+	 * Tests that idle engines are terminated after the idle timeout and not
+	 * replaced.
+	 *
+	 * @throws InterruptedException
+	 *             If interrupted while waiting.
+	 */
+	@Test
+	public void testIdleEviction() throws InterruptedException {
+		fPool = new EnginePool(fDescription, 2, 50);
+		fPool.fill();
+		awaitCount(fTerminated, 2);
+
+		Thread.sleep(100);
+		assertEquals(0, fPool.getIdleCount());
+		assertEquals(2, fCreated.get());
+	}
+
+	/**
+	 * Tests that closing the pool terminates idle engines.
+	 *
+	 * @throws InterruptedException
+	 *             If interrupted while waiting.
+	 */
+	@Test
+	public void testCloseTerminatesIdleEngines() throws InterruptedException {
+		fPool = new EnginePool(fDescription, 3, 0);
+		fPool.fill();
+		awaitCount(fCreated, 3);
+
+		fPool.close();
+		awaitCount(fTerminated, 3);
+		assertEquals(0, fPool.getIdleCount());
+	}
+
+	/**
+	 * Tests that concurrent fill calls never create more engines than the pool
+	 * size.
+	 *
+	 * @throws InterruptedException
+	 *             If interrupted while waiting.
+	 */
+	@Test
+	public void testConcurrentFill() throws InterruptedException {
+		final int threadCount = 8;
+		fPool = new EnginePool(fDescription, 2, 0);
+
+		// Release all threads at once to maximize contention
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread[] threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int j = 0; j < 100; j++) {
+						fPool.fill();
+					}
+				}
+			});
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join(TIMEOUT_MILLIS);
+		}
+
+		awaitCount(fCreated, 2);
+		Thread.sleep(100);
+		assertEquals(2, fCreated.get());
+		assertEquals(2, fPool.getIdleCount());
+	}
+}
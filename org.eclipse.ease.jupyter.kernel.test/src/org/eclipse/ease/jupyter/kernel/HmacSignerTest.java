@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.crypto.Mac;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.HmacAlgorithms;
+import org.apache.commons.codec.digest.HmacUtils;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link HmacSigner}.
+ * <p>
+ * Test cases focus on compatibility with plain commons-codec signatures.
+ */
+public class HmacSignerTest {
+	/**
+	 * Default signature key for message signing.
+	 */
+	private static final byte[] KEY = "a0436f6c-1916-498b-8eb9-e81ab9368e84".getBytes(Protocol.ENCODING);
+
+	/**
+	 * Default frames to be signed.
+	 */
+	private static final List<byte[]> FRAMES = Arrays.asList("{\"msg_id\":\"test-id\"}".getBytes(Protocol.ENCODING),
+			"{}".getBytes(Protocol.ENCODING), "{}".getBytes(Protocol.ENCODING),
+			"{\"code\":\"print('\u00e4\u00f6\u00fc')\"}".getBytes(Protocol.ENCODING));
+
+	/**
+	 * Creates the signature the way it was done before {@link HmacSigner}
+	 * existed.
+	 * 
+	 * @param frames
+	 *            Frames to be signed.
+	 * @return Hex encoded signature.
+	 */
+	private static byte[] referenceSignature(List<byte[]> frames) {
+		Mac mac = HmacUtils.getInitializedMac(HmacAlgorithms.HMAC_SHA_256, KEY);
+		for (byte[] frame : frames) {
+			mac.update(frame);
+		}
+		return Hex.encodeHexString(mac.doFinal()).getBytes(Protocol.ENCODING);
+	}
+
+	/**
+	 * Tests that signatures match the commons-codec reference, also when the
+	 * signer is reused.
+	 */
+	@Test
+	public void testSignatureMatchesReference() {
+		HmacSigner signer = new HmacSigner(KEY, HmacAlgorithms.HMAC_SHA_256);
+		byte[] expected = referenceSignature(FRAMES);
+
+		assertEquals(expected.length, signer.getSignatureLength());
+		assertArrayEquals(expected, signer.sign(FRAMES));
+		assertArrayEquals(expected, signer.sign(FRAMES));
+	}
+
+	/**
+	 * Tests that returned signatures are not modified by later signing
+	 * operations.
+	 */
+	@Test
+	public void testSignatureNotShared() {
+		HmacSigner signer = new HmacSigner(KEY, HmacAlgorithms.HMAC_SHA_256);
+		byte[] first = signer.sign(FRAMES);
+		byte[] copy = first.clone();
+
+		signer.sign(FRAMES.subList(0, 2));
+
+		assertArrayEquals(copy, first);
+	}
+
+	/**
+	 * Tests that valid signatures are accepted and modified ones rejected.
+	 */
+	@Test
+	public void testVerify() {
+		HmacSigner signer = new HmacSigner(KEY, HmacAlgorithms.HMAC_SHA_256);
+		byte[] signature = referenceSignature(FRAMES);
+
+		assertTrue(signer.verify(signature, FRAMES));
+
+		byte[] tampered = signature.clone();
+		tampered[tampered.length - 1] ^= 1;
+		assertFalse(signer.verify(tampered, FRAMES));
+		assertFalse(signer.verify(Arrays.copyOf(signature, signature.length - 1), FRAMES));
+		assertFalse(signer.verify(new byte[0], FRAMES));
+		assertFalse(signer.verify(null, FRAMES));
+	}
+
+	/**
+	 * Tests that every thread gets a working {@link Mac}.
+	 * 
+	 * @throws Exception
+	 *             If thread was interrupted.
+	 */
+	@Test
+	public void testMultipleThreads() throws Exception {
+		final HmacSigner signer = new HmacSigner(KEY, HmacAlgorithms.HMAC_SHA_256);
+		final byte[] expected = referenceSignature(FRAMES);
+		final byte[][] results = new byte[4][];
+
+		Thread[] threads = new Thread[results.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 100; j++) {
+						results[index] = signer.sign(FRAMES);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		for (byte[] result : results) {
+			assertArrayEquals(expected, result);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link Kernel}.
+ * <p>
+ * Test cases focus on creating channel addresses for the supported
+ * transports.
+ */
+public class KernelTest {
+	/**
+	 * Creates a config for the given transport and IP.
+	 *
+	 * @param transport
+	 *            ZMQ transport.
+	 * @param ip
+	 *            IP or path prefix.
+	 * @return {@link Config} with fixed ports.
+	 */
+	private static Config createConfig(String transport, String ip) {
+		return new Config(ip, transport, "key", "hmac-sha256", 1, 2, 3, 4, 5, null);
+	}
+
+	/**
+	 * Tests that tcp addresses use IP and port.
+	 */
+	@Test
+	public void testTcpAddress() {
+		assertEquals("tcp://127.0.0.1:3", Kernel.getChannelAddress(3, createConfig("tcp", "127.0.0.1")));
+	}
+
+	/**
+	 * Tests that ipc and inproc addresses follow the Jupyter convention of
+	 * appending the port to the IP.
+	 */
+	@Test
+	public void testNamedAddresses() {
+		assertEquals("ipc://kernel-ipc-3", Kernel.getChannelAddress(3, createConfig("ipc", "kernel-ipc")));
+		assertEquals("inproc://kernel-4", Kernel.getChannelAddress(4, createConfig("inproc", "kernel")));
+	}
+
+	/**
+	 * Tests that unsupported transports are rejected.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedTransport() {
+		Kernel.getChannelAddress(3, createConfig("udp", "127.0.0.1"));
+	}
+}
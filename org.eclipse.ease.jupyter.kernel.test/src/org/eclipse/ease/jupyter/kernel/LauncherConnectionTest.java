@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link LauncherConnection}.
+ * <p>
+ * Test cases focus on reassembling frames split across or combined in reads,
+ * on unframed connection files of old launchers and on the acknowledgement
+ * format.
+ */
+public class LauncherConnectionTest {
+	/**
+	 * Non-blocking in-memory channel returning the queued chunks one per
+	 * read.
+	 */
+	private static class ChunkChannel implements ByteChannel {
+		/**
+		 * Chunks returned by subsequent reads.
+		 */
+		private final ArrayDeque<byte[]> fChunks = new ArrayDeque<>();
+
+		/**
+		 * Flag to signalize end of stream once all chunks were read.
+		 */
+		private boolean fClosed = false;
+
+		/**
+		 * Data written to channel.
+		 */
+		private final ByteArrayOutputStream fWritten = new ByteArrayOutputStream();
+
+		@Override
+		public int read(ByteBuffer dst) {
+			byte[] chunk = fChunks.peek();
+			if (chunk == null) {
+				return fClosed ? -1 : 0;
+			}
+
+			int count = Math.min(chunk.length, dst.remaining());
+			dst.put(chunk, 0, count);
+			fChunks.poll();
+			if (count < chunk.length) {
+				fChunks.addFirst(Arrays.copyOfRange(chunk, count, chunk.length));
+			}
+			return count;
+		}
+
+		@Override
+		public int write(ByteBuffer src) {
+			int count = src.remaining();
+			while (src.hasRemaining()) {
+				fWritten.write(src.get());
+			}
+			return count;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			fClosed = true;
+		}
+	}
+
+	/**
+	 * Channel feeding the connection under test.
+	 */
+	private ChunkChannel fChannel;
+
+	/**
+	 * {@link LauncherConnection} under test.
+	 */
+	private LauncherConnection fConnection;
+
+	/**
+	 * Creates connection for empty channel.
+	 */
+	@Before
+	public void setUp() {
+		fChannel = new ChunkChannel();
+		fConnection = new LauncherConnection(fChannel);
+	}
+
+	/**
+	 * Encodes the given text as frame.
+	 *
+	 * @param text
+	 *            Payload of frame.
+	 * @return Length-prefixed frame.
+	 */
+	private static byte[] frame(String text) {
+		byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+		return ByteBuffer.allocate(LauncherConnection.HEADER_SIZE + payload.length).putInt(payload.length)
+				.put(payload).array();
+	}
+
+	/**
+	 * Tests that a frame split across several reads is only returned once
+	 * complete.
+	 *
+	 * @throws IOException
+	 *             If frame could not be read.
+	 */
+	@Test
+	public void testSplitFrame() throws IOException {
+		byte[] frame = frame("{\"ip\": \"127.0.0.1\"}");
+		fChannel.fChunks.add(Arrays.copyOfRange(frame, 0, 2));
+		assertTrue(fConnection.read().isEmpty());
+
+		fChannel.fChunks.add(Arrays.copyOfRange(frame, 2, 10));
+		assertTrue(fConnection.read().isEmpty());
+
+		fChannel.fChunks.add(Arrays.copyOfRange(frame, 10, frame.length));
+		List<byte[]> payloads = fConnection.read();
+		assertEquals(1, payloads.size());
+		assertEquals("{\"ip\": \"127.0.0.1\"}", new String(payloads.get(0), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Tests that several pipelined frames are returned in order.
+	 *
+	 * @throws IOException
+	 *             If frames could not be read.
+	 */
+	@Test
+	public void testPipelinedFrames() throws IOException {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.write(frame("first"));
+		data.write(frame("second"));
+		data.write(Arrays.copyOf(frame("third"), 6));
+		fChannel.fChunks.add(data.toByteArray());
+
+		List<byte[]> payloads = fConnection.read();
+		assertEquals(2, payloads.size());
+		assertEquals("first", new String(payloads.get(0), StandardCharsets.UTF_8));
+		assertEquals("second", new String(payloads.get(1), StandardCharsets.UTF_8));
+
+		fChannel.fChunks.add(Arrays.copyOfRange(frame("third"), 6, 9));
+		payloads = fConnection.read();
+		assertEquals(1, payloads.size());
+		assertEquals("third", new String(payloads.get(0), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Tests that frames larger than the initial buffer are reassembled.
+	 *
+	 * @throws IOException
+	 *             If frame could not be read.
+	 */
+	@Test
+	public void testLargeFrame() throws IOException {
+		char[] text = new char[100000];
+		Arrays.fill(text, 'x');
+		byte[] frame = frame(new String(text));
+		for (int offset = 0; offset < frame.length; offset += 4096) {
+			fChannel.fChunks.add(Arrays.copyOfRange(frame, offset, Math.min(offset + 4096, frame.length)));
+		}
+
+		List<byte[]> payloads = fConnection.read();
+		assertEquals(1, payloads.size());
+		assertEquals(text.length, payloads.get(0).length);
+	}
+
+	/**
+	 * Tests that frames exceeding the maximum size are rejected.
+	 *
+	 * @throws IOException
+	 *             Expected exception.
+	 */
+	@Test(expected = IOException.class)
+	public void testOversizedFrame() throws IOException {
+		fChannel.fChunks.add(ByteBuffer.allocate(8).putInt(LauncherConnection.MAX_FRAME_SIZE + 1).array());
+		fConnection.read();
+	}
+
+	/**
+	 * Tests that end of stream is reported after all frames were returned.
+	 *
+	 * @throws IOException
+	 *             If frame could not be read.
+	 */
+	@Test
+	public void testClosedConnection() throws IOException {
+		fChannel.fChunks.add(frame("last"));
+		fChannel.close();
+
+		assertEquals(1, fConnection.read().size());
+		assertNull(fConnection.read());
+	}
+
+	/**
+	 * Tests encoding of queued acknowledgements.
+	 *
+	 * @throws IOException
+	 *             If acknowledgements could not be written.
+	 */
+	@Test
+	public void testAcknowledgements() throws IOException {
+		fConnection.queueAck(LauncherConnection.ACK_OK, null);
+		fConnection.queueAck(LauncherConnection.ACK_ERROR, "failed");
+		assertTrue(fConnection.flush());
+
+		ByteBuffer expected = ByteBuffer.allocate(5 + 11);
+		expected.putInt(1).put(LauncherConnection.ACK_OK);
+		expected.putInt(7).put(LauncherConnection.ACK_ERROR).put("failed".getBytes(StandardCharsets.UTF_8));
+		assertArrayEquals(expected.array(), fChannel.fWritten.toByteArray());
+	}
+
+	/**
+	 * Tests that an unframed connection file of an old launcher is read once
+	 * complete, ignoring braces in strings.
+	 *
+	 * @throws IOException
+	 *             If connection file could not be read.
+	 */
+	@Test
+	public void testUnframedConnectionFile() throws IOException {
+		String text = "{\"key\": \"a}\\\"{\", \"nested\": {\"port\": 1}}";
+		byte[] data = text.getBytes(StandardCharsets.UTF_8);
+		fChannel.fChunks.add(Arrays.copyOfRange(data, 0, 12));
+		assertTrue(fConnection.read().isEmpty());
+
+		fChannel.fChunks.add(Arrays.copyOfRange(data, 12, data.length));
+		List<byte[]> payloads = fConnection.read();
+		assertEquals(1, payloads.size());
+		assertEquals(text, new String(payloads.get(0), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Tests that old launchers do not receive acknowledgements and failures
+	 * request the connection to be closed.
+	 *
+	 * @throws IOException
+	 *             If connection file could not be read.
+	 */
+	@Test
+	public void testUnframedAcknowledgements() throws IOException {
+		fChannel.fChunks.add("{\"ip\": \"127.0.0.1\"}".getBytes(StandardCharsets.UTF_8));
+		assertEquals(1, fConnection.read().size());
+
+		fConnection.queueAck(LauncherConnection.ACK_OK, null);
+		assertTrue(fConnection.flush());
+		assertFalse(fConnection.isCloseRequested());
+
+		fConnection.queueAck(LauncherConnection.ACK_ERROR, "failed");
+		assertTrue(fConnection.flush());
+		assertTrue(fConnection.isCloseRequested());
+		assertEquals(0, fChannel.fWritten.size());
+	}
+}
@@ -11,17 +11,24 @@
 
 package org.eclipse.ease.jupyter.kernel;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.eclipse.ease.jupyter.kernel.messages.ExecuteRequest;
 import org.eclipse.ease.jupyter.kernel.messages.Header;
 import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.eclipse.ease.jupyter.kernel.messages.Stream;
 import org.junit.Test;
+import org.zeromq.ZMsg;
 
 /**
  * Test cases for {@link Protocol}.
@@ -334,4 +341,128 @@ public class ProtocolTest {
 		compare(originalContent, convertedContent);
 		hasDefaultValues(convertedContent, true);
 	}
+
+	/**
+	 * Tests that typed {@link Stream} content is serialized directly and
+	 * parsed back to a dictionary with the same values.
+	 * 
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testContentObject() throws Exception {
+		// Create original data
+		Header originalHeader = defaultHeader();
+		Stream originalContent = new Stream().withName("stdout").withText(CONTENT_VALUE);
+
+		// Parse to byte[] and then back
+		@SuppressWarnings("unchecked")
+		Map<String, Object> convertedContent = (Map<String, Object>) convert(
+				new Message().withHeader(originalHeader).withContent(originalContent)).getContent();
+
+		// Check that data stayed the same
+		assertEquals(2, convertedContent.keySet().size());
+		assertEquals("stdout", convertedContent.get("name"));
+		assertEquals(CONTENT_VALUE, convertedContent.get("text"));
+	}
+
+	/**
+	 * Tests that received content is bound directly to the requested
+	 * {@link ExecuteRequest} class and only parsed once.
+	 * 
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testTypedContent() throws Exception {
+		// Create original data
+		Header originalHeader = defaultHeader();
+		ExecuteRequest originalContent = new ExecuteRequest(CONTENT_VALUE, true, false, null, false,
+				false);
+
+		// Parse to byte[] and then back
+		Message converted = convert(new Message().withHeader(originalHeader).withContent(originalContent));
+		ExecuteRequest convertedContent = converted.getContent(ExecuteRequest.class);
+
+		// Check that data stayed the same and parsed object is reused
+		assertEquals(CONTENT_VALUE, convertedContent.getCode());
+		assertTrue(convertedContent.getSilent());
+		assertSame(convertedContent, converted.getContent(ExecuteRequest.class));
+	}
+
+	/**
+	 * Tests that messages with invalid signature are rejected before their
+	 * JSON frames get parsed.
+	 * 
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testInvalidSignatureRejectedBeforeParsing() throws Exception {
+		// Replace header with invalid JSON, signature stays the same
+		List<byte[]> frames = new ArrayList<byte[]>(PROTOCOL.toFrames(new Message().withHeader(defaultHeader())));
+		frames.set(2, "no json".getBytes(Protocol.ENCODING));
+
+		try {
+			PROTOCOL.fromFrames(frames);
+		} catch (IOException e) {
+			assertEquals("Invalid HMAC signature in received message", e.getMessage());
+			return;
+		}
+		throw new AssertionError("Message with invalid signature accepted");
+	}
+
+	/**
+	 * Tests that ZMQ identities and extra data are correctly sliced from a
+	 * {@link ZMsg}.
+	 * 
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testZmqMessage() throws Exception {
+		// Create original data
+		byte[] identity = "test-identity".getBytes(Protocol.ENCODING);
+		byte[] extraDatum = "test-extra-data".getBytes(Protocol.ENCODING);
+		Message original = new Message().withHeader(defaultHeader()).withZmqIdentity(identity)
+				.withExtraDatum(extraDatum);
+
+		// Parse to ZMsg and then back
+		ZMsg zmqMessage = new ZMsg();
+		for (byte[] frame : PROTOCOL.toFrames(original)) {
+			zmqMessage.add(frame);
+		}
+		Message converted = PROTOCOL.fromFrames(zmqMessage);
+
+		// Check that data stayed the same
+		hasDefaultValues(converted.getHeader());
+		assertEquals(1, converted.getZmqIdentities().size());
+		assertArrayEquals(identity, converted.getZmqIdentities().get(0));
+		assertEquals(1, converted.getExtraData().size());
+		assertArrayEquals(extraDatum, converted.getExtraData().get(0));
+	}
+
+	/**
+	 * Tests that messages without delimiter are rejected.
+	 * 
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test(expected = IOException.class)
+	public void testMissingDelimiter() throws Exception {
+		List<byte[]> frames = PROTOCOL.toFrames(new Message().withHeader(defaultHeader()));
+		PROTOCOL.fromFrames(frames.subList(1, frames.size()));
+	}
+
+	/**
+	 * Tests that messages missing JSON frames are rejected.
+	 * 
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test(expected = IOException.class)
+	public void testNotEnoughFrames() throws Exception {
+		List<byte[]> frames = PROTOCOL.toFrames(new Message().withHeader(defaultHeader()));
+		PROTOCOL.fromFrames(frames.toArray(new byte[frames.size()][]), frames.size() - 1);
+	}
 }
\ No newline at end of file
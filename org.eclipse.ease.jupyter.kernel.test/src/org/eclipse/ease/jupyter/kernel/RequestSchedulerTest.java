@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ease.jupyter.kernel.RequestScheduler.IAbortableTask;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link RequestScheduler}.
+ * <p>
+ * Test cases focus on ordering of shell requests and priority of control
+ * requests.
+ */
+public class RequestSchedulerTest {
+	/**
+	 * Capacity of shell queue for tests.
+	 */
+	private static final int CAPACITY = 4;
+
+	/**
+	 * Maximum time to wait for tasks in seconds.
+	 */
+	private static final int TIMEOUT_SECONDS = 5;
+
+	/**
+	 * {@link RequestScheduler} under test.
+	 */
+	private RequestScheduler fScheduler;
+
+	/**
+	 * Latch blocking the currently running shell task.
+	 */
+	private CountDownLatch fRelease;
+
+	/**
+	 * Creates and starts scheduler.
+	 */
+	@Before
+	public void setUp() {
+		fScheduler = new RequestScheduler(CAPACITY);
+		fScheduler.start();
+		fRelease = new CountDownLatch(1);
+	}
+
+	/**
+	 * Stops scheduler.
+	 */
+	@After
+	public void tearDown() {
+		fRelease.countDown();
+		fScheduler.stop();
+	}
+
+	/**
+	 * Submits a shell task blocking the worker until {@link #fRelease} is
+	 * released and waits until it is running.
+	 *
+	 * @throws InterruptedException
+	 *             If interrupted while waiting.
+	 */
+	private void blockWorker() throws InterruptedException {
+		final CountDownLatch running = new CountDownLatch(1);
+		fScheduler.submitShell(new Runnable() {
+			@Override
+			public void run() {
+				running.countDown();
+				try {
+					fRelease.await();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+		});
+		assertTrue(running.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Tests that shell requests are handled in order of submission.
+	 *
+	 * @throws Exception
+	 *             If interrupted while waiting.
+	 */
+	@Test
+	public void testShellOrder() throws Exception {
+		final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch done = new CountDownLatch(CAPACITY);
+
+		blockWorker();
+		for (int i = 0; i < CAPACITY; i++) {
+			final int index = i;
+			fScheduler.submitShell(new Runnable() {
+				@Override
+				public void run() {
+					order.add(index);
+					done.countDown();
+				}
+			});
+		}
+		fRelease.countDown();
+
+		assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertEquals(CAPACITY, order.size());
+		for (int i = 0; i < CAPACITY; i++) {
+			assertEquals(Integer.valueOf(i), order.get(i));
+		}
+	}
+
+	/**
+	 * Tests that control requests are handled while shell requests are
+	 * running and queued.
+	 *
+	 * @throws Exception
+	 *             If interrupted while waiting.
+	 */
+	@Test
+	public void testControlPreemptsShell() throws Exception {
+		final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch controlHandled = new CountDownLatch(1);
+
+		blockWorker();
+		fScheduler.submitShell(new Runnable() {
+			@Override
+			public void run() {
+				handled.add("shell");
+			}
+		});
+		fScheduler.submitControl(new Runnable() {
+			@Override
+			public void run() {
+				assertTrue(fScheduler.isWorkerThread());
+				handled.add("control");
+				controlHandled.countDown();
+			}
+		});
+
+		assertTrue(controlHandled.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertEquals(1, handled.size());
+		assertEquals("control", handled.get(0));
+	}
+
+	/**
+	 * Tests that capacity is reported correctly and the listener is notified
+	 * once the queue is no longer full.
+	 *
+	 * @throws Exception
+	 *             If interrupted while waiting.
+	 */
+	@Test
+	public void testCapacity() throws Exception {
+		final CountDownLatch notified = new CountDownLatch(1);
+		fScheduler.setCapacityListener(new Runnable() {
+			@Override
+			public void run() {
+				notified.countDown();
+			}
+		});
+
+		blockWorker();
+		for (int i = 0; i < CAPACITY; i++) {
+			assertTrue(fScheduler.hasShellCapacity());
+			fScheduler.submitShell(new Runnable() {
+				@Override
+				public void run() {
+					// nothing to do
+				}
+			});
+		}
+		assertFalse(fScheduler.hasShellCapacity());
+		assertEquals(CAPACITY, fScheduler.getQueuedShellRequests());
+
+		fRelease.countDown();
+		assertTrue(notified.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Tests that queued shell requests can be discarded.
+	 *
+	 * @throws Exception
+	 *             If interrupted while waiting.
+	 */
+	@Test
+	public void testClearShellQueue() throws Exception {
+		final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+
+		blockWorker();
+		fScheduler.submitShell(new Runnable() {
+			@Override
+			public void run() {
+				handled.add("shell");
+			}
+		});
+
+		assertEquals(1, fScheduler.clearShellQueue());
+		assertTrue(fScheduler.hasShellCapacity());
+		assertEquals(0, handled.size());
+	}
+
+	/**
+	 * Tests that discarded shell requests are aborted instead of being run.
+	 *
+	 * @throws Exception
+	 *             If interrupted while waiting.
+	 */
+	@Test
+	public void testClearShellQueueAborts() throws Exception {
+		final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+
+		blockWorker();
+		for (int i = 0; i < 2; i++) {
+			fScheduler.submitShell(new IAbortableTask() {
+				@Override
+				public void run() {
+					handled.add("run");
+				}
+
+				@Override
+				public void abort() {
+					handled.add("abort");
+				}
+			});
+		}
+
+		assertEquals(2, fScheduler.clearShellQueue());
+		fRelease.countDown();
+		assertEquals(2, handled.size());
+		assertEquals("abort", handled.get(0));
+		assertEquals("abort", handled.get(1));
+	}
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Socket;
+
+/**
+ * Test cases for {@link Session}.
+ * <p>
+ * Test cases focus on receiving multi-frame messages over ZMQ sockets.
+ */
+public class SessionTest {
+	/**
+	 * Address for in-process test sockets.
+	 */
+	private static final String ADDRESS = "inproc://session-test";
+
+	/**
+	 * Default signature key for message signing.
+	 */
+	private static final String SIGNATURE_KEY = "a0436f6c-1916-498b-8eb9-e81ab9368e84";
+
+	/**
+	 * {@link Session} under test.
+	 */
+	private Session fSession;
+
+	/**
+	 * ZMQ context for test sockets.
+	 */
+	private ZContext fZmqContext;
+
+	/**
+	 * Socket sending test messages.
+	 */
+	private Socket fSender;
+
+	/**
+	 * Socket messages are received from by {@link #fSession}.
+	 */
+	private Socket fReceiver;
+
+	/**
+	 * Creates session and connected socket pair.
+	 */
+	@Before
+	public void setUp() {
+		fSession = new Session(new Protocol(SIGNATURE_KEY, "hmac-sha256"), 1000, 1);
+		fZmqContext = new ZContext(1);
+		fReceiver = fZmqContext.createSocket(ZMQ.PAIR);
+		fReceiver.setReceiveTimeOut(1000);
+		fReceiver.bind(ADDRESS);
+		fSender = fZmqContext.createSocket(ZMQ.PAIR);
+		fSender.connect(ADDRESS);
+	}
+
+	/**
+	 * Closes session and sockets.
+	 *
+	 * @throws Exception
+	 *             If session could not be closed.
+	 */
+	@After
+	public void tearDown() throws Exception {
+		fZmqContext.destroy();
+		fSession.close();
+	}
+
+	/**
+	 * Creates a test message with the given number of ZMQ identities.
+	 *
+	 * @param identities
+	 *            Number of ZMQ identities for message.
+	 * @return Test message.
+	 */
+	private static Message createMessage(int identities) {
+		Message message = new Message();
+		message.getHeader().withMsgId(Message.randomId()).withMsgType("test-type");
+		for (int i = 0; i < identities; i++) {
+			message.withZmqIdentity(("identity-" + i).getBytes(Protocol.ENCODING));
+		}
+		return message;
+	}
+
+	/**
+	 * Tests that consecutive messages with different frame counts are received
+	 * correctly, including messages larger than the initial frame holder.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testReceiveMultipleMessages() throws Exception {
+		for (int identities : new int[] { 1, 32, 0 }) {
+			Message original = createMessage(identities);
+			fSession.send(original, fSender);
+
+			Message received = fSession.receive(fReceiver);
+
+			assertEquals(original.getHeader().getMsgId(), received.getHeader().getMsgId());
+			List<byte[]> receivedIdentities = received.getZmqIdentities();
+			assertEquals(identities, receivedIdentities.size());
+			for (int i = 0; i < identities; i++) {
+				assertArrayEquals(original.getZmqIdentities().get(i), receivedIdentities.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Tests that polling without data returns <code>null</code>.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testPollWithoutData() throws Exception {
+		fReceiver.setReceiveTimeOut(10);
+		assertNull(fSession.poll(fReceiver));
+	}
+}
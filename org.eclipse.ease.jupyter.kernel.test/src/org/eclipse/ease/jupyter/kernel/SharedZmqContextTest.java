@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Socket;
+
+/**
+ * Test cases for {@link SharedZmqContext}.
+ * <p>
+ * Test cases focus on reference counting and on sessions sharing a single
+ * underlying context.
+ */
+public class SharedZmqContextTest {
+	/**
+	 * Tests that sockets of different acquirers live in the same context by
+	 * connecting them over inproc transport.
+	 */
+	@Test
+	public void testAcquirersShareContext() {
+		final SharedZmqContext shared = new SharedZmqContext(1);
+		final ZContext first = shared.acquire();
+		final ZContext second = shared.acquire();
+		assertEquals(2, shared.getReferenceCount());
+
+		final Socket pull = first.createSocket(ZMQ.PULL);
+		pull.bind("inproc://shared-context-test");
+		final Socket push = second.createSocket(ZMQ.PUSH);
+		push.connect("inproc://shared-context-test");
+
+		push.send("ping".getBytes());
+		assertArrayEquals("ping".getBytes(), pull.recv());
+
+		shared.release(second);
+		shared.release(first);
+		assertEquals(0, shared.getReferenceCount());
+	}
+
+	/**
+	 * Tests that releasing one acquirer does not affect sockets of others.
+	 */
+	@Test
+	public void testReleaseKeepsOtherSockets() {
+		final SharedZmqContext shared = new SharedZmqContext(1);
+		final ZContext first = shared.acquire();
+		final ZContext second = shared.acquire();
+
+		final Socket pull = first.createSocket(ZMQ.PULL);
+		pull.bind("inproc://shared-context-release");
+		final Socket push = first.createSocket(ZMQ.PUSH);
+		push.connect("inproc://shared-context-release");
+
+		shared.release(second);
+		assertEquals(1, shared.getReferenceCount());
+
+		push.send("pong".getBytes());
+		assertArrayEquals("pong".getBytes(), pull.recv());
+		shared.release(first);
+	}
+
+	/**
+	 * Tests that sessions release their reference once closed and the
+	 * context is recreated for new sessions.
+	 *
+	 * @throws Exception
+	 *             If session could not be closed.
+	 */
+	@Test
+	public void testSessionReleasesContext() throws Exception {
+		final SharedZmqContext shared = new SharedZmqContext(1);
+		final Session first = new Session(new Protocol(), 1000, shared);
+		final Session second = new Session(new Protocol(), 1000, shared);
+		assertEquals(2, shared.getReferenceCount());
+
+		first.close();
+		first.close();
+		assertEquals(1, shared.getReferenceCount());
+		second.close();
+		assertEquals(0, shared.getReferenceCount());
+
+		final Session third = new Session(new Protocol(), 1000, shared);
+		third.createSocket(ZMQ.PUB).bind("inproc://shared-context-session");
+		assertEquals(1, shared.getReferenceCount());
+		third.close();
+		assertEquals(0, shared.getReferenceCount());
+	}
+
+	/**
+	 * Tests that releasing a context not acquired is rejected.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testReleaseWithoutAcquire() {
+		new SharedZmqContext(1).release(new ZContext(1));
+	}
+}
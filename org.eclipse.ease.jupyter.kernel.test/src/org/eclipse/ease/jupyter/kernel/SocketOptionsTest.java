@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Context;
+import org.zeromq.ZMQ.Socket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Test cases for {@link SocketOptions}.
+ * <p>
+ * Test cases focus on per-channel defaults, parsing options from connection
+ * files and the maximum message size guard.
+ */
+public class SocketOptionsTest {
+	/**
+	 * Connection file with socket options for IOPub and shell.
+	 */
+	private static final String CONNECTION_FILE = "{\"ip\": \"127.0.0.1\", \"transport\": \"tcp\", \"key\": \"key\", "
+			+ "\"signature_scheme\": \"hmac-sha256\", \"control_port\": 1, \"hb_port\": 2, \"shell_port\": 3, "
+			+ "\"iopub_port\": 4, \"socket_options\": {\"iopub\": {\"send_hwm\": 50000, \"send_buffer\": 262144}, "
+			+ "\"shell\": {\"max_message_size\": 4096, \"immediate\": true}}}";
+
+	/**
+	 * Parses the given connection file.
+	 *
+	 * @param json
+	 *            Content of connection file.
+	 * @return Parsed {@link Config}.
+	 * @throws IOException
+	 *             If connection file could not be parsed.
+	 */
+	private static Config parse(String json) throws IOException {
+		return new ObjectMapper().readValue(json, Config.class);
+	}
+
+	/**
+	 * Tests that IOPub buffers more outgoing messages and all channels limit
+	 * the size of received messages by default.
+	 */
+	@Test
+	public void testChannelDefaults() {
+		final SocketOptions iopub = SocketOptions.getDefaults(SocketOptions.IOPUB);
+		final SocketOptions shell = SocketOptions.getDefaults(SocketOptions.SHELL);
+		assertTrue(iopub.getSendHighWaterMark() > shell.getSendHighWaterMark());
+
+		for (String channel : new String[] { SocketOptions.HEARTBEAT, SocketOptions.IOPUB, SocketOptions.SHELL,
+				SocketOptions.CONTROL, SocketOptions.STDIN }) {
+			assertTrue(SocketOptions.getDefaults(channel).getMaxMessageSize() > 0);
+		}
+	}
+
+	/**
+	 * Tests that options from the connection file override the defaults of
+	 * the respective channel only.
+	 *
+	 * @throws IOException
+	 *             If connection file could not be parsed.
+	 */
+	@Test
+	public void testFromConfig() throws IOException {
+		final Config config = parse(CONNECTION_FILE);
+
+		final SocketOptions iopub = SocketOptions.fromConfig(config, SocketOptions.IOPUB);
+		assertEquals(50000, iopub.getSendHighWaterMark());
+		assertEquals(262144, iopub.getSendBufferSize());
+
+		final SocketOptions shell = SocketOptions.fromConfig(config, SocketOptions.SHELL);
+		assertEquals(4096, shell.getMaxMessageSize());
+		assertTrue(shell.isImmediate());
+
+		final SocketOptions control = SocketOptions.fromConfig(config, SocketOptions.CONTROL);
+		assertEquals(SocketOptions.getDefaults(SocketOptions.CONTROL).getMaxMessageSize(),
+				control.getMaxMessageSize());
+	}
+
+	/**
+	 * Tests that unknown options are rejected.
+	 *
+	 * @throws IOException
+	 *             If connection file could not be parsed.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownOption() throws IOException {
+		SocketOptions.fromConfig(parse(CONNECTION_FILE.replace("send_buffer", "send_bufer")));
+	}
+
+	/**
+	 * Tests that options with wrong type are rejected.
+	 *
+	 * @throws IOException
+	 *             If connection file could not be parsed.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidValue() throws IOException {
+		SocketOptions.fromConfig(parse(CONNECTION_FILE.replace("50000", "\"many\"")));
+	}
+
+	/**
+	 * Tests that options are applied to sockets and that messages exceeding
+	 * the maximum message size are dropped instead of being received.
+	 */
+	@Test
+	public void testMaxMessageSize() {
+		final Context context = ZMQ.context(1);
+		final Socket pull = context.socket(ZMQ.PULL);
+		final Socket push = context.socket(ZMQ.PUSH);
+		try {
+			new SocketOptions().withMaxMessageSize(1024).withReceiveHighWaterMark(10).withLinger(0).apply(pull);
+			assertEquals(1024, pull.getMaxMsgSize());
+			assertEquals(10, pull.getRcvHWM());
+
+			pull.setReceiveTimeOut(500);
+			final int port = pull.bindToRandomPort("tcp://127.0.0.1");
+			push.setLinger(0);
+			push.connect("tcp://127.0.0.1:" + port);
+
+			push.send(new byte[100]);
+			assertArrayEquals(new byte[100], pull.recv());
+
+			push.send(new byte[4096]);
+			assertNull(pull.recv());
+		} finally {
+			push.close();
+			pull.close();
+			context.term();
+		}
+	}
+}
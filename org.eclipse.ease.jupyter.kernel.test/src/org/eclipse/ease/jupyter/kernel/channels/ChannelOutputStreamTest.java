@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.channels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.eclipse.ease.jupyter.kernel.Protocol;
+import org.eclipse.ease.jupyter.kernel.Session;
+import org.eclipse.ease.jupyter.kernel.messages.Header;
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.eclipse.ease.jupyter.kernel.messages.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link ChannelOutputStream}.
+ * <p>
+ * Test cases focus on coalescing of written data into stream messages.
+ */
+public class ChannelOutputStreamTest {
+	/**
+	 * Flush interval used for tests in milliseconds.
+	 */
+	private static final long FLUSH_INTERVAL_MILLIS = 200;
+
+	/**
+	 * Maximum chunk size used for tests.
+	 */
+	private static final int MAX_CHUNK_SIZE = 8;
+
+	/**
+	 * Maximum time to wait for deferred messages in milliseconds.
+	 */
+	private static final long TIMEOUT_MILLIS = 2000;
+
+	/**
+	 * {@link Session} for capturing channel.
+	 */
+	private Session fSession;
+
+	/**
+	 * Messages published by stream under test.
+	 */
+	private List<Message> fPublished;
+
+	/**
+	 * {@link ChannelOutputStream} under test.
+	 */
+	private ChannelOutputStream fStream;
+
+	/**
+	 * Creates stream publishing to a capturing {@link IOPubChannel}.
+	 */
+	@Before
+	public void setUp() {
+		fSession = new Session(new Protocol(), 10000, 1);
+		fPublished = Collections.synchronizedList(new ArrayList<Message>());
+		IOPubChannel channel = new IOPubChannel("inproc://output-test-" + UUID.randomUUID(), fSession) {
+			@Override
+			public void send(Message message) {
+				fPublished.add(message);
+			}
+		};
+		fStream = new ChannelOutputStream("stdout", channel, FLUSH_INTERVAL_MILLIS, MAX_CHUNK_SIZE);
+	}
+
+	/**
+	 * Closes session.
+	 *
+	 * @throws Exception
+	 *             If session could not be closed.
+	 */
+	@After
+	public void tearDown() throws Exception {
+		fSession.close();
+	}
+
+	/**
+	 * Returns the text of the published message with the given index.
+	 *
+	 * @param index
+	 *            Index of published message.
+	 * @return Text of stream message.
+	 * @throws Exception
+	 *             If content is no stream.
+	 */
+	private String getText(int index) throws Exception {
+		return fPublished.get(index).getContent(Stream.class).getText();
+	}
+
+	/**
+	 * Tests that flushes within the flush interval are coalesced into a
+	 * single deferred message.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testCoalescedFlush() throws Exception {
+		fStream.write('a');
+		fStream.flush();
+		assertEquals(1, fPublished.size());
+		assertEquals("a", getText(0));
+
+		fStream.write('b');
+		fStream.flush();
+		fStream.write('c');
+		fStream.flush();
+		assertEquals(1, fPublished.size());
+
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (fPublished.size() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, fPublished.size());
+		assertEquals("bc", getText(1));
+	}
+
+	/**
+	 * Tests that exceeding the maximum chunk size publishes immediately,
+	 * split into messages of at most the maximum chunk size.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testMaxChunkSize() throws Exception {
+		fStream.write('a');
+		fStream.flush();
+
+		byte[] data = "0123456789".getBytes(StandardCharsets.UTF_8);
+		fStream.write(data, 0, data.length);
+		assertEquals(3, fPublished.size());
+		assertEquals("01234567", getText(1));
+		assertEquals("89", getText(2));
+	}
+
+	/**
+	 * Tests that large output is only split at character boundaries, also on
+	 * forced flushes.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testSplitAtCharacterBoundary() throws Exception {
+		byte[] data = "aaaaaaa\u20acbb".getBytes(StandardCharsets.UTF_8);
+		fStream.write(data, 0, 7);
+		fStream.write(data, 7, data.length - 7);
+		fStream.forceFlush();
+
+		assertEquals(2, fPublished.size());
+		assertEquals("aaaaaaa", getText(0));
+		assertEquals("\u20acbb", getText(1));
+	}
+
+	/**
+	 * Tests that forced flushes publish regardless of the flush interval.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testForceFlush() throws Exception {
+		fStream.write('a');
+		fStream.flush();
+		fStream.write('b');
+		fStream.flush();
+		fStream.forceFlush();
+
+		assertEquals(2, fPublished.size());
+		assertEquals("b", getText(1));
+
+		// Deferred flush must not publish again
+		Thread.sleep(2 * FLUSH_INTERVAL_MILLIS);
+		assertEquals(2, fPublished.size());
+	}
+
+	/**
+	 * Tests that multi-byte characters are decoded correctly.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testUtf8() throws Exception {
+		byte[] data = "\u00e4\u20ac".getBytes(StandardCharsets.UTF_8);
+		fStream.write(data, 0, data.length);
+		fStream.forceFlush();
+
+		assertEquals(1, fPublished.size());
+		assertEquals("\u00e4\u20ac", getText(0));
+	}
+
+	/**
+	 * Tests that multi-byte characters split between two chunks are decoded
+	 * correctly.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testSplitMultiByteCharacter() throws Exception {
+		byte[] data = "a\u20ac".getBytes(StandardCharsets.UTF_8);
+		fStream.write(data, 0, 2);
+		fStream.forceFlush();
+		assertEquals(1, fPublished.size());
+		assertEquals("a", getText(0));
+
+		fStream.write(data[2]);
+		fStream.forceFlush();
+		assertEquals(1, fPublished.size());
+
+		fStream.write(data, 3, data.length - 3);
+		fStream.forceFlush();
+		assertEquals(2, fPublished.size());
+		assertEquals("\u20ac", getText(1));
+	}
+
+	/**
+	 * Tests that incomplete multi-byte characters are replaced when the
+	 * stream is closed.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testIncompleteCharacterOnClose() throws Exception {
+		byte[] data = "\u20ac".getBytes(StandardCharsets.UTF_8);
+		fStream.write(data, 0, 1);
+		fStream.close();
+
+		assertEquals(1, fPublished.size());
+		assertEquals("\ufffd", getText(0));
+	}
+
+	/**
+	 * Tests that buffered data is published with the previous parent header
+	 * when the header changes.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testParentHeaderChange() throws Exception {
+		Header header = new Header().withMsgId(Message.randomId());
+		fStream.setParentHeader(header);
+		fStream.write('a');
+		fStream.setParentHeader(null);
+		fStream.write('b');
+		fStream.forceFlush();
+
+		assertEquals(2, fPublished.size());
+		assertEquals(header.getMsgId(), fPublished.get(0).getParentHeader().getMsgId());
+		assertNull(fPublished.get(1).getParentHeader().getMsgId());
+	}
+}
@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.channels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.ease.jupyter.kernel.messages.Header;
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.eclipse.ease.jupyter.kernel.messages.Stream;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link PublishQueue}.
+ * <p>
+ * Test cases focus on the different policies and counters.
+ */
+public class PublishQueueTest {
+	/**
+	 * Capacity of queue for tests.
+	 */
+	private static final int CAPACITY = 2;
+
+	/**
+	 * {@link PublishQueue} under test.
+	 */
+	private PublishQueue fQueue;
+
+	/**
+	 * Creates queue under test.
+	 */
+	@Before
+	public void setUp() {
+		fQueue = new PublishQueue(CAPACITY);
+	}
+
+	/**
+	 * Creates a new message of given type.
+	 *
+	 * @param messageType
+	 *            Message type to be set in header.
+	 * @return New {@link Message}.
+	 */
+	private static Message createMessage(String messageType) {
+		Message message = new Message();
+		message.getHeader().withMsgType(messageType).withMsgId(Message.randomId());
+		return message;
+	}
+
+	/**
+	 * Creates a new stream message.
+	 *
+	 * @param name
+	 *            Stream name.
+	 * @param text
+	 *            Stream text.
+	 * @param parent
+	 *            Parent header, might be <code>null</code>.
+	 * @return New stream {@link Message}.
+	 */
+	private static Message createStream(String name, String text, Header parent) {
+		Message message = createMessage("stream").withContent(new Stream().withName(name).withText(text));
+		if (parent != null) {
+			message.withParentHeader(parent);
+		}
+		return message;
+	}
+
+	/**
+	 * Creates a new display_data message with given display ID.
+	 *
+	 * @param displayId
+	 *            Display ID to be stored in transient data.
+	 * @return New display {@link Message}.
+	 */
+	private static Message createDisplay(String displayId) {
+		Map<String, Object> transientData = new HashMap<String, Object>();
+		transientData.put("display_id", displayId);
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("data", new HashMap<String, Object>());
+		content.put("transient", transientData);
+		return createMessage("display_data").withContent(content);
+	}
+
+	/**
+	 * Tests that flooding the queue with status messages never drops any of
+	 * them, the capacity is exceeded instead.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testKeepBeyondCapacity() throws Exception {
+		final List<Message> messages = new ArrayList<Message>();
+		for (int i = 0; i < 100 * CAPACITY; i++) {
+			Message message = createMessage("status");
+			messages.add(message);
+			assertTrue(fQueue.offer(message));
+		}
+
+		assertEquals(100 * CAPACITY, fQueue.size());
+		assertEquals(100 * CAPACITY, fQueue.getQueuedCount());
+		assertEquals(0, fQueue.getDroppedCount());
+		for (Message message : messages) {
+			assertSame(message, fQueue.take());
+		}
+	}
+
+	/**
+	 * Tests that a status message arriving at a queue full of stream and
+	 * display messages evicts the oldest of them.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testKeepEvictsDroppable() throws Exception {
+		Message stream = createStream("stdout", "a", null);
+		Message display = createDisplay("display");
+		Message status = createMessage("status");
+		assertTrue(fQueue.offer(stream));
+		assertTrue(fQueue.offer(display));
+
+		assertTrue(fQueue.offer(status));
+		assertEquals(CAPACITY, fQueue.size());
+		assertEquals(1, fQueue.getDroppedCount());
+		assertSame(display, fQueue.take());
+		assertSame(status, fQueue.take());
+	}
+
+	/**
+	 * Tests that kept messages evict droppable messages even if they are
+	 * queued behind kept ones.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testKeepEvictsOldestDroppable() throws Exception {
+		Message first = createMessage("status");
+		Message display = createDisplay("display");
+		Message second = createMessage("status");
+		assertTrue(fQueue.offer(first));
+		assertTrue(fQueue.offer(display));
+
+		assertTrue(fQueue.offer(second));
+		assertEquals(1, fQueue.getDroppedCount());
+		assertSame(first, fQueue.take());
+		assertSame(second, fQueue.take());
+	}
+
+	/**
+	 * Tests that stream and display messages are dropped once the queue is
+	 * full.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testMergeAndLatestWhenFull() throws Exception {
+		for (int i = 0; i < CAPACITY; i++) {
+			fQueue.offer(createMessage("status"));
+		}
+		assertFalse(fQueue.offer(createStream("stdout", "a", null)));
+		assertFalse(fQueue.offer(createDisplay("display")));
+		assertEquals(CAPACITY, fQueue.size());
+		assertEquals(2, fQueue.getDroppedCount());
+	}
+
+	/**
+	 * Tests that droppable messages are dropped once the queue is full.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testDropWhenFull() throws Exception {
+		for (int i = 0; i < CAPACITY; i++) {
+			assertTrue(fQueue.offer(createMessage("comm_msg")));
+		}
+		assertFalse(fQueue.offer(createMessage("comm_msg")));
+
+		assertEquals(CAPACITY, fQueue.size());
+		assertEquals(1, fQueue.getDroppedCount());
+	}
+
+	/**
+	 * Tests that stream messages of the same stream and parent are merged.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testMergeStreams() throws Exception {
+		fQueue = new PublishQueue(4 * CAPACITY);
+		Header parent = new Header().withMsgId(Message.randomId());
+		fQueue.offer(createStream("stdout", "a", parent));
+		fQueue.offer(createStream("stdout", "b", parent));
+		fQueue.offer(createStream("stderr", "c", parent));
+		fQueue.offer(createStream("stderr", "d", null));
+
+		assertEquals(3, fQueue.size());
+		assertEquals(1, fQueue.getMergedCount());
+		assertEquals("ab", fQueue.take().getContent(Stream.class).getText());
+		assertEquals("c", fQueue.take().getContent(Stream.class).getText());
+		assertEquals("d", fQueue.take().getContent(Stream.class).getText());
+	}
+
+	/**
+	 * Tests that merged stream text does not exceed the maximum merged size,
+	 * a new entry is started instead.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testMergeMaxSize() throws Exception {
+		fQueue = new PublishQueue(CAPACITY, 4);
+		fQueue.offer(createStream("stdout", "ab", null));
+		fQueue.offer(createStream("stdout", "cd", null));
+		fQueue.offer(createStream("stdout", "ef", null));
+
+		assertEquals(2, fQueue.size());
+		assertEquals(1, fQueue.getMergedCount());
+		assertEquals("abcd", fQueue.take().getContent(Stream.class).getText());
+		assertEquals("ef", fQueue.take().getContent(Stream.class).getText());
+	}
+
+	/**
+	 * Tests that only the newest display update per display ID is kept.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testLatestDisplay() throws Exception {
+		fQueue.offer(createDisplay("first"));
+		fQueue.offer(createDisplay("second"));
+		Message newest = createDisplay("first");
+		fQueue.offer(newest);
+
+		assertEquals(2, fQueue.size());
+		assertEquals(1, fQueue.getDroppedCount());
+		fQueue.take();
+		assertSame(newest, fQueue.take());
+	}
+
+	/**
+	 * Tests that pending messages can be taken after closing, while new
+	 * messages are dropped.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testClose() throws Exception {
+		Message message = createMessage("status");
+		fQueue.offer(message);
+		fQueue.close();
+
+		assertFalse(fQueue.offer(createMessage("status")));
+		assertSame(message, fQueue.take());
+		assertNull(fQueue.take());
+	}
+
+	/**
+	 * Tests that pending entries are drained in batches together with their
+	 * frames, while merged entries need to be serialized again.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testDrainBatch() throws Exception {
+		fQueue = new PublishQueue(4 * CAPACITY);
+		List<byte[]> frames = Collections.singletonList(new byte[0]);
+		fQueue.offer(createMessage("status"), frames);
+		fQueue.offer(createStream("stdout", "a", null), frames);
+		fQueue.offer(createStream("stdout", "b", null), frames);
+		fQueue.offer(createMessage("status"), frames);
+
+		List<PublishQueue.Entry> batch = new ArrayList<PublishQueue.Entry>();
+		assertEquals(2, fQueue.drainTo(batch, 2));
+		assertSame(frames, batch.get(0).getFrames());
+		assertNull(batch.get(1).getFrames());
+
+		batch.clear();
+		assertEquals(1, fQueue.drainTo(batch, 2));
+		assertNotNull(batch.get(0).getFrames());
+
+		fQueue.close();
+		batch.clear();
+		assertEquals(0, fQueue.drainTo(batch, 2));
+	}
+}
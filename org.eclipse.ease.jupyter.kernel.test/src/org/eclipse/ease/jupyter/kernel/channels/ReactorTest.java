@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.channels;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import org.eclipse.ease.jupyter.kernel.Protocol;
+import org.eclipse.ease.jupyter.kernel.Session;
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Socket;
+
+/**
+ * Test cases for {@link Reactor}.
+ * <p>
+ * Test cases focus on data being handled without receive timeouts and on fast
+ * shutdown.
+ */
+public class ReactorTest {
+	/**
+	 * Maximum time to wait for replies or shutdown in milliseconds.
+	 */
+	private static final int TIMEOUT_MILLIS = 1000;
+
+	/**
+	 * {@link Session} for channels under test.
+	 */
+	private Session fSession;
+
+	/**
+	 * Heartbeat channel handled by reactor under test.
+	 */
+	private HeartbeatChannel fHeartbeat;
+
+	/**
+	 * {@link Reactor} under test.
+	 */
+	private Reactor fReactor;
+
+	/**
+	 * ZMQ context for client sockets.
+	 */
+	private ZContext fZmqContext;
+
+	/**
+	 * Client socket connected to heartbeat channel.
+	 */
+	private Socket fClient;
+
+	/**
+	 * Finds a free TCP port on the local machine.
+	 *
+	 * @return Free TCP port.
+	 * @throws IOException
+	 *             If no port could be found.
+	 */
+	private static int freePort() throws IOException {
+		ServerSocket socket = new ServerSocket(0);
+		try {
+			return socket.getLocalPort();
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Creates heartbeat channel handled by reactor and connected client.
+	 *
+	 * @throws Exception
+	 *             If no free port found.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		String address = "tcp://127.0.0.1:" + freePort();
+
+		fSession = new Session(new Protocol(), 10000, 1);
+		fHeartbeat = new HeartbeatChannel(address, fSession);
+		fReactor = new Reactor(fSession);
+		fReactor.register(fHeartbeat);
+
+		fZmqContext = new ZContext(1);
+		fClient = fZmqContext.createSocket(ZMQ.REQ);
+		fClient.setReceiveTimeOut(TIMEOUT_MILLIS);
+		fClient.connect(address);
+	}
+
+	/**
+	 * Stops reactor and closes sockets.
+	 *
+	 * @throws Exception
+	 *             If session could not be closed.
+	 */
+	@After
+	public void tearDown() throws Exception {
+		fReactor.stop();
+		fZmqContext.destroy();
+		fSession.close();
+	}
+
+	/**
+	 * Tests that heartbeats are echoed by the reactor thread.
+	 */
+	@Test
+	public void testHeartbeatEcho() {
+		fReactor.start();
+
+		for (int i = 0; i < 3; i++) {
+			fClient.send("ping-" + i);
+			assertEquals("ping-" + i, fClient.recvStr());
+		}
+	}
+
+	/**
+	 * Tests that multi-part heartbeats are echoed unchanged.
+	 */
+	@Test
+	public void testMultipartHeartbeatEcho() {
+		fReactor.start();
+
+		fClient.sendMore(new byte[] { 1, 2 });
+		fClient.send(new byte[0]);
+		assertArrayEquals(new byte[] { 1, 2 }, fClient.recv());
+		assertTrue(fClient.hasReceiveMore());
+		assertArrayEquals(new byte[0], fClient.recv());
+		assertFalse(fClient.hasReceiveMore());
+	}
+
+	/**
+	 * Tests that stopping the reactor does not wait for the socket receive
+	 * timeout.
+	 */
+	@Test
+	public void testFastStop() {
+		fReactor.start();
+		assertTrue(fReactor.isRunning());
+
+		long start = System.currentTimeMillis();
+		fReactor.stop();
+
+		assertFalse(fReactor.isRunning());
+		assertTrue(System.currentTimeMillis() - start < TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Tests that channels cannot be registered once the reactor is running.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testRegisterAfterStart() {
+		fReactor.start();
+		fReactor.register(new HeartbeatChannel("inproc://reactor-test", fSession));
+	}
+
+	/**
+	 * Tests that messages sent from other threads after the reactor stopped
+	 * are rejected instead of silently being queued.
+	 *
+	 * @throws Exception
+	 *             If sending thread could not be joined.
+	 */
+	@Test
+	public void testSendAfterStop() throws Exception {
+		fReactor.start();
+		fReactor.stop();
+
+		final Message message = new Message();
+		message.getHeader().withMsgId(Message.randomId()).withMsgType("status").withSession("test")
+				.withUsername("test");
+		final IOException[] error = new IOException[1];
+		Thread sender = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					fReactor.send(fHeartbeat, message);
+				} catch (IOException e) {
+					error[0] = e;
+				}
+			}
+		});
+		sender.start();
+		sender.join(TIMEOUT_MILLIS);
+		assertNotNull(error[0]);
+	}
+}
@@ -0,0 +1,348 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.handlers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.eclipse.ease.jupyter.kernel.handlers.HistoryMessageHandler.HistoryTuple;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link HistoryStore}.
+ * <p>
+ * Test cases focus on reading entries from the hot window and from mapped
+ * segments, recovery after reopening, segment rotation and indexed queries.
+ */
+public class HistoryStoreTest {
+	/**
+	 * Segment size small enough to force rotation.
+	 */
+	private static final int SEGMENT_SIZE = 1024;
+
+	/**
+	 * Directory of store under test.
+	 */
+	private File fDirectory;
+
+	/**
+	 * {@link HistoryStore} under test.
+	 */
+	private HistoryStore fStore;
+
+	/**
+	 * Opens store with small segments and hot window.
+	 *
+	 * @throws IOException
+	 *             If store could not be opened.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		fDirectory = Files.createTempDirectory("history").toFile();
+		fStore = new HistoryStore(fDirectory, SEGMENT_SIZE, 100, 4);
+	}
+
+	/**
+	 * Closes store and deletes its directory.
+	 *
+	 * @throws IOException
+	 *             If store could not be closed.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		fStore.close();
+		for (File file : fDirectory.listFiles()) {
+			file.delete();
+		}
+		fDirectory.delete();
+	}
+
+	/**
+	 * Appends the given number of entries.
+	 *
+	 * @param count
+	 *            Number of entries.
+	 * @throws IOException
+	 *             If entries could not be appended.
+	 */
+	private void appendEntries(int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			fStore.append(new HistoryTuple("session", i + 1, "code " + i, (i % 2 == 0) ? "result " + i : null));
+		}
+	}
+
+	/**
+	 * Checks that the given entry has the content written by
+	 * {@link #appendEntries(int)}.
+	 *
+	 * @param index
+	 *            Index of entry.
+	 * @param tuple
+	 *            Entry read from store.
+	 */
+	private static void assertEntry(int index, HistoryTuple tuple) {
+		assertEquals("session", tuple.getSession());
+		assertEquals(index + 1, tuple.getLineNumber());
+		assertEquals("code " + index, tuple.getInput());
+		assertEquals((index % 2 == 0) ? "result " + index : null, tuple.getOutput());
+	}
+
+	/**
+	 * Tests that entries outside the hot window are read from segments.
+	 *
+	 * @throws IOException
+	 *             If entries could not be appended.
+	 */
+	@Test
+	public void testAppendAndGet() throws IOException {
+		appendEntries(100);
+		assertEquals(100, fStore.getNextSequence());
+		assertTrue(fStore.getSegmentCount() > 1);
+
+		for (int i = 0; i < 100; i++) {
+			assertEntry(i, fStore.get(i));
+		}
+		assertNull(fStore.get(100));
+		assertEquals(10, fStore.getRange(90, 200).size());
+	}
+
+	/**
+	 * Tests that entries survive reopening the store.
+	 *
+	 * @throws IOException
+	 *             If store could not be reopened.
+	 */
+	@Test
+	public void testReopen() throws IOException {
+		appendEntries(50);
+		fStore.close();
+
+		fStore = new HistoryStore(fDirectory, SEGMENT_SIZE, 100, 4);
+		assertEquals(50, fStore.getNextSequence());
+		for (int i = 0; i < 50; i++) {
+			assertEntry(i, fStore.get(i));
+		}
+
+		// Appending continues after recovered entries
+		fStore.append(new HistoryTuple("other", 1, "after restart"));
+		assertEquals("after restart", fStore.get(50).getInput());
+	}
+
+	/**
+	 * Tests that a torn record at the end of the log is discarded.
+	 *
+	 * @throws IOException
+	 *             If segment could not be modified.
+	 */
+	@Test
+	public void testTornRecord() throws IOException {
+		fStore.append(new HistoryTuple("session", 1, "complete"));
+		fStore.append(new HistoryTuple("session", 2, "torn"));
+		fStore.close();
+
+		// Corrupt payload of second record, located behind magic and first record
+		try (RandomAccessFile file = new RandomAccessFile(getSegmentFile(), "rw")) {
+			long position = 4 + 8 + readInt(file, 4);
+			file.seek(position + 8);
+			file.write(0xFF);
+		}
+
+		fStore = new HistoryStore(fDirectory, SEGMENT_SIZE, 100, 4);
+		assertEquals(1, fStore.getNextSequence());
+		assertEquals("complete", fStore.get(0).getInput());
+
+		fStore.append(new HistoryTuple("session", 2, "rewritten"));
+		assertEquals("rewritten", fStore.get(1).getInput());
+	}
+
+	/**
+	 * Returns the only segment file of the store directory.
+	 *
+	 * @return Segment file.
+	 */
+	private File getSegmentFile() {
+		for (File file : fDirectory.listFiles()) {
+			if (file.getName().endsWith(".log")) {
+				return file;
+			}
+		}
+		throw new AssertionError("No segment file");
+	}
+
+	/**
+	 * Reads a big-endian integer from the given file position.
+	 *
+	 * @param file
+	 *            File to read from.
+	 * @param position
+	 *            Position of integer.
+	 * @return Read integer.
+	 * @throws IOException
+	 *             If file could not be read.
+	 */
+	private static int readInt(RandomAccessFile file, long position) throws IOException {
+		file.seek(position);
+		return file.readInt();
+	}
+
+	/**
+	 * Tests that the oldest segments are deleted once the maximum segment
+	 * count is exceeded.
+	 *
+	 * @throws IOException
+	 *             If store could not be opened.
+	 */
+	@Test
+	public void testRotation() throws IOException {
+		fStore.close();
+		fStore = new HistoryStore(fDirectory, SEGMENT_SIZE, 3, 4);
+		appendEntries(200);
+
+		assertEquals(3, fStore.getSegmentCount());
+		assertTrue(fStore.getFirstSequence() > 0);
+		assertNull(fStore.get(0));
+		assertEntry(199, fStore.get(199));
+		assertEntry((int) fStore.getFirstSequence(), fStore.get(fStore.getFirstSequence()));
+		assertEquals(3, fDirectory.listFiles().length - 1);
+	}
+
+	/**
+	 * Tests that the directory cannot be used by a second store.
+	 *
+	 * @throws IOException
+	 *             Expected exception.
+	 */
+	@Test(expected = IOException.class)
+	public void testLocked() throws IOException {
+		new HistoryStore(fDirectory);
+	}
+
+	/**
+	 * Returns the inputs of the given entries.
+	 *
+	 * @param tuples
+	 *            Entries returned by a query.
+	 * @return Inputs in order.
+	 */
+	private static String inputs(List<HistoryTuple> tuples) {
+		final StringBuilder inputs = new StringBuilder();
+		for (HistoryTuple tuple : tuples) {
+			inputs.append(inputs.length() > 0 ? "|" : "").append(tuple.getInput());
+		}
+		return inputs.toString();
+	}
+
+	/**
+	 * Tests that tail returns the newest entries in order, optionally
+	 * skipping repeated inputs.
+	 *
+	 * @throws IOException
+	 *             If entries could not be appended.
+	 */
+	@Test
+	public void testTail() throws IOException {
+		for (String input : new String[] { "a", "b", "a", "c", "a" }) {
+			fStore.append(new HistoryTuple("session", 1, input));
+		}
+		assertEquals("a|c|a", inputs(fStore.getTail(3, false)));
+		assertEquals("b|c|a", inputs(fStore.getTail(10, true)));
+		assertEquals(0, fStore.getTail(0, false).size());
+	}
+
+	/**
+	 * Tests that sessions are numbered in order of appearance and line ranges
+	 * are looked up per session.
+	 *
+	 * @throws IOException
+	 *             If entries could not be appended.
+	 */
+	@Test
+	public void testSessionRange() throws IOException {
+		for (int i = 1; i <= 20; i++) {
+			fStore.append(new HistoryTuple("first", i, "first " + i));
+			fStore.append(new HistoryTuple("second", i, "second " + i));
+		}
+		assertEquals(1, fStore.getSessionNumber("first"));
+		assertEquals(2, fStore.getSessionNumber("second"));
+		assertEquals(0, fStore.getSessionNumber("unknown"));
+		assertEquals(2, fStore.getSessionCount());
+
+		assertEquals("second 5|second 6|second 7", inputs(fStore.getSessionRange(2, 5, 8)));
+		assertEquals(20, fStore.getSessionRange(1, 1, Integer.MAX_VALUE).size());
+		assertEquals(0, fStore.getSessionRange(3, 1, Integer.MAX_VALUE).size());
+	}
+
+	/**
+	 * Tests glob search with and without literal parts usable for the
+	 * trigram index.
+	 *
+	 * @throws IOException
+	 *             If entries could not be appended.
+	 */
+	@Test
+	public void testSearch() throws IOException {
+		for (String input : new String[] { "print(x)", "x = 1", "print(y)", "import os", "print(x)" }) {
+			fStore.append(new HistoryTuple("session", 1, input));
+		}
+		assertEquals("print(x)|print(y)|print(x)", inputs(fStore.search("print*", 0, false)));
+		assertEquals("print(y)|print(x)", inputs(fStore.search("print*", 0, true)));
+		assertEquals("print(x)", inputs(fStore.search("*(x)", 1, false)));
+		assertEquals("print(x)|print(y)|print(x)", inputs(fStore.search("print([xy])", 0, false)));
+		assertEquals("x = 1", inputs(fStore.search("? = ?", 0, false)));
+		assertEquals("", inputs(fStore.search("*missing*", 0, false)));
+		assertEquals(5, fStore.search("*", 0, false).size());
+
+		// Glob characters only match whole inputs
+		assertTrue(HistoryIndex.toRegex("a.b").matcher("a.b").matches());
+		assertFalse(HistoryIndex.toRegex("a.b").matcher("axb").matches());
+	}
+
+	/**
+	 * Tests that the index covers recovered entries, ignores deleted segments
+	 * and still finds long inputs only partially indexed.
+	 *
+	 * @throws IOException
+	 *             If store could not be reopened.
+	 */
+	@Test
+	public void testIndexAfterReopen() throws IOException {
+		final StringBuilder longInput = new StringBuilder();
+		while (longInput.length() < HistoryIndex.MAX_INDEXED_CHARS) {
+			longInput.append("padding ");
+		}
+		longInput.append("needle");
+
+		fStore.close();
+		fStore = new HistoryStore(fDirectory, 4 * SEGMENT_SIZE, 3, 4);
+		appendEntries(1000);
+		fStore.append(new HistoryTuple("other", 1, longInput.toString()));
+		fStore.close();
+
+		fStore = new HistoryStore(fDirectory, 4 * SEGMENT_SIZE, 3, 4);
+		assertEquals(1, fStore.search("*needle", 0, false).size());
+		assertEquals(1, fStore.search("code 999", 0, false).size());
+		assertTrue(fStore.getFirstSequence() > 0);
+		assertEquals(0, fStore.search("code 0", 0, false).size());
+		assertEquals(fStore.getNextSequence() - fStore.getFirstSequence() - 1,
+				fStore.getSessionRange(1, 1, Integer.MAX_VALUE).size());
+	}
+}
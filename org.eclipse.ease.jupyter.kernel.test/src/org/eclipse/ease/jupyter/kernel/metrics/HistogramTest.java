@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link Histogram} and {@link KernelMetrics}.
+ * <p>
+ * Test cases focus on bucket boundaries and percentile precision.
+ */
+public class HistogramTest {
+	/**
+	 * Maximum relative error of reported percentiles.
+	 */
+	private static final double PRECISION = 1.0 / 32;
+
+	/**
+	 * Tests that bucket indices are continuous and bucket bounds contain their
+	 * values.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testBuckets() throws Exception {
+		int previous = -1;
+		for (long value = 0; value < 100000; value++) {
+			int index = Histogram.indexOf(value);
+			assertTrue(index == previous || index == previous + 1);
+			assertTrue(Histogram.highestValueOf(index) >= value);
+			previous = index;
+		}
+
+		assertEquals(Long.MAX_VALUE, Histogram.highestValueOf(Histogram.indexOf(Long.MAX_VALUE)));
+	}
+
+	/**
+	 * Tests that percentiles are reported within the bucket precision.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testPercentiles() throws Exception {
+		Histogram histogram = new Histogram();
+		for (long value = 1; value <= 10000; value++) {
+			histogram.record(value * 1000);
+		}
+
+		assertEquals(10000, histogram.getCount());
+		assertEquals(10000000, histogram.getMax());
+		assertEquals(5000500, histogram.getMean());
+		assertEquals(5000000, histogram.getValueAtPercentile(50), 5000000 * PRECISION);
+		assertEquals(9900000, histogram.getValueAtPercentile(99), 9900000 * PRECISION);
+		assertEquals(10000000, histogram.getValueAtPercentile(100));
+	}
+
+	/**
+	 * Tests that negative values are recorded as zero and reset removes all
+	 * values.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testNegativeAndReset() throws Exception {
+		Histogram histogram = new Histogram();
+		histogram.record(-5);
+		assertEquals(1, histogram.getCount());
+		assertEquals(0, histogram.getValueAtPercentile(100));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+	}
+
+	/**
+	 * Tests that histograms per message type are created once for registered
+	 * types and reported in snapshots, while all other types share a single
+	 * histogram.
+	 *
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testMessageTypeHistograms() throws Exception {
+		KernelMetrics metrics = new KernelMetrics();
+		metrics.registerMessageType("execute_request");
+		Histogram histogram = metrics.getHandlerTime("execute_request");
+		assertSame(histogram, metrics.getHandlerTime("execute_request"));
+		histogram.record(42);
+
+		Map<String, Map<String, Long>> histograms = metrics.getHistograms();
+		assertEquals(Long.valueOf(1), histograms.get("handler.execute_request").get("count"));
+		assertEquals(Long.valueOf(0), histograms.get("execute").get("count"));
+
+		// Unregistered types do not create histograms
+		for (int i = 0; i < 10; i++) {
+			metrics.getHandlerTime("made_up_" + i).record(1);
+		}
+		histograms = metrics.getHistograms();
+		assertEquals(Long.valueOf(10), histograms.get("handler." + KernelMetrics.OTHER_TYPE).get("count"));
+		assertNull(histograms.get("handler.made_up_0"));
+		assertSame(metrics.getDispatchTime(null), metrics.getDispatchTime("made_up_0"));
+
+		metrics.reset();
+		assertEquals(0, histogram.getCount());
+	}
+}
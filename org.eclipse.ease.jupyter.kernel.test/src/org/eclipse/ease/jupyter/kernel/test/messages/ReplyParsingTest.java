@@ -24,6 +24,7 @@ import org.eclipse.ease.jupyter.kernel.messages.ExecuteInput;
 import org.eclipse.ease.jupyter.kernel.messages.ExecuteResult;
 import org.eclipse.ease.jupyter.kernel.messages.HelpLink;
 import org.eclipse.ease.jupyter.kernel.messages.HistoryReply;
+import org.eclipse.ease.jupyter.kernel.messages.InterruptReply;
 import org.eclipse.ease.jupyter.kernel.messages.IsCompleteReply;
 import org.eclipse.ease.jupyter.kernel.messages.KernelInfoReply;
 import org.eclipse.ease.jupyter.kernel.messages.LanguageInfo;
@@ -116,6 +117,11 @@ public class ReplyParsingTest {
 	 */
 	private static final HelpLink HELP_LINK = new HelpLink();
 
+	/**
+	 * Constant used for all "interrupt_mode" nodes in JSON contents.
+	 */
+	private static final String INTERRUPT_MODE = "message";
+
 	/**
 	 * Tests that {@link ExecuteInput} messages are parsed correctly.
 	 * 
@@ -372,7 +378,8 @@ public class ReplyParsingTest {
 		helplinks.add(HELP_LINK);
 		KernelInfoReply original = new KernelInfoReply().withProtocolVersion(PROTOCOL_VERSION)
 				.withImplementation(IMPLEMENTATION).withImplementationVersion(IMPLEMENATION_VERSION)
-				.withLanguageInfo(LANGUAGE_INFO).withBanner(BANNER).withHelpLinks(helplinks);
+				.withLanguageInfo(LANGUAGE_INFO).withBanner(BANNER).withHelpLinks(helplinks)
+				.withInterruptMode(INTERRUPT_MODE);
 		original.validate();
 
 		// Parse back and forth
@@ -396,6 +403,8 @@ public class ReplyParsingTest {
 		assertEquals(helplinks, parsed.getHelpLinks());
 		assertEquals(1, parsed.getHelpLinks().size());
 		assertEquals(HELP_LINK, parsed.getHelpLinks().get(0));
+		assertEquals(original.getInterruptMode(), parsed.getInterruptMode());
+		assertEquals(INTERRUPT_MODE, parsed.getInterruptMode());
 	}
 
 	/**
@@ -507,4 +516,44 @@ public class ReplyParsingTest {
 		original.validate();
 		fail("Did not detect missing parameter.");
 	}
+
+	/**
+	 * Tests that {@link InterruptReply} messages are parsed correctly.
+	 * 
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test
+	public void testInterruptReplyValid() throws Exception {
+		// Create original content
+		InterruptReply original = new InterruptReply().withStatus(InterruptReply.Status.OK);
+		original.validate();
+
+		// Parse back and forth
+		InterruptReply parsed = JSON_OBJECT_MAPPER.readValue(JSON_OBJECT_MAPPER.writeValueAsBytes(original),
+				InterruptReply.class);
+		parsed.validate();
+
+		// Assert that values stayed the same
+		assertEquals(original, parsed);
+		assertEquals(InterruptReply.Status.OK, parsed.getStatus());
+	}
+
+	/**
+	 * Tests that {@link InterruptReply} messages handle required parameters
+	 * correctly.
+	 * <p>
+	 * Creates invalid {@link InterruptReply} (no status) and tries to encode
+	 * them. Should throw {@link JsonMappingException}.
+	 * 
+	 * @throws Exception
+	 *             In case of error.
+	 */
+	@Test(expected = JsonMappingException.class)
+	public void testInterruptReplyNoStatus() throws Exception {
+		InterruptReply original = new InterruptReply();
+		JSON_OBJECT_MAPPER.writeValueAsBytes(original);
+		original.validate();
+		fail("Did not detect missing parameter.");
+	}
 }
@@ -14,16 +14,27 @@ package org.eclipse.ease.jupyter.kernel;
 import java.io.IOError;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.ease.IScriptEngine;
 import org.eclipse.ease.service.EngineDescription;
@@ -33,15 +44,48 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 /**
  * Server receiving connections from kernel launchers, parsing the received
  * Jupyter connection file and setting up the actual kernels.
+ * <p>
+ * Kernels are constructed and started on a bounded pool of worker threads, so
+ * a slow engine startup does not block other launcher connections. The
+ * selector thread only reads and parses connection files and sends back
+ * acknowledgements, see {@link LauncherConnection} for the framing protocol
+ * used with launchers. Engines are taken
+ * from an {@link EnginePool}, so new kernels do not need to wait for an engine
+ * to start. All kernels create their sockets in a single
+ * {@link SharedZmqContext}, so the number of ZMQ threads does not grow with
+ * the number of kernels.
+ * <p>
+ * Every kernel is owned by the launcher connection it was requested over, as
+ * Jupyter treats the launcher process as the kernel. Kernels are stopped
+ * asynchronously once their launcher disconnects, and a kernel stopped by a
+ * shutdown request closes its launcher connection.
  */
 public class Dispatcher implements Runnable {
 	/**
-	 * Buffer size for incoming and outgoing data.
-	 * 
-	 * Connection file usually about 300 bytes so this buffer should be more than
-	 * large enough.
+	 * Default number of kernels constructed in parallel.
+	 */
+	public static final int DEFAULT_KERNEL_THREADS = 4;
+
+	/**
+	 * Default number of idle engines kept ready for new kernels.
 	 */
-	private static final int BUFFER_SIZE = 8192;
+	public static final int DEFAULT_ENGINE_POOL_SIZE = 1;
+
+	/**
+	 * Default time after which idle engines are terminated.
+	 */
+	public static final long DEFAULT_ENGINE_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+	/**
+	 * Maximum number of connection files waiting for a free worker thread,
+	 * further launcher connections are closed.
+	 */
+	private static final int KERNEL_QUEUE_CAPACITY = 64;
+
+	/**
+	 * Time to wait for kernels still being constructed on shutdown.
+	 */
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000;
 
 	/**
 	 * Simple flag to see if {@link Dispatcher} is still running.
@@ -64,14 +108,58 @@ public class Dispatcher implements Runnable {
 	private InetSocketAddress fAddress;
 
 	/**
-	 * {@link EngineDescription} to dynamically create {@link IScriptEngine}.
+	 * {@link EnginePool} to take {@link IScriptEngine} instances for new
+	 * kernels from.
+	 */
+	private final EnginePool fEnginePool;
+
+	/**
+	 * Flag to check if {@link #fEnginePool} was created by and needs to be
+	 * closed with this dispatcher.
+	 */
+	private final boolean fOwnsEnginePool;
+
+	/**
+	 * ZMQ context shared by all kernels of this dispatcher.
+	 */
+	private final SharedZmqContext fZmqContext = new SharedZmqContext(SharedZmqContext.getDefaultIoThreads());
+
+	/**
+	 * Running kernels by config, kernels are removed once stopped.
+	 */
+	private final Map<Config, Kernel> fKernels = new ConcurrentHashMap<>();
+
+	/**
+	 * Launcher connections owning each running kernel.
+	 */
+	private final Map<Kernel, KernelOwners> fKernelOwners = new ConcurrentHashMap<>();
+
+	/**
+	 * Kernels currently being constructed by config, launchers sending the
+	 * same connection file wait for the pending start.
+	 */
+	private final Map<Config, KernelStarter> fPendingKernels = new ConcurrentHashMap<>();
+
+	/**
+	 * Launcher connections with queued acknowledgements, written by the
+	 * selector thread.
+	 */
+	private final Queue<SelectionKey> fPendingWrites = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Number of kernels started since dispatcher was created.
+	 */
+	private final AtomicLong fStartedKernels = new AtomicLong();
+
+	/**
+	 * Number of kernels stopped since dispatcher was created.
 	 */
-	private EngineDescription fEngineDescription;
+	private final AtomicLong fStoppedKernels = new AtomicLong();
 
 	/**
-	 * Set of started kernels to be terminated on shutdown.
+	 * Bounded pool of threads constructing and starting kernels.
 	 */
-	private final Map<Config, Kernel> fKernels = new HashMap<>();
+	private final ThreadPoolExecutor fKernelExecutor;
 
 	/**
 	 * Constructor only stores information about address to run the server on.
@@ -85,8 +173,292 @@ public class Dispatcher implements Runnable {
 	 *            Port to run the server on.
 	 */
 	public Dispatcher(EngineDescription engineDescription, String host, int port) {
-		fEngineDescription = engineDescription;
+		this(engineDescription, host, port, DEFAULT_KERNEL_THREADS);
+	}
+
+	/**
+	 * Constructor stores information about address to run the server on and
+	 * creates the pool of threads constructing kernels.
+	 * 
+	 * @param engineDescription
+	 *            {@link EngineDescription} to dynamically create
+	 *            {@link IScriptEngine}.
+	 * @param host
+	 *            Host to run the server on.
+	 * @param port
+	 *            Port to run the server on.
+	 * @param kernelThreads
+	 *            Maximum number of kernels constructed in parallel.
+	 */
+	public Dispatcher(EngineDescription engineDescription, String host, int port, int kernelThreads) {
+		this(new EnginePool(engineDescription, DEFAULT_ENGINE_POOL_SIZE, DEFAULT_ENGINE_IDLE_TIMEOUT_MILLIS), true,
+				host, port, kernelThreads);
+	}
+
+	/**
+	 * Constructor stores information about address to run the server on and
+	 * creates the pool of threads constructing kernels. Engines for kernels
+	 * are taken from the given {@link EnginePool}.
+	 * 
+	 * @param enginePool
+	 *            {@link EnginePool} to take {@link IScriptEngine} instances
+	 *            from, filled on start but not closed by dispatcher.
+	 * @param host
+	 *            Host to run the server on.
+	 * @param port
+	 *            Port to run the server on.
+	 * @param kernelThreads
+	 *            Maximum number of kernels constructed in parallel.
+	 */
+	public Dispatcher(EnginePool enginePool, String host, int port, int kernelThreads) {
+		this(enginePool, false, host, port, kernelThreads);
+	}
+
+	/**
+	 * Actual constructor storing parameters to members and creating the pool
+	 * of threads constructing kernels.
+	 * 
+	 * @param enginePool
+	 *            {@link EnginePool} to take {@link IScriptEngine} instances
+	 *            from.
+	 * @param ownsEnginePool
+	 *            Flag to signalize that pool needs to be closed on shutdown.
+	 * @param host
+	 *            Host to run the server on.
+	 * @param port
+	 *            Port to run the server on.
+	 * @param kernelThreads
+	 *            Maximum number of kernels constructed in parallel.
+	 */
+	private Dispatcher(EnginePool enginePool, boolean ownsEnginePool, String host, int port, int kernelThreads) {
+		fEnginePool = enginePool;
+		fOwnsEnginePool = ownsEnginePool;
 		fAddress = new InetSocketAddress(host, port);
+
+		// Idle workers are discarded so an unused dispatcher holds no threads
+		fKernelExecutor = new ThreadPoolExecutor(kernelThreads, kernelThreads, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(KERNEL_QUEUE_CAPACITY), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "Dispatcher-KernelStarter");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		fKernelExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Launcher connections sharing a single kernel. Every launcher that was
+	 * acknowledged for the kernel owns it, the kernel is stopped once the last
+	 * owner disconnected.
+	 */
+	private static class KernelOwners {
+		/**
+		 * {@link SelectionKey}s of owning launcher connections.
+		 */
+		private final Set<SelectionKey> fSelectionKeys = new HashSet<>();
+
+		/**
+		 * Flag to signalize that the kernel is being stopped and cannot be
+		 * owned anymore.
+		 */
+		private boolean fReleased = false;
+
+		/**
+		 * Adds a launcher connection as owner of the given kernel.
+		 * 
+		 * @param kernel
+		 *            Kernel to be owned.
+		 * @param selectionKey
+		 *            {@link SelectionKey} of launcher connection.
+		 * @return <code>false</code> if kernel is being stopped or launcher
+		 *         connection is already closed.
+		 */
+		public synchronized boolean add(Kernel kernel, SelectionKey selectionKey) {
+			if (fReleased || !((LauncherConnection) selectionKey.attachment()).addKernel(kernel)) {
+				return false;
+			}
+			fSelectionKeys.add(selectionKey);
+			return true;
+		}
+
+		/**
+		 * Removes an owner that disconnected.
+		 * 
+		 * @param selectionKey
+		 *            {@link SelectionKey} of launcher connection.
+		 * @return <code>true</code> if this was the last owner, the kernel
+		 *         then needs to be stopped by the caller.
+		 */
+		public synchronized boolean remove(SelectionKey selectionKey) {
+			fSelectionKeys.remove(selectionKey);
+			return releaseIfUnowned();
+		}
+
+		/**
+		 * Marks the kernel as released if it has no owners.
+		 * 
+		 * @return <code>true</code> if kernel was released by this call and
+		 *         needs to be stopped by the caller.
+		 */
+		public synchronized boolean releaseIfUnowned() {
+			if (fReleased || !fSelectionKeys.isEmpty()) {
+				return false;
+			}
+			fReleased = true;
+			return true;
+		}
+
+		/**
+		 * Marks the kernel as released and returns all remaining owners.
+		 * 
+		 * @return {@link SelectionKey}s of remaining owners.
+		 */
+		public synchronized List<SelectionKey> release() {
+			fReleased = true;
+			final List<SelectionKey> selectionKeys = new ArrayList<>(fSelectionKeys);
+			fSelectionKeys.clear();
+			return selectionKeys;
+		}
+	}
+
+	/**
+	 * Task constructing and starting a single kernel on a worker thread and
+	 * acknowledging the result to all launchers waiting for it.
+	 */
+	private class KernelStarter implements Runnable {
+		/**
+		 * Config of kernel to be started.
+		 */
+		private final Config fConfig;
+
+		/**
+		 * {@link SelectionKey}s of launcher connections waiting for the
+		 * kernel, <code>null</code> once acknowledged.
+		 */
+		private List<SelectionKey> fSelectionKeys = new ArrayList<>();
+
+		/**
+		 * Constructor only stores parameters to members.
+		 * 
+		 * @param config
+		 *            Config of kernel to be started.
+		 * @param selectionKey
+		 *            {@link SelectionKey} of launcher connection.
+		 */
+		public KernelStarter(Config config, SelectionKey selectionKey) {
+			fConfig = config;
+			fSelectionKeys.add(selectionKey);
+		}
+
+		/**
+		 * Adds another launcher connection waiting for the kernel.
+		 * 
+		 * @param selectionKey
+		 *            {@link SelectionKey} of launcher connection.
+		 * @return <code>false</code> if kernel start already finished.
+		 */
+		public synchronized boolean addSelectionKey(SelectionKey selectionKey) {
+			if (fSelectionKeys == null) {
+				return false;
+			}
+			fSelectionKeys.add(selectionKey);
+			return true;
+		}
+
+		/**
+		 * Acknowledges the result to all waiting launchers.
+		 * 
+		 * @param status
+		 *            Status byte of acknowledgement.
+		 * @param message
+		 *            Message of acknowledgement.
+		 */
+		private void acknowledge(byte status, String message) {
+			for (SelectionKey selectionKey : takeSelectionKeys()) {
+				queueAck(selectionKey, status, message);
+			}
+		}
+
+		/**
+		 * Adds all waiting launchers as owners of the started kernel and
+		 * acknowledges the result to each of them.
+		 * 
+		 * @param kernel
+		 *            Started kernel.
+		 */
+		private void acknowledgeOwners(Kernel kernel) {
+			for (SelectionKey selectionKey : takeSelectionKeys()) {
+				// Launcher might have disconnected during startup
+				if (addOwner(kernel, selectionKey)) {
+					queueAck(selectionKey, LauncherConnection.ACK_OK, null);
+				} else {
+					queueAck(selectionKey, LauncherConnection.ACK_ERROR, "Launcher disconnected");
+				}
+			}
+		}
+
+		/**
+		 * Takes the waiting launchers, launchers added afterwards need to
+		 * look up the kernel themselves.
+		 * 
+		 * @return {@link SelectionKey}s of waiting launcher connections.
+		 */
+		private synchronized List<SelectionKey> takeSelectionKeys() {
+			final List<SelectionKey> selectionKeys = fSelectionKeys;
+			fSelectionKeys = null;
+			return selectionKeys;
+		}
+
+		@Override
+		public void run() {
+			Kernel startedKernel = null;
+			try {
+				// Dispatcher might have been stopped while waiting
+				if (!fRunning.get()) {
+					acknowledge(LauncherConnection.ACK_ERROR, "Dispatcher stopped");
+					return;
+				}
+
+				// Actually build the kernel
+				final Kernel kernel = new Kernel(fConfig, fEnginePool, fZmqContext);
+				startedKernel = kernel;
+				kernel.setStopListener(new Runnable() {
+					@Override
+					public void run() {
+						kernelStopped(fConfig, kernel);
+					}
+				});
+				kernel.start();
+
+				// Add kernel before removing pending config to avoid duplicates
+				final KernelOwners owners = new KernelOwners();
+				fKernelOwners.put(kernel, owners);
+				fKernels.put(fConfig, kernel);
+				fStartedKernels.incrementAndGet();
+
+				// Stop kernel if all launchers disconnected during startup
+				acknowledgeOwners(kernel);
+				if (owners.releaseIfUnowned()) {
+					stopKernel(kernel);
+				}
+			} catch (IOError | RuntimeException e) {
+				e.printStackTrace();
+
+				// Release sockets, context reference and engine of half
+				// started kernel, it was never known to its launcher
+				if (startedKernel != null) {
+					startedKernel.setStopListener(null);
+					fKernels.remove(fConfig, startedKernel);
+					fKernelOwners.remove(startedKernel);
+					startedKernel.stop();
+				}
+				acknowledge(LauncherConnection.ACK_ERROR, String.valueOf(e.getMessage()));
+			} finally {
+				fPendingKernels.remove(fConfig);
+			}
+		}
 	}
 
 	/**
@@ -146,66 +518,170 @@ public class Dispatcher implements Runnable {
 			return;
 		}
 
-		// Attach a byte buffer for sending back data.
-		clientKey.attach(ByteBuffer.allocate(BUFFER_SIZE));
+		// Attach connection accumulating frames across reads.
+		clientKey.attach(new LauncherConnection(socketChannel));
 
 	}
 
 	/**
 	 * Callback triggered when data is available from client.
+	 * <p>
+	 * Every complete frame is parsed to a {@link Config} and the kernel is
+	 * started asynchronously. Several frames may be received at once.
 	 * 
 	 * @param selectionKey
 	 *            {@link SelectionKey} with information about the connection we can
 	 *            read from.
-	 * @throws IOException
-	 *             If data could not be read.
 	 */
 	protected void read(SelectionKey selectionKey) {
-		SocketChannel socketChannel = (SocketChannel) selectionKey.channel();
+		LauncherConnection connection = (LauncherConnection) selectionKey.attachment();
 
-		// Allocate buffer and try to read data.
-		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
-		int bytesRead = -1;
+		// Read all complete frames
+		List<byte[]> frames = null;
 		try {
-			bytesRead = socketChannel.read(buffer);
+			frames = connection.read();
 		} catch (IOException e) {
 			// Ignore because of fall-through to next check
 		}
 
 		// Check if connection is closed
-		if (bytesRead <= 0) {
+		if (frames == null) {
 			closeConncection(selectionKey);
 			return;
 		}
 
-		// Parse data
-		Config config = null;
+		for (byte[] frame : frames) {
+			// Parse data
+			Config config = null;
+			try {
+				config = parseConfig(frame);
+			} catch (IOException e) {
+				// Invalid data received, tell launcher
+				e.printStackTrace();
+				queueAck(selectionKey, LauncherConnection.ACK_ERROR, "Invalid connection file: " + e.getMessage());
+				continue;
+			}
+
+			startKernel(config, selectionKey);
+		}
+	}
+
+	/**
+	 * Starts a kernel for the given config unless already starting or
+	 * running.
+	 * 
+	 * @param config
+	 *            Config of kernel to be started.
+	 * @param selectionKey
+	 *            {@link SelectionKey} of launcher connection to be
+	 *            acknowledged.
+	 */
+	private void startKernel(Config config, SelectionKey selectionKey) {
+		// Wait for kernel already being started
+		KernelStarter starter = new KernelStarter(config, selectionKey);
+		KernelStarter pending = fPendingKernels.putIfAbsent(config, starter);
+		if (pending != null) {
+			if (!pending.addSelectionKey(selectionKey)) {
+				// Start just finished, kernel is only known if successful
+				acknowledgeRunning(config, selectionKey);
+			}
+			return;
+		}
+
+		// Kernel already running
+		if (fKernels.containsKey(config)) {
+			fPendingKernels.remove(config, starter);
+			acknowledgeRunning(config, selectionKey);
+			return;
+		}
+
+		// Construct kernel without blocking other launcher connections
 		try {
-			byte[] configBytes = buffer.array();
-			config = parseConfig(configBytes);
-		} catch (IOException e) {
-			// Invalid data received, close connection
+			fKernelExecutor.execute(starter);
+		} catch (RejectedExecutionException e) {
 			e.printStackTrace();
-			closeConncection(selectionKey);
-			return;
+			fPendingKernels.remove(config);
+			queueAck(selectionKey, LauncherConnection.ACK_ERROR, "Too many kernels starting");
 		}
+	}
 
-		synchronized (fKernels) {
-			if (!fKernels.containsKey(config)) {
-				// Actually build the kernel
-				Kernel kernel = new Kernel(config, fEngineDescription);
-				try {
-					kernel.start();
+	/**
+	 * Adds a launcher as owner of the running kernel for the given config and
+	 * acknowledges the result.
+	 * 
+	 * @param config
+	 *            Config of running kernel.
+	 * @param selectionKey
+	 *            {@link SelectionKey} of launcher connection.
+	 */
+	private void acknowledgeRunning(Config config, SelectionKey selectionKey) {
+		final Kernel kernel = fKernels.get(config);
+		if ((kernel != null) && addOwner(kernel, selectionKey)) {
+			queueAck(selectionKey, LauncherConnection.ACK_OK, null);
+		} else {
+			queueAck(selectionKey, LauncherConnection.ACK_ERROR, "Kernel not running");
+		}
+	}
 
-					// Add kernel to internal list
-					fKernels.put(config, kernel);
-				} catch (IOError e) {
-					e.printStackTrace();
-					// Close connection
+	/**
+	 * Adds a launcher connection as owner of the given kernel.
+	 * 
+	 * @param kernel
+	 *            Running kernel.
+	 * @param selectionKey
+	 *            {@link SelectionKey} of launcher connection.
+	 * @return <code>false</code> if kernel is being stopped or launcher
+	 *         connection is already closed.
+	 */
+	private boolean addOwner(Kernel kernel, SelectionKey selectionKey) {
+		final KernelOwners owners = fKernelOwners.get(kernel);
+		return (owners != null) && owners.add(kernel, selectionKey);
+	}
+
+	/**
+	 * Queues an acknowledgement for the given launcher connection. May be
+	 * called from any thread, data is written by the selector thread.
+	 * 
+	 * @param selectionKey
+	 *            {@link SelectionKey} of launcher connection.
+	 * @param status
+	 *            Status byte of acknowledgement.
+	 * @param message
+	 *            Message of acknowledgement.
+	 */
+	private void queueAck(SelectionKey selectionKey, byte status, String message) {
+		((LauncherConnection) selectionKey.attachment()).queueAck(status, message);
+		fPendingWrites.add(selectionKey);
+		fSelector.wakeup();
+	}
+
+	/**
+	 * Callback triggered when queued acknowledgements can be written.
+	 * 
+	 * @param selectionKey
+	 *            {@link SelectionKey} with information about the connection we can
+	 *            write to.
+	 */
+	protected void write(SelectionKey selectionKey) {
+		if (!selectionKey.isValid()) {
+			return;
+		}
+
+		try {
+			// Only wait for writability while data is pending
+			LauncherConnection connection = (LauncherConnection) selectionKey.attachment();
+			if (connection.flush()) {
+				// Old launchers only notice failures by the closed connection
+				if (connection.isCloseRequested()) {
 					closeConncection(selectionKey);
+					return;
 				}
+				selectionKey.interestOps(SelectionKey.OP_READ);
+			} else {
+				selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
 			}
-
+		} catch (IOException e) {
+			closeConncection(selectionKey);
 		}
 	}
 
@@ -229,6 +705,9 @@ public class Dispatcher implements Runnable {
 
 	/**
 	 * Closes the connection specified by the given {@link SelectionKey}.
+	 * <p>
+	 * Kernels owned by a launcher connection are stopped asynchronously. May
+	 * be called from any thread.
 	 * 
 	 * @param selectionKey
 	 *            {@link SelectionKey} with information about connection to be
@@ -241,6 +720,112 @@ public class Dispatcher implements Runnable {
 			// ignore
 		}
 		selectionKey.cancel();
+
+		// Launcher is gone, so are kernels no other launcher owns
+		if (selectionKey.attachment() instanceof LauncherConnection) {
+			for (Kernel kernel : ((LauncherConnection) selectionKey.attachment()).close()) {
+				final KernelOwners owners = fKernelOwners.get(kernel);
+				if ((owners != null) && owners.remove(selectionKey)) {
+					stopKernel(kernel);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops the given kernel without blocking the calling thread.
+	 * 
+	 * @param kernel
+	 *            Kernel to be stopped.
+	 */
+	private void stopKernel(final Kernel kernel) {
+		final Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				kernel.stop();
+			}
+		};
+
+		try {
+			fKernelExecutor.execute(task);
+		} catch (RejectedExecutionException e) {
+			// Queue full or dispatcher shutting down
+			new Thread(task, "Dispatcher-KernelStopper").start();
+		}
+	}
+
+	/**
+	 * Callback triggered once a kernel is stopped, either because its
+	 * launcher disconnected or by a shutdown request.
+	 * 
+	 * @param config
+	 *            Config of stopped kernel.
+	 * @param kernel
+	 *            Stopped kernel.
+	 */
+	private void kernelStopped(Config config, Kernel kernel) {
+		if (fKernels.remove(config, kernel)) {
+			fStoppedKernels.incrementAndGet();
+		}
+
+		// Let launchers exit once they own no more kernels
+		final KernelOwners owners = fKernelOwners.remove(kernel);
+		if (owners != null) {
+			for (SelectionKey ownerKey : owners.release()) {
+				if (((LauncherConnection) ownerKey.attachment()).removeKernel(kernel)) {
+					closeConncection(ownerKey);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the ZMQ context shared by all kernels of this dispatcher. Clients
+	 * in the same JVM acquire it to connect to kernels via <code>inproc</code>
+	 * transport.
+	 *
+	 * @return {@link SharedZmqContext} of kernels.
+	 */
+	public SharedZmqContext getZmqContext() {
+		return fZmqContext;
+	}
+
+	/**
+	 * Returns the number of running kernels.
+	 *
+	 * @return Number of running kernels.
+	 */
+	public int getKernelCount() {
+		return fKernels.size();
+	}
+
+	/**
+	 * Returns the number of kernels currently being constructed.
+	 * 
+	 * @return Number of pending kernels.
+	 */
+	public int getPendingKernelCount() {
+		return fPendingKernels.size();
+	}
+
+	/**
+	 * Returns the number of kernels started since the dispatcher was
+	 * created.
+	 * 
+	 * @return Number of started kernels.
+	 */
+	public long getStartedKernelCount() {
+		return fStartedKernels.get();
+	}
+
+	/**
+	 * Returns the number of kernels stopped since the dispatcher was
+	 * created.
+	 * 
+	 * @return Number of stopped kernels.
+	 */
+	public long getStoppedKernelCount() {
+		return fStoppedKernels.get();
 	}
 
 	/**
@@ -258,12 +843,21 @@ public class Dispatcher implements Runnable {
 			return;
 		}
 
+		// Prepare engines for first kernels
+		fEnginePool.fill();
+
 		// Actually perform IO
 		while (fRunning.get()) {
 			try {
 				// Non-blocking wait until event is ready
 				fSelector.select();
 
+				// Send acknowledgements queued by other threads
+				SelectionKey pendingWrite;
+				while ((pendingWrite = fPendingWrites.poll()) != null) {
+					write(pendingWrite);
+				}
+
 				// Information about all events
 				Iterator<SelectionKey> selectedKeys = fSelector.selectedKeys().iterator();
 				while (selectedKeys.hasNext()) {
@@ -279,7 +873,12 @@ public class Dispatcher implements Runnable {
 					// Trigger callback depending on state
 					if (key.isAcceptable()) {
 						accept(key);
-					} else if (key.isReadable()) {
+						continue;
+					}
+					if (key.isWritable()) {
+						write(key);
+					}
+					if (key.isValid() && key.isReadable()) {
 						read(key);
 					}
 				}
@@ -290,7 +889,7 @@ public class Dispatcher implements Runnable {
 			}
 		}
 
-		// Close all opened connections
+		// Close all opened connections, stops their kernels
 		for (SelectionKey key : this.fSelector.keys()) {
 			closeConncection(key);
 		}
@@ -302,11 +901,24 @@ public class Dispatcher implements Runnable {
 			// ignore and hope for the best
 		}
 
-		// Close all started kernels
-		synchronized (fKernels) {
-			for (Kernel kernel : fKernels.values()) {
-				kernel.stop();
-			}
+		// Wait for kernels still being constructed or stopped
+		fKernelExecutor.shutdown();
+		try {
+			fKernelExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// Close all kernels not stopped yet
+		for (Kernel kernel : fKernels.values()) {
+			kernel.stop();
+		}
+		fKernels.clear();
+		fKernelOwners.clear();
+
+		// Terminate idle engines
+		if (fOwnsEnginePool) {
+			fEnginePool.close();
 		}
 	}
 
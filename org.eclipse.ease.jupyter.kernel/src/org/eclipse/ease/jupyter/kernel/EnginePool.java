@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.ease.IReplEngine;
+import org.eclipse.ease.IScriptEngine;
+import org.eclipse.ease.service.EngineDescription;
+
+/**
+ * Pool of pre-created and already scheduled {@link IScriptEngine} instances
+ * for a single {@link EngineDescription}.
+ * <p>
+ * Creating and starting an engine (e.g. launching a Python process) dominates
+ * the startup time of a kernel. The pool keeps up to a given number of idle
+ * engines ready, optionally with initialization code (e.g. loading modules)
+ * already queued. Engines taken from the pool are refilled in the background,
+ * engines idle for longer than the idle timeout are terminated and not
+ * replaced until the next engine is acquired.
+ * <p>
+ * Engines are never returned to the pool, as their state is modified by the
+ * kernel using them. A pool of size <code>0</code> creates every engine on
+ * demand.
+ */
+public class EnginePool implements Closeable {
+	/**
+	 * Idle engine with the time it was created.
+	 */
+	private static class PooledEngine {
+		/**
+		 * Actual script engine.
+		 */
+		private final IScriptEngine fEngine;
+
+		/**
+		 * {@link System#nanoTime()} when engine was added to pool.
+		 */
+		private final long fCreatedNanos = System.nanoTime();
+
+		/**
+		 * Constructor only stores parameters to members.
+		 *
+		 * @param engine
+		 *            Actual script engine.
+		 */
+		public PooledEngine(final IScriptEngine engine) {
+			fEngine = engine;
+		}
+	}
+
+	/**
+	 * {@link EngineDescription} to dynamically create {@link IScriptEngine}.
+	 */
+	private final EngineDescription fEngineDescription;
+
+	/**
+	 * Maximum number of idle engines.
+	 */
+	private final int fSize;
+
+	/**
+	 * Time after which idle engines are terminated, <code>0</code> to keep
+	 * them forever.
+	 */
+	private final long fIdleTimeoutMillis;
+
+	/**
+	 * Code executed on every engine before it is handed out.
+	 */
+	private final List<Object> fInitializationCode = new ArrayList<>();
+
+	/**
+	 * Idle engines, oldest first.
+	 */
+	private final ConcurrentLinkedDeque<PooledEngine> fIdleEngines = new ConcurrentLinkedDeque<>();
+
+	/**
+	 * Number of engines currently being created in the background.
+	 */
+	private final AtomicInteger fPendingEngines = new AtomicInteger();
+
+	/**
+	 * Thread creating engines and evicting idle ones, only created if pool is
+	 * not empty.
+	 */
+	private final ScheduledExecutorService fExecutor;
+
+	/**
+	 * Flag to check if pool was closed.
+	 */
+	private volatile boolean fClosed = false;
+
+	/**
+	 * Constructor stores pool settings and starts eviction of idle engines.
+	 * Call {@link #fill()} to create the idle engines.
+	 *
+	 * @param engineDescription
+	 *            {@link EngineDescription} to dynamically create
+	 *            {@link IScriptEngine}.
+	 * @param size
+	 *            Maximum number of idle engines.
+	 * @param idleTimeoutMillis
+	 *            Time after which idle engines are terminated, <code>0</code>
+	 *            to keep them forever.
+	 */
+	public EnginePool(final EngineDescription engineDescription, final int size, final long idleTimeoutMillis) {
+		if (size < 0 || idleTimeoutMillis < 0) {
+			throw new IllegalArgumentException("Pool size and idle timeout must not be negative");
+		}
+		fEngineDescription = engineDescription;
+		fSize = size;
+		fIdleTimeoutMillis = idleTimeoutMillis;
+
+		if (size > 0) {
+			fExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					// Pool must not keep the application alive
+					Thread thread = new Thread(runnable, "EnginePool");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+			if (idleTimeoutMillis > 0) {
+				final long period = Math.max(idleTimeoutMillis / 2, 1);
+				fExecutor.scheduleWithFixedDelay(new Runnable() {
+					@Override
+					public void run() {
+						evictIdleEngines();
+					}
+				}, period, period, TimeUnit.MILLISECONDS);
+			}
+		} else {
+			fExecutor = null;
+		}
+	}
+
+	/**
+	 * Adds code to be executed on every engine before it is handed out, e.g.
+	 * to load modules. Needs to be called before {@link #fill()}.
+	 *
+	 * @param code
+	 *            Code to be executed, see
+	 *            {@link IScriptEngine#executeAsync(Object)}.
+	 * @return Pool for chaining.
+	 */
+	public EnginePool withInitializationCode(final Object code) {
+		fInitializationCode.add(code);
+		return this;
+	}
+
+	/**
+	 * Getter for {@link EngineDescription} of pooled engines.
+	 *
+	 * @return {@link EngineDescription} of pooled engines.
+	 */
+	public EngineDescription getEngineDescription() {
+		return fEngineDescription;
+	}
+
+	/**
+	 * Returns the number of idle engines.
+	 *
+	 * @return Number of engines ready to be acquired.
+	 */
+	public int getIdleCount() {
+		return fIdleEngines.size();
+	}
+
+	/**
+	 * Creates idle engines in the background until the pool is full. Safe to
+	 * be called concurrently, every creation reserves its slot atomically
+	 * before being scheduled.
+	 */
+	public void fill() {
+		if (fExecutor == null) {
+			return;
+		}
+
+		while (!fClosed) {
+			// Reserve a slot, retry if another thread changed the reservations
+			final int pending = fPendingEngines.get();
+			if (fIdleEngines.size() + pending >= fSize) {
+				return;
+			}
+			if (!fPendingEngines.compareAndSet(pending, pending + 1)) {
+				continue;
+			}
+
+			try {
+				scheduleCreation();
+			} catch (RuntimeException e) {
+				// Executor rejected creation, release reservation
+				fPendingEngines.decrementAndGet();
+				e.printStackTrace();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Schedules the creation of a single idle engine. The caller needs to have
+	 * reserved a slot in {@link #fPendingEngines}, it is released once the
+	 * creation finished.
+	 */
+	private void scheduleCreation() {
+		fExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					IScriptEngine engine = createEngine();
+					fIdleEngines.addLast(new PooledEngine(engine));
+
+					// Pool might have been closed during creation
+					if (fClosed) {
+						terminateIdleEngines();
+					}
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				} finally {
+					fPendingEngines.decrementAndGet();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Takes a scheduled engine from the pool, creating one if the pool is
+	 * empty. The pool is refilled in the background.
+	 *
+	 * @return Scheduled {@link IScriptEngine}.
+	 */
+	public IScriptEngine acquire() {
+		// Newest engine is least likely to be evicted concurrently
+		PooledEngine pooled = fIdleEngines.pollLast();
+		fill();
+
+		if (pooled != null) {
+			return pooled.fEngine;
+		}
+		return createEngine();
+	}
+
+	/**
+	 * Creates, schedules and initializes a new engine.
+	 *
+	 * @return Scheduled {@link IScriptEngine}.
+	 */
+	private IScriptEngine createEngine() {
+		IScriptEngine engine = fEngineDescription.createEngine();
+		if (engine instanceof IReplEngine) {
+			((IReplEngine) engine).setTerminateOnIdle(false);
+		}
+		engine.schedule();
+
+		for (Object code : fInitializationCode) {
+			engine.executeAsync(code);
+		}
+		return engine;
+	}
+
+	/**
+	 * Terminates all engines idle for longer than the idle timeout.
+	 */
+	private void evictIdleEngines() {
+		final long now = System.nanoTime();
+		final Iterator<PooledEngine> iterator = fIdleEngines.iterator();
+		while (iterator.hasNext()) {
+			PooledEngine pooled = iterator.next();
+			if (TimeUnit.NANOSECONDS.toMillis(now - pooled.fCreatedNanos) >= fIdleTimeoutMillis
+					&& fIdleEngines.removeFirstOccurrence(pooled)) {
+				pooled.fEngine.terminate();
+			}
+		}
+	}
+
+	/**
+	 * Terminates all idle engines.
+	 */
+	private void terminateIdleEngines() {
+		PooledEngine pooled;
+		while ((pooled = fIdleEngines.pollFirst()) != null) {
+			pooled.fEngine.terminate();
+		}
+	}
+
+	/**
+	 * Stops refilling and terminates all idle engines. Acquired engines are
+	 * not affected.
+	 */
+	@Override
+	public void close() {
+		fClosed = true;
+		if (fExecutor != null) {
+			fExecutor.shutdownNow();
+		}
+		terminateIdleEngines();
+	}
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+
+import org.apache.commons.codec.digest.HmacAlgorithms;
+import org.apache.commons.codec.digest.HmacUtils;
+
+/**
+ * Signing engine creating and verifying HMAC signatures for Jupyter messages.
+ * <p>
+ * Initializing a {@link Mac} requires a provider lookup and a key schedule, so
+ * every thread keeps its own pre-keyed {@link Mac} together with reusable
+ * digest buffers. Instances can therefore be shared between all channels of a
+ * {@link Session} without any locking.
+ */
+public class HmacSigner {
+	/**
+	 * ASCII representation of hexadecimal digits used for encoding digests.
+	 */
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(Protocol.ENCODING);
+
+	/**
+	 * Thread confined state holding the pre-keyed {@link Mac} and buffers the
+	 * digest gets written to.
+	 */
+	private static class Engine {
+		/**
+		 * Pre-keyed {@link Mac}, automatically reset after every digest.
+		 */
+		private final Mac fMac;
+
+		/**
+		 * Buffer for the raw digest.
+		 */
+		private final byte[] fDigest;
+
+		/**
+		 * Buffer for the hex encoded digest.
+		 */
+		private final byte[] fHexDigest;
+
+		/**
+		 * Constructor initializes {@link Mac} and buffers.
+		 * 
+		 * @param algorithm
+		 *            HMAC algorithm to be used.
+		 * @param key
+		 *            HMAC key to be used.
+		 */
+		public Engine(final HmacAlgorithms algorithm, final byte[] key) {
+			fMac = HmacUtils.getInitializedMac(algorithm, key);
+			fDigest = new byte[fMac.getMacLength()];
+			fHexDigest = new byte[fDigest.length * 2];
+		}
+
+		/**
+		 * Finishes the current digest and writes its hex representation to
+		 * {@link #fHexDigest}.
+		 */
+		public void finish() {
+			try {
+				fMac.doFinal(fDigest, 0);
+			} catch (ShortBufferException e) {
+				// Cannot happen, buffer sized by getMacLength()
+				fMac.reset();
+				throw new IllegalStateException(e);
+			}
+
+			for (int i = 0; i < fDigest.length; i++) {
+				fHexDigest[2 * i] = HEX_DIGITS[(fDigest[i] >> 4) & 0x0f];
+				fHexDigest[2 * i + 1] = HEX_DIGITS[fDigest[i] & 0x0f];
+			}
+		}
+	}
+
+	/**
+	 * HMAC algorithm used for signing.
+	 */
+	private final HmacAlgorithms fAlgorithm;
+
+	/**
+	 * HMAC key used for signing.
+	 */
+	private final byte[] fKey;
+
+	/**
+	 * Per-thread {@link Engine} objects.
+	 */
+	private final ThreadLocal<Engine> fEngines = new ThreadLocal<Engine>() {
+		@Override
+		protected Engine initialValue() {
+			return new Engine(fAlgorithm, fKey);
+		}
+	};
+
+	/**
+	 * Constructor stores parameters to members.
+	 * <p>
+	 * Creates a first {@link Mac} so invalid keys or algorithms are detected
+	 * immediately rather than on first message.
+	 * 
+	 * @param key
+	 *            HMAC key to be used for signing messages.
+	 * @param algorithm
+	 *            HMAC algorithm to be used for signing messages.
+	 * @throws IllegalArgumentException
+	 *             If key cannot be used with given algorithm.
+	 */
+	public HmacSigner(final byte[] key, final HmacAlgorithms algorithm) {
+		fAlgorithm = algorithm;
+		fKey = key.clone();
+		fEngines.get();
+	}
+
+	/**
+	 * Returns the length of the hex encoded signatures created by this signer.
+	 * 
+	 * @return Length of signatures in bytes.
+	 */
+	public int getSignatureLength() {
+		return fEngines.get().fHexDigest.length;
+	}
+
+	/**
+	 * Creates the hex encoded signature for the given frames.
+	 * <p>
+	 * Returns a new array because the signature is handed to ZMQ which might
+	 * still hold a reference to it after sending.
+	 * 
+	 * @param frames
+	 *            Frames to be signed (in order).
+	 * @return Hex encoded signature.
+	 */
+	public byte[] sign(final List<byte[]> frames) {
+		final Engine engine = digest(frames);
+		return engine.fHexDigest.clone();
+	}
+
+	/**
+	 * Verifies that the given signature matches the given frames.
+	 * <p>
+	 * Comparison is done in constant time to not leak information about the
+	 * expected signature.
+	 * 
+	 * @param signature
+	 *            Hex encoded signature received with message.
+	 * @param frames
+	 *            Frames the signature was created for (in order).
+	 * @return <code>true</code> if signature is valid.
+	 */
+	public boolean verify(final byte[] signature, final List<byte[]> frames) {
+		final Engine engine = digest(frames);
+		return isEqual(engine.fHexDigest, signature);
+	}
+
+	/**
+	 * Overload of {@link #verify(byte[], List)} for frames stored in an array.
+	 * 
+	 * @param signature
+	 *            Hex encoded signature received with message.
+	 * @param frames
+	 *            Array containing the frames the signature was created for.
+	 * @param offset
+	 *            Index of first frame to be verified.
+	 * @param count
+	 *            Number of frames to be verified.
+	 * @return <code>true</code> if signature is valid.
+	 */
+	public boolean verify(final byte[] signature, final byte[][] frames, final int offset, final int count) {
+		final Engine engine = fEngines.get();
+		for (int i = offset; i < offset + count; i++) {
+			engine.fMac.update(frames[i]);
+		}
+		engine.finish();
+		return isEqual(engine.fHexDigest, signature);
+	}
+
+	/**
+	 * Feeds all frames to the thread's {@link Engine} and finishes the digest.
+	 * 
+	 * @param frames
+	 *            Frames to be digested.
+	 * @return {@link Engine} holding the digest in its buffers.
+	 */
+	private Engine digest(final List<byte[]> frames) {
+		final Engine engine = fEngines.get();
+		for (final byte[] frame : frames) {
+			engine.fMac.update(frame);
+		}
+		engine.finish();
+		return engine;
+	}
+
+	/**
+	 * Compares the given arrays in constant time.
+	 * 
+	 * @param expected
+	 *            Expected signature.
+	 * @param actual
+	 *            Received signature, might be <code>null</code>.
+	 * @return <code>true</code> if both arrays contain the same data.
+	 */
+	private static boolean isEqual(final byte[] expected, final byte[] actual) {
+		if (actual == null || actual.length != expected.length) {
+			return false;
+		}
+
+		int result = 0;
+		for (int i = 0; i < expected.length; i++) {
+			result |= expected[i] ^ actual[i];
+		}
+		return result == 0;
+	}
+}
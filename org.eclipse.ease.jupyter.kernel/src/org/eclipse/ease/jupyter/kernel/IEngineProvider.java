@@ -29,4 +29,37 @@ public interface IEngineProvider {
 	 * Resets the {@link IScriptEngine} provided by the object.
 	 */
 	public void resetEngine();
+
+	/**
+	 * Interrupts the execution started with {@link #startExecution()} that is
+	 * currently running on the {@link IScriptEngine} provided by the object.
+	 * The engine itself stays alive.
+	 */
+	public void interruptEngine();
+
+	/**
+	 * Marks the start of an execution on the {@link IScriptEngine}. Interrupts
+	 * requested until {@link #finishExecution(Object)} is called are
+	 * attributed to this execution only.
+	 * 
+	 * @return Token identifying the execution.
+	 */
+	public Object startExecution();
+
+	/**
+	 * Marks the end of the given execution, later interrupts do not affect it.
+	 * 
+	 * @param execution
+	 *            Token returned by {@link #startExecution()}.
+	 * @return <code>true</code> if an interrupt was requested while the
+	 *         execution was running.
+	 */
+	public boolean finishExecution(Object execution);
+
+	/**
+	 * Shuts down the object providing the {@link IScriptEngine}, e.g. on a
+	 * shutdown request. Must not block until shutdown completed, as it might
+	 * be called from a request handler.
+	 */
+	public void shutdown();
 }
@@ -12,32 +12,62 @@
 package org.eclipse.ease.jupyter.kernel;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.ease.jupyter.kernel.channels.ChannelOutputStream;
 import org.eclipse.ease.jupyter.kernel.channels.ChannelPrintStream;
+import org.eclipse.ease.jupyter.kernel.channels.ControlChannel;
 import org.eclipse.ease.jupyter.kernel.channels.HeartbeatChannel;
 import org.eclipse.ease.jupyter.kernel.channels.IOPubChannel;
+import org.eclipse.ease.jupyter.kernel.channels.Reactor;
 import org.eclipse.ease.jupyter.kernel.channels.ShellChannel;
 import org.eclipse.ease.jupyter.kernel.channels.StdinChannel;
+import org.eclipse.ease.jupyter.kernel.metrics.KernelMetrics;
 import org.eclipse.ease.service.EngineDescription;
-import org.eclipse.ease.IReplEngine;
 import org.eclipse.ease.IScriptEngine;
 import org.eclipse.ease.jupyter.kernel.Protocol;
 import org.eclipse.ease.jupyter.kernel.Session;
+import org.zeromq.ZMQ.Socket;
 
 /**
  * Jupyter kernel for EASE script engines.
  */
 public class Kernel implements IEngineProvider {
 	/**
-	 * {@link EngineDescription} to dynamically create {@link IScriptEngine}.
+	 * {@link EnginePool} to take scheduled {@link IScriptEngine} instances
+	 * from.
 	 */
-	private final EngineDescription fEngineDescription;
+	private final EnginePool fEnginePool;
+
+	/**
+	 * Flag to check if {@link #fEnginePool} was created by and needs to be
+	 * closed with this kernel.
+	 */
+	private final boolean fOwnsEnginePool;
 
 	/**
 	 * {@link IScriptEngine} to execute code on.
 	 */
-	protected IScriptEngine fEngine;
+	protected volatile IScriptEngine fEngine;
+
+	/**
+	 * Lock guarding {@link #fRunningExecution} and
+	 * {@link #fInterruptedExecution}.
+	 */
+	private final Object fExecutionLock = new Object();
+
+	/**
+	 * Execution currently running on {@link #fEngine}, <code>null</code> if
+	 * idle.
+	 */
+	private Object fRunningExecution;
+
+	/**
+	 * Execution the last interrupt was requested for.
+	 */
+	private Object fInterruptedExecution;
 
 	/**
 	 * Session used by kernel.
@@ -60,7 +90,7 @@ public class Kernel implements IEngineProvider {
 	 * Control channel used for incoming requests (same as {@link #fShell} but for
 	 * requests with higher priority.
 	 */
-	protected final ShellChannel fControl;
+	protected final ControlChannel fControl;
 
 	/**
 	 * STDIN channel used to query clients for user input.
@@ -72,6 +102,35 @@ public class Kernel implements IEngineProvider {
 	 */
 	protected final IOPubChannel fIoPub;
 
+	/**
+	 * {@link Reactor} multiplexing shell, control and stdin channels on a
+	 * single thread.
+	 */
+	protected final Reactor fReactor;
+
+	/**
+	 * {@link Reactor} echoing heartbeats on a dedicated thread, so heartbeats
+	 * are answered while {@link #fReactor} is busy handling requests.
+	 */
+	protected final Reactor fHeartbeatReactor;
+
+	/**
+	 * {@link RequestScheduler} running shell requests one after the other and
+	 * control requests with priority.
+	 */
+	protected final RequestScheduler fScheduler;
+
+	/**
+	 * Flag to check if kernel was already stopped.
+	 */
+	private final AtomicBoolean fStopped = new AtomicBoolean(false);
+
+	/**
+	 * Listener notified once the kernel is stopped, <code>null</code> if not
+	 * set.
+	 */
+	private volatile Runnable fStopListener;
+
 	/**
 	 * Constructor parses config and creates members accordingly.
 	 * 
@@ -83,37 +142,191 @@ public class Kernel implements IEngineProvider {
 	 *            {@link IScriptEngine}.
 	 */
 	public Kernel(final Config config, EngineDescription engineDescription) {
-		fEngineDescription = engineDescription;
+		this(config, new EnginePool(engineDescription, 0, 0), true,
+				new SharedZmqContext(SharedZmqContext.getDefaultIoThreads()));
+	}
 
-		// Create session
-		final Protocol protocol = new Protocol(config.getKey(), config.getSignatureScheme());
-		fSession = new Session(protocol, 3000, 16);
+	/**
+	 * Constructor parses config and creates members accordingly, engines are
+	 * taken from the given {@link EnginePool}.
+	 * 
+	 * @param config
+	 *            Config with information about ports to be used, signature
+	 *            algorithm, ...
+	 * @param enginePool
+	 *            {@link EnginePool} to take scheduled {@link IScriptEngine}
+	 *            instances from, not closed by kernel.
+	 */
+	public Kernel(final Config config, EnginePool enginePool) {
+		this(config, enginePool, new SharedZmqContext(SharedZmqContext.getDefaultIoThreads()));
+	}
 
-		// Create channels
-		fHeartBeat = new HeartbeatChannel(getChannelAddress(config.getHbPort(), config), fSession);
-		fIoPub = new IOPubChannel(getChannelAddress(config.getIopubPort(), config), fSession);
+	/**
+	 * Constructor parses config and creates members accordingly, engines are
+	 * taken from the given {@link EnginePool} and sockets are created in the
+	 * given shared ZMQ context.
+	 * 
+	 * @param config
+	 *            Config with information about ports to be used, signature
+	 *            algorithm, ...
+	 * @param enginePool
+	 *            {@link EnginePool} to take scheduled {@link IScriptEngine}
+	 *            instances from, not closed by kernel.
+	 * @param zmqContext
+	 *            {@link SharedZmqContext} shared with other kernels, released
+	 *            on {@link #stop()}.
+	 */
+	public Kernel(final Config config, EnginePool enginePool, SharedZmqContext zmqContext) {
+		this(config, enginePool, false, zmqContext);
+	}
 
-		// Setup engine here once minimal setup is available
-		setupEngine();
+	/**
+	 * Actual constructor parsing config and creating members. If construction
+	 * fails, the session, its sockets, the ZMQ context reference and the
+	 * engine acquired so far are released again.
+	 * 
+	 * @param config
+	 *            Config with information about ports to be used, signature
+	 *            algorithm, ...
+	 * @param enginePool
+	 *            {@link EnginePool} to take scheduled {@link IScriptEngine}
+	 *            instances from.
+	 * @param ownsEnginePool
+	 *            Flag to signalize that pool needs to be closed on
+	 *            {@link #stop()}.
+	 * @param zmqContext
+	 *            {@link SharedZmqContext} to create sockets in.
+	 */
+	private Kernel(final Config config, EnginePool enginePool, boolean ownsEnginePool,
+			SharedZmqContext zmqContext) {
+		fEnginePool = enginePool;
+		fOwnsEnginePool = ownsEnginePool;
+
+		Session session = null;
+		try {
+			// Parse transport and socket tuning first so invalid settings do
+			// not leak a session
+			final String heartbeatAddress = getChannelAddress(config.getHbPort(), config);
+			final Map<String, SocketOptions> socketOptions = SocketOptions.fromConfig(config);
+
+			// Create session
+			final Protocol protocol = new Protocol(config.getKey(), config.getSignatureScheme());
+			session = new Session(protocol, 3000, zmqContext);
+			fSession = session;
+			for (Entry<String, SocketOptions> options : socketOptions.entrySet()) {
+				fSession.setSocketOptions(options.getKey(), options.getValue());
+			}
+
+			// Create channels
+			fHeartBeat = new HeartbeatChannel(heartbeatAddress, fSession);
+			fIoPub = new IOPubChannel(getChannelAddress(config.getIopubPort(), config), fSession);
+
+			// Setup engine here once minimal setup is available
+			setupEngine();
+
+			// Create rest of the channels that rely on script engine
+			fStdin = new StdinChannel(getChannelAddress(config.getStdinPort(), config), fSession);
+			fScheduler = new RequestScheduler(RequestScheduler.DEFAULT_SHELL_QUEUE_CAPACITY);
+			fShell = new ShellChannel(getChannelAddress(config.getShellPort(), config), fSession, this, fIoPub,
+					fScheduler);
+			fControl = new ControlChannel(getChannelAddress(config.getControlPort(), config), fSession, this,
+					fIoPub, fScheduler);
+
+			// Echo heartbeats independently of request handling
+			fHeartbeatReactor = new Reactor(fSession);
+			fHeartbeatReactor.register(fHeartBeat);
+
+			// Multiplex all request channels on a single reactor
+			fReactor = new Reactor(fSession);
+			fReactor.register(fControl);
+			fReactor.register(fShell);
+			fReactor.register(fStdin);
 
-		// Create rest of the channels that rely on script engine
-		fStdin = new StdinChannel(getChannelAddress(config.getStdinPort(), config), fSession);
-		fShell = new ShellChannel(getChannelAddress(config.getShellPort(), config), fSession, this, fIoPub);
-		fControl = new ShellChannel(getChannelAddress(config.getControlPort(), config), fSession, this, fIoPub);
+		} catch (RuntimeException | Error e) {
+			// Release everything acquired so far, closing the session closes
+			// all its sockets and releases the ZMQ context
+			if (fEngine != null) {
+				fEngine.terminate();
+			}
+			if (session != null) {
+				try {
+					session.close();
+				} catch (IOException closeException) {
+					// ignore
+				}
+			}
+			if (ownsEnginePool) {
+				enginePool.close();
+			}
+			throw e;
+		}
+
+		// Resume reading shell requests once the queue has capacity again
+		fScheduler.setCapacityListener(new Runnable() {
+			@Override
+			public void run() {
+				fReactor.wakeUp();
+			}
+		});
 	}
 
 	/**
 	 * Utility method parsing config for transport and IP and creating channel
 	 * address based on given port.
+	 * <p>
+	 * Supported transports are:
+	 * <ul>
+	 * <li><code>tcp</code>: address <code>tcp://ip:port</code>.</li>
+	 * <li><code>ipc</code>: Jupyter uses the IP as path prefix, address
+	 * <code>ipc://ip-port</code>. Note that jeromq maps IPC endpoints to a
+	 * loopback TCP port derived from the endpoint name, so only clients using
+	 * jeromq can connect.</li>
+	 * <li><code>inproc</code>: address <code>inproc://ip-port</code> for clients
+	 * in the same JVM. Messages are passed without copying, but clients need to
+	 * create their sockets in the kernel's ZMQ context, see
+	 * {@link #createSocket(int)} and {@link Dispatcher#getZmqContext()}.</li>
+	 * </ul>
 	 * 
 	 * @param channelPort
 	 *            Port to be used by channel address.
 	 * @param config
 	 *            Config with information about transport and IP to be used.
 	 * @return Channel address for given port.
+	 * @throws IllegalArgumentException
+	 *             If transport is not supported.
+	 */
+	public static String getChannelAddress(final Integer channelPort, Config config) {
+		switch (config.getTransport()) {
+		case "tcp":
+			return String.format("tcp://%s:%d", config.getIp(), channelPort);
+		case "ipc":
+		case "inproc":
+			return String.format("%s://%s-%d", config.getTransport(), config.getIp(), channelPort);
+		default:
+			throw new IllegalArgumentException("Unsupported transport: " + config.getTransport());
+		}
+	}
+
+	/**
+	 * Creates a socket in the ZMQ context of this kernel, e.g. for clients in
+	 * the same JVM connecting via <code>inproc</code> transport. The socket is
+	 * closed once the kernel is stopped.
+	 * 
+	 * @param type
+	 *            ZMQ socket type.
+	 * @return New ZMQ {@link Socket}.
 	 */
-	private static String getChannelAddress(final Integer channelPort, Config config) {
-		return String.format("%s://%s:%d", config.getTransport(), config.getIp(), channelPort);
+	public Socket createSocket(final int type) {
+		return fSession.createSocket(type);
+	}
+
+	/**
+	 * Returns the latency and throughput metrics of this kernel.
+	 * 
+	 * @return {@link KernelMetrics} of kernel.
+	 */
+	public KernelMetrics getMetrics() {
+		return fSession.getMetrics();
 	}
 
 	@Override
@@ -121,21 +334,67 @@ public class Kernel implements IEngineProvider {
 		return fEngine;
 	}
 
+	/**
+	 * Discards all queued shell requests and replaces the engine.
+	 */
 	@Override
 	public void resetEngine() {
+		fScheduler.clearShellQueue();
 		setupEngine();
 	}
 
 	/**
-	 * Sets internal {@link IScriptEngine} based on given
-	 * {@link #fEngineDescription}.
+	 * Terminates the code currently running on the engine. Engine state and
+	 * loaded modules are kept, queued shell requests are still executed. Does
+	 * nothing if no execution is running.
 	 */
-	private void setupEngine() {
-		// Create and setup new script engine
-		IScriptEngine engine = fEngineDescription.createEngine();
-		if (engine instanceof IReplEngine) {
-			((IReplEngine) engine).setTerminateOnIdle(false);
+	@Override
+	public void interruptEngine() {
+		synchronized (fExecutionLock) {
+			if (fRunningExecution == null) {
+				return;
+			}
+			fInterruptedExecution = fRunningExecution;
+		}
+		fEngine.terminateCurrent();
+	}
+
+	@Override
+	public Object startExecution() {
+		final Object execution = new Object();
+		synchronized (fExecutionLock) {
+			fRunningExecution = execution;
 		}
+		return execution;
+	}
+
+	@Override
+	public boolean finishExecution(Object execution) {
+		synchronized (fExecutionLock) {
+			if (fRunningExecution == execution) {
+				fRunningExecution = null;
+			}
+			return fInterruptedExecution == execution;
+		}
+	}
+
+	/**
+	 * Stops the kernel.
+	 * 
+	 * @see #stop()
+	 */
+	@Override
+	public void shutdown() {
+		stop();
+	}
+
+	/**
+	 * Sets internal {@link IScriptEngine} to a scheduled engine taken from
+	 * {@link #fEnginePool}.
+	 */
+	private void setupEngine() {
+		// Take already scheduled engine and redirect its streams
+		IScriptEngine engine = fEnginePool.acquire();
 		engine.setOutputStream(new ChannelPrintStream(new ChannelOutputStream("stdout", fIoPub)));
 		engine.setErrorStream(new ChannelPrintStream(new ChannelOutputStream("stderr", fIoPub)));
 
@@ -151,23 +410,75 @@ public class Kernel implements IEngineProvider {
 	}
 
 	/**
-	 * Starts the kernel by starting all channels and the script engine.
+	 * Sets the listener notified once the kernel is stopped, e.g. by a
+	 * shutdown request. The listener is called on the stopping thread.
+	 * 
+	 * @param listener
+	 *            Listener to be notified, <code>null</code> to remove.
 	 */
-	public void start() {
-		// Start script engine
-		fEngine.schedule();
+	public void setStopListener(final Runnable listener) {
+		fStopListener = listener;
+	}
+
+	/**
+	 * Checks if the kernel was stopped.
+	 * 
+	 * @return <code>true</code> if {@link #stop()} was called.
+	 */
+	public boolean isStopped() {
+		return fStopped.get();
+	}
 
+	/**
+	 * Starts the kernel by starting all channels, the script engine is already
+	 * running.
+	 */
+	public void start() {
 		// Start all sockets
 		fHeartBeat.start();
 		fControl.start();
 		fShell.start();
 		fIoPub.start();
+		fScheduler.start();
+		fHeartbeatReactor.start();
+		fReactor.start();
+
+		// Expose metrics over JMX
+		getMetrics().register(fShell.getAddress());
 	}
 
 	/**
 	 * Stops the kernel by stopping all channels and the script engine.
+	 * <p>
+	 * If called from the {@link Reactor} thread or a {@link RequestScheduler}
+	 * worker (e.g. by a shutdown request on the control channel) the kernel is
+	 * stopped asynchronously, as the reactor and workers need to finish before
+	 * the session can be closed.
+	 * <p>
+	 * Sockets are closed with their linger period, so stopping takes at most
+	 * about that long. Calling this method more than once has no effect.
 	 */
 	public void stop() {
+		if (fReactor.isReactorThread() || fScheduler.isWorkerThread()) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					stop();
+				}
+			}).start();
+			return;
+		}
+		if (!fStopped.compareAndSet(false, true)) {
+			return;
+		}
+
+		getMetrics().unregister();
+
+		// Stop reactor, sends all pending replies
+		fReactor.stop();
+		fHeartbeatReactor.stop();
+		fScheduler.stop();
+
 		// Stop all sockets
 		fHeartBeat.stop();
 		fControl.stop();
@@ -183,5 +494,14 @@ public class Kernel implements IEngineProvider {
 
 		// Stop the script engine
 		fEngine.terminate();
+		if (fOwnsEnginePool) {
+			fEnginePool.close();
+		}
+
+		// Notify owner, e.g. to close launcher connection
+		final Runnable listener = fStopListener;
+		if (listener != null) {
+			listener.run();
+		}
 	}
 }
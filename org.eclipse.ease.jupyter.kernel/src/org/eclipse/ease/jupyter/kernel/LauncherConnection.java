@@ -0,0 +1,363 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking connection to a kernel launcher using length-prefixed frames.
+ * <p>
+ * Every frame consists of a 4 byte big-endian payload length followed by the
+ * payload. The launcher sends Jupyter connection files as payload, several
+ * frames may be pipelined over one connection. For every connection file the
+ * dispatcher answers with an acknowledgement frame, its payload is a single
+ * status byte ({@link #ACK_OK} or {@link #ACK_ERROR}) followed by a UTF-8
+ * message.
+ * <p>
+ * Launchers built before framing was introduced send the plain connection
+ * file and expect no answer, any received byte makes them exit. A frame
+ * starting with <code>{</code> (which would be an invalid length) is therefore
+ * read as such an unframed JSON object. Successful acknowledgements are not
+ * sent on these connections, failures close the connection instead.
+ * <p>
+ * Reading and writing is done by the selector thread only, acknowledgements
+ * may be queued from any thread.
+ * <p>
+ * Kernels acknowledged for connection files received over this connection
+ * are owned by it, launchers sending the same connection file share the
+ * kernel. Jupyter treats the launcher process as the kernel, so a kernel is
+ * stopped once all connections owning it are closed.
+ */
+public class LauncherConnection {
+	/**
+	 * Size of the length prefix of every frame.
+	 */
+	public static final int HEADER_SIZE = 4;
+
+	/**
+	 * Maximum payload size accepted, connection files are usually about 300
+	 * bytes.
+	 */
+	public static final int MAX_FRAME_SIZE = 1024 * 1024;
+
+	/**
+	 * Status byte of acknowledgement if kernel was started.
+	 */
+	public static final byte ACK_OK = 0;
+
+	/**
+	 * Status byte of acknowledgement if kernel could not be started.
+	 */
+	public static final byte ACK_ERROR = 1;
+
+	/**
+	 * Initial size of the accumulation buffer.
+	 */
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	/**
+	 * Channel to launcher.
+	 */
+	private final ByteChannel fChannel;
+
+	/**
+	 * Buffer accumulating received data until frames are complete, always in
+	 * write mode.
+	 */
+	private ByteBuffer fReadBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+	/**
+	 * Encoded frames waiting to be written.
+	 */
+	private final Queue<ByteBuffer> fWriteQueue = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Kernels owned by this connection, <code>null</code> once closed.
+	 */
+	private List<Kernel> fKernels = new ArrayList<>();
+
+	/**
+	 * Flag to signalize that an unframed connection file was received from an
+	 * old launcher.
+	 */
+	private volatile boolean fUnframed = false;
+
+	/**
+	 * Flag to signalize that the connection should be closed once all queued
+	 * frames were written.
+	 */
+	private volatile boolean fCloseRequested = false;
+
+	/**
+	 * Constructor only stores parameters to members.
+	 *
+	 * @param channel
+	 *            Non-blocking channel to launcher.
+	 */
+	public LauncherConnection(ByteChannel channel) {
+		fChannel = channel;
+	}
+
+	/**
+	 * Getter for channel to launcher.
+	 *
+	 * @return Channel to launcher.
+	 */
+	public ByteChannel getChannel() {
+		return fChannel;
+	}
+
+	/**
+	 * Adds a kernel owned by this connection.
+	 *
+	 * @param kernel
+	 *            Kernel started for this connection.
+	 * @return <code>false</code> if connection is already closed, the kernel
+	 *         then needs to be stopped by the caller.
+	 */
+	public synchronized boolean addKernel(Kernel kernel) {
+		if (fKernels == null) {
+			return false;
+		}
+		fKernels.add(kernel);
+		return true;
+	}
+
+	/**
+	 * Removes a kernel no longer owned by this connection, e.g. because it
+	 * was stopped by a shutdown request.
+	 *
+	 * @param kernel
+	 *            Kernel to be removed.
+	 * @return <code>true</code> if no other kernels are owned by this
+	 *         connection.
+	 */
+	public synchronized boolean removeKernel(Kernel kernel) {
+		if (fKernels == null) {
+			return true;
+		}
+		fKernels.remove(kernel);
+		return fKernels.isEmpty();
+	}
+
+	/**
+	 * Marks the connection as closed and returns all owned kernels. Kernels
+	 * added afterwards are rejected.
+	 *
+	 * @return Kernels to be stopped, empty if already closed.
+	 */
+	public synchronized List<Kernel> close() {
+		final List<Kernel> kernels = fKernels;
+		fKernels = null;
+		return kernels != null ? kernels : new ArrayList<Kernel>();
+	}
+
+	/**
+	 * Reads all available data and extracts the payloads of complete frames.
+	 * Incomplete frames are kept until more data is available.
+	 *
+	 * @return Payloads of all complete frames, <code>null</code> if
+	 *         connection was closed by launcher.
+	 * @throws IOException
+	 *             If data could not be read or frame is too large.
+	 */
+	public List<byte[]> read() throws IOException {
+		boolean closed = false;
+		while (true) {
+			if (!fReadBuffer.hasRemaining()) {
+				// Handle buffered frames first, selector reports remaining data
+				if (fReadBuffer.capacity() >= HEADER_SIZE + MAX_FRAME_SIZE) {
+					break;
+				}
+				fReadBuffer = grow(fReadBuffer, fReadBuffer.capacity() * 2);
+			}
+			int bytesRead = fChannel.read(fReadBuffer);
+			if (bytesRead < 0) {
+				closed = true;
+				break;
+			} else if (bytesRead == 0) {
+				break;
+			}
+		}
+
+		// Extract all complete frames
+		List<byte[]> payloads = new ArrayList<>();
+		fReadBuffer.flip();
+		try {
+			while (fReadBuffer.hasRemaining()) {
+				if (fReadBuffer.get(fReadBuffer.position()) == '{') {
+					// Old launcher sending plain connection file
+					int length = getObjectLength(fReadBuffer);
+					if (length < 0) {
+						if (fReadBuffer.remaining() >= MAX_FRAME_SIZE) {
+							throw new IOException("Unframed connection file too large");
+						}
+						break;
+					}
+
+					fUnframed = true;
+					byte[] payload = new byte[length];
+					fReadBuffer.get(payload);
+					payloads.add(payload);
+					continue;
+				}
+
+				if (fReadBuffer.remaining() < HEADER_SIZE) {
+					break;
+				}
+				int length = fReadBuffer.getInt(fReadBuffer.position());
+				if (length < 0 || length > MAX_FRAME_SIZE) {
+					throw new IOException("Invalid frame length " + length);
+				}
+				if (fReadBuffer.remaining() < HEADER_SIZE + length) {
+					// Make sure the frame fits once complete
+					if (fReadBuffer.capacity() < HEADER_SIZE + length) {
+						fReadBuffer = grow(fReadBuffer.compact(), HEADER_SIZE + length);
+						fReadBuffer.flip();
+					}
+					break;
+				}
+
+				byte[] payload = new byte[length];
+				fReadBuffer.position(fReadBuffer.position() + HEADER_SIZE);
+				fReadBuffer.get(payload);
+				payloads.add(payload);
+			}
+		} finally {
+			fReadBuffer.compact();
+		}
+
+		// Frames received before closing are still handled
+		if (closed && payloads.isEmpty()) {
+			return null;
+		}
+		return payloads;
+	}
+
+	/**
+	 * Scans an unframed JSON object starting at the position of the given
+	 * buffer. Braces in strings are ignored.
+	 *
+	 * @param buffer
+	 *            Buffer in read mode positioned at the opening brace.
+	 * @return Length of the object including both braces, <code>-1</code> if
+	 *         the object is not complete yet.
+	 */
+	private static int getObjectLength(ByteBuffer buffer) {
+		int depth = 0;
+		boolean inString = false;
+		boolean escaped = false;
+		for (int index = buffer.position(); index < buffer.limit(); index++) {
+			byte value = buffer.get(index);
+			if (inString) {
+				// Multi-byte UTF-8 sequences never contain ASCII bytes
+				if (escaped) {
+					escaped = false;
+				} else if (value == '\\') {
+					escaped = true;
+				} else if (value == '"') {
+					inString = false;
+				}
+			} else if (value == '"') {
+				inString = true;
+			} else if (value == '{') {
+				depth++;
+			} else if (value == '}') {
+				depth--;
+				if (depth == 0) {
+					return index - buffer.position() + 1;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Copies the given buffer in write mode to a larger one.
+	 *
+	 * @param buffer
+	 *            Buffer in write mode.
+	 * @param capacity
+	 *            Minimum capacity of new buffer.
+	 * @return New buffer in write mode with same content.
+	 */
+	private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+		ByteBuffer grown = ByteBuffer.allocate(Math.max(capacity, buffer.capacity()));
+		buffer.flip();
+		grown.put(buffer);
+		return grown;
+	}
+
+	/**
+	 * Queues an acknowledgement frame, call {@link #flush()} on the selector
+	 * thread to actually send it.
+	 *
+	 * @param status
+	 *            Either {@link #ACK_OK} or {@link #ACK_ERROR}.
+	 * @param message
+	 *            Additional information, e.g. the error message.
+	 */
+	public void queueAck(byte status, String message) {
+		// Old launchers do not understand acknowledgements
+		if (fUnframed) {
+			if (status != ACK_OK) {
+				fCloseRequested = true;
+			}
+			return;
+		}
+
+		byte[] text = (message == null ? "" : message).getBytes(StandardCharsets.UTF_8);
+		ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + 1 + text.length);
+		frame.putInt(1 + text.length);
+		frame.put(status);
+		frame.put(text);
+		frame.flip();
+		fWriteQueue.add(frame);
+	}
+
+	/**
+	 * Checks if the connection should be closed once all queued frames were
+	 * written, e.g. because a kernel requested by an old launcher could not be
+	 * started.
+	 *
+	 * @return <code>true</code> if connection should be closed.
+	 */
+	public boolean isCloseRequested() {
+		return fCloseRequested;
+	}
+
+	/**
+	 * Writes as many queued frames as possible without blocking.
+	 *
+	 * @return <code>true</code> if all queued frames were written.
+	 * @throws IOException
+	 *             If data could not be written.
+	 */
+	public boolean flush() throws IOException {
+		ByteBuffer frame;
+		while ((frame = fWriteQueue.peek()) != null) {
+			fChannel.write(frame);
+			if (frame.hasRemaining()) {
+				return false;
+			}
+			fWriteQueue.poll();
+		}
+		return true;
+	}
+}
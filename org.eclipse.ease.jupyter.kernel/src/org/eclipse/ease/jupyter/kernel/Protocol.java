@@ -12,25 +12,22 @@
 
 package org.eclipse.ease.jupyter.kernel;
 
-import com.fasterxml.jackson.core.JsonEncoding;
-
-import org.apache.commons.codec.digest.HmacUtils;
-
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import javax.crypto.Mac;
-
-import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.HmacAlgorithms;
 import org.eclipse.ease.jupyter.kernel.messages.Header;
 import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.eclipse.ease.jupyter.kernel.metrics.KernelMetrics;
+import org.zeromq.ZFrame;
+import org.zeromq.ZMsg;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
@@ -75,14 +72,37 @@ public class Protocol {
 	private static final byte[] EMPTY_SIGNATURE = new byte[0];
 
 	/**
-	 * HMAC key to be used for signing messages.
+	 * Number of JSON frames (header, parent header, metadata, content).
+	 */
+	private static final int JSON_FRAME_COUNT = 4;
+
+	/**
+	 * Initial size of the per-thread serialization buffer.
+	 */
+	private static final int SERIALIZATION_BUFFER_SIZE = 4096;
+
+	/**
+	 * Per-thread buffer JSON frames are serialized to. Reused for all messages
+	 * so only the final frame array needs to be allocated.
 	 */
-	private final byte[] fHmacKey;
+	private static final ThreadLocal<ByteArrayBuilder> SERIALIZATION_BUFFER = new ThreadLocal<ByteArrayBuilder>() {
+		@Override
+		protected ByteArrayBuilder initialValue() {
+			return new ByteArrayBuilder(SERIALIZATION_BUFFER_SIZE);
+		}
+	};
+
+	/**
+	 * {@link HmacSigner} to sign and verify messages, <code>null</code> if
+	 * messages are not signed.
+	 */
+	private final HmacSigner fSigner;
 
 	/**
-	 * HMAC algorithm to be used for signing messages.
+	 * {@link KernelMetrics} to record serialization and signing times to,
+	 * <code>null</code> if not recorded.
 	 */
-	private final HmacAlgorithms fHmacAlgorithm;
+	private volatile KernelMetrics fMetrics;
 
 	/**
 	 * Default constructor for protocol without message signatures.
@@ -100,8 +120,7 @@ public class Protocol {
 	 *            HMAC algorithm to be used for signing messages.
 	 */
 	public Protocol(final byte[] hmacKey, final HmacAlgorithms hmacAlgorithm) {
-		this.fHmacAlgorithm = hmacAlgorithm;
-		this.fHmacKey = hmacKey;
+		this.fSigner = hmacKey != null && hmacAlgorithm != null ? new HmacSigner(hmacKey, hmacAlgorithm) : null;
 	}
 
 	/**
@@ -160,7 +179,19 @@ public class Protocol {
 	 * @return <code>true</code> if messages are being signed.
 	 */
 	public boolean isSigning() {
-		return fHmacKey != null && fHmacAlgorithm != null;
+		return fSigner != null;
+	}
+
+	/**
+	 * Sets the {@link KernelMetrics} to record serialization and signing
+	 * times to.
+	 * 
+	 * @param metrics
+	 *            {@link KernelMetrics} to record to, <code>null</code> to stop
+	 *            recording.
+	 */
+	public void setMetrics(final KernelMetrics metrics) {
+		fMetrics = metrics;
 	}
 
 	/**
@@ -177,22 +208,56 @@ public class Protocol {
 		// Patch the header for the given message
 		message.getHeader().setVersion(VERSION);
 
-		// Split the data into json frames according to the wire protocol
-		final List<byte[]> jsonFrames = Arrays.asList(JSON_OBJECT_MAPPER.writeValueAsBytes(message.getHeader()),
-				JSON_OBJECT_MAPPER.writeValueAsBytes(message.getParentHeader()),
-				JSON_OBJECT_MAPPER.writeValueAsBytes(message.getMetadata()),
-				JSON_OBJECT_MAPPER.writeValueAsBytes(message.getContent()));
-
-		// Create the actual ZMQ message
-		final List<byte[]> frames = new ArrayList<byte[]>();
-		frames.addAll(message.getZmqIdentities());
+		// Create the actual ZMQ message with exact size
+		final List<byte[]> identities = message.getZmqIdentities();
+		final List<byte[]> extraData = message.getExtraData();
+		final List<byte[]> frames = new ArrayList<byte[]>(
+				identities.size() + 2 + JSON_FRAME_COUNT + extraData.size());
+		frames.addAll(identities);
 		frames.add(DELIMITER_BYTES);
-		frames.add(signature(jsonFrames));
-		frames.addAll(jsonFrames);
-		frames.addAll(message.getExtraData());
+
+		// Reserve slot for signature, calculated once JSON frames are available
+		final int signatureIndex = frames.size();
+		frames.add(EMPTY_SIGNATURE);
+
+		// Serialize the data into json frames according to the wire protocol
+		final long start = System.nanoTime();
+		frames.add(serialize(message.getHeader()));
+		frames.add(serialize(message.getParentHeader()));
+		frames.add(serialize(message.getMetadata()));
+		frames.add(serialize(message.getContent()));
+		final long serialized = System.nanoTime();
+
+		// Sign the frames in place
+		frames.set(signatureIndex, signature(frames.subList(signatureIndex + 1, signatureIndex + 1 + JSON_FRAME_COUNT)));
+
+		final KernelMetrics metrics = fMetrics;
+		if (metrics != null) {
+			metrics.getSerializeTime().record(serialized - start);
+			metrics.getSignTime().record(System.nanoTime() - serialized);
+		}
+
+		frames.addAll(extraData);
 		return frames;
 	}
 
+	/**
+	 * Serializes the given object to a JSON frame using the per-thread
+	 * serialization buffer.
+	 * 
+	 * @param value
+	 *            Object to be serialized.
+	 * @return JSON frame for given object.
+	 * @throws IOException
+	 *             If object could not be serialized.
+	 */
+	private static byte[] serialize(final Object value) throws IOException {
+		final ByteArrayBuilder buffer = SERIALIZATION_BUFFER.get();
+		buffer.reset();
+		JSON_OBJECT_MAPPER.writeValue(buffer, value);
+		return buffer.toByteArray();
+	}
+
 	/**
 	 * Creates the signature for the JSON frames to be send over ZMQ socket.
 	 * 
@@ -204,85 +269,40 @@ public class Protocol {
 		if (!isSigning()) {
 			return EMPTY_SIGNATURE;
 		}
-		final Mac mac = HmacUtils.getInitializedMac(fHmacAlgorithm, fHmacKey);
-		for (final byte[] jsonFrame : jsonFrames) {
-			mac.update(jsonFrame);
+		return fSigner.sign(jsonFrames);
+	}
+
+	/**
+	 * Verifies the signature for JSON frames received over ZMQ socket.
+	 * 
+	 * @param signature
+	 *            Signature received with the message.
+	 * @param frames
+	 *            Array containing the data the signature was created for.
+	 * @param offset
+	 *            Index of first JSON frame.
+	 * @return <code>true</code> if signature is valid.
+	 */
+	private boolean verify(final byte[] signature, final byte[][] frames, final int offset) {
+		if (!isSigning()) {
+			return signature.length == 0;
 		}
-		return Hex.encodeHexString(mac.doFinal()).getBytes(ENCODING);
+		return fSigner.verify(signature, frames, offset, JSON_FRAME_COUNT);
 	}
 
 	/**
-	 * FIXME: Bit of a hack.
-	 *
-	 * Utility pseudo-command pattern to parse given byte[] to corresponding
-	 * fields in {@link Message} object.
+	 * Parses the given metadata frame to a dictionary.
+	 * 
+	 * @param frame
+	 *            JSON encoded metadata.
+	 * @return Metadata dictionary.
+	 * @throws IOException
+	 *             If frame is not a valid JSON object.
 	 */
 	@SuppressWarnings("unchecked")
-	private enum FrameHandler {
-		ZMQ_ID {
-			@Override
-			boolean handle(final byte[] frame, final List<byte[]> jsonFrames, final Message message) {
-				if (Arrays.equals(frame, DELIMITER_BYTES)) {
-					return true;
-				} else {
-					message.withZmqIdentity(frame);
-					return false;
-				}
-			}
-		},
-		HMAC_SIGNATURE {
-			@Override
-			boolean handle(final byte[] frame, final List<byte[]> jsonFrames, final Message message) {
-				message.withHmacSignature(frame);
-				return true;
-			}
-		},
-		HEADER {
-			@Override
-			boolean handle(final byte[] frame, final List<byte[]> jsonFrames, final Message message)
-					throws IOException {
-				jsonFrames.add(frame);
-				message.withHeader(JSON_OBJECT_MAPPER.readValue(frame, Header.class));
-				return true;
-			}
-		},
-		PARENT_HEADER {
-			@Override
-			boolean handle(final byte[] frame, final List<byte[]> jsonFrames, final Message message)
-					throws IOException {
-				jsonFrames.add(frame);
-				message.withParentHeader(JSON_OBJECT_MAPPER.readValue(frame, Header.class));
-				return true;
-			}
-		},
-		METADATA {
-			@Override
-			boolean handle(final byte[] frame, final List<byte[]> jsonFrames, final Message message)
-					throws IOException {
-				jsonFrames.add(frame);
-				message.withMetadata(JSON_OBJECT_MAPPER.readValue(frame, Map.class));
-				return true;
-			}
-		},
-		CONTENT {
-			@Override
-			boolean handle(final byte[] frame, final List<byte[]> jsonFrames, final Message message)
-					throws IOException {
-				jsonFrames.add(frame);
-				message.withContent(JSON_OBJECT_MAPPER.readValue(frame, Map.class));
-				return true;
-			}
-		},
-		EXTRA_DATA {
-			@Override
-			boolean handle(final byte[] frame, final List<byte[]> jsonFrames, final Message message) {
-				message.withExtraDatum(frame);
-				return false;
-			}
-		};
-
-		abstract boolean handle(byte[] frame, final List<byte[]> jsonFrames, Message message) throws IOException;
-	};
+	private static Map<String, Object> parseMetadata(final byte[] frame) throws IOException {
+		return JSON_OBJECT_MAPPER.readValue(frame, Map.class);
+	}
 
 	/**
 	 * Creates new {@link Message} object based on given bytes received from ZMQ
@@ -294,33 +314,112 @@ public class Protocol {
 	 * @throws IOException
 	 *             If message contains invalid data.
 	 */
-	public Message fromFrames(List<byte[]> frames) throws IOException {
-		// Intialize empty message
-		final Message message = new Message();
-
-		// Get iterator for all frames in message
-		final List<byte[]> jsonFrames = new ArrayList<byte[]>();
-		final Iterator<FrameHandler> i = Arrays.asList(FrameHandler.values()).iterator();
-
-		// Handle frames one at a time
-		FrameHandler handler = i.next();
-		for (final byte[] frame : frames) {
-			if (handler.handle(frame, jsonFrames, message)) {
-				handler = i.next();
-			}
+	public Message fromFrames(final List<byte[]> frames) throws IOException {
+		return fromFrames(frames.toArray(new byte[frames.size()][]), frames.size());
+	}
+
+	/**
+	 * Creates new {@link Message} object based on given {@link ZMsg} received
+	 * from ZMQ socket.
+	 * 
+	 * @param zmqMessage
+	 *            Message received from ZMQ socket.
+	 * @return {@link Message} based on received data.
+	 * @throws IOException
+	 *             If message contains invalid data.
+	 */
+	public Message fromFrames(final ZMsg zmqMessage) throws IOException {
+		final byte[][] frames = new byte[zmqMessage.size()][];
+		int count = 0;
+		for (final ZFrame frame : zmqMessage) {
+			frames[count++] = frame.getData();
 		}
+		return fromFrames(frames, count);
+	}
 
-		// Check if all frames successfully handled
-		if (handler != FrameHandler.EXTRA_DATA) {
-			throw new IOException("Not enough frames received, last frame: " + handler);
+	/**
+	 * Creates new {@link Message} object based on given bytes received from ZMQ
+	 * socket.
+	 * <p>
+	 * Frames are parsed in a single pass: the delimiter is located by index and
+	 * all other frames are sliced relative to it. Malformed messages are
+	 * rejected before any JSON data is parsed.
+	 * 
+	 * @param frames
+	 *            Array containing data received from ZMQ socket, might be
+	 *            larger than the actual message.
+	 * @param count
+	 *            Number of valid frames in array.
+	 * @return {@link Message} based on received data.
+	 * @throws IOException
+	 *             If message contains invalid data.
+	 */
+	public Message fromFrames(final byte[][] frames, final int count) throws IOException {
+		// Find delimiter separating ZMQ identities from actual message
+		final int delimiter = indexOfDelimiter(frames, count);
+		if (delimiter < 0) {
+			throw new IOException("No delimiter found in received message");
+		}
+
+		// Check that signature and all JSON frames are available
+		final int signatureIndex = delimiter + 1;
+		final int jsonIndex = signatureIndex + 1;
+		final int extraDataIndex = jsonIndex + JSON_FRAME_COUNT;
+		if (extraDataIndex > count) {
+			throw new IOException("Not enough frames received: " + count);
 		}
 
-		// Check if signature correct.
-		if (!Arrays.equals(message.getHmacSignature(), signature(jsonFrames))) {
+		// Check if signature correct before parsing any JSON data
+		final long start = System.nanoTime();
+		final byte[] signature = frames[signatureIndex];
+		if (!verify(signature, frames, jsonIndex)) {
 			throw new IOException("Invalid HMAC signature in received message");
 		}
+		final long verified = System.nanoTime();
+
+		// Create message from slices
+		final Message message = new Message().withHmacSignature(signature);
+		for (int i = 0; i < delimiter; i++) {
+			message.withZmqIdentity(frames[i]);
+		}
+
+		// Parse JSON frames, content is only parsed once requested by handler
+		message.withHeader(JSON_OBJECT_MAPPER.readValue(frames[jsonIndex], Header.class));
+		message.withParentHeader(JSON_OBJECT_MAPPER.readValue(frames[jsonIndex + 1], Header.class));
+		message.withMetadata(parseMetadata(frames[jsonIndex + 2]));
+		message.withRawContent(frames[jsonIndex + 3]);
+
+		for (int i = extraDataIndex; i < count; i++) {
+			message.withExtraDatum(frames[i]);
+		}
+
+		final KernelMetrics metrics = fMetrics;
+		if (metrics != null) {
+			metrics.getVerifyTime().record(verified - start);
+			metrics.getParseTime().record(System.nanoTime() - verified);
+		}
 
 		// Actually return message
 		return message;
 	}
+
+	/**
+	 * Finds the index of the {@link #DELIMITER} frame.
+	 * 
+	 * @param frames
+	 *            Array containing data received from ZMQ socket.
+	 * @param count
+	 *            Number of valid frames in array.
+	 * @return Index of delimiter frame or <code>-1</code> if not found.
+	 */
+	private static int indexOfDelimiter(final byte[][] frames, final int count) {
+		for (int i = 0; i < count; i++) {
+			// Cheap length check first, identities rarely have the same length
+			final byte[] frame = frames[i];
+			if (frame.length == DELIMITER_BYTES.length && Arrays.equals(frame, DELIMITER_BYTES)) {
+				return i;
+			}
+		}
+		return -1;
+	}
 }
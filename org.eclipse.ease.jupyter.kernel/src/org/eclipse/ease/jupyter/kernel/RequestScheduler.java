@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Kernel level scheduler for incoming requests.
+ * <p>
+ * Shell requests are queued in a single bounded queue and handled one after
+ * the other by a dedicated worker thread, so code is never executed
+ * concurrently on the {@link org.eclipse.ease.IScriptEngine}. Control requests
+ * bypass the shell queue and are handled by a separate control worker thread,
+ * so they always preempt queued shell work and can interrupt the request
+ * currently running without blocking the submitting thread.
+ * <p>
+ * Callers need to check {@link #hasShellCapacity()} before submitting shell
+ * requests and stop reading new requests while the queue is full. The
+ * capacity listener is notified once space is available again.
+ */
+public class RequestScheduler {
+	/**
+	 * Default number of shell requests that can be queued.
+	 */
+	public static final int DEFAULT_SHELL_QUEUE_CAPACITY = 64;
+
+	/**
+	 * Task that can be aborted instead of being run, e.g. when discarded by
+	 * {@link RequestScheduler#clearShellQueue()}.
+	 */
+	public interface IAbortableTask extends Runnable {
+		/**
+		 * Aborts the task, e.g. by notifying the client that the request will
+		 * not be handled.
+		 */
+		public void abort();
+	}
+
+	/**
+	 * Custom {@link Runnable} handling queued control requests one at a time.
+	 */
+	private class ControlWorker implements Runnable {
+		@Override
+		public void run() {
+			while (fRunning) {
+				final Runnable task;
+				try {
+					task = fControlQueue.take();
+				} catch (InterruptedException e) {
+					// Woken up by stop
+					continue;
+				}
+
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					// Keep worker alive for following requests
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Custom {@link Runnable} handling queued shell requests one at a time.
+	 */
+	private class ShellWorker implements Runnable {
+		@Override
+		public void run() {
+			while (fRunning) {
+				final Runnable task;
+				try {
+					task = fShellQueue.take();
+				} catch (InterruptedException e) {
+					// Woken up by stop
+					continue;
+				}
+
+				// Notify listener if queue just left its full state
+				if (fShellQueue.remainingCapacity() == 1) {
+					notifyCapacityListener();
+				}
+
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					// Keep worker alive for following requests
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Bounded queue of shell requests waiting to be handled.
+	 */
+	private final BlockingQueue<Runnable> fShellQueue;
+
+	/**
+	 * Thread running the {@link ShellWorker}.
+	 */
+	private final Thread fShellThread;
+
+	/**
+	 * Queue of control requests waiting to be handled.
+	 */
+	private final BlockingQueue<Runnable> fControlQueue = new LinkedBlockingQueue<Runnable>();
+
+	/**
+	 * Thread running the {@link ControlWorker}.
+	 */
+	private final Thread fControlThread;
+
+	/**
+	 * Flag to check if scheduler is still running.
+	 */
+	private volatile boolean fRunning = true;
+
+	/**
+	 * Listener notified when shell queue has capacity again, might be
+	 * <code>null</code>.
+	 */
+	private volatile Runnable fCapacityListener;
+
+	/**
+	 * Constructor creates the shell queue and the worker threads.
+	 *
+	 * @param shellQueueCapacity
+	 *            Maximum number of queued shell requests.
+	 */
+	public RequestScheduler(final int shellQueueCapacity) {
+		fShellQueue = new ArrayBlockingQueue<Runnable>(shellQueueCapacity);
+		fShellThread = new Thread(new ShellWorker());
+		fControlThread = new Thread(new ControlWorker());
+	}
+
+	/**
+	 * Starts the worker threads handling shell and control requests.
+	 */
+	public void start() {
+		fShellThread.start();
+		fControlThread.start();
+	}
+
+	/**
+	 * Checks if the calling thread is one of the worker threads.
+	 *
+	 * @return <code>true</code> if called from a request handler.
+	 */
+	public boolean isWorkerThread() {
+		final Thread current = Thread.currentThread();
+		return current == fShellThread || current == fControlThread;
+	}
+
+	/**
+	 * Sets the listener to be notified when the shell queue has capacity
+	 * again after being full.
+	 *
+	 * @param listener
+	 *            Listener to be notified, called on the worker thread.
+	 */
+	public void setCapacityListener(final Runnable listener) {
+		fCapacityListener = listener;
+	}
+
+	/**
+	 * Queues the given control request for the control worker. Control
+	 * requests do not wait for shell requests and never block the caller.
+	 *
+	 * @param task
+	 *            Control request to be handled.
+	 */
+	public void submitControl(final Runnable task) {
+		if (fRunning) {
+			fControlQueue.add(task);
+		}
+	}
+
+	/**
+	 * Queues the given shell request. Blocks if the queue is full, so callers
+	 * should check {@link #hasShellCapacity()} first.
+	 *
+	 * @param task
+	 *            Shell request to be queued.
+	 */
+	public void submitShell(final Runnable task) {
+		if (!fRunning) {
+			return;
+		}
+
+		try {
+			fShellQueue.put(task);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Checks if another shell request can be queued without blocking.
+	 *
+	 * @return <code>true</code> if shell queue is not full.
+	 */
+	public boolean hasShellCapacity() {
+		return fShellQueue.remainingCapacity() > 0;
+	}
+
+	/**
+	 * Returns the number of shell requests waiting to be handled.
+	 *
+	 * @return Number of queued shell requests.
+	 */
+	public int getQueuedShellRequests() {
+		return fShellQueue.size();
+	}
+
+	/**
+	 * Discards all queued shell requests, aborting those implementing
+	 * {@link IAbortableTask}. The currently running request is not affected.
+	 *
+	 * @return Number of discarded requests.
+	 */
+	public int clearShellQueue() {
+		final List<Runnable> discarded = new ArrayList<Runnable>();
+		fShellQueue.drainTo(discarded);
+		notifyCapacityListener();
+
+		for (final Runnable task : discarded) {
+			if (task instanceof IAbortableTask) {
+				try {
+					((IAbortableTask) task).abort();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return discarded.size();
+	}
+
+	/**
+	 * Stops the scheduler, discarding all queued requests. The requests
+	 * currently running get interrupted, the worker threads end once they
+	 * return.
+	 */
+	public void stop() {
+		fRunning = false;
+		fShellQueue.clear();
+		fControlQueue.clear();
+		fShellThread.interrupt();
+		fControlThread.interrupt();
+	}
+
+	/**
+	 * Notifies the capacity listener, if available.
+	 */
+	private void notifyCapacityListener() {
+		final Runnable listener = fCapacityListener;
+		if (listener != null) {
+			listener.run();
+		}
+	}
+}
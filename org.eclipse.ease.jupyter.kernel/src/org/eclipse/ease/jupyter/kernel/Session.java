@@ -13,14 +13,17 @@ package org.eclipse.ease.jupyter.kernel;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.ease.jupyter.kernel.channels.AbstractChannel;
 import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.eclipse.ease.jupyter.kernel.metrics.KernelMetrics;
 import org.zeromq.ZContext;
 import org.zeromq.ZMQ.Socket;
 
@@ -33,6 +36,51 @@ import org.zeromq.ZMQ.Socket;
  * Largely based on Japyter project.
  */
 public class Session implements Closeable {
+	/**
+	 * Initial number of frames a {@link ReceiveBuffer} can hold.
+	 */
+	private static final int RECEIVE_BUFFER_FRAMES = 16;
+
+	/**
+	 * Reusable holder for the frames of a single received message.
+	 * <p>
+	 * Only the references are reused, the frames themselves end up in the
+	 * parsed {@link Message}. The holder is cleared after every message so it
+	 * does not keep frames alive.
+	 */
+	private static class ReceiveBuffer {
+		/**
+		 * Frames of the message currently being received.
+		 */
+		private byte[][] fFrames = new byte[RECEIVE_BUFFER_FRAMES][];
+
+		/**
+		 * Number of valid frames in {@link #fFrames}.
+		 */
+		private int fCount;
+
+		/**
+		 * Appends the given frame, growing the holder if necessary.
+		 * 
+		 * @param frame
+		 *            Frame to be appended.
+		 */
+		public void add(final byte[] frame) {
+			if (fCount == fFrames.length) {
+				fFrames = Arrays.copyOf(fFrames, fFrames.length * 2);
+			}
+			fFrames[fCount++] = frame;
+		}
+
+		/**
+		 * Releases all frame references.
+		 */
+		public void clear() {
+			Arrays.fill(fFrames, 0, fCount, null);
+			fCount = 0;
+		}
+	}
+
 	/**
 	 * Random session ID used for Jupyter messages.
 	 */
@@ -43,22 +91,54 @@ public class Session implements Closeable {
 	 */
 	private final Protocol fProtocol;
 
+	/**
+	 * {@link KernelMetrics} shared by all channels of this session.
+	 */
+	private final KernelMetrics fMetrics;
+
 	/**
 	 * Receive timeout for ZMQ sockets in milliseconds.
 	 */
 	private final int fReceiveTimeoutMillis;
 
 	/**
-	 * ZMQ context necessary for creating sockets.
+	 * Shared ZMQ context the sockets of this session are created in.
+	 */
+	private final SharedZmqContext fSharedContext;
+
+	/**
+	 * Shadow of the shared ZMQ context owning the sockets of this session.
 	 */
 	private final ZContext fZmqContext;
 
+	/**
+	 * Flag to check if session was already closed.
+	 */
+	private boolean fClosed = false;
+
+	/**
+	 * {@link SocketOptions} by channel name, channels without entry use the
+	 * defaults of {@link SocketOptions#getDefaults(String)}.
+	 */
+	private final Map<String, SocketOptions> fSocketOptions = new ConcurrentHashMap<>();
+
 	/**
 	 * Set of running {@link AbstractChannel} objects. Used to cleanly shut down
 	 * all sockets.
 	 */
 	private final Set<AbstractChannel> fChannels;
 
+	/**
+	 * Per-thread {@link ReceiveBuffer} objects. Every channel reads from its
+	 * own thread, so each channel gets its own holder.
+	 */
+	private final ThreadLocal<ReceiveBuffer> fReceiveBuffers = new ThreadLocal<ReceiveBuffer>() {
+		@Override
+		protected ReceiveBuffer initialValue() {
+			return new ReceiveBuffer();
+		}
+	};
+
 	/**
 	 * Constructor initializes all data-structures and stores parameters to
 	 * members.
@@ -71,12 +151,31 @@ public class Session implements Closeable {
 	 *            Number of IO threads available to the ZMQ sockets.
 	 */
 	public Session(final Protocol protocol, final int receiveTimeoutMillis, final int zmqIoThreads) {
+		this(protocol, receiveTimeoutMillis, new SharedZmqContext(zmqIoThreads));
+	}
+
+	/**
+	 * Constructor initializes all data-structures and stores parameters to
+	 * members. Sockets are created in the given shared ZMQ context, which is
+	 * released again when the session is closed.
+	 * 
+	 * @param protocol
+	 *            Protocol to handle actual message parsing.
+	 * @param receiveTimeoutMillis
+	 *            Receive timeout in milliseconds for ZMQ sockets.
+	 * @param zmqContext
+	 *            Shared ZMQ context to create sockets in.
+	 */
+	public Session(final Protocol protocol, final int receiveTimeoutMillis, final SharedZmqContext zmqContext) {
 		fID = UUID.randomUUID().toString();
 
 		this.fProtocol = protocol;
+		this.fMetrics = new KernelMetrics();
+		this.fProtocol.setMetrics(fMetrics);
 
 		this.fReceiveTimeoutMillis = receiveTimeoutMillis;
-		this.fZmqContext = new ZContext(zmqIoThreads);
+		this.fSharedContext = zmqContext;
+		this.fZmqContext = zmqContext.acquire();
 		this.fChannels = new HashSet<AbstractChannel>();
 	}
 
@@ -89,6 +188,16 @@ public class Session implements Closeable {
 		return fProtocol;
 	}
 
+	/**
+	 * Returns the {@link KernelMetrics} shared by all channels of this
+	 * session.
+	 * 
+	 * @return {@link KernelMetrics} of session.
+	 */
+	public KernelMetrics getMetrics() {
+		return fMetrics;
+	}
+
 	/**
 	 * Returns the receive timeout for the ZMQ sockets (in milliseconds).
 	 * 
@@ -98,6 +207,31 @@ public class Session implements Closeable {
 		return fReceiveTimeoutMillis;
 	}
 
+	/**
+	 * Sets the {@link SocketOptions} for the given channel. Needs to be called
+	 * before the channel is created.
+	 * 
+	 * @param channel
+	 *            Channel name, e.g. {@link SocketOptions#IOPUB}.
+	 * @param options
+	 *            {@link SocketOptions} applied when binding the channel.
+	 */
+	public void setSocketOptions(final String channel, final SocketOptions options) {
+		fSocketOptions.put(channel, options);
+	}
+
+	/**
+	 * Returns the {@link SocketOptions} used for the given channel.
+	 * 
+	 * @param channel
+	 *            Channel name, e.g. {@link SocketOptions#IOPUB}.
+	 * @return {@link SocketOptions} for channel.
+	 */
+	public SocketOptions getSocketOptions(final String channel) {
+		final SocketOptions options = fSocketOptions.get(channel);
+		return (options != null) ? options : SocketOptions.getDefaults(channel);
+	}
+
 	/**
 	 * Binds the given {@link AbstractChannel} to its address, effectively
 	 * starting the Socket.
@@ -108,7 +242,7 @@ public class Session implements Closeable {
 	 */
 	public Socket bind(final AbstractChannel channel) {
 		final Socket zmqSocket = fZmqContext.createSocket(channel.getZmqSocketType());
-		zmqSocket.setLinger(1000L);
+		getSocketOptions(channel.getChannelName()).apply(zmqSocket);
 		zmqSocket.setReceiveTimeOut(fReceiveTimeoutMillis);
 		zmqSocket.bind(channel.getAddress());
 
@@ -117,6 +251,21 @@ public class Session implements Closeable {
 		return zmqSocket;
 	}
 
+	/**
+	 * Creates a plain ZMQ socket not belonging to any {@link AbstractChannel},
+	 * e.g. for internal signalling between threads. The socket is closed
+	 * together with the session.
+	 * 
+	 * @param type
+	 *            ZMQ socket type.
+	 * @return New ZMQ {@link Socket}.
+	 */
+	public Socket createSocket(final int type) {
+		final Socket zmqSocket = fZmqContext.createSocket(type);
+		zmqSocket.setLinger(0L);
+		return zmqSocket;
+	}
+
 	/**
 	 * Closes the given {@link AbstractChannel}.
 	 * 
@@ -132,7 +281,12 @@ public class Session implements Closeable {
 	 * tasks.
 	 */
 	@Override
-	public void close() throws IOException {
+	public synchronized void close() throws IOException {
+		if (fClosed) {
+			return;
+		}
+		fClosed = true;
+
 		// Close all running channels
 		for (final AbstractChannel channel : fChannels) {
 			try {
@@ -142,9 +296,8 @@ public class Session implements Closeable {
 			}
 		}
 
-		// Actually close ZMQ session
-		fZmqContext.destroy();
-
+		// Close remaining sockets, context is terminated with its last session
+		fSharedContext.release(fZmqContext);
 	}
 
 	/**
@@ -158,11 +311,38 @@ public class Session implements Closeable {
 	 *             If data could not be send.
 	 */
 	public void send(final Message message, final Socket zmqSocket) throws IOException {
+		send(serialize(message), zmqSocket);
+	}
+
+	/**
+	 * Serializes the given {@link Message} to frames according to the wire
+	 * protocol so they can be sent later using {@link #send(List, Socket)}.
+	 * 
+	 * @param message
+	 *            {@link Message} to be serialized.
+	 * @return Frames representing the message.
+	 * @throws IOException
+	 *             If message could not be serialized.
+	 */
+	public List<byte[]> serialize(final Message message) throws IOException {
 		// Set session ID for message
 		message.getHeader().setSession(fID);
 
 		// Split message to byte arrays according to Wire Protocol
-		final List<byte[]> frames = fProtocol.toFrames(message);
+		return fProtocol.toFrames(message);
+	}
+
+	/**
+	 * Sends the given, already serialized frames to given ZMQ socket.
+	 * 
+	 * @param frames
+	 *            Frames to be send.
+	 * @param zmqSocket
+	 *            ZMQ socket to send data to.
+	 * @throws IOException
+	 *             If data could not be send.
+	 */
+	public void send(final List<byte[]> frames, final Socket zmqSocket) throws IOException {
 		final int nrFrames = frames.size();
 
 		// Send data one frame at a time
@@ -174,11 +354,11 @@ public class Session implements Closeable {
 			// Last frame needs to be send differently
 			if (lastFrame) {
 				if (!zmqSocket.send(frame)) {
-					throw new IOException("Failed to send frame " + i + " of message " + message);
+					throw new IOException("Failed to send frame " + i + " of " + nrFrames);
 				}
 			} else {
 				if (!zmqSocket.sendMore(frame)) {
-					throw new IOException("Failed to send frame " + i + " of message " + message);
+					throw new IOException("Failed to send frame " + i + " of " + nrFrames);
 				}
 			}
 		}
@@ -254,13 +434,17 @@ public class Session implements Closeable {
 			}
 		}
 
-		// Read all other frames
-		final List<byte[]> frames = new ArrayList<byte[]>();
-		do {
-			frames.add(frame);
-		} while (zmqSocket.hasReceiveMore() && ((frame = zmqSocket.recv()) != null));
+		// Read all other frames into reusable holder
+		final ReceiveBuffer buffer = fReceiveBuffers.get();
+		try {
+			do {
+				buffer.add(frame);
+			} while (zmqSocket.hasReceiveMore() && ((frame = zmqSocket.recv()) != null));
 
-		// Parse frames to actual Message object.
-		return fProtocol.fromFrames(frames);
+			// Parse frames to actual Message object.
+			return fProtocol.fromFrames(buffer.fFrames, buffer.fCount);
+		} finally {
+			buffer.clear();
+		}
 	}
 }
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import org.zeromq.ZContext;
+
+/**
+ * Reference-counted ZMQ context shared by several {@link Session}s.
+ * <p>
+ * Every ZMQ context runs its own I/O and reaper threads, so a context per
+ * kernel multiplies the thread footprint with the number of kernels. Sessions
+ * acquire a shadow of the shared context instead, which owns only the sockets
+ * of that session. The underlying context is created when the first session
+ * acquires it and terminated when the last one releases it, so no threads are
+ * kept while no kernel is running.
+ * <p>
+ * ZMQ assigns every new socket to the least loaded I/O thread, so sockets of
+ * additional kernels are spread over all I/O threads.
+ */
+public class SharedZmqContext {
+	/**
+	 * Maximum number of I/O threads used by default, a single I/O thread
+	 * easily handles the traffic of several kernels.
+	 */
+	private static final int MAX_DEFAULT_IO_THREADS = 4;
+
+	/**
+	 * Number of I/O threads of the underlying context.
+	 */
+	private final int fIoThreads;
+
+	/**
+	 * Underlying context, <code>null</code> while not acquired.
+	 */
+	private ZContext fContext;
+
+	/**
+	 * Number of sessions currently using the context.
+	 */
+	private int fReferences = 0;
+
+	/**
+	 * Constructor only stores parameters to members, the underlying context
+	 * is created on first {@link #acquire()}.
+	 *
+	 * @param ioThreads
+	 *            Number of I/O threads of the underlying context.
+	 */
+	public SharedZmqContext(final int ioThreads) {
+		if (ioThreads < 1) {
+			throw new IllegalArgumentException("At least one I/O thread required");
+		}
+		fIoThreads = ioThreads;
+	}
+
+	/**
+	 * Returns the default number of I/O threads, scaled with the number of
+	 * available cores.
+	 *
+	 * @return Default number of I/O threads.
+	 */
+	public static int getDefaultIoThreads() {
+		return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() / 2, MAX_DEFAULT_IO_THREADS));
+	}
+
+	/**
+	 * Returns the number of I/O threads of the underlying context.
+	 *
+	 * @return Number of I/O threads.
+	 */
+	public int getIoThreads() {
+		return fIoThreads;
+	}
+
+	/**
+	 * Returns the number of sessions currently using the context.
+	 *
+	 * @return Number of references.
+	 */
+	public synchronized int getReferenceCount() {
+		return fReferences;
+	}
+
+	/**
+	 * Acquires a shadow of the underlying context, creating the context if
+	 * necessary. Every call needs to be matched by {@link #release(ZContext)}.
+	 *
+	 * @return Shadow context owning only the sockets created with it.
+	 */
+	public synchronized ZContext acquire() {
+		if (fReferences == 0) {
+			fContext = new ZContext(fIoThreads);
+		}
+		fReferences++;
+		return ZContext.shadow(fContext);
+	}
+
+	/**
+	 * Closes all sockets of the given shadow context and terminates the
+	 * underlying context if no other session uses it.
+	 *
+	 * @param shadow
+	 *            Shadow context returned by {@link #acquire()}.
+	 */
+	public synchronized void release(final ZContext shadow) {
+		if (fReferences == 0) {
+			throw new IllegalStateException("Context not acquired");
+		}
+
+		// Closes sockets with their linger period, context stays alive
+		shadow.destroy();
+
+		fReferences--;
+		if (fReferences == 0) {
+			fContext.destroy();
+			fContext = null;
+		}
+	}
+}
@@ -0,0 +1,514 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.zeromq.ZMQ.Socket;
+
+/**
+ * Tuning profile for the ZMQ socket of a single channel.
+ * <p>
+ * Channels have very different traffic patterns: IOPub publishes bursts of
+ * output to possibly slow subscribers, while shell and control mostly receive
+ * small requests. Every channel therefore gets its own defaults, see
+ * {@link #getDefaults(String)}, which can be overridden per channel in the
+ * connection file:
+ *
+ * <pre>
+ * "socket_options": {
+ *     "iopub": { "send_hwm": 100000, "send_buffer": 1048576 },
+ *     "shell": { "max_message_size": 1048576 }
+ * }
+ * </pre>
+ *
+ * The maximum message size guards against single oversized frames, ZMQ
+ * disconnects peers sending larger messages instead of buffering them.
+ */
+public class SocketOptions {
+	/**
+	 * Key of the socket options in the additional properties of
+	 * {@link Config}.
+	 */
+	public static final String CONFIG_KEY = "socket_options";
+
+	/**
+	 * Channel name of the heartbeat channel.
+	 */
+	public static final String HEARTBEAT = "hb";
+
+	/**
+	 * Channel name of the IOPub channel.
+	 */
+	public static final String IOPUB = "iopub";
+
+	/**
+	 * Channel name of the shell channel.
+	 */
+	public static final String SHELL = "shell";
+
+	/**
+	 * Channel name of the control channel.
+	 */
+	public static final String CONTROL = "control";
+
+	/**
+	 * Channel name of the stdin channel.
+	 */
+	public static final String STDIN = "stdin";
+
+	/**
+	 * Names of all channels of a kernel.
+	 */
+	private static final String[] CHANNELS = { HEARTBEAT, IOPUB, SHELL, CONTROL, STDIN };
+
+	/**
+	 * Default maximum size of requests received on shell and control channel.
+	 */
+	private static final long DEFAULT_MAX_REQUEST_SIZE = 64L * 1024 * 1024;
+
+	/**
+	 * Default maximum size of messages received on channels only expecting
+	 * small messages (heartbeats, input replies, subscriptions).
+	 */
+	private static final long DEFAULT_MAX_SMALL_MESSAGE_SIZE = 1024 * 1024;
+
+	/**
+	 * Default send high-water mark of IOPub, subscribers may fall behind
+	 * during output bursts.
+	 */
+	private static final long DEFAULT_IOPUB_SEND_HWM = 10000;
+
+	/**
+	 * Maximum number of outgoing messages queued per peer, <code>0</code>
+	 * for no limit.
+	 */
+	private long fSendHighWaterMark = 1000;
+
+	/**
+	 * Maximum number of incoming messages queued per peer, <code>0</code>
+	 * for no limit.
+	 */
+	private long fReceiveHighWaterMark = 1000;
+
+	/**
+	 * Kernel send buffer size of TCP connections, <code>0</code> for OS
+	 * default.
+	 */
+	private long fSendBufferSize = 0;
+
+	/**
+	 * Kernel receive buffer size of TCP connections, <code>0</code> for OS
+	 * default.
+	 */
+	private long fReceiveBufferSize = 0;
+
+	/**
+	 * TCP keepalive, <code>1</code> to enable, <code>0</code> to disable,
+	 * <code>-1</code> for OS default.
+	 */
+	private int fTcpKeepAlive = -1;
+
+	/**
+	 * Idle time in seconds before keepalive probes are sent, <code>-1</code>
+	 * for OS default.
+	 */
+	private long fTcpKeepAliveIdle = -1;
+
+	/**
+	 * Interval in seconds between keepalive probes, <code>-1</code> for OS
+	 * default.
+	 */
+	private long fTcpKeepAliveInterval = -1;
+
+	/**
+	 * Flag to only queue messages to completed connections.
+	 */
+	private boolean fImmediate = false;
+
+	/**
+	 * Time in milliseconds pending messages are kept after closing the
+	 * socket.
+	 */
+	private long fLinger = 1000;
+
+	/**
+	 * Maximum size of received messages in bytes, <code>-1</code> for no
+	 * limit.
+	 */
+	private long fMaxMessageSize = -1;
+
+	/**
+	 * Returns the default profile for the given channel.
+	 *
+	 * @param channel
+	 *            Name of channel, e.g. {@link #IOPUB}.
+	 * @return New {@link SocketOptions} with channel defaults.
+	 */
+	public static SocketOptions getDefaults(final String channel) {
+		final SocketOptions options = new SocketOptions();
+		if (IOPUB.equals(channel)) {
+			// Only subscriptions are received
+			options.withSendHighWaterMark(DEFAULT_IOPUB_SEND_HWM).withMaxMessageSize(DEFAULT_MAX_SMALL_MESSAGE_SIZE);
+		} else if (SHELL.equals(channel) || CONTROL.equals(channel)) {
+			options.withMaxMessageSize(DEFAULT_MAX_REQUEST_SIZE);
+		} else if (HEARTBEAT.equals(channel) || STDIN.equals(channel)) {
+			options.withMaxMessageSize(DEFAULT_MAX_SMALL_MESSAGE_SIZE);
+		}
+		return options;
+	}
+
+	/**
+	 * Returns the profiles for all channels, with defaults overridden by the
+	 * socket options in the given {@link Config}.
+	 *
+	 * @param config
+	 *            {@link Config} possibly containing socket options.
+	 * @return New {@link SocketOptions} by channel name.
+	 * @throws IllegalArgumentException
+	 *             If socket options in config are invalid.
+	 */
+	public static Map<String, SocketOptions> fromConfig(final Config config) {
+		final Map<String, SocketOptions> options = new HashMap<>();
+		for (final String channel : CHANNELS) {
+			options.put(channel, fromConfig(config, channel));
+		}
+		return options;
+	}
+
+	/**
+	 * Returns the profile for the given channel, with defaults overridden by
+	 * the socket options in the given {@link Config}.
+	 *
+	 * @param config
+	 *            {@link Config} possibly containing socket options.
+	 * @param channel
+	 *            Name of channel, e.g. {@link #IOPUB}.
+	 * @return New {@link SocketOptions} for channel.
+	 * @throws IllegalArgumentException
+	 *             If socket options in config are invalid.
+	 */
+	public static SocketOptions fromConfig(final Config config, final String channel) {
+		final SocketOptions options = getDefaults(channel);
+
+		final Object channels = config.getAdditionalProperties().get(CONFIG_KEY);
+		if (channels == null) {
+			return options;
+		}
+		if (!(channels instanceof Map)) {
+			throw new IllegalArgumentException("Socket options need to be an object");
+		}
+
+		final Object properties = ((Map<?, ?>) channels).get(channel);
+		if (properties == null) {
+			return options;
+		}
+		if (!(properties instanceof Map)) {
+			throw new IllegalArgumentException("Socket options for " + channel + " need to be an object");
+		}
+		return options.withProperties((Map<?, ?>) properties);
+	}
+
+	/**
+	 * Overrides options with the given properties, using the names of the
+	 * connection file.
+	 *
+	 * @param properties
+	 *            Option names mapped to their values.
+	 * @return Options for chaining.
+	 * @throws IllegalArgumentException
+	 *             If option is unknown or value has wrong type.
+	 */
+	public SocketOptions withProperties(final Map<?, ?> properties) {
+		for (final Entry<?, ?> property : properties.entrySet()) {
+			final String name = String.valueOf(property.getKey());
+			final Object value = property.getValue();
+
+			if ("immediate".equals(name)) {
+				if (!(value instanceof Boolean)) {
+					throw new IllegalArgumentException("Socket option immediate needs to be a boolean");
+				}
+				withImmediate((Boolean) value);
+				continue;
+			}
+
+			if (!(value instanceof Number)) {
+				throw new IllegalArgumentException("Socket option " + name + " needs to be a number");
+			}
+			final long number = ((Number) value).longValue();
+			switch (name) {
+			case "send_hwm":
+				withSendHighWaterMark(number);
+				break;
+			case "receive_hwm":
+				withReceiveHighWaterMark(number);
+				break;
+			case "send_buffer":
+				withSendBufferSize(number);
+				break;
+			case "receive_buffer":
+				withReceiveBufferSize(number);
+				break;
+			case "tcp_keepalive":
+				withTcpKeepAlive((int) number);
+				break;
+			case "tcp_keepalive_idle":
+				withTcpKeepAliveIdle(number);
+				break;
+			case "tcp_keepalive_interval":
+				withTcpKeepAliveInterval(number);
+				break;
+			case "linger":
+				withLinger(number);
+				break;
+			case "max_message_size":
+				withMaxMessageSize(number);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown socket option " + name);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Applies all options to the given socket. Needs to be called before the
+	 * socket is bound or connected.
+	 *
+	 * @param socket
+	 *            ZMQ {@link Socket} to be tuned.
+	 */
+	public void apply(final Socket socket) {
+		socket.setSndHWM(fSendHighWaterMark);
+		socket.setRcvHWM(fReceiveHighWaterMark);
+		socket.setSendBufferSize(fSendBufferSize);
+		socket.setReceiveBufferSize(fReceiveBufferSize);
+		socket.setTCPKeepAlive(fTcpKeepAlive);
+		socket.setTCPKeepAliveIdle(fTcpKeepAliveIdle);
+		socket.setTCPKeepAliveInterval(fTcpKeepAliveInterval);
+		socket.setDelayAttachOnConnect(fImmediate);
+		socket.setLinger(fLinger);
+		socket.setMaxMsgSize(fMaxMessageSize);
+	}
+
+	/**
+	 * Returns the send high-water mark.
+	 *
+	 * @return Current send high-water mark.
+	 */
+	public long getSendHighWaterMark() {
+		return fSendHighWaterMark;
+	}
+
+	/**
+	 * Sets the send high-water mark.
+	 *
+	 * @param sendHighWaterMark
+	 *            New send high-water mark.
+	 * @return Options for chaining.
+	 */
+	public SocketOptions withSendHighWaterMark(final long sendHighWaterMark) {
+		fSendHighWaterMark = sendHighWaterMark;
+		return this;
+	}
+
+	/**
+	 * Returns the receive high-water mark.
+	 *
+	 * @return Current receive high-water mark.
+	 */
+	public long getReceiveHighWaterMark() {
+		return fReceiveHighWaterMark;
+	}
+
+	/**
+	 * Sets the receive high-water mark.
+	 *
+	 * @param receiveHighWaterMark
+	 *            New receive high-water mark.
+	 * @return Options for chaining.
+	 */
+	public SocketOptions withReceiveHighWaterMark(final long receiveHighWaterMark) {
+		fReceiveHighWaterMark = receiveHighWaterMark;
+		return this;
+	}
+
+	/**
+	 * Returns the kernel send buffer size.
+	 *
+	 * @return Current kernel send buffer size.
+	 */
+	public long getSendBufferSize() {
+		return fSendBufferSize;
+	}
+
+	/**
+	 * Sets the kernel send buffer size.
+	 *
+	 * @param sendBufferSize
+	 *            New kernel send buffer size.
+	 * @return Options for chaining.
+	 */
+	public SocketOptions withSendBufferSize(final long sendBufferSize) {
+		fSendBufferSize = sendBufferSize;
+		return this;
+	}
+
+	/**
+	 * Returns the kernel receive buffer size.
+	 *
+	 * @return Current kernel receive buffer size.
+	 */
+	public long getReceiveBufferSize() {
+		return fReceiveBufferSize;
+	}
+
+	/**
+	 * Sets the kernel receive buffer size.
+	 *
+	 * @param receiveBufferSize
+	 *            New kernel receive buffer size.
+	 * @return Options for chaining.
+	 */
+	public SocketOptions withReceiveBufferSize(final long receiveBufferSize) {
+		fReceiveBufferSize = receiveBufferSize;
+		return this;
+	}
+
+	/**
+	 * Returns the TCP keepalive setting.
+	 *
+	 * @return Current TCP keepalive setting.
+	 */
+	public int getTcpKeepAlive() {
+		return fTcpKeepAlive;
+	}
+
+	/**
+	 * Sets the TCP keepalive setting.
+	 *
+	 * @param tcpKeepAlive
+	 *            New TCP keepalive setting.
+	 * @return Options for chaining.
+	 */
+	public SocketOptions withTcpKeepAlive(final int tcpKeepAlive) {
+		fTcpKeepAlive = tcpKeepAlive;
+		return this;
+	}
+
+	/**
+	 * Returns the TCP keepalive idle time.
+	 *
+	 * @return Current TCP keepalive idle time.
+	 */
+	public long getTcpKeepAliveIdle() {
+		return fTcpKeepAliveIdle;
+	}
+
+	/**
+	 * Sets the TCP keepalive idle time.
+	 *
+	 * @param tcpKeepAliveIdle
+	 *            New TCP keepalive idle time.
+	 * @return Options for chaining.
+	 */
+	public SocketOptions withTcpKeepAliveIdle(final long tcpKeepAliveIdle) {
+		fTcpKeepAliveIdle = tcpKeepAliveIdle;
+		return this;
+	}
+
+	/**
+	 * Returns the TCP keepalive probe interval.
+	 *
+	 * @return Current TCP keepalive probe interval.
+	 */
+	public long getTcpKeepAliveInterval() {
+		return fTcpKeepAliveInterval;
+	}
+
+	/**
+	 * Sets the TCP keepalive probe interval.
+	 *
+	 * @param tcpKeepAliveInterval
+	 *            New TCP keepalive probe interval.
+	 * @return Options for chaining.
+	 */
+	public SocketOptions withTcpKeepAliveInterval(final long tcpKeepAliveInterval) {
+		fTcpKeepAliveInterval = tcpKeepAliveInterval;
+		return this;
+	}
+
+	/**
+	 * Returns the immediate flag.
+	 *
+	 * @return Current immediate flag.
+	 */
+	public boolean isImmediate() {
+		return fImmediate;
+	}
+
+	/**
+	 * Sets the immediate flag.
+	 *
+	 * @param immediate
+	 *            New immediate flag.
+	 * @return Options for chaining.
+	 */
+	public SocketOptions withImmediate(final boolean immediate) {
+		fImmediate = immediate;
+		return this;
+	}
+
+	/**
+	 * Returns the linger period.
+	 *
+	 * @return Current linger period.
+	 */
+	public long getLinger() {
+		return fLinger;
+	}
+
+	/**
+	 * Sets the linger period.
+	 *
+	 * @param linger
+	 *            New linger period.
+	 * @return Options for chaining.
+	 */
+	public SocketOptions withLinger(final long linger) {
+		fLinger = linger;
+		return this;
+	}
+
+	/**
+	 * Returns the maximum size of received messages.
+	 *
+	 * @return Current maximum size of received messages.
+	 */
+	public long getMaxMessageSize() {
+		return fMaxMessageSize;
+	}
+
+	/**
+	 * Sets the maximum size of received messages.
+	 *
+	 * @param maxMessageSize
+	 *            New maximum size of received messages.
+	 * @return Options for chaining.
+	 */
+	public SocketOptions withMaxMessageSize(final long maxMessageSize) {
+		fMaxMessageSize = maxMessageSize;
+		return this;
+	}
+}
@@ -16,6 +16,7 @@ import java.io.Closeable;
 import java.io.IOException;
 
 import org.eclipse.ease.jupyter.kernel.Session;
+import org.eclipse.ease.jupyter.kernel.SocketOptions;
 import org.eclipse.ease.jupyter.kernel.messages.Message;
 import org.zeromq.ZMQ.Socket;
 
@@ -38,6 +39,12 @@ public abstract class AbstractChannel implements Closeable {
 	 */
 	private final Socket fZmqSocket;
 
+	/**
+	 * {@link Reactor} handling the channel, <code>null</code> if channel is not
+	 * handled by a reactor.
+	 */
+	private Reactor fReactor;
+
 	/**
 	 * Constructor stores parameters to members and initializes socket.
 	 * 
@@ -64,6 +71,9 @@ public abstract class AbstractChannel implements Closeable {
 
 	/**
 	 * Sends the given message over the ZMQ socket using {@link #fSession}.
+	 * <p>
+	 * Channels handled by a {@link Reactor} pass the message to the reactor
+	 * thread, as ZMQ sockets must not be shared between threads.
 	 * 
 	 * @param message
 	 *            {@link Message} to be send.
@@ -71,7 +81,21 @@ public abstract class AbstractChannel implements Closeable {
 	 *             If communication error occurred.
 	 */
 	public void send(Message message) throws IOException {
-		getSession().send(message, getZmqSocket());
+		if (fReactor != null) {
+			fReactor.send(this, message);
+		} else {
+			getSession().send(message, getZmqSocket());
+		}
+	}
+
+	/**
+	 * Sets the {@link Reactor} handling the channel. Called on registration.
+	 * 
+	 * @param reactor
+	 *            {@link Reactor} handling the channel.
+	 */
+	void setReactor(Reactor reactor) {
+		fReactor = reactor;
 	}
 
 	/**
@@ -89,6 +113,14 @@ public abstract class AbstractChannel implements Closeable {
 	 */
 	public abstract int getZmqSocketType();
 
+	/**
+	 * Returns the name of the channel as used in the Jupyter connection file,
+	 * e.g. to look up its {@link SocketOptions}.
+	 * 
+	 * @return Channel name.
+	 */
+	public abstract String getChannelName();
+
 	/**
 	 * Returns the ZMQ socket used by channel.
 	 * 
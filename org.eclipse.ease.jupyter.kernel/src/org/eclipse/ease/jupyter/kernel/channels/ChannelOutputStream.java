@@ -13,6 +13,16 @@ package org.eclipse.ease.jupyter.kernel.channels;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.ease.jupyter.kernel.messages.Header;
 import org.eclipse.ease.jupyter.kernel.messages.Message;
@@ -20,15 +30,74 @@ import org.eclipse.ease.jupyter.kernel.messages.Stream;
 
 /**
  * Custom {@link OutputStream} for redirecting STDOUT and STDERR.
+ * <p>
+ * Written data is coalesced into chunks before being published as stream
+ * message: {@link #flush()} publishes at most one message per flush interval
+ * and defers remaining data to a timer, a chunk exceeding the maximum size is
+ * published immediately. Buffered data exceeding the maximum chunk size is
+ * always split into several stream messages. This bounds the message rate on the
+ * {@link IOPubChannel} no matter how often scripts flush. Use
+ * {@link #forceFlush()} to publish all buffered data, e.g. when a cell
+ * completes.
+ * <p>
+ * Data is buffered as raw bytes and decoded as UTF-8 when published. Multi-byte
+ * sequences split between two chunks are kept in the buffer until complete,
+ * so messages are only split at character boundaries.
  * 
  * @author Martin Kloesch (martin.kloesch@gmail.com)
  *
  */
 public class ChannelOutputStream extends OutputStream {
 	/**
-	 * {@link StringBuffer} containing the data to be send.
+	 * Default minimum time between two stream messages in milliseconds.
 	 */
-	private final StringBuffer fDataBuffer = new StringBuffer();
+	public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 50;
+
+	/**
+	 * Default number of buffered bytes triggering a stream message regardless
+	 * of the flush interval.
+	 */
+	public static final int DEFAULT_MAX_CHUNK_SIZE = 16 * 1024;
+
+	/**
+	 * Maximum number of bytes of a single UTF-8 encoded character.
+	 */
+	private static final int MAX_CHARACTER_SIZE = 4;
+
+	/**
+	 * Initial size of byte and character buffers.
+	 */
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+
+	/**
+	 * Timer publishing deferred chunks, shared by all streams.
+	 */
+	private static final ScheduledExecutorService FLUSH_TIMER = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					// Timer must not keep the application alive
+					Thread thread = new Thread(runnable);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * Decoder for buffered data, keeps state between chunks.
+	 */
+	private final CharsetDecoder fDecoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	/**
+	 * Buffer containing the data to be send (in write mode).
+	 */
+	private ByteBuffer fDataBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+	/**
+	 * Reusable buffer for decoded data.
+	 */
+	private CharBuffer fCharBuffer = CharBuffer.allocate(INITIAL_BUFFER_SIZE);
 
 	/**
 	 * Stream name necessary to differentiate between different output types
@@ -41,13 +110,47 @@ public class ChannelOutputStream extends OutputStream {
 	 */
 	private final IOPubChannel fChannel;
 
+	/**
+	 * Minimum time between two stream messages in nanoseconds.
+	 */
+	private final long fFlushIntervalNanos;
+
+	/**
+	 * Number of buffered bytes triggering a stream message.
+	 */
+	private final int fMaxChunkSize;
+
+	/**
+	 * Task publishing deferred data once the flush interval elapsed.
+	 */
+	private final Runnable fDeferredFlush = new Runnable() {
+		@Override
+		public void run() {
+			synchronized (ChannelOutputStream.this) {
+				fScheduledFlush = null;
+				publish();
+			}
+		}
+	};
+
 	/**
 	 * {@link Header} currently in use for information about session.
 	 */
 	private Header fHeader;
 
 	/**
-	 * Constructor only stores parameters to members.
+	 * Time of last published stream message (as {@link System#nanoTime()}).
+	 */
+	private long fLastPublished;
+
+	/**
+	 * Scheduled {@link #fDeferredFlush}, <code>null</code> if none pending.
+	 */
+	private ScheduledFuture<?> fScheduledFlush;
+
+	/**
+	 * Constructor only stores parameters to members using default coalescing
+	 * settings.
 	 * 
 	 * @param streamName
 	 *            Name of stream (stdout or stderr)
@@ -55,62 +158,215 @@ public class ChannelOutputStream extends OutputStream {
 	 *            {@link IOPubChannel} for actually sending data.
 	 */
 	public ChannelOutputStream(String streamName, IOPubChannel channel) {
+		this(streamName, channel, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_MAX_CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructor only stores parameters to members.
+	 * 
+	 * @param streamName
+	 *            Name of stream (stdout or stderr)
+	 * @param channel
+	 *            {@link IOPubChannel} for actually sending data.
+	 * @param flushIntervalMillis
+	 *            Minimum time between two stream messages in milliseconds.
+	 * @param maxChunkSize
+	 *            Number of buffered bytes triggering a stream message.
+	 */
+	public ChannelOutputStream(String streamName, IOPubChannel channel, long flushIntervalMillis,
+			int maxChunkSize) {
 		fStreamName = streamName;
 		fChannel = channel;
+		fFlushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+		fMaxChunkSize = maxChunkSize;
+
+		// Allow first flush to publish immediately
+		fLastPublished = System.nanoTime() - fFlushIntervalNanos;
 	}
 
 	/**
-	 * Sets the parent header to be used.
+	 * Sets the parent header to be used. Data buffered so far is published
+	 * with the previous header first.
 	 * 
 	 * @param parentHeader
 	 *            Necessary because Jupyter notebook keeps track of origins for
 	 *            stream messages.
 	 */
-	public void setParentHeader(Header header) {
+	public synchronized void setParentHeader(Header header) {
+		publish();
 		fHeader = header;
 	}
 
 	/**
-	 * Appends the given value to the internal buffer (as char).
+	 * Appends the given byte to the internal buffer.
 	 * 
 	 * @see OutputStream#write(int)
 	 */
 	@Override
-	public void write(int b) throws IOException {
-		synchronized (this) {
-			fDataBuffer.append((char) b);
+	public synchronized void write(int b) throws IOException {
+		ensureCapacity(1);
+		fDataBuffer.put((byte) b);
+		if (fDataBuffer.position() >= fMaxChunkSize) {
+			publish();
 		}
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Appends the given bytes to the internal buffer.
+	 * 
+	 * @see OutputStream#write(byte[], int, int)
+	 */
+	@Override
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		ensureCapacity(len);
+		fDataBuffer.put(b, off, len);
+		if (fDataBuffer.position() >= fMaxChunkSize) {
+			publish();
+		}
+	}
+
+	/**
+	 * Publishes buffered data if the flush interval elapsed since the last
+	 * stream message, otherwise defers publishing until it elapses.
 	 * 
 	 * @see java.io.OutputStream#flush()
 	 */
 	@Override
-	public void flush() throws IOException {
-		super.flush();
+	public synchronized void flush() throws IOException {
+		if (fDataBuffer.position() == 0 || fScheduledFlush != null) {
+			return;
+		}
 
-		// Get data and reset buffer
-		String data;
-		synchronized (this) {
-			if (fDataBuffer.length() == 0) {
-				return;
-			}
-			data = fDataBuffer.toString();
-			fDataBuffer.setLength(0);
+		final long elapsed = System.nanoTime() - fLastPublished;
+		if (elapsed >= fFlushIntervalNanos) {
+			publish();
+		} else {
+			fScheduledFlush = FLUSH_TIMER.schedule(fDeferredFlush, fFlushIntervalNanos - elapsed,
+					TimeUnit.NANOSECONDS);
 		}
+	}
+
+	/**
+	 * Publishes all buffered data immediately.
+	 */
+	public synchronized void forceFlush() {
+		publish();
+	}
+
+	/**
+	 * Publishes all buffered data before closing the stream. Incomplete
+	 * multi-byte sequences are published as replacement characters.
+	 * 
+	 * @see java.io.OutputStream#close()
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		publish(true);
+		super.close();
+	}
 
-		// Create message to be send
-		Message message = new Message();
-		if (fHeader != null) {
-			message = message.withParentHeader(fHeader);
+	/**
+	 * Makes sure the given number of bytes fits into {@link #fDataBuffer},
+	 * growing it if necessary.
+	 * 
+	 * @param length
+	 *            Number of bytes to be written.
+	 */
+	private void ensureCapacity(int length) {
+		if (fDataBuffer.remaining() < length) {
+			ByteBuffer buffer = ByteBuffer
+					.allocate(Math.max(2 * fDataBuffer.capacity(), fDataBuffer.position() + length));
+			fDataBuffer.flip();
+			buffer.put(fDataBuffer);
+			fDataBuffer = buffer;
 		}
-		message.getHeader().withMsgType("stream").withMsgId(Message.randomId());
-		message.withContent(new Stream().withName(fStreamName).withText(data));
+	}
 
-		fChannel.send(message);
+	/**
+	 * Decodes complete characters from the first bytes in
+	 * {@link #fDataBuffer} and removes them from the buffer.
+	 * 
+	 * @param maxBytes
+	 *            Maximum number of bytes to be decoded.
+	 * @param endOfInput
+	 *            <code>true</code> if no more data will follow.
+	 * @return Decoded characters, might be empty.
+	 */
+	private String decode(int maxBytes, boolean endOfInput) {
+		fDataBuffer.flip();
+
+		// Only decode up to the chunk size, incomplete characters at the
+		// chunk end stay in the buffer
+		final int limit = fDataBuffer.limit();
+		final boolean lastChunk = fDataBuffer.remaining() <= maxBytes;
+		if (!lastChunk) {
+			fDataBuffer.limit(fDataBuffer.position() + maxBytes);
+		}
+
+		// Decoding never produces more characters than bytes for UTF-8
+		int required = (int) Math.ceil(fDataBuffer.remaining() * fDecoder.maxCharsPerByte()) + 1;
+		if (fCharBuffer.capacity() < required) {
+			fCharBuffer = CharBuffer.allocate(required);
+		}
+		fCharBuffer.clear();
+
+		fDecoder.decode(fDataBuffer, fCharBuffer, endOfInput && lastChunk);
+		if (endOfInput && lastChunk) {
+			fDecoder.flush(fCharBuffer);
+			fDecoder.reset();
+		}
+		fDataBuffer.limit(limit);
 
+		// Keep incomplete multi-byte sequence for next chunk
+		fDataBuffer.compact();
+
+		fCharBuffer.flip();
+		return fCharBuffer.toString();
+	}
+
+	/**
+	 * Sends all buffered data as stream messages of at most the maximum chunk
+	 * size. Callers need to hold the lock on the stream.
+	 */
+	private void publish() {
+		publish(false);
+	}
+
+	/**
+	 * Sends all buffered data as stream messages of at most the maximum chunk
+	 * size. Callers need to hold the lock on the stream.
+	 * 
+	 * @param endOfInput
+	 *            <code>true</code> if no more data will follow.
+	 */
+	private void publish(boolean endOfInput) {
+		// Cancel deferred publishing, data is sent now
+		if (fScheduledFlush != null) {
+			fScheduledFlush.cancel(false);
+			fScheduledFlush = null;
+		}
+
+		// A chunk must be able to hold at least one character
+		final int chunkSize = Math.max(fMaxChunkSize, MAX_CHARACTER_SIZE);
+		while (fDataBuffer.position() > 0) {
+			// Get data and remove it from buffer
+			String data = decode(chunkSize, endOfInput);
+			if (data.isEmpty()) {
+				// Only incomplete character left
+				return;
+			}
+			fLastPublished = System.nanoTime();
+
+			// Create message to be send
+			Message message = new Message();
+			if (fHeader != null) {
+				message = message.withParentHeader(fHeader);
+			}
+			message.getHeader().withMsgType("stream").withMsgId(Message.randomId());
+			message.withContent(new Stream().withName(fStreamName).withText(data));
+
+			fChannel.send(message);
+		}
 	}
 
 }
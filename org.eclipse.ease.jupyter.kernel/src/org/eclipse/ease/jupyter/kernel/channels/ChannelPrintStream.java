@@ -60,4 +60,15 @@ public class ChannelPrintStream extends PrintStream {
 	public void flush() {
 		super.flush();
 	}
+
+	/**
+	 * Flushes the stream and publishes all buffered data immediately, without
+	 * waiting for the flush interval.
+	 * 
+	 * @see ChannelOutputStream#forceFlush()
+	 */
+	public void forceFlush() {
+		super.flush();
+		fOutputStream.forceFlush();
+	}
 }
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.channels;
+
+import org.eclipse.ease.jupyter.kernel.IEngineProvider;
+import org.eclipse.ease.jupyter.kernel.RequestScheduler;
+import org.eclipse.ease.jupyter.kernel.Session;
+import org.eclipse.ease.jupyter.kernel.SocketOptions;
+
+/**
+ * Jupyter kernel channel for high priority requests (interrupt, shutdown, ...).
+ * 
+ * Same as {@link ShellChannel} but requests bypass the shell queue and are
+ * handled by the control worker of the {@link RequestScheduler}, preempting
+ * all queued shell requests.
+ */
+public class ControlChannel extends ShellChannel {
+	/**
+	 * @see ShellChannel#ShellChannel(String, Session, IEngineProvider,
+	 *      IOPubChannel, RequestScheduler)
+	 */
+	public ControlChannel(final String address, final Session session, IEngineProvider engineProvider,
+			IOPubChannel ioPub, RequestScheduler scheduler) {
+		super(address, session, engineProvider, ioPub, scheduler);
+	}
+
+	/**
+	 * Control requests are always accepted.
+	 */
+	@Override
+	public boolean acceptsData() {
+		return true;
+	}
+
+	/**
+	 * Passes the request to the control worker using
+	 * {@link RequestScheduler#submitControl(Runnable)}.
+	 */
+	@Override
+	protected void schedule(Runnable task) {
+		fScheduler.submitControl(task);
+	}
+
+	/**
+	 * @see AbstractChannel#getChannelName()
+	 */
+	@Override
+	public String getChannelName() {
+		return SocketOptions.CONTROL;
+	}
+}
@@ -11,43 +11,35 @@
 
 package org.eclipse.ease.jupyter.kernel.channels;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Socket;
 
 import org.eclipse.ease.jupyter.kernel.Session;
+import org.eclipse.ease.jupyter.kernel.SocketOptions;
+import org.eclipse.ease.jupyter.kernel.metrics.KernelMetrics;
 
 /**
  * Custom Jupyter kernel channel receiving heartbeat messages that are simply
  * returned back.
+ * 
+ * Simplest form of Jupyter kernel channel, data is echoed directly on the
+ * {@link Reactor} thread. Received frames are sent back unchanged, without
+ * decoding them.
  */
-public class HeartbeatChannel extends AbstractRunningServerChannel {
+public class HeartbeatChannel extends AbstractRunningServerChannel implements IReactorChannel {
 	/**
-	 * Custom {@link Runnable} echoing back all received data.
-	 * 
-	 * Simplest form of Jupyter kernel channel.
+	 * Frames of the heartbeat currently being received.
 	 */
-	private class HeartbeatEchoer implements Runnable {
-		@Override
-		public void run() {
-			String recvd = null;
-			while (isRunning()) {
-				// Read data
-				recvd = getZmqSocket().recvStr();
-
-				// Ignore if noone is connected
-				if (recvd == null) {
-					continue;
-				}
-
-				// Send back message
-				getZmqSocket().send(recvd);
-			}
-		}
-	}
+	private final List<byte[]> fFrames = new ArrayList<byte[]>(1);
 
 	/**
-	 * Thread running the {@link HeartbeatEchoer}.
+	 * Time the previous heartbeat was received in nanoseconds,
+	 * <code>0</code> if none received yet.
 	 */
-	protected Thread fEchoThread;
+	private long fLastHeartbeatNanos;
 
 	/**
 	 * Constructor only wraps to parent constructor.
@@ -60,18 +52,44 @@ public class HeartbeatChannel extends AbstractRunningServerChannel {
 
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see eu.openanalytics.japyter.client.AbstractRunningChannel#start()
+	/**
+	 * Always accepts data.
 	 */
 	@Override
-	public void start() {
-		super.start();
+	public boolean acceptsData() {
+		return true;
+	}
 
-		// Start the echo thread (stop handled in parent)
-		fEchoThread = new Thread(new HeartbeatEchoer());
-		fEchoThread.start();
+	/**
+	 * Echoes back all received heartbeats.
+	 */
+	@Override
+	public void handleReadable() {
+		final Socket socket = getZmqSocket();
+		final KernelMetrics metrics = getSession().getMetrics();
+
+		byte[] frame;
+		while ((frame = socket.recv(ZMQ.DONTWAIT)) != null) {
+			// REP socket needs the complete heartbeat before replying
+			fFrames.add(frame);
+			if (socket.hasReceiveMore()) {
+				continue;
+			}
+
+			final long received = System.nanoTime();
+			if (fLastHeartbeatNanos != 0) {
+				metrics.getHeartbeatInterval().record(received - fLastHeartbeatNanos);
+			}
+			fLastHeartbeatNanos = received;
+
+			// Send back frames unchanged
+			final int count = fFrames.size();
+			for (int i = 0; i < count; i++) {
+				socket.send(fFrames.get(i), (i < count - 1) ? ZMQ.SNDMORE : 0);
+			}
+			fFrames.clear();
+			metrics.getHeartbeatEchoTime().record(System.nanoTime() - received);
+		}
 	}
 
 	/*
@@ -84,4 +102,12 @@ public class HeartbeatChannel extends AbstractRunningServerChannel {
 		// Heartbeat needs to be REP socket
 		return ZMQ.REP;
 	}
+
+	/**
+	 * @see AbstractChannel#getChannelName()
+	 */
+	@Override
+	public String getChannelName() {
+		return SocketOptions.HEARTBEAT;
+	}
 }
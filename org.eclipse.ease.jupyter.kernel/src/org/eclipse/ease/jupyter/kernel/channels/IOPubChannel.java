@@ -12,68 +12,132 @@
 package org.eclipse.ease.jupyter.kernel.channels;
 
 import java.io.IOException;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.zeromq.ZMQ;
 
 import org.eclipse.ease.jupyter.kernel.Session;
+import org.eclipse.ease.jupyter.kernel.SocketOptions;
 import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.eclipse.ease.jupyter.kernel.metrics.KernelMetrics;
 
 /**
  * Custom jupyter kernel channel publishing data to all connected clients.
+ * 
+ * Messages are queued in a {@link PublishQueue} so producers never block on a
+ * slow PUB socket. Producers serialize and sign their messages before queuing
+ * them, the dispatcher thread takes pending messages in batches and writes
+ * them to the socket back-to-back. Messages that might still be merged are
+ * only serialized by the dispatcher thread, after merging.
  */
 public class IOPubChannel extends AbstractRunningServerChannel {
+	/**
+	 * Maximum number of messages taken from the queue at once.
+	 */
+	private static final int BATCH_SIZE = 64;
+
 	/**
 	 * @see AbstractRunningServerChannel#AbstractRunningServerChannel(String,
 	 *      Session)
 	 */
 	public IOPubChannel(final String address, final Session session) {
+		this(address, session, PublishQueue.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor initializes members.
+	 * 
+	 * @param address
+	 *            Address to be used by IOPubChannel.
+	 * @param session
+	 *            {@link Session} for creating sockets, etc...
+	 * @param queueCapacity
+	 *            Maximum number of pending messages.
+	 */
+	public IOPubChannel(final String address, final Session session, final int queueCapacity) {
 		super(address, session);
+		fOutputQueue = new PublishQueue(queueCapacity);
+		session.getMetrics().setPublishQueue(fOutputQueue);
 	}
 
 	/**
-	 * Blocking queue for messages to be send to all clients.
+	 * Queue for messages to be send to all clients.
 	 */
-	private final BlockingQueue<Message> fOutputQueue = new ArrayBlockingQueue<Message>(16);
+	private final PublishQueue fOutputQueue;
 
 	/**
-	 * Adds a new {@link Message} to the output queue.
+	 * Serializes the given {@link Message} on the calling thread and adds it
+	 * to the output queue. Never blocks. Messages with
+	 * {@link PublishQueue.Policy#MERGE} policy are serialized on the
+	 * dispatcher thread, as merging would outdate the frames.
 	 * 
-	 * Method does not guarantee that {@link Message} will be send.
+	 * Method does not guarantee that {@link Message} will be send, depending
+	 * on the {@link PublishQueue.Policy} for its type it might be merged or
+	 * dropped.
 	 * 
 	 * @param message
 	 *            {@link Message} to be send asynchronously.
 	 */
 	public void send(Message message) {
-		try {
-			fOutputQueue.put(message);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+		List<byte[]> frames = null;
+		if (fOutputQueue.getPolicy(message.getHeader().getMsgType()) != PublishQueue.Policy.MERGE) {
+			try {
+				frames = getSession().serialize(message);
+			} catch (IOException e) {
+				// Retry on dispatcher thread
+				e.printStackTrace();
+			}
 		}
+		fOutputQueue.offer(message, frames);
+	}
+
+	/**
+	 * Returns the queue of messages to be published, e.g. to configure
+	 * policies or query counters.
+	 * 
+	 * @return {@link PublishQueue} of channel.
+	 */
+	public PublishQueue getPublishQueue() {
+		return fOutputQueue;
 	}
 
 	/**
-	 * Custom runnable trying to take {@link Message} from internal queue and
-	 * sending it to all connected clients.
+	 * Custom runnable taking batches of serialized {@link Message}s from
+	 * internal queue and sending them to all connected clients.
 	 */
 	private class MessageDispatcher implements Runnable {
 		@Override
 		public void run() {
-			Message toSend = null;
-			while (isRunning()) {
+			final List<PublishQueue.Entry> batch = new ArrayList<PublishQueue.Entry>(BATCH_SIZE);
+			final KernelMetrics metrics = getSession().getMetrics();
+			while (true) {
 				try {
-					toSend = fOutputQueue.take();
+					// Queue closed and all pending messages sent
+					if (fOutputQueue.drainTo(batch, BATCH_SIZE) == 0) {
+						break;
+					}
 				} catch (InterruptedException e) {
 					e.printStackTrace();
 					break;
 				}
+				metrics.getIoPubQueueDepth().record(batch.size() + fOutputQueue.size());
+
 				try {
-					getSession().send(toSend, getZmqSocket());
+					for (PublishQueue.Entry entry : batch) {
+						List<byte[]> frames = entry.getFrames();
+						if (frames == null) {
+							// Mergeable or failed to serialize on producer
+							frames = getSession().serialize(entry.getMessage());
+						}
+						getSession().send(frames, getZmqSocket());
+						metrics.getIoPubSendTime().record(System.nanoTime() - entry.getQueuedNanos());
+					}
 				} catch (IOException e) {
 					e.printStackTrace();
 					break;
 				}
+				batch.clear();
 			}
 		}
 	}
@@ -97,6 +161,25 @@ public class IOPubChannel extends AbstractRunningServerChannel {
 		fPubThread.start();
 	}
 
+	/**
+	 * Closes the output queue and waits for the dispatcher to publish all
+	 * pending messages.
+	 */
+	@Override
+	public void stop() {
+		super.stop();
+		fOutputQueue.close();
+
+		final Thread thread = fPubThread;
+		if (thread != null && thread != Thread.currentThread()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -107,4 +190,12 @@ public class IOPubChannel extends AbstractRunningServerChannel {
 		// IOPub needs to be PUB socket
 		return ZMQ.PUB;
 	}
+
+	/**
+	 * @see AbstractChannel#getChannelName()
+	 */
+	@Override
+	public String getChannelName() {
+		return SocketOptions.IOPUB;
+	}
 }
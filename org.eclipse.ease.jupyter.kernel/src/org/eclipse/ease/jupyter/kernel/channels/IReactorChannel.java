@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.channels;
+
+import java.io.IOException;
+
+import org.zeromq.ZMQ.Socket;
+
+/**
+ * Interface for channels whose incoming data is handled by a {@link Reactor}.
+ */
+public interface IReactorChannel {
+	/**
+	 * Returns the ZMQ socket to be polled by the {@link Reactor}.
+	 *
+	 * @return ZMQ socket of channel.
+	 */
+	Socket getZmqSocket();
+
+	/**
+	 * Checks if the channel currently accepts incoming data. The
+	 * {@link Reactor} stops polling the channel's socket while this returns
+	 * <code>false</code>, leaving data queued in ZMQ.
+	 * <p>
+	 * Channels need to wake up the reactor using {@link Reactor#wakeUp()} once
+	 * they accept data again.
+	 *
+	 * @return <code>true</code> if channel accepts data.
+	 */
+	boolean acceptsData();
+
+	/**
+	 * Called by the {@link Reactor} thread whenever data is available on the
+	 * channel's socket.
+	 * <p>
+	 * Implementations must not block, long running work needs to be handed
+	 * off to other threads.
+	 *
+	 * @throws IOException
+	 *             If data could not be read.
+	 */
+	void handleReadable() throws IOException;
+}
@@ -0,0 +1,580 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.channels;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.ease.jupyter.kernel.messages.Content;
+import org.eclipse.ease.jupyter.kernel.messages.Header;
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.eclipse.ease.jupyter.kernel.messages.Stream;
+
+/**
+ * Queue of messages waiting to be published on the {@link IOPubChannel}.
+ * <p>
+ * Producers never block: depending on the {@link Policy} for its message type
+ * a message is either queued, merged into a pending message, replaces a
+ * pending message or is dropped once the queue is full. Messages to be kept
+ * are never dropped: they make room by evicting the oldest droppable pending
+ * message and only exceed the capacity if nothing else is pending. As every
+ * request produces only a few of them, a slow subscriber never grows the heap
+ * without bound. Counters for queued, merged and dropped messages allow monitoring how far
+ * publishing lags behind.
+ * <p>
+ * Messages are queued together with their serialized frames, so producers
+ * serialize in parallel and the publishing thread only writes to the socket.
+ */
+public class PublishQueue {
+	/**
+	 * Default number of pending messages before droppable messages get
+	 * dropped.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Default maximum number of characters of merged stream text.
+	 */
+	public static final int DEFAULT_MAX_MERGED_SIZE = ChannelOutputStream.DEFAULT_MAX_CHUNK_SIZE;
+
+	/**
+	 * Policies for handling messages of a given type.
+	 */
+	public static enum Policy {
+		/**
+		 * Message is always queued. If the queue is full the oldest pending
+		 * message with any other policy is dropped instead, if there is none
+		 * the capacity is exceeded.
+		 */
+		KEEP,
+
+		/**
+		 * Stream message is appended to the most recently queued message if
+		 * that is still pending, belongs to the same stream and parent and
+		 * the merged text stays below the maximum merged size. Otherwise it
+		 * is queued, or dropped if the queue is full.
+		 */
+		MERGE,
+
+		/**
+		 * Pending message with the same type and display ID is discarded in
+		 * favor of the new one. Otherwise the message is queued, or dropped
+		 * if the queue is full.
+		 */
+		LATEST,
+
+		/**
+		 * Message is dropped if the queue is full.
+		 */
+		DROP
+	}
+
+	/**
+	 * Pending message together with its serialized frames.
+	 */
+	static class Entry {
+		/**
+		 * Pending {@link Message}.
+		 */
+		private final Message fMessage;
+
+		/**
+		 * Serialized frames of {@link #fMessage}, <code>null</code> if not
+		 * serialized yet or outdated by a merge.
+		 */
+		private List<byte[]> fFrames;
+
+		/**
+		 * Time the entry was queued in nanoseconds, see
+		 * {@link System#nanoTime()}.
+		 */
+		private final long fQueuedNanos;
+
+		/**
+		 * Name of the stream of a merged stream message, <code>null</code> if
+		 * nothing was merged.
+		 */
+		private String fStreamName;
+
+		/**
+		 * Text of a merged stream message, written to the message content once
+		 * the entry is taken from the queue.
+		 */
+		private StringBuilder fMergedText;
+
+		/**
+		 * Constructor only stores parameters to members.
+		 *
+		 * @param message
+		 *            Pending {@link Message}.
+		 * @param frames
+		 *            Serialized frames, might be <code>null</code>.
+		 */
+		public Entry(final Message message, final List<byte[]> frames) {
+			fMessage = message;
+			fFrames = frames;
+			fQueuedNanos = System.nanoTime();
+		}
+
+		/**
+		 * Getter for time the entry was queued.
+		 *
+		 * @return Queue time in nanoseconds, see {@link System#nanoTime()}.
+		 */
+		public long getQueuedNanos() {
+			return fQueuedNanos;
+		}
+
+		/**
+		 * Getter for pending message.
+		 *
+		 * @return Pending {@link Message}.
+		 */
+		public Message getMessage() {
+			return fMessage;
+		}
+
+		/**
+		 * Getter for serialized frames.
+		 *
+		 * @return Serialized frames or <code>null</code> if message needs to
+		 *         be serialized.
+		 */
+		public List<byte[]> getFrames() {
+			return fFrames;
+		}
+
+		/**
+		 * Writes merged stream text to the message content. Called once the
+		 * entry is taken from the queue, so text is only copied once.
+		 */
+		private void complete() {
+			if (fMergedText != null) {
+				fMessage.withContent(new Stream().withName(fStreamName).withText(fMergedText.toString()));
+				fMergedText = null;
+			}
+		}
+	}
+
+	/**
+	 * Message type for stream messages.
+	 */
+	private static final String STREAM_TYPE = "stream";
+
+	/**
+	 * Pending messages in order of arrival.
+	 */
+	private final Deque<Entry> fMessages = new ArrayDeque<Entry>();
+
+	/**
+	 * Lookup table from message type to {@link Policy}.
+	 */
+	private final Map<String, Policy> fPolicies = new ConcurrentHashMap<String, Policy>();
+
+	/**
+	 * Maximum number of pending messages.
+	 */
+	private final int fCapacity;
+
+	/**
+	 * Maximum number of characters of merged stream text.
+	 */
+	private final int fMaxMergedSize;
+
+	/**
+	 * {@link Policy} for message types without explicit policy.
+	 */
+	private volatile Policy fDefaultPolicy = Policy.DROP;
+
+	/**
+	 * Flag to check if queue was closed.
+	 */
+	private boolean fClosed;
+
+	/**
+	 * Number of messages queued so far.
+	 */
+	private long fQueuedCount;
+
+	/**
+	 * Number of messages merged into pending messages so far.
+	 */
+	private long fMergedCount;
+
+	/**
+	 * Number of messages dropped or superseded so far.
+	 */
+	private long fDroppedCount;
+
+	/**
+	 * Constructor using the default maximum merged size.
+	 *
+	 * @param capacity
+	 *            Maximum number of pending messages.
+	 * @see #PublishQueue(int, int)
+	 */
+	public PublishQueue(final int capacity) {
+		this(capacity, DEFAULT_MAX_MERGED_SIZE);
+	}
+
+	/**
+	 * Constructor sets up default policies: status and execution related
+	 * messages are kept, stream messages merged and display updates replaced.
+	 *
+	 * @param capacity
+	 *            Maximum number of pending messages.
+	 * @param maxMergedSize
+	 *            Maximum number of characters of merged stream text.
+	 */
+	public PublishQueue(final int capacity, final int maxMergedSize) {
+		fCapacity = capacity;
+		fMaxMergedSize = maxMergedSize;
+
+		fPolicies.put("status", Policy.KEEP);
+		fPolicies.put("execute_input", Policy.KEEP);
+		fPolicies.put("execute_result", Policy.KEEP);
+		fPolicies.put("error", Policy.KEEP);
+		fPolicies.put("clear_output", Policy.KEEP);
+		fPolicies.put(STREAM_TYPE, Policy.MERGE);
+		fPolicies.put("display_data", Policy.LATEST);
+		fPolicies.put("update_display_data", Policy.LATEST);
+	}
+
+	/**
+	 * Sets the {@link Policy} for the given message type.
+	 *
+	 * @param messageType
+	 *            Message type to set policy for.
+	 * @param policy
+	 *            {@link Policy} for messages of given type.
+	 */
+	public void setPolicy(final String messageType, final Policy policy) {
+		fPolicies.put(messageType, policy);
+	}
+
+	/**
+	 * Sets the {@link Policy} for message types without explicit policy.
+	 *
+	 * @param policy
+	 *            {@link Policy} for all other message types.
+	 */
+	public void setDefaultPolicy(final Policy policy) {
+		fDefaultPolicy = policy;
+	}
+
+	/**
+	 * Returns the {@link Policy} for the given message type.
+	 *
+	 * @param messageType
+	 *            Message type to get policy for.
+	 * @return {@link Policy} for messages of given type.
+	 */
+	public Policy getPolicy(final String messageType) {
+		final Policy policy = (messageType != null) ? fPolicies.get(messageType) : null;
+		return (policy != null) ? policy : fDefaultPolicy;
+	}
+
+	/**
+	 * Offers the given message for publishing. Never blocks.
+	 *
+	 * @param message
+	 *            {@link Message} to be published.
+	 * @return <code>true</code> if message was queued or merged,
+	 *         <code>false</code> if it was dropped.
+	 * @see #offer(Message, List)
+	 */
+	public boolean offer(final Message message) {
+		return offer(message, null);
+	}
+
+	/**
+	 * Offers the given, already serialized message for publishing. Never
+	 * blocks.
+	 *
+	 * @param message
+	 *            {@link Message} to be published.
+	 * @param frames
+	 *            Serialized frames of message, <code>null</code> to serialize
+	 *            on publishing thread.
+	 * @return <code>true</code> if message was queued or merged,
+	 *         <code>false</code> if it was dropped.
+	 */
+	public synchronized boolean offer(final Message message, final List<byte[]> frames) {
+		if (fClosed) {
+			fDroppedCount++;
+			return false;
+		}
+
+		final Policy policy = getPolicy(message.getHeader().getMsgType());
+		switch (policy) {
+		case MERGE:
+			if (merge(fMessages.peekLast(), message)) {
+				fMergedCount++;
+				return true;
+			}
+			break;
+
+		case LATEST:
+			discardDisplay(message);
+			break;
+
+		default:
+			break;
+		}
+
+		// Only messages to be kept make room by evicting a droppable one
+		if (fMessages.size() >= fCapacity) {
+			if (policy != Policy.KEEP) {
+				fDroppedCount++;
+				return false;
+			}
+			evictDroppable();
+		}
+
+		fMessages.addLast(new Entry(message, frames));
+		fQueuedCount++;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Drops the oldest pending message that is not to be kept. Does nothing if
+	 * only messages to be kept are pending.
+	 */
+	private void evictDroppable() {
+		final Iterator<Entry> iterator = fMessages.iterator();
+		while (iterator.hasNext()) {
+			if (getPolicy(iterator.next().getMessage().getHeader().getMsgType()) != Policy.KEEP) {
+				iterator.remove();
+				fDroppedCount++;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Takes the next pending message, waiting for one if necessary.
+	 *
+	 * @return Next {@link Message} or <code>null</code> if queue was closed
+	 *         and all pending messages were taken.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting.
+	 */
+	public synchronized Message take() throws InterruptedException {
+		while (fMessages.isEmpty() && !fClosed) {
+			wait();
+		}
+		final Entry entry = fMessages.pollFirst();
+		if (entry == null) {
+			return null;
+		}
+		entry.complete();
+		return entry.getMessage();
+	}
+
+	/**
+	 * Moves up to the given number of pending entries to the given list,
+	 * waiting for at least one if necessary.
+	 *
+	 * @param batch
+	 *            List to add pending entries to.
+	 * @param maxEntries
+	 *            Maximum number of entries to be moved.
+	 * @return Number of moved entries, <code>0</code> if queue was closed and
+	 *         all pending messages were taken.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting.
+	 */
+	synchronized int drainTo(final List<Entry> batch, final int maxEntries) throws InterruptedException {
+		while (fMessages.isEmpty() && !fClosed) {
+			wait();
+		}
+
+		int count = 0;
+		while (count < maxEntries && !fMessages.isEmpty()) {
+			final Entry entry = fMessages.pollFirst();
+			entry.complete();
+			batch.add(entry);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Closes the queue. New messages are dropped, pending messages can still
+	 * be taken.
+	 */
+	public synchronized void close() {
+		fClosed = true;
+		notifyAll();
+	}
+
+	/**
+	 * Returns the number of pending messages.
+	 *
+	 * @return Number of pending messages.
+	 */
+	public synchronized int size() {
+		return fMessages.size();
+	}
+
+	/**
+	 * Returns the number of messages queued so far.
+	 *
+	 * @return Number of queued messages.
+	 */
+	public synchronized long getQueuedCount() {
+		return fQueuedCount;
+	}
+
+	/**
+	 * Returns the number of messages merged into pending messages so far.
+	 *
+	 * @return Number of merged messages.
+	 */
+	public synchronized long getMergedCount() {
+		return fMergedCount;
+	}
+
+	/**
+	 * Returns the number of messages dropped so far, including display
+	 * updates superseded by newer ones.
+	 *
+	 * @return Number of dropped messages.
+	 */
+	public synchronized long getDroppedCount() {
+		return fDroppedCount;
+	}
+
+	/**
+	 * Appends the text of the given stream message to the pending message, if
+	 * both belong to the same stream and parent and the merged text does not
+	 * exceed the maximum merged size.
+	 *
+	 * @param entry
+	 *            Most recently queued entry, might be <code>null</code>.
+	 * @param message
+	 *            New stream message.
+	 * @return <code>true</code> if message was merged.
+	 */
+	private boolean merge(final Entry entry, final Message message) {
+		final Message pending = (entry != null) ? entry.getMessage() : null;
+		if (pending == null || !STREAM_TYPE.equals(pending.getHeader().getMsgType())
+				|| !isSameParent(pending.getParentHeader(), message.getParentHeader())) {
+			return false;
+		}
+
+		try {
+			final Stream stream = message.getContent(Stream.class);
+			final String text = (stream.getText() != null) ? stream.getText() : "";
+
+			// Collect text in a builder on first merge
+			if (entry.fMergedText == null) {
+				final Stream pendingStream = pending.getContent(Stream.class);
+				final String pendingText = (pendingStream.getText() != null) ? pendingStream.getText() : "";
+				if (pendingStream.getName() == null || !pendingStream.getName().equals(stream.getName())
+						|| pendingText.length() + text.length() > fMaxMergedSize) {
+					return false;
+				}
+				entry.fStreamName = pendingStream.getName();
+				entry.fMergedText = new StringBuilder(pendingText);
+
+			} else if (!entry.fStreamName.equals(stream.getName())
+					|| entry.fMergedText.length() + text.length() > fMaxMergedSize) {
+				return false;
+			}
+			entry.fMergedText.append(text);
+
+			// Frames are outdated, publishing thread serializes again
+			entry.fFrames = null;
+			return true;
+
+		} catch (IOException | IllegalArgumentException e) {
+			// Not a valid stream, queue as is
+			return false;
+		}
+	}
+
+	/**
+	 * Checks if both headers belong to the same parent message.
+	 *
+	 * @param first
+	 *            First parent header, might be <code>null</code>.
+	 * @param second
+	 *            Second parent header, might be <code>null</code>.
+	 * @return <code>true</code> if both headers have the same message ID.
+	 */
+	private static boolean isSameParent(final Header first, final Header second) {
+		final String firstId = (first != null) ? first.getMsgId() : null;
+		final String secondId = (second != null) ? second.getMsgId() : null;
+		return (firstId == null) ? secondId == null : firstId.equals(secondId);
+	}
+
+	/**
+	 * Removes a pending message of the same type and with the same display ID
+	 * as the given message.
+	 *
+	 * @param message
+	 *            New display message.
+	 */
+	private void discardDisplay(final Message message) {
+		final Object displayId = getDisplayId(message);
+		if (displayId == null) {
+			return;
+		}
+
+		final String messageType = message.getHeader().getMsgType();
+		final Iterator<Entry> iterator = fMessages.iterator();
+		while (iterator.hasNext()) {
+			final Message pending = iterator.next().getMessage();
+			if (messageType.equals(pending.getHeader().getMsgType()) && displayId.equals(getDisplayId(pending))) {
+				iterator.remove();
+				fDroppedCount++;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the display ID stored in the transient data of a display
+	 * message.
+	 *
+	 * @param message
+	 *            Display message.
+	 * @return Display ID or <code>null</code> if not available.
+	 */
+	private static Object getDisplayId(final Message message) {
+		final Object content;
+		try {
+			content = message.getContent();
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+
+		Object transientData = null;
+		if (content instanceof Map) {
+			transientData = ((Map<?, ?>) content).get("transient");
+		} else if (content instanceof Content) {
+			transientData = ((Content) content).getAdditionalProperties().get("transient");
+		}
+
+		if (transientData instanceof Map) {
+			return ((Map<?, ?>) transientData).get("display_id");
+		}
+		return null;
+	}
+}
@@ -0,0 +1,350 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.channels;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.ease.jupyter.kernel.Session;
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Poller;
+import org.zeromq.ZMQ.Socket;
+import org.zeromq.ZMQException;
+
+/**
+ * Single threaded event loop multiplexing all request channels of a kernel.
+ * <p>
+ * A {@link Poller} waits for incoming data on all registered channels and on
+ * an internal in-process wake-up pipe. The reactor thread is the only thread
+ * accessing the registered sockets: messages sent from other threads are
+ * serialized on the calling thread and queued for the reactor, which then
+ * gets woken up to actually send them. Stopping the reactor wakes it up as
+ * well, so no receive timeouts are necessary.
+ */
+public class Reactor implements Runnable {
+	/**
+	 * Frame sent over the wake-up pipe.
+	 */
+	private static final byte[] WAKE_UP = new byte[0];
+
+	/**
+	 * Already serialized message waiting to be sent by the reactor thread.
+	 */
+	private static class PendingMessage {
+		/**
+		 * ZMQ socket to send message to.
+		 */
+		private final Socket fZmqSocket;
+
+		/**
+		 * Serialized message frames.
+		 */
+		private final List<byte[]> fFrames;
+
+		/**
+		 * Constructor only stores parameters to members.
+		 *
+		 * @param zmqSocket
+		 *            ZMQ socket to send message to.
+		 * @param frames
+		 *            Serialized message frames.
+		 */
+		public PendingMessage(final Socket zmqSocket, final List<byte[]> frames) {
+			fZmqSocket = zmqSocket;
+			fFrames = frames;
+		}
+	}
+
+	/**
+	 * {@link Session} used for sending messages.
+	 */
+	private final Session fSession;
+
+	/**
+	 * Channels handled by reactor.
+	 */
+	private final List<IReactorChannel> fChannels = new ArrayList<IReactorChannel>();
+
+	/**
+	 * Messages waiting to be sent by the reactor thread.
+	 */
+	private final Queue<PendingMessage> fPendingMessages = new ConcurrentLinkedQueue<PendingMessage>();
+
+	/**
+	 * Receiving end of the wake-up pipe, polled by the reactor thread.
+	 */
+	private final Socket fWakeUpReceiver;
+
+	/**
+	 * Sending end of the wake-up pipe, shared by all threads waking up the
+	 * reactor (access synchronized on socket).
+	 */
+	private final Socket fWakeUpSender;
+
+	/**
+	 * Flag to avoid sending multiple wake-up signals before the reactor
+	 * handled the first one.
+	 */
+	private final AtomicBoolean fWakeUpPending = new AtomicBoolean(false);
+
+	/**
+	 * Flag to check if reactor is still running.
+	 */
+	private volatile boolean fRunning;
+
+	/**
+	 * Thread running the reactor, <code>null</code> if not started yet.
+	 */
+	private volatile Thread fThread;
+
+	/**
+	 * Constructor creates the wake-up pipe.
+	 *
+	 * @param session
+	 *            {@link Session} for creating sockets and sending messages.
+	 */
+	public Reactor(final Session session) {
+		fSession = session;
+
+		final String address = "inproc://reactor-" + UUID.randomUUID();
+		fWakeUpReceiver = session.createSocket(ZMQ.PAIR);
+		fWakeUpReceiver.bind(address);
+		fWakeUpSender = session.createSocket(ZMQ.PAIR);
+		fWakeUpSender.connect(address);
+	}
+
+	/**
+	 * Registers the given channel. All messages sent over the channel are
+	 * passed through the reactor from now on.
+	 * <p>
+	 * Channels need to be registered before the reactor is started.
+	 *
+	 * @param channel
+	 *            Channel to be handled by reactor.
+	 */
+	public synchronized <T extends AbstractChannel & IReactorChannel> void register(final T channel) {
+		if (fThread != null) {
+			throw new IllegalStateException("Channels must be registered before reactor is started");
+		}
+
+		fChannels.add(channel);
+		channel.setReactor(this);
+	}
+
+	/**
+	 * Starts the reactor thread.
+	 */
+	public synchronized void start() {
+		fRunning = true;
+		fThread = new Thread(this);
+		fThread.start();
+	}
+
+	/**
+	 * Stops the reactor. Waits for the reactor thread to finish unless called
+	 * from the reactor thread itself (e.g. by a shutdown request).
+	 */
+	public void stop() {
+		if (fRunning) {
+			fRunning = false;
+			wakeUp();
+		}
+
+		final Thread thread = fThread;
+		if (thread != null && !isReactorThread()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Getter to see if reactor is still running.
+	 *
+	 * @return <code>true</code> if reactor is still running.
+	 */
+	public boolean isRunning() {
+		return fRunning;
+	}
+
+	/**
+	 * Checks if the calling thread is the reactor thread.
+	 *
+	 * @return <code>true</code> if called from the reactor thread.
+	 */
+	public boolean isReactorThread() {
+		return Thread.currentThread() == fThread;
+	}
+
+	/**
+	 * Sends the given message over the given channel.
+	 * <p>
+	 * Messages are sent directly when called from the reactor thread (or
+	 * before the reactor was started), otherwise they are serialized on the
+	 * calling thread and queued for the reactor thread. A queued message is
+	 * either sent by the reactor or an {@link IOException} is thrown, even if
+	 * the reactor stops concurrently.
+	 *
+	 * @param channel
+	 *            Channel to send message over.
+	 * @param message
+	 *            {@link Message} to be sent.
+	 * @throws IOException
+	 *             If message could not be serialized or reactor already
+	 *             stopped.
+	 */
+	public void send(final AbstractChannel channel, final Message message) throws IOException {
+		if (fThread == null || isReactorThread()) {
+			fSession.send(message, channel.getZmqSocket());
+			return;
+		}
+
+		if (!fRunning) {
+			throw new IOException("Reactor not running, cannot send message " + message);
+		}
+
+		final PendingMessage pending = new PendingMessage(channel.getZmqSocket(), fSession.serialize(message));
+		fPendingMessages.add(pending);
+
+		// Reactor might have done its final flush in the meantime
+		if (!fRunning) {
+			if (fPendingMessages.remove(pending)) {
+				throw new IOException("Reactor stopped, cannot send message " + message);
+			}
+			return;
+		}
+		wakeUp();
+	}
+
+	/**
+	 * Wakes up the reactor thread, if not already pending. Can be called from
+	 * any thread.
+	 */
+	public void wakeUp() {
+		if (fWakeUpPending.compareAndSet(false, true)) {
+			synchronized (fWakeUpSender) {
+				fWakeUpSender.send(WAKE_UP, ZMQ.DONTWAIT);
+			}
+		}
+	}
+
+	/**
+	 * Sends all queued messages.
+	 */
+	private void flushPendingMessages() {
+		PendingMessage pending;
+		while ((pending = fPendingMessages.poll()) != null) {
+			try {
+				fSession.send(pending.fFrames, pending.fZmqSocket);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Creates a new {@link Poller} for the wake-up pipe and all channels
+	 * currently accepting data.
+	 *
+	 * @param polledChannels
+	 *            List to be filled with polled channels, in order of
+	 *            registration (starting at poller index 1).
+	 * @return New {@link Poller}.
+	 */
+	private Poller createPoller(final List<IReactorChannel> polledChannels) {
+		polledChannels.clear();
+
+		// Register wake-up pipe first, followed by all channels
+		final Poller poller = new Poller(fChannels.size() + 1);
+		poller.register(fWakeUpReceiver, Poller.POLLIN);
+		for (final IReactorChannel channel : fChannels) {
+			if (channel.acceptsData()) {
+				poller.register(channel.getZmqSocket(), Poller.POLLIN);
+				polledChannels.add(channel);
+			}
+		}
+		return poller;
+	}
+
+	/**
+	 * Checks if the set of channels accepting data differs from the polled
+	 * channels.
+	 *
+	 * @param polledChannels
+	 *            Channels currently polled.
+	 * @return <code>true</code> if poller needs to be recreated.
+	 */
+	private boolean isOutdated(final List<IReactorChannel> polledChannels) {
+		for (final IReactorChannel channel : fChannels) {
+			if (channel.acceptsData() != polledChannels.contains(channel)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Actual event loop.
+	 */
+	@Override
+	public void run() {
+		final List<IReactorChannel> polledChannels = new ArrayList<IReactorChannel>(fChannels.size());
+		Poller poller = createPoller(polledChannels);
+
+		while (fRunning) {
+			// Only poll channels accepting data
+			if (isOutdated(polledChannels)) {
+				poller = createPoller(polledChannels);
+			}
+
+			try {
+				poller.poll(-1);
+			} catch (ZMQException e) {
+				// Context terminated
+				break;
+			}
+
+			// Reset wake-up signal before handling queued messages
+			if (poller.pollin(0)) {
+				while (fWakeUpReceiver.recv(ZMQ.DONTWAIT) != null) {
+					// Drain all signals
+				}
+				fWakeUpPending.set(false);
+			}
+			flushPendingMessages();
+
+			// Handle incoming data
+			for (int i = 0; i < polledChannels.size() && fRunning; i++) {
+				if (poller.pollin(i + 1)) {
+					try {
+						polledChannels.get(i).handleReadable();
+					} catch (IOException e) {
+						// Ignore exceptions, client might have disconnected
+					}
+				}
+			}
+		}
+
+		// Send replies queued before stop, messages queued afterwards are
+		// rejected by send()
+		fRunning = false;
+		flushPendingMessages();
+	}
+}
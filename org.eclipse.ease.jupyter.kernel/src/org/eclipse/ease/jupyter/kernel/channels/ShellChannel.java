@@ -13,44 +13,67 @@ package org.eclipse.ease.jupyter.kernel.channels;
 
 import java.io.IOException;
 
-import org.zeromq.ZMQ;
-import org.eclipse.ease.jupyter.kernel.Kernel;
+import org.eclipse.ease.jupyter.kernel.IEngineProvider;
+import org.eclipse.ease.jupyter.kernel.RequestScheduler;
 import org.eclipse.ease.jupyter.kernel.Session;
+import org.eclipse.ease.jupyter.kernel.SocketOptions;
+import org.eclipse.ease.jupyter.kernel.RequestScheduler.IAbortableTask;
 import org.eclipse.ease.jupyter.kernel.handlers.AbstractMessageHandlerFactory;
+import org.eclipse.ease.jupyter.kernel.handlers.IAbortableMessageHandler;
 import org.eclipse.ease.jupyter.kernel.handlers.IMessageHandler;
 import org.eclipse.ease.jupyter.kernel.handlers.IMessageHandlerFactory;
 import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.eclipse.ease.jupyter.kernel.metrics.KernelMetrics;
+import org.zeromq.ZMQ;
 
 /**
  * Jupyter kernel channel running request handler.
+ * 
+ * Requests are read on the {@link Reactor} thread and queued in the shell
+ * queue of the {@link RequestScheduler}.
  */
-public class ShellChannel extends AbstractRunningServerChannel {
+public class ShellChannel extends AbstractRunningServerChannel implements IReactorChannel {
 	/**
-	 * Custom {@link Runnable} reading {@link Request} objects from channel and
-	 * calling methods depending on received request.
+	 * Custom {@link IAbortableTask} handling a single received request.
 	 */
-	private class RequestReader implements Runnable {
+	private class RequestTask implements IAbortableTask {
+		/**
+		 * Request to be handled.
+		 */
+		private final Message fMessage;
+
+		/**
+		 * Time the request was received at in nanoseconds.
+		 */
+		private final long fReceived;
+
+		/**
+		 * Constructor only stores parameters to members.
+		 * 
+		 * @param message
+		 *            Request to be handled.
+		 * @param received
+		 *            Time the request was received at in nanoseconds.
+		 */
+		public RequestTask(Message message, long received) {
+			fMessage = message;
+			fReceived = received;
+		}
+
 		@Override
 		public void run() {
-			Message message;
-
-			while (isRunning()) {
-				try {
-					// Read request
-					message = getSession().poll(getZmqSocket());
-				} catch (IOException e) {
-					// Ignore exceptions, client might have disconnected
-					continue;
-				}
-
-				// Check if message received (might have timed out)
-				if (message == null) {
-					continue;
-				}
-
-				// Actually handle message
-				handleMessage(message);
-			}
+			final KernelMetrics metrics = getSession().getMetrics();
+			final String messageType = fMessage.getHeader().getMsgType();
+			final long start = System.nanoTime();
+			metrics.getDispatchTime(messageType).record(start - fReceived);
+
+			handleMessage(fMessage);
+			metrics.getHandlerTime(messageType).record(System.nanoTime() - start);
+		}
+
+		@Override
+		public void abort() {
+			abortMessage(fMessage);
 		}
 	}
 
@@ -60,9 +83,9 @@ public class ShellChannel extends AbstractRunningServerChannel {
 	protected final AbstractMessageHandlerFactory fMessageHandlerFactory;
 
 	/**
-	 * Thread running the {@link RequestReader}.
+	 * {@link RequestScheduler} running the message handlers.
 	 */
-	protected Thread fRequestReaderThread;
+	protected final RequestScheduler fScheduler;
 
 	/**
 	 * Constructor initializes members.
@@ -71,48 +94,69 @@ public class ShellChannel extends AbstractRunningServerChannel {
 	 *            Address to be used by ShellChannel.
 	 * @param session
 	 *            {@link Session} for creating sockets, etc...
-	 * @param kernel
-	 *            {@link Kernel} object necessary for callbacks.
+	 * @param engineProvider
+	 *            {@link IEngineProvider} necessary for callbacks, usually the
+	 *            kernel.
 	 * @param ioPub
 	 *            {@link IOPubChannel} for informing clients about results, output,
 	 *            etc.
+	 * @param scheduler
+	 *            {@link RequestScheduler} to run message handlers.
 	 */
-	public ShellChannel(final String address, final Session session, Kernel kernel, IOPubChannel ioPub) {
+	public ShellChannel(final String address, final Session session, IEngineProvider engineProvider,
+			IOPubChannel ioPub, RequestScheduler scheduler) {
 		super(address, session);
 
 		// Create message handler factory.
-		fMessageHandlerFactory = new AbstractMessageHandlerFactory(kernel, this, ioPub);
+		fMessageHandlerFactory = new AbstractMessageHandlerFactory(engineProvider, session.getMetrics(), this,
+				ioPub);
+		fScheduler = scheduler;
 	}
 
 	/**
-	 * {@link ShellChannel} needs to be of ZMQ dealer type.
+	 * {@link ShellChannel} needs to be of ZMQ router type so replies reach the
+	 * client that sent the request when multiple clients are connected.
 	 */
 	@Override
 	public int getZmqSocketType() {
-		return ZMQ.DEALER;
+		return ZMQ.ROUTER;
 	}
 
 	/**
-	 * Starts the request reader thead.
+	 * Only accepts requests while the shell queue is not full, otherwise they
+	 * stay queued in ZMQ.
 	 */
 	@Override
-	public void start() {
-		super.start();
-		fRequestReaderThread = new Thread(new RequestReader());
-		fRequestReaderThread.start();
+	public boolean acceptsData() {
+		return fScheduler.hasShellCapacity();
 	}
 
 	/**
-	 * Stops the reader thread.
+	 * Reads the next request and passes it to the {@link RequestScheduler}.
 	 */
 	@Override
-	public void stop() {
-		super.stop();
-		try {
-			fRequestReaderThread.join();
-		} catch (InterruptedException e) {
-			// ignore
+	public void handleReadable() throws IOException {
+		// Read request
+		final Message message = getSession().poll(getZmqSocket());
+		final long received = System.nanoTime();
+
+		// Check if message received and still accepting requests
+		if (message == null || !isRunning()) {
+			return;
 		}
+
+		// Actually handle message
+		schedule(new RequestTask(message, received));
+	}
+
+	/**
+	 * Schedules the given request handler in the shell queue.
+	 * 
+	 * @param task
+	 *            Request handler to be scheduled.
+	 */
+	protected void schedule(Runnable task) {
+		fScheduler.submitShell(task);
 	}
 
 	/**
@@ -136,4 +180,29 @@ public class ShellChannel extends AbstractRunningServerChannel {
 		}
 	}
 
+	/**
+	 * Notifies the client that the given message was discarded without being
+	 * handled, if its handler supports this.
+	 * 
+	 * @param message
+	 *            Discarded {@link Message}.
+	 */
+	protected void abortMessage(Message message) {
+		IMessageHandlerFactory factory = fMessageHandlerFactory.getHandlerFactory(message.getHeader().getMsgType());
+
+		if (factory != null) {
+			IMessageHandler handler = factory.create();
+			if (handler instanceof IAbortableMessageHandler) {
+				((IAbortableMessageHandler) handler).abort(message);
+			}
+		}
+	}
+
+	/**
+	 * @see AbstractChannel#getChannelName()
+	 */
+	@Override
+	public String getChannelName() {
+		return SocketOptions.SHELL;
+	}
 }
@@ -11,13 +11,16 @@
 
 package org.eclipse.ease.jupyter.kernel.channels;
 
+import java.io.IOException;
+
 import org.eclipse.ease.jupyter.kernel.Session;
+import org.eclipse.ease.jupyter.kernel.SocketOptions;
 import org.zeromq.ZMQ;
 
 /**
  * Custom Jupyter kernel channel to query data from clients.
  */
-public class StdinChannel extends AbstractServerChannel {
+public class StdinChannel extends AbstractServerChannel implements IReactorChannel {
 	/**
 	 * @see AbstractServerChannel#AbstractServerChannel(String, Session).
 	 */
@@ -25,6 +28,23 @@ public class StdinChannel extends AbstractServerChannel {
 		super(address, session);
 	}
 
+	/**
+	 * Always accepts data.
+	 */
+	@Override
+	public boolean acceptsData() {
+		return true;
+	}
+
+	/**
+	 * Reads and discards incoming messages. Input requests are not sent yet, so
+	 * replies are only drained to not pile up in the socket.
+	 */
+	@Override
+	public void handleReadable() throws IOException {
+		getSession().poll(getZmqSocket());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -36,4 +56,12 @@ public class StdinChannel extends AbstractServerChannel {
 	public int getZmqSocketType() {
 		return ZMQ.ROUTER;
 	}
+
+	/**
+	 * @see AbstractChannel#getChannelName()
+	 */
+	@Override
+	public String getChannelName() {
+		return SocketOptions.STDIN;
+	}
 }
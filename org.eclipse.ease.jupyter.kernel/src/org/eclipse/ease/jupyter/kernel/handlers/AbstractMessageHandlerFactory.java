@@ -14,9 +14,10 @@ package org.eclipse.ease.jupyter.kernel.handlers;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.eclipse.ease.jupyter.kernel.Kernel;
+import org.eclipse.ease.jupyter.kernel.IEngineProvider;
 import org.eclipse.ease.jupyter.kernel.channels.AbstractServerChannel;
 import org.eclipse.ease.jupyter.kernel.channels.IOPubChannel;
+import org.eclipse.ease.jupyter.kernel.metrics.KernelMetrics;
 
 /**
  * Abstract Factory for creating {@link IMessageHandlerFactory} objects.
@@ -37,28 +38,41 @@ public class AbstractMessageHandlerFactory {
 	/**
 	 * Constructor initializes members and populates message handler array.
 	 * 
-	 * @param kernel
-	 *            {@link Kernel} necessary because handlers might need to perform
-	 *            callbacks.
+	 * @param engineProvider
+	 *            {@link IEngineProvider} necessary because handlers might need
+	 *            to perform callbacks.
+	 * @param metrics
+	 *            {@link KernelMetrics} for handlers recording metrics.
 	 * @param channel
 	 *            {@link AbstractServerChannel} to be able to send back data.
 	 * @param ioPub
 	 *            {@link IOPubChannel} for publishing data.
 	 */
-	public AbstractMessageHandlerFactory(Kernel kernel, AbstractServerChannel channel, IOPubChannel ioPub) {
+	public AbstractMessageHandlerFactory(IEngineProvider engineProvider, KernelMetrics metrics,
+			AbstractServerChannel channel, IOPubChannel ioPub) {
 		// Add all message handler factories
 		fFactoryMethods.put(KernelInfoMessageHandler.REQUEST_NAME,
-				new KernelInfoMessageHandler.Factory(channel, kernel));
+				new KernelInfoMessageHandler.Factory(channel, engineProvider));
 		fFactoryMethods.put(ExecuteMessageHandler.REQUEST_NAME,
-				new ExecuteMessageHandler.Factory(channel, ioPub, kernel));
+				new ExecuteMessageHandler.Factory(channel, ioPub, engineProvider, metrics));
 		fFactoryMethods.put(IsCompleteMessageHandler.REQUEST_NAME, new IsCompleteMessageHandler.Factory(channel));
 		fFactoryMethods.put(HistoryMessageHandler.REQUEST_NAME, new HistoryMessageHandler.Factory(channel));
 		fFactoryMethods.put(CompleteRequestMessageHandler.REQUEST_NAME,
-				new CompleteRequestMessageHandler.Factory(channel, kernel));
+				new CompleteRequestMessageHandler.Factory(channel, engineProvider));
 		fFactoryMethods.put(InspectRequestMessageHandler.REQUEST_NAME,
-				new InspectRequestMessageHandler.Factory(channel, kernel));
+				new InspectRequestMessageHandler.Factory(channel, engineProvider));
 
-		fFactoryMethods.put(ShutdownMessageHandler.REQUEST_NAME, new ShutdownMessageHandler.Factory(channel, kernel));
+		fFactoryMethods.put(ShutdownMessageHandler.REQUEST_NAME,
+				new ShutdownMessageHandler.Factory(channel, engineProvider));
+		fFactoryMethods.put(InterruptMessageHandler.REQUEST_NAME,
+				new InterruptMessageHandler.Factory(channel, engineProvider));
+		fFactoryMethods.put(KernelMetricsMessageHandler.REQUEST_NAME,
+				new KernelMetricsMessageHandler.Factory(channel, metrics));
+
+		// Only record separate metrics for handled message types
+		for (String messageType : fFactoryMethods.keySet()) {
+			metrics.registerMessageType(messageType);
+		}
 	}
 
 	/**
@@ -31,8 +31,6 @@ import org.eclipse.ease.ui.completion.CodeCompletionAggregator;
 import org.eclipse.ease.ui.completion.ScriptCompletionProposal;
 import org.eclipse.jface.text.contentassist.ICompletionProposal;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 /**
  * Custom message handler for {@link CompleteRequest} messages.
  */
@@ -80,11 +78,6 @@ public class CompleteRequestMessageHandler implements IMessageHandler {
 
 	}
 
-	/**
-	 * {@link ObjectMapper} to create {@link CompleteRequest} from dictionary.
-	 */
-	private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
-
 	/**
 	 * {@link AbstractChannel} for sending replies.
 	 */
@@ -118,7 +111,7 @@ public class CompleteRequestMessageHandler implements IMessageHandler {
 		// Parse request to more easily usable format.
 		CompleteRequest request;
 		try {
-			request = JSON_OBJECT_MAPPER.convertValue(message.getContent(), CompleteRequest.class);
+			request = message.getContent(CompleteRequest.class);
 			request.validate();
 		} catch (IOException | IllegalArgumentException e) {
 			e.printStackTrace();
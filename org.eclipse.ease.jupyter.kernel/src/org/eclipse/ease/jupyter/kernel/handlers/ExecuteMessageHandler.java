@@ -29,8 +29,7 @@ import org.eclipse.ease.jupyter.kernel.messages.ExecuteReply;
 import org.eclipse.ease.jupyter.kernel.messages.ExecuteReply.Status;
 import org.eclipse.ease.jupyter.kernel.messages.Message;
 import org.eclipse.ease.jupyter.kernel.messages.Status.ExecutionState;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.ease.jupyter.kernel.metrics.KernelMetrics;
 
 import org.eclipse.ease.jupyter.kernel.messages.ExecuteRequest;
 import org.eclipse.ease.jupyter.kernel.messages.ExecuteResult;
@@ -39,7 +38,7 @@ import org.eclipse.ease.jupyter.kernel.messages.Header;
 /**
  * Custom message handler for {@link ExecuteRequest} messages.
  */
-public class ExecuteMessageHandler implements IMessageHandler {
+public class ExecuteMessageHandler implements IAbortableMessageHandler {
 	public static final String REQUEST_NAME = "execute_request";
 	private static final String REPLY_NAME = "execute_reply";
 	private static final String EXECUTE_INPUT = "execute_input";
@@ -68,6 +67,11 @@ public class ExecuteMessageHandler implements IMessageHandler {
 		 */
 		private final IEngineProvider fEngineProvider;
 
+		/**
+		 * {@link KernelMetrics} to record execution times to.
+		 */
+		private final KernelMetrics fMetrics;
+
 		/**
 		 * Constructor only stores parameters to members.
 		 * 
@@ -78,11 +82,15 @@ public class ExecuteMessageHandler implements IMessageHandler {
 		 * @param engine
 		 *            {@link IScriptEngineProvider} to dynamically get
 		 *            {@link IScriptEngine} to execute code on.
+		 * @param metrics
+		 *            {@link KernelMetrics} to record execution times to.
 		 */
-		public Factory(final AbstractChannel channel, IOPubChannel ioPub, IEngineProvider engineProvider) {
+		public Factory(final AbstractChannel channel, IOPubChannel ioPub, IEngineProvider engineProvider,
+				KernelMetrics metrics) {
 			fRequestChannel = channel;
 			fIoPub = ioPub;
 			fEngineProvider = engineProvider;
+			fMetrics = metrics;
 		}
 
 		/**
@@ -90,16 +98,11 @@ public class ExecuteMessageHandler implements IMessageHandler {
 		 */
 		@Override
 		public IMessageHandler create() {
-			return new ExecuteMessageHandler(fRequestChannel, fIoPub, fEngineProvider);
+			return new ExecuteMessageHandler(fRequestChannel, fIoPub, fEngineProvider, fMetrics);
 		}
 
 	}
 
-	/**
-	 * {@link ObjectMapper} to create {@link ExecuteRequest} from dictionary.
-	 */
-	private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
-
 	/**
 	 * Abstract channel for sending replies.
 	 */
@@ -116,6 +119,11 @@ public class ExecuteMessageHandler implements IMessageHandler {
 	 */
 	private final IEngineProvider fEngineProvider;
 
+	/**
+	 * {@link KernelMetrics} to record execution times to.
+	 */
+	private final KernelMetrics fMetrics;
+
 	/**
 	 * Overall execution count set by constructor. Actual counter handled in
 	 * {@link Factory}.
@@ -132,11 +140,15 @@ public class ExecuteMessageHandler implements IMessageHandler {
 	 * @param engine
 	 *            {@link IScriptEngineProvider} to dynamically get
 	 *            {@link IScriptEngine} to execute code on.
+	 * @param metrics
+	 *            {@link KernelMetrics} to record execution times to.
 	 */
-	public ExecuteMessageHandler(AbstractChannel replyChannel, IOPubChannel ioPub, IEngineProvider engineProvider) {
+	public ExecuteMessageHandler(AbstractChannel replyChannel, IOPubChannel ioPub, IEngineProvider engineProvider,
+			KernelMetrics metrics) {
 		fReplyChannel = replyChannel;
 		fIoPub = ioPub;
 		fEngineProvider = engineProvider;
+		fMetrics = metrics;
 	}
 
 	/**
@@ -268,7 +280,7 @@ public class ExecuteMessageHandler implements IMessageHandler {
 		// Parse request to more easily usable format.
 		ExecuteRequest request;
 		try {
-			request = JSON_OBJECT_MAPPER.convertValue(message.getContent(), ExecuteRequest.class);
+			request = message.getContent(ExecuteRequest.class);
 			request.validate();
 		} catch (IOException | IllegalArgumentException e) {
 			e.printStackTrace();
@@ -300,21 +312,21 @@ public class ExecuteMessageHandler implements IMessageHandler {
 		// Assume that everything worked correctly, otherwise update later
 		ExecuteReply content = new ExecuteReply().withExecutionCount(fExecutionCount).withStatus(Status.OK);
 		ScriptResult result = null;
+		final Object execution = fEngineProvider.startExecution();
+		final long start = System.nanoTime();
 		try {
 			// Synchronously execute code using IScriptEngine
 			result = engine.executeSync(code);
+			final boolean interrupted = fEngineProvider.finishExecution(execution);
 
-			// Flush output stream just to be sure
-			stdout.flush();
-			stderr.flush();
-
-			// Also reset the header field just to be sure
-			stdout.setParentHeader(null);
-			stderr.setParentHeader(null);
-
-			// Check if exception occurred
+			// Check if exception occurred, code that completed normally was
+			// not terminated even if an interrupt arrived just afterwards
 			Throwable exception = result.getException();
-			if (exception != null) {
+			if (interrupted && exception != null) {
+				// Execution terminated by interrupt request, discard result
+				content = content.withStatus(Status.ABORT);
+				result = null;
+			} else if (exception != null) {
 				// Patch stacktrace to suitable format
 				List<String> stackTrace = new ArrayList<String>();
 				for (StackTraceElement ste : exception.getStackTrace()) {
@@ -328,6 +340,18 @@ public class ExecuteMessageHandler implements IMessageHandler {
 		} catch (InterruptedException e) {
 			// Set status to aborted
 			content = content.withStatus(Status.ABORT);
+		} finally {
+			// Later interrupts must not affect the next execution
+			fEngineProvider.finishExecution(execution);
+			fMetrics.getExecuteTime().record(System.nanoTime() - start);
+
+			// Publish coalesced output before the cell completes
+			stdout.forceFlush();
+			stderr.forceFlush();
+
+			// Also reset the header field just to be sure
+			stdout.setParentHeader(null);
+			stderr.setParentHeader(null);
 		}
 		reply = reply.withContent(content);
 
@@ -349,4 +373,24 @@ public class ExecuteMessageHandler implements IMessageHandler {
 			// ignore
 		}
 	}
+
+	/**
+	 * Replies to a discarded request with status aborted, surrounded by busy
+	 * and idle status like a handled request.
+	 */
+	@Override
+	public void abort(Message message) {
+		broadcastStart(message.getHeader());
+		broadcastStop(message.getHeader());
+
+		Message reply = message.createReply();
+		reply.getHeader().withMsgType(REPLY_NAME);
+		reply = reply.withContent(new ExecuteReply().withExecutionCount(fExecutionCount).withStatus(Status.ABORT));
+
+		try {
+			fReplyChannel.send(reply);
+		} catch (IOException e) {
+			// ignore
+		}
+	}
 }
@@ -0,0 +1,530 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.handlers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.ease.jupyter.kernel.handlers.HistoryMessageHandler.HistoryTuple;
+
+/**
+ * In-memory indexes over the entries of a {@link HistoryStore}.
+ * <p>
+ * Sessions are numbered in order of their first entry, as Jupyter history
+ * requests address sessions by number. For every session the sequence numbers
+ * and line numbers of its entries are kept for range lookups.
+ * <p>
+ * Glob searches use a trigram index over the entry inputs: every literal part
+ * of a pattern with at least three characters narrows the candidates to
+ * entries containing all its trigrams, only candidates are decoded and
+ * matched. To bound memory only the beginning of long inputs is indexed,
+ * entries with longer inputs are always candidates.
+ * <p>
+ * Sequence numbers are stored relative to the first indexed entry, so the
+ * index is not meant for more than {@link Integer#MAX_VALUE} entries.
+ */
+public class HistoryIndex {
+	/**
+	 * Maximum number of input characters indexed per entry.
+	 */
+	public static final int MAX_INDEXED_CHARS = 1024;
+
+	/**
+	 * Number of characters of an n-gram.
+	 */
+	private static final int GRAM_SIZE = 3;
+
+	/**
+	 * Growable, sorted list of relative sequence numbers. Entries older than
+	 * the oldest stored entry are dropped from the front.
+	 */
+	private static class Postings {
+		/**
+		 * Relative sequence numbers in ascending order.
+		 */
+		private int[] fValues = new int[4];
+
+		/**
+		 * Index of first valid value.
+		 */
+		private int fStart = 0;
+
+		/**
+		 * Index behind last valid value.
+		 */
+		private int fEnd = 0;
+
+		/**
+		 * Appends a value larger than all existing values.
+		 *
+		 * @param value
+		 *            Relative sequence number.
+		 */
+		public void add(final int value) {
+			if (fEnd == fValues.length) {
+				if (fStart > fValues.length / 2) {
+					// Reuse space of pruned values
+					System.arraycopy(fValues, fStart, fValues, 0, fEnd - fStart);
+					fEnd -= fStart;
+					fStart = 0;
+				} else {
+					fValues = Arrays.copyOf(fValues, fValues.length * 2);
+				}
+			}
+			fValues[fEnd++] = value;
+		}
+
+		/**
+		 * Drops all values smaller than the given one.
+		 *
+		 * @param first
+		 *            Smallest value to keep.
+		 */
+		public void prune(final int first) {
+			while (fStart < fEnd && fValues[fStart] < first) {
+				fStart++;
+			}
+		}
+
+		/**
+		 * Returns the number of valid values.
+		 *
+		 * @return Number of values.
+		 */
+		public int size() {
+			return fEnd - fStart;
+		}
+
+		/**
+		 * Checks if the given value is contained using binary search.
+		 *
+		 * @param value
+		 *            Value to look for.
+		 * @return <code>true</code> if contained.
+		 */
+		public boolean contains(final int value) {
+			return Arrays.binarySearch(fValues, fStart, fEnd, value) >= 0;
+		}
+	}
+
+	/**
+	 * Entries of a single session.
+	 */
+	private static class SessionEntries {
+		/**
+		 * Relative sequence numbers of entries.
+		 */
+		private final Postings fSequences = new Postings();
+
+		/**
+		 * Line numbers of entries, parallel to {@link #fSequences}.
+		 */
+		private int[] fLines = new int[4];
+
+		/**
+		 * Flag to signalize that line numbers are non-decreasing, allowing
+		 * binary search.
+		 */
+		private boolean fSorted = true;
+
+		/**
+		 * Appends an entry of the session.
+		 *
+		 * @param relative
+		 *            Relative sequence number.
+		 * @param line
+		 *            Line number of entry.
+		 */
+		public void add(final int relative, final int line) {
+			final Postings sequences = fSequences;
+			final int previousStart = sequences.fStart;
+			sequences.add(relative);
+			if (sequences.fStart != previousStart) {
+				// Sequences were compacted, move lines accordingly
+				System.arraycopy(fLines, previousStart, fLines, 0, sequences.fEnd - 1);
+			}
+			if (fLines.length < sequences.fValues.length) {
+				fLines = Arrays.copyOf(fLines, sequences.fValues.length);
+			}
+			final int index = sequences.fEnd - 1;
+			if (index > sequences.fStart && fLines[index - 1] > line) {
+				fSorted = false;
+			}
+			fLines[index] = line;
+		}
+	}
+
+	/**
+	 * Sequence number relative values refer to.
+	 */
+	private final long fBase;
+
+	/**
+	 * Session IDs by session number minus one.
+	 */
+	private final List<String> fSessionIds = new ArrayList<>();
+
+	/**
+	 * Entries by session ID.
+	 */
+	private final Map<String, SessionEntries> fSessions = new HashMap<>();
+
+	/**
+	 * Entries containing a trigram, by trigram.
+	 */
+	private final Map<Long, Postings> fTrigrams = new HashMap<>();
+
+	/**
+	 * Entries with inputs longer than {@link #MAX_INDEXED_CHARS}.
+	 */
+	private final Postings fLongEntries = new Postings();
+
+	/**
+	 * Sequence number of oldest entry still stored.
+	 */
+	private long fFirstSequence;
+
+	/**
+	 * Constructor only stores parameters to members.
+	 *
+	 * @param base
+	 *            Sequence number of first entry to be indexed.
+	 */
+	public HistoryIndex(final long base) {
+		fBase = base;
+		fFirstSequence = base;
+	}
+
+	/**
+	 * Indexes the given entry.
+	 *
+	 * @param sequence
+	 *            Sequence number of entry, larger than all indexed ones.
+	 * @param tuple
+	 *            Entry to be indexed.
+	 */
+	public void add(final long sequence, final HistoryTuple tuple) {
+		final int relative = (int) (sequence - fBase);
+
+		// Number sessions in order of appearance
+		final String session = String.valueOf(tuple.getSession());
+		SessionEntries entries = fSessions.get(session);
+		if (entries == null) {
+			entries = new SessionEntries();
+			fSessions.put(session, entries);
+			fSessionIds.add(session);
+		}
+		entries.add(relative, tuple.getLineNumber());
+
+		// Index every distinct trigram once
+		final String input = (tuple.getInput() != null) ? tuple.getInput() : "";
+		final int length = Math.min(input.length(), MAX_INDEXED_CHARS);
+		final Set<Long> grams = new HashSet<>();
+		for (int index = 0; index + GRAM_SIZE <= length; index++) {
+			final Long gram = gram(input, index);
+			if (grams.add(gram)) {
+				Postings postings = fTrigrams.get(gram);
+				if (postings == null) {
+					postings = new Postings();
+					fTrigrams.put(gram, postings);
+				}
+				postings.add(relative);
+			}
+		}
+		if (input.length() > MAX_INDEXED_CHARS) {
+			fLongEntries.add(relative);
+		}
+	}
+
+	/**
+	 * Drops all entries older than the given sequence number, e.g. after
+	 * segments were deleted.
+	 *
+	 * @param firstSequence
+	 *            Sequence number of oldest entry still stored.
+	 */
+	public void prune(final long firstSequence) {
+		if (firstSequence <= fFirstSequence) {
+			return;
+		}
+		fFirstSequence = firstSequence;
+
+		final int first = (int) (firstSequence - fBase);
+		for (final SessionEntries entries : fSessions.values()) {
+			entries.fSequences.prune(first);
+		}
+		final Iterator<Postings> iterator = fTrigrams.values().iterator();
+		while (iterator.hasNext()) {
+			final Postings postings = iterator.next();
+			postings.prune(first);
+			if (postings.size() == 0) {
+				iterator.remove();
+			}
+		}
+		fLongEntries.prune(first);
+	}
+
+	/**
+	 * Returns the number of the given session.
+	 *
+	 * @param session
+	 *            Session ID.
+	 * @return Session number starting at <code>1</code>, <code>0</code> if
+	 *         session is unknown.
+	 */
+	public int getSessionNumber(final String session) {
+		return fSessionIds.indexOf(session) + 1;
+	}
+
+	/**
+	 * Returns the number of sessions, which is also the number of the latest
+	 * session.
+	 *
+	 * @return Number of sessions.
+	 */
+	public int getSessionCount() {
+		return fSessionIds.size();
+	}
+
+	/**
+	 * Returns the sequence numbers of all entries of a session within the
+	 * given line range.
+	 *
+	 * @param sessionNumber
+	 *            Number of session starting at <code>1</code>.
+	 * @param start
+	 *            First line number (inclusive).
+	 * @param stop
+	 *            Last line number (exclusive).
+	 * @return Sequence numbers in ascending order.
+	 */
+	public long[] getRange(final int sessionNumber, final int start, final int stop) {
+		if (sessionNumber < 1 || sessionNumber > fSessionIds.size()) {
+			return new long[0];
+		}
+		final SessionEntries entries = fSessions.get(fSessionIds.get(sessionNumber - 1));
+		final Postings sequences = entries.fSequences;
+
+		// Sorted lines allow to skip directly to the first line
+		int index = sequences.fStart;
+		if (entries.fSorted) {
+			int low = sequences.fStart;
+			int high = sequences.fEnd;
+			while (low < high) {
+				final int middle = (low + high) >>> 1;
+				if (entries.fLines[middle] < start) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			index = low;
+		}
+
+		final long[] result = new long[sequences.fEnd - index];
+		int count = 0;
+		for (; index < sequences.fEnd; index++) {
+			final int line = entries.fLines[index];
+			if (line >= start && line < stop) {
+				result[count++] = fBase + sequences.fValues[index];
+			} else if (entries.fSorted && line >= stop) {
+				break;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Returns the entries possibly matching the given glob pattern, based on
+	 * the trigrams of its literal parts.
+	 *
+	 * @param glob
+	 *            Glob pattern (<code>*</code>, <code>?</code> and
+	 *            <code>[...]</code>).
+	 * @return Candidate sequence numbers in ascending order, <code>null</code>
+	 *         if the pattern has no literal part long enough to narrow the
+	 *         candidates.
+	 */
+	public long[] getCandidates(final String glob) {
+		final Set<Long> grams = new HashSet<>();
+		for (final String literal : getLiterals(glob)) {
+			for (int index = 0; index + GRAM_SIZE <= literal.length(); index++) {
+				grams.add(gram(literal, index));
+			}
+		}
+		if (grams.isEmpty()) {
+			return null;
+		}
+
+		// Intersect starting with the rarest trigram
+		final List<Postings> lists = new ArrayList<>();
+		for (final Long gram : grams) {
+			final Postings postings = fTrigrams.get(gram);
+			if (postings == null) {
+				lists.clear();
+				break;
+			}
+			lists.add(postings);
+		}
+
+		int[] candidates = new int[0];
+		int count = 0;
+		if (!lists.isEmpty()) {
+			Postings rarest = lists.get(0);
+			for (final Postings postings : lists) {
+				if (postings.size() < rarest.size()) {
+					rarest = postings;
+				}
+			}
+			candidates = new int[rarest.size()];
+			for (int index = rarest.fStart; index < rarest.fEnd; index++) {
+				final int value = rarest.fValues[index];
+				boolean all = true;
+				for (final Postings postings : lists) {
+					if (postings != rarest && !postings.contains(value)) {
+						all = false;
+						break;
+					}
+				}
+				if (all) {
+					candidates[count++] = value;
+				}
+			}
+		}
+
+		// Merge entries not fully indexed
+		final long[] result = new long[count + fLongEntries.size()];
+		int left = 0;
+		int right = fLongEntries.fStart;
+		int size = 0;
+		while (left < count || right < fLongEntries.fEnd) {
+			final int value;
+			if (right >= fLongEntries.fEnd
+					|| (left < count && candidates[left] <= fLongEntries.fValues[right])) {
+				value = candidates[left++];
+				if (right < fLongEntries.fEnd && fLongEntries.fValues[right] == value) {
+					right++;
+				}
+			} else {
+				value = fLongEntries.fValues[right++];
+			}
+			result[size++] = fBase + value;
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Encodes the characters at the given index as trigram key.
+	 *
+	 * @param text
+	 *            Text containing the trigram.
+	 * @param index
+	 *            Index of first character.
+	 * @return Trigram key.
+	 */
+	private static Long gram(final String text, final int index) {
+		return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+	}
+
+	/**
+	 * Splits the given glob pattern into its literal parts.
+	 *
+	 * @param glob
+	 *            Glob pattern.
+	 * @return Literal parts not containing any wildcard.
+	 */
+	static List<String> getLiterals(final String glob) {
+		final List<String> literals = new ArrayList<>();
+		final StringBuilder literal = new StringBuilder();
+		for (int index = 0; index < glob.length(); index++) {
+			final char c = glob.charAt(index);
+			if (c == '*' || c == '?' || c == '[') {
+				literals.add(literal.toString());
+				literal.setLength(0);
+				if (c == '[') {
+					final int end = getClassEnd(glob, index);
+					if (end >= 0) {
+						index = end;
+					}
+				}
+			} else {
+				literal.append(c);
+			}
+		}
+		literals.add(literal.toString());
+		return literals;
+	}
+
+	/**
+	 * Converts the given glob pattern to a regular expression matching the
+	 * whole input.
+	 *
+	 * @param glob
+	 *            Glob pattern.
+	 * @return Compiled regular expression.
+	 */
+	public static Pattern toRegex(final String glob) {
+		final StringBuilder regex = new StringBuilder();
+		for (int index = 0; index < glob.length(); index++) {
+			final char c = glob.charAt(index);
+			if (c == '*') {
+				regex.append(".*");
+			} else if (c == '?') {
+				regex.append('.');
+			} else if (c == '[' && getClassEnd(glob, index) >= 0) {
+				final int end = getClassEnd(glob, index);
+				String content = glob.substring(index + 1, end);
+				regex.append('[');
+				if (content.startsWith("!")) {
+					regex.append('^');
+					content = content.substring(1);
+				}
+				regex.append(content.replace("\\", "\\\\").replace("[", "\\[").replace("&&", "\\&\\&"));
+				regex.append(']');
+				index = end;
+			} else {
+				regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+		return Pattern.compile(regex.toString(), Pattern.DOTALL);
+	}
+
+	/**
+	 * Returns the index of the bracket closing the character class starting
+	 * at the given index.
+	 *
+	 * @param glob
+	 *            Glob pattern.
+	 * @param start
+	 *            Index of opening bracket.
+	 * @return Index of closing bracket, <code>-1</code> if class is not
+	 *         closed and the bracket is a literal.
+	 */
+	private static int getClassEnd(final String glob, final int start) {
+		int index = start + 1;
+		if (index < glob.length() && glob.charAt(index) == '!') {
+			index++;
+		}
+		// Closing bracket directly after opening one is part of the class
+		if (index < glob.length() && glob.charAt(index) == ']') {
+			index++;
+		}
+		return glob.indexOf(']', index);
+	}
+}
@@ -11,7 +11,9 @@
 
 package org.eclipse.ease.jupyter.kernel.handlers;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,8 +23,6 @@ import org.eclipse.ease.jupyter.kernel.messages.HistoryReply;
 import org.eclipse.ease.jupyter.kernel.messages.HistoryRequest;
 import org.eclipse.ease.jupyter.kernel.messages.Message;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 /**
  * Custom message handler for history messages.
  * 
@@ -32,6 +32,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class HistoryMessageHandler implements IMessageHandler {
 	public static final String REQUEST_NAME = "history_request";
 
+	/**
+	 * Number of entries returned for tail requests without explicit count.
+	 */
+	public static final int DEFAULT_TAIL_LENGTH = 10;
+
 	/**
 	 * {@link IMessageHandlerFactory} for creating {@link HistoryMessageHandler}
 	 * objects.
@@ -168,6 +173,42 @@ public class HistoryMessageHandler implements IMessageHandler {
 			this(session, lineNumber, input, null);
 		}
 
+		/**
+		 * Returns the session the code was executed for.
+		 * 
+		 * @return Session ID.
+		 */
+		public String getSession() {
+			return fSession;
+		}
+
+		/**
+		 * Returns the line number (execution count) of the code.
+		 * 
+		 * @return Line number of code.
+		 */
+		public int getLineNumber() {
+			return fLineNumber;
+		}
+
+		/**
+		 * Returns the executed code.
+		 * 
+		 * @return Code input.
+		 */
+		public String getInput() {
+			return fContent.fInput;
+		}
+
+		/**
+		 * Returns the result of the code.
+		 * 
+		 * @return Code output, <code>null</code> if not available.
+		 */
+		public String getOutput() {
+			return fContent.fOuput;
+		}
+
 		/**
 		 * Serializes the {@link HistoryTuple} to a list of objects that can be
 		 * send over Jupyter socket.
@@ -197,26 +238,87 @@ public class HistoryMessageHandler implements IMessageHandler {
 	}
 
 	/**
-	 * Static datastorage class for execution history.
+	 * Static access to the execution history shared by all kernels.
+	 * <p>
+	 * Entries are kept in a persistent {@link HistoryStore}, opened on first
+	 * access in the directory given by the system property
+	 * {@value #DIRECTORY_PROPERTY} (default
+	 * <code>~/.ease/jupyter/history</code>). If that directory cannot be used,
+	 * e.g. because another Eclipse instance holds it, a temporary directory is
+	 * used instead.
 	 * 
 	 * @author Martin Kloesch (martin.kloesch@gmail.com)
 	 *
 	 */
 	public static class History {
 		/**
-		 * Actual history.
+		 * System property overriding the history directory.
 		 */
-		private static final List<HistoryTuple> fHistory = new ArrayList<HistoryTuple>();
+		public static final String DIRECTORY_PROPERTY = "org.eclipse.ease.jupyter.kernel.history";
 
 		/**
-		 * Appends a new history tuple to the internal list.
+		 * Actual history, opened on first access.
+		 */
+		private static HistoryStore fStore;
+
+		/**
+		 * Returns the {@link HistoryStore} in use, opening the default store
+		 * if necessary.
+		 * 
+		 * @return {@link HistoryStore} in use.
+		 */
+		public static synchronized HistoryStore getStore() {
+			if (fStore == null) {
+				fStore = openDefaultStore();
+			}
+			return fStore;
+		}
+
+		/**
+		 * Replaces the {@link HistoryStore} in use, e.g. to use a different
+		 * directory. The previous store is not closed.
+		 * 
+		 * @param store
+		 *            {@link HistoryStore} to be used.
+		 */
+		public static synchronized void setStore(HistoryStore store) {
+			fStore = store;
+		}
+
+		/**
+		 * Opens the store in the configured directory, falling back to a
+		 * temporary directory.
+		 * 
+		 * @return Opened {@link HistoryStore}.
+		 */
+		private static HistoryStore openDefaultStore() {
+			final String directory = System.getProperty(DIRECTORY_PROPERTY);
+			try {
+				return new HistoryStore((directory != null) ? new File(directory)
+						: new File(System.getProperty("user.home"), ".ease" + File.separator + "jupyter"
+								+ File.separator + "history"));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+
+			try {
+				return new HistoryStore(Files.createTempDirectory("ease-jupyter-history").toFile());
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not open history store", e);
+			}
+		}
+
+		/**
+		 * Appends a new history tuple to the store.
 		 * 
 		 * @param tuple
 		 *            {@link HistoryTuple} to be appended.
 		 */
 		public static void append(HistoryTuple tuple) {
-			synchronized (fHistory) {
-				fHistory.add(tuple);
+			try {
+				getStore().append(tuple);
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
 		}
 
@@ -242,28 +344,21 @@ public class HistoryMessageHandler implements IMessageHandler {
 		}
 
 		/**
-		 * Returns copy of history in format that can be send over Jupyter
-		 * socket.
+		 * Returns copy of all stored history in format that can be send over
+		 * Jupyter socket.
 		 * 
 		 * @return History in format that can be send over Jupyter socket.
 		 */
 		public static List<List<Object>> getHistory(boolean withOutput) {
+			final HistoryStore store = getStore();
 			List<List<Object>> history = new ArrayList<List<Object>>();
-			synchronized (fHistory) {
-				for (HistoryTuple tuple : fHistory) {
-					history.add(tuple.serialize(withOutput));
-				}
-
+			for (HistoryTuple tuple : store.getRange(store.getFirstSequence(), store.getNextSequence())) {
+				history.add(tuple.serialize(withOutput));
 			}
 			return history;
 		}
 	}
 
-	/**
-	 * {@link ObjectMapper} to create {@link ExecuteRequest} from dictionary.
-	 */
-	private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
-
 	/**
 	 * Abstract channel for sending replies.
 	 */
@@ -287,7 +382,7 @@ public class HistoryMessageHandler implements IMessageHandler {
 		// Parse request to more usable format
 		HistoryRequest request;
 		try {
-			request = JSON_OBJECT_MAPPER.convertValue(message.getContent(), HistoryRequest.class);
+			request = message.getContent(HistoryRequest.class);
 			request.validate();
 		} catch (IOException | IllegalArgumentException e) {
 			e.printStackTrace();
@@ -299,8 +394,8 @@ public class HistoryMessageHandler implements IMessageHandler {
 		reply.getHeader().withMsgType("history_reply");
 
 		// Set history
-		// TODO: Handle filters
-		HistoryReply content = new HistoryReply().withHistory(History.getHistory(request.getOutput()));
+		HistoryReply content = new HistoryReply()
+				.withHistory(getHistory(request, message.getHeader().getSession()));
 		reply.withContent(content);
 
 		try {
@@ -310,4 +405,55 @@ public class HistoryMessageHandler implements IMessageHandler {
 			// ignore
 		}
 	}
+
+	/**
+	 * Queries the history according to the access type of the given request.
+	 * 
+	 * @param request
+	 *            {@link HistoryRequest} to be answered.
+	 * @param session
+	 *            Session ID of the requesting client, used as current session
+	 *            for relative session numbers.
+	 * @return History in format that can be send over Jupyter socket.
+	 */
+	public static List<List<Object>> getHistory(HistoryRequest request, String session) {
+		final HistoryStore store = History.getStore();
+		final boolean unique = Boolean.TRUE.equals(request.getUnique());
+
+		List<HistoryTuple> tuples;
+		switch (request.getHistAccessType()) {
+		case TAIL:
+			tuples = store.getTail((request.getN() != null) ? request.getN() : DEFAULT_TAIL_LENGTH, unique);
+			break;
+
+		case RANGE:
+			// Session numbers of 0 and below are relative to current session
+			int sessionNumber = (request.getSession() != null) ? request.getSession() : 0;
+			if (sessionNumber <= 0) {
+				int current = store.getSessionNumber(session);
+				if (current == 0) {
+					current = store.getSessionCount();
+				}
+				sessionNumber += current;
+			}
+			tuples = store.getSessionRange(sessionNumber, (request.getStart() != null) ? request.getStart() : 1,
+					(request.getStop() != null) ? request.getStop() : Integer.MAX_VALUE);
+			break;
+
+		case SEARCH:
+			tuples = store.search((request.getPattern() != null) ? request.getPattern() : "*",
+					(request.getN() != null) ? request.getN() : 0, unique);
+			break;
+
+		default:
+			tuples = store.getRange(store.getFirstSequence(), store.getNextSequence());
+			break;
+		}
+
+		List<List<Object>> history = new ArrayList<List<Object>>();
+		for (HistoryTuple tuple : tuples) {
+			history.add(tuple.serialize(request.getOutput()));
+		}
+		return history;
+	}
 }
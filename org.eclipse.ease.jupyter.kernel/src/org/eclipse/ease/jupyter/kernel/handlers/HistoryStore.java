@@ -0,0 +1,858 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.handlers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.eclipse.ease.jupyter.kernel.handlers.HistoryMessageHandler.HistoryTuple;
+
+/**
+ * Persistent, append-only store for {@link HistoryTuple} entries.
+ * <p>
+ * Entries are appended to memory-mapped segment files in the store
+ * directory. Every entry gets a sequence number, segments are named after the
+ * sequence number of their first entry and an in-memory offset index per
+ * segment maps sequence numbers to records. Once a segment is full a new one
+ * is started, segments exceeding the maximum segment count are deleted oldest
+ * first.
+ * <p>
+ * Only the most recent entries are kept on the heap, older entries are
+ * decoded from the mapped segments on demand. Every record is protected by a
+ * checksum, a record torn by a crash is discarded when the store is opened
+ * again. Writes to mapped segments survive the termination of the JVM, call
+ * {@link #flush()} to also survive an operating system crash.
+ * <p>
+ * The store directory is locked while open, so several Eclipse instances do
+ * not write the same segments.
+ * <p>
+ * Tail, session range and glob search queries are answered using a
+ * {@link HistoryIndex} built while recovering and kept up to date on append,
+ * so only the requested entries need to be decoded.
+ */
+public class HistoryStore implements Closeable {
+	/**
+	 * Default size of a segment file in bytes.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * Default maximum number of segment files kept.
+	 */
+	public static final int DEFAULT_MAX_SEGMENTS = 16;
+
+	/**
+	 * Default number of most recent entries kept on the heap.
+	 */
+	public static final int DEFAULT_HOT_WINDOW = 1000;
+
+	/**
+	 * Magic number at the start of every segment file.
+	 */
+	private static final int MAGIC = 0x454A4831;
+
+	/**
+	 * Size of the segment header (magic number).
+	 */
+	private static final int SEGMENT_HEADER_SIZE = 4;
+
+	/**
+	 * Size of the record header (payload length and checksum).
+	 */
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	/**
+	 * Prefix of segment file names.
+	 */
+	private static final String SEGMENT_PREFIX = "history-";
+
+	/**
+	 * Suffix of segment file names.
+	 */
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	/**
+	 * Name of the file locked while the store is open.
+	 */
+	private static final String LOCK_FILE = "history.lock";
+
+	/**
+	 * Single memory-mapped segment file with its offset index.
+	 */
+	private static class Segment {
+		/**
+		 * Segment file.
+		 */
+		private final File fFile;
+
+		/**
+		 * Sequence number of first entry in segment.
+		 */
+		private final long fFirstSequence;
+
+		/**
+		 * Mapped content of segment file.
+		 */
+		private final MappedByteBuffer fBuffer;
+
+		/**
+		 * Flag to signalize that entries may be appended.
+		 */
+		private final boolean fWritable;
+
+		/**
+		 * Offsets of records by index in segment.
+		 */
+		private int[] fOffsets = new int[64];
+
+		/**
+		 * Number of records in segment.
+		 */
+		private int fCount = 0;
+
+		/**
+		 * Offset the next record is written to.
+		 */
+		private int fWritePosition = SEGMENT_HEADER_SIZE;
+
+		/**
+		 * Constructor only stores parameters to members.
+		 *
+		 * @param file
+		 *            Segment file.
+		 * @param firstSequence
+		 *            Sequence number of first entry in segment.
+		 * @param buffer
+		 *            Mapped content of segment file.
+		 * @param writable
+		 *            Flag to signalize that entries may be appended.
+		 */
+		public Segment(final File file, final long firstSequence, final MappedByteBuffer buffer,
+				final boolean writable) {
+			fFile = file;
+			fFirstSequence = firstSequence;
+			fBuffer = buffer;
+			fWritable = writable;
+		}
+
+		/**
+		 * Adds the offset of the next record to the index.
+		 *
+		 * @param offset
+		 *            Offset of record in segment.
+		 */
+		public void addOffset(final int offset) {
+			if (fCount == fOffsets.length) {
+				fOffsets = Arrays.copyOf(fOffsets, fOffsets.length * 2);
+			}
+			fOffsets[fCount++] = offset;
+		}
+
+		/**
+		 * Checks if a record of the given size still fits into the segment.
+		 *
+		 * @param recordSize
+		 *            Size of record including header.
+		 * @return <code>true</code> if record can be appended.
+		 */
+		public boolean fits(final int recordSize) {
+			return fWritable && fWritePosition + recordSize <= fBuffer.capacity();
+		}
+	}
+
+	/**
+	 * Directory containing the segment files.
+	 */
+	private final File fDirectory;
+
+	/**
+	 * Size of newly created segment files.
+	 */
+	private final int fSegmentSize;
+
+	/**
+	 * Maximum number of segment files kept.
+	 */
+	private final int fMaxSegments;
+
+	/**
+	 * File holding the directory lock.
+	 */
+	private final RandomAccessFile fLockFile;
+
+	/**
+	 * Lock preventing other stores from using the directory.
+	 */
+	private final FileLock fLock;
+
+	/**
+	 * Segments by sequence number of their first entry.
+	 */
+	private final TreeMap<Long, Segment> fSegments = new TreeMap<>();
+
+	/**
+	 * Ring buffer of most recent entries, indexed by sequence number modulo
+	 * its length.
+	 */
+	private final HistoryTuple[] fRecent;
+
+	/**
+	 * Number of valid entries in {@link #fRecent}.
+	 */
+	private int fRecentCount = 0;
+
+	/**
+	 * Indexes over all stored entries.
+	 */
+	private HistoryIndex fIndex;
+
+	/**
+	 * Sequence number of the next appended entry.
+	 */
+	private long fNextSequence = 0;
+
+	/**
+	 * Flag to check if store was closed.
+	 */
+	private boolean fClosed = false;
+
+	/**
+	 * Opens the store in the given directory with default settings.
+	 *
+	 * @param directory
+	 *            Directory containing the segment files, created if
+	 *            necessary.
+	 * @throws IOException
+	 *             If directory cannot be used or is locked by another store.
+	 */
+	public HistoryStore(final File directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS, DEFAULT_HOT_WINDOW);
+	}
+
+	/**
+	 * Opens the store in the given directory and recovers all entries of
+	 * existing segment files.
+	 *
+	 * @param directory
+	 *            Directory containing the segment files, created if
+	 *            necessary.
+	 * @param segmentSize
+	 *            Size of newly created segment files in bytes, larger
+	 *            entries get a segment of their own.
+	 * @param maxSegments
+	 *            Maximum number of segment files kept.
+	 * @param hotWindow
+	 *            Number of most recent entries kept on the heap.
+	 * @throws IOException
+	 *             If directory cannot be used or is locked by another store.
+	 */
+	public HistoryStore(final File directory, final int segmentSize, final int maxSegments, final int hotWindow)
+			throws IOException {
+		if (segmentSize <= SEGMENT_HEADER_SIZE || maxSegments < 1 || hotWindow < 1) {
+			throw new IllegalArgumentException("Invalid history store settings");
+		}
+		fDirectory = directory;
+		fSegmentSize = segmentSize;
+		fMaxSegments = maxSegments;
+		fRecent = new HistoryTuple[hotWindow];
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create history directory " + directory);
+		}
+
+		// Only a single store may write the segments
+		fLockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+		FileLock lock;
+		try {
+			lock = fLockFile.getChannel().tryLock();
+		} catch (OverlappingFileLockException e) {
+			// Locked by another store of this JVM
+			lock = null;
+		} catch (IOException e) {
+			fLockFile.close();
+			throw e;
+		}
+		if (lock == null) {
+			fLockFile.close();
+			throw new IOException("History directory already in use: " + directory);
+		}
+		fLock = lock;
+
+		try {
+			recover();
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Maps all existing segment files and fills the hot window.
+	 *
+	 * @throws IOException
+	 *             If segment files could not be mapped.
+	 */
+	private void recover() throws IOException {
+		final File[] files = fDirectory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.isFile() && getFirstSequence(file) >= 0;
+			}
+		});
+
+		final TreeMap<Long, File> sorted = new TreeMap<>();
+		for (final File file : files) {
+			sorted.put(getFirstSequence(file), file);
+		}
+
+		for (final Entry<Long, File> entry : sorted.entrySet()) {
+			// Only the newest segment is appended to
+			final boolean writable = entry.getKey().equals(sorted.lastKey());
+			final Segment segment = openSegment(entry.getValue(), entry.getKey(), writable);
+			if (segment != null) {
+				fSegments.put(segment.fFirstSequence, segment);
+				fNextSequence = segment.fFirstSequence + segment.fCount;
+			}
+		}
+
+		// Index all entries and keep most recent ones on the heap
+		fIndex = new HistoryIndex(getFirstSequence());
+		final long start = fNextSequence - fRecent.length;
+		for (long sequence = getFirstSequence(); sequence < fNextSequence; sequence++) {
+			final HistoryTuple tuple = read(sequence);
+			if (tuple != null) {
+				fIndex.add(sequence, tuple);
+				if (sequence >= start) {
+					remember(sequence, tuple);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parses the sequence number of the first entry from a segment file name.
+	 *
+	 * @param file
+	 *            Possible segment file.
+	 * @return Sequence number of first entry, <code>-1</code> if not a
+	 *         segment file.
+	 */
+	private static long getFirstSequence(final File file) {
+		final String name = file.getName();
+		if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Maps an existing segment file and builds its offset index.
+	 *
+	 * @param file
+	 *            Segment file.
+	 * @param firstSequence
+	 *            Sequence number of first entry in segment.
+	 * @param writable
+	 *            Flag to signalize that entries may be appended.
+	 * @return Mapped {@link Segment}, <code>null</code> if file is no valid
+	 *         segment.
+	 * @throws IOException
+	 *             If file could not be mapped.
+	 */
+	private static Segment openSegment(final File file, final long firstSequence, final boolean writable)
+			throws IOException {
+		final MappedByteBuffer buffer;
+		try (RandomAccessFile segmentFile = new RandomAccessFile(file, writable ? "rw" : "r")) {
+			final long size = segmentFile.length();
+			if (size < SEGMENT_HEADER_SIZE || size > Integer.MAX_VALUE) {
+				return null;
+			}
+			// Mapping stays valid after the file is closed
+			buffer = segmentFile.getChannel().map(writable ? MapMode.READ_WRITE : MapMode.READ_ONLY, 0, size);
+		}
+		if (buffer.getInt(0) != MAGIC) {
+			return null;
+		}
+
+		// Index all records until end of data or first corrupted record
+		final Segment segment = new Segment(file, firstSequence, buffer, writable);
+		int position = SEGMENT_HEADER_SIZE;
+		while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+			final int length = buffer.getInt(position);
+			if (length <= 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE
+					|| buffer.getInt(position + 4) != checksum(buffer, position + RECORD_HEADER_SIZE, length)) {
+				break;
+			}
+			segment.addOffset(position);
+			position += RECORD_HEADER_SIZE + length;
+		}
+		segment.fWritePosition = position;
+
+		// Clear torn records so they are not mistaken for data once appending
+		if (writable) {
+			for (int offset = position; offset < buffer.capacity(); offset++) {
+				if (buffer.get(offset) != 0) {
+					buffer.put(offset, (byte) 0);
+				}
+			}
+		}
+		return segment;
+	}
+
+	/**
+	 * Creates and maps a new segment file.
+	 *
+	 * @param firstSequence
+	 *            Sequence number of first entry in segment.
+	 * @param size
+	 *            Size of segment file in bytes.
+	 * @return Mapped, writable {@link Segment}.
+	 * @throws IOException
+	 *             If file could not be created.
+	 */
+	private Segment createSegment(final long firstSequence, final int size) throws IOException {
+		final File file = new File(fDirectory, String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence,
+				SEGMENT_SUFFIX));
+		final MappedByteBuffer buffer;
+		try (RandomAccessFile segmentFile = new RandomAccessFile(file, "rw")) {
+			segmentFile.setLength(size);
+			buffer = segmentFile.getChannel().map(MapMode.READ_WRITE, 0, size);
+		}
+		buffer.putInt(0, MAGIC);
+		return new Segment(file, firstSequence, buffer, true);
+	}
+
+	/**
+	 * Calculates the checksum of the given part of a buffer.
+	 *
+	 * @param buffer
+	 *            Buffer containing the data.
+	 * @param offset
+	 *            Offset of data in buffer.
+	 * @param length
+	 *            Length of data.
+	 * @return Checksum of data.
+	 */
+	private static int checksum(final ByteBuffer buffer, final int offset, final int length) {
+		final ByteBuffer data = buffer.duplicate();
+		data.limit(offset + length).position(offset);
+		final CRC32 crc = new CRC32();
+		crc.update(data);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Appends the given entry to the store.
+	 *
+	 * @param tuple
+	 *            {@link HistoryTuple} to be appended.
+	 * @return Sequence number of the entry.
+	 * @throws IOException
+	 *             If store is closed or new segment could not be created.
+	 */
+	public synchronized long append(final HistoryTuple tuple) throws IOException {
+		if (fClosed) {
+			throw new IOException("History store closed");
+		}
+
+		final byte[] payload = encode(tuple);
+		final int recordSize = RECORD_HEADER_SIZE + payload.length;
+
+		// Start new segment if the record does not fit
+		Segment segment = fSegments.isEmpty() ? null : fSegments.lastEntry().getValue();
+		if (segment == null || !segment.fits(recordSize)) {
+			if (segment != null && segment.fWritable) {
+				segment.fBuffer.force();
+			}
+			if (segment != null && segment.fCount == 0) {
+				// Replace empty segment with the same first sequence number
+				fSegments.remove(segment.fFirstSequence);
+			}
+			segment = createSegment(fNextSequence, Math.max(fSegmentSize, SEGMENT_HEADER_SIZE + recordSize));
+			fSegments.put(segment.fFirstSequence, segment);
+			deleteOldSegments();
+		}
+
+		// Length is written last, so torn records are detected on recovery
+		final int position = segment.fWritePosition;
+		final ByteBuffer buffer = segment.fBuffer.duplicate();
+		buffer.position(position + RECORD_HEADER_SIZE);
+		buffer.put(payload);
+		buffer.putInt(position + 4, checksum(buffer, position + RECORD_HEADER_SIZE, payload.length));
+		buffer.putInt(position, payload.length);
+
+		segment.addOffset(position);
+		segment.fWritePosition += recordSize;
+
+		final long sequence = fNextSequence++;
+		remember(sequence, tuple);
+		fIndex.add(sequence, tuple);
+		return sequence;
+	}
+
+	/**
+	 * Deletes the oldest segments exceeding the maximum segment count.
+	 */
+	private void deleteOldSegments() {
+		while (fSegments.size() > fMaxSegments) {
+			final Segment oldest = fSegments.pollFirstEntry().getValue();
+			if (!oldest.fFile.delete()) {
+				// Still mapped on some platforms, retry on next start
+				oldest.fFile.deleteOnExit();
+			}
+		}
+
+		// Evicted entries must not be served from the hot window
+		final long first = getFirstSequence();
+		fRecentCount = (int) Math.min(fRecentCount, fNextSequence - first);
+		fIndex.prune(first);
+	}
+
+	/**
+	 * Stores the given entry in the hot window.
+	 *
+	 * @param sequence
+	 *            Sequence number of entry.
+	 * @param tuple
+	 *            Entry to be stored.
+	 */
+	private void remember(final long sequence, final HistoryTuple tuple) {
+		fRecent[(int) (sequence % fRecent.length)] = tuple;
+		fRecentCount = Math.min(fRecentCount + 1, fRecent.length);
+	}
+
+	/**
+	 * Returns the entry with the given sequence number.
+	 *
+	 * @param sequence
+	 *            Sequence number of entry.
+	 * @return {@link HistoryTuple} or <code>null</code> if entry does not
+	 *         exist (anymore).
+	 */
+	public synchronized HistoryTuple get(final long sequence) {
+		if (sequence < getFirstSequence() || sequence >= fNextSequence) {
+			return null;
+		}
+		if (sequence >= fNextSequence - fRecentCount) {
+			return fRecent[(int) (sequence % fRecent.length)];
+		}
+		return read(sequence);
+	}
+
+	/**
+	 * Returns all existing entries with sequence numbers in the given range.
+	 *
+	 * @param from
+	 *            First sequence number (inclusive).
+	 * @param to
+	 *            Last sequence number (exclusive).
+	 * @return Existing entries in order.
+	 */
+	public synchronized List<HistoryTuple> getRange(final long from, final long to) {
+		final List<HistoryTuple> tuples = new ArrayList<>();
+		for (long sequence = Math.max(from, getFirstSequence()); sequence < Math.min(to, fNextSequence); sequence++) {
+			final HistoryTuple tuple = get(sequence);
+			if (tuple != null) {
+				tuples.add(tuple);
+			}
+		}
+		return tuples;
+	}
+
+	/**
+	 * Returns the last entries, walking backwards from the newest one.
+	 *
+	 * @param n
+	 *            Maximum number of entries.
+	 * @param unique
+	 *            Flag to signalize that only the latest entry of repeated
+	 *            inputs should be returned.
+	 * @return Entries in order.
+	 */
+	public synchronized List<HistoryTuple> getTail(final int n, final boolean unique) {
+		final List<HistoryTuple> tuples = new ArrayList<>();
+		final Set<String> inputs = new HashSet<>();
+		for (long sequence = fNextSequence - 1; sequence >= getFirstSequence() && tuples.size() < n; sequence--) {
+			final HistoryTuple tuple = get(sequence);
+			if (tuple != null && (!unique || inputs.add(String.valueOf(tuple.getInput())))) {
+				tuples.add(tuple);
+			}
+		}
+		Collections.reverse(tuples);
+		return tuples;
+	}
+
+	/**
+	 * Returns the entries of a session within the given line range.
+	 *
+	 * @param sessionNumber
+	 *            Number of session starting at <code>1</code>, see
+	 *            {@link #getSessionNumber(String)}.
+	 * @param start
+	 *            First line number (inclusive).
+	 * @param stop
+	 *            Last line number (exclusive).
+	 * @return Entries in order.
+	 */
+	public synchronized List<HistoryTuple> getSessionRange(final int sessionNumber, final int start, final int stop) {
+		final List<HistoryTuple> tuples = new ArrayList<>();
+		for (final long sequence : fIndex.getRange(sessionNumber, start, stop)) {
+			final HistoryTuple tuple = get(sequence);
+			if (tuple != null) {
+				tuples.add(tuple);
+			}
+		}
+		return tuples;
+	}
+
+	/**
+	 * Returns the last entries with inputs matching the given glob pattern.
+	 * Only entries containing all trigrams of the literal parts of the
+	 * pattern are decoded.
+	 *
+	 * @param glob
+	 *            Glob pattern (<code>*</code>, <code>?</code> and
+	 *            <code>[...]</code>) matching the whole input.
+	 * @param n
+	 *            Maximum number of entries, <code>0</code> for all.
+	 * @param unique
+	 *            Flag to signalize that only the latest entry of repeated
+	 *            inputs should be returned.
+	 * @return Matching entries in order.
+	 */
+	public synchronized List<HistoryTuple> search(final String glob, final int n, final boolean unique) {
+		final Pattern pattern = HistoryIndex.toRegex(glob);
+		final long[] candidates = fIndex.getCandidates(glob);
+
+		// Without usable trigrams every entry is a candidate
+		final int count = (candidates != null) ? candidates.length : (int) (fNextSequence - getFirstSequence());
+		final List<HistoryTuple> tuples = new ArrayList<>();
+		final Set<String> inputs = new HashSet<>();
+		for (int index = count - 1; index >= 0 && (n <= 0 || tuples.size() < n); index--) {
+			final long sequence = (candidates != null) ? candidates[index] : getFirstSequence() + index;
+			final HistoryTuple tuple = get(sequence);
+			if (tuple != null && tuple.getInput() != null && pattern.matcher(tuple.getInput()).matches()
+					&& (!unique || inputs.add(tuple.getInput()))) {
+				tuples.add(tuple);
+			}
+		}
+		Collections.reverse(tuples);
+		return tuples;
+	}
+
+	/**
+	 * Returns the number of the given session. Sessions are numbered in order
+	 * of their first entry.
+	 *
+	 * @param session
+	 *            Session ID.
+	 * @return Session number starting at <code>1</code>, <code>0</code> if
+	 *         session has no entries.
+	 */
+	public synchronized int getSessionNumber(final String session) {
+		return fIndex.getSessionNumber(session);
+	}
+
+	/**
+	 * Returns the number of sessions with entries, which is also the number
+	 * of the latest session.
+	 *
+	 * @return Number of sessions.
+	 */
+	public synchronized int getSessionCount() {
+		return fIndex.getSessionCount();
+	}
+
+	/**
+	 * Returns the sequence number of the oldest entry still stored.
+	 *
+	 * @return Sequence number of oldest entry.
+	 */
+	public synchronized long getFirstSequence() {
+		return fSegments.isEmpty() ? fNextSequence : fSegments.firstKey();
+	}
+
+	/**
+	 * Returns the sequence number the next appended entry will get.
+	 *
+	 * @return Next sequence number.
+	 */
+	public synchronized long getNextSequence() {
+		return fNextSequence;
+	}
+
+	/**
+	 * Returns the number of segment files.
+	 *
+	 * @return Number of segments.
+	 */
+	public synchronized int getSegmentCount() {
+		return fSegments.size();
+	}
+
+	/**
+	 * Decodes the entry with the given sequence number from its segment.
+	 *
+	 * @param sequence
+	 *            Sequence number of entry.
+	 * @return Decoded {@link HistoryTuple}, <code>null</code> if not stored.
+	 */
+	private HistoryTuple read(final long sequence) {
+		final Entry<Long, Segment> entry = fSegments.floorEntry(sequence);
+		if (entry == null) {
+			return null;
+		}
+		final Segment segment = entry.getValue();
+		final long index = sequence - segment.fFirstSequence;
+		if (index >= segment.fCount) {
+			return null;
+		}
+
+		final ByteBuffer buffer = segment.fBuffer.duplicate();
+		buffer.position(segment.fOffsets[(int) index] + RECORD_HEADER_SIZE);
+		final String session = readString(buffer);
+		final int lineNumber = buffer.getInt();
+		final String input = readString(buffer);
+		final String output = readString(buffer);
+		return new HistoryTuple(session, lineNumber, input, output);
+	}
+
+	/**
+	 * Encodes the given entry to a record payload.
+	 *
+	 * @param tuple
+	 *            Entry to be encoded.
+	 * @return Encoded payload.
+	 */
+	private static byte[] encode(final HistoryTuple tuple) {
+		final byte[] session = toBytes(tuple.getSession());
+		final byte[] input = toBytes(tuple.getInput());
+		final byte[] output = toBytes(tuple.getOutput());
+
+		final ByteBuffer buffer = ByteBuffer.allocate(16 + length(session) + length(input) + length(output));
+		writeBytes(buffer, session);
+		buffer.putInt(tuple.getLineNumber());
+		writeBytes(buffer, input);
+		writeBytes(buffer, output);
+		return buffer.array();
+	}
+
+	/**
+	 * Converts the given string to UTF-8.
+	 *
+	 * @param text
+	 *            Text to be converted, may be <code>null</code>.
+	 * @return UTF-8 bytes or <code>null</code>.
+	 */
+	private static byte[] toBytes(final String text) {
+		return (text != null) ? text.getBytes(StandardCharsets.UTF_8) : null;
+	}
+
+	/**
+	 * Returns the length of the given data.
+	 *
+	 * @param data
+	 *            Data, may be <code>null</code>.
+	 * @return Length of data, <code>0</code> for <code>null</code>.
+	 */
+	private static int length(final byte[] data) {
+		return (data != null) ? data.length : 0;
+	}
+
+	/**
+	 * Writes length-prefixed data, <code>null</code> is written as length
+	 * <code>-1</code>.
+	 *
+	 * @param buffer
+	 *            Buffer to write to.
+	 * @param data
+	 *            Data to be written, may be <code>null</code>.
+	 */
+	private static void writeBytes(final ByteBuffer buffer, final byte[] data) {
+		if (data == null) {
+			buffer.putInt(-1);
+		} else {
+			buffer.putInt(data.length);
+			buffer.put(data);
+		}
+	}
+
+	/**
+	 * Reads a string written by {@link #writeBytes(ByteBuffer, byte[])}.
+	 *
+	 * @param buffer
+	 *            Buffer to read from.
+	 * @return Decoded string, may be <code>null</code>.
+	 */
+	private static String readString(final ByteBuffer buffer) {
+		final int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		final byte[] data = new byte[length];
+		buffer.get(data);
+		return new String(data, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes all appended entries of the current segment to disk.
+	 */
+	public synchronized void flush() {
+		if (!fSegments.isEmpty() && fSegments.lastEntry().getValue().fWritable) {
+			fSegments.lastEntry().getValue().fBuffer.force();
+		}
+	}
+
+	/**
+	 * Flushes the current segment and releases the directory lock.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (fClosed) {
+			return;
+		}
+		fClosed = true;
+
+		flush();
+		fSegments.clear();
+		try {
+			if (fLock != null) {
+				fLock.release();
+			}
+		} finally {
+			fLockFile.close();
+		}
+	}
+}
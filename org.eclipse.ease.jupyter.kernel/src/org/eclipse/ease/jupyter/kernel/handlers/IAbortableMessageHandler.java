@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.handlers;
+
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+
+/**
+ * Message handler for requests clients expect a reply for even if the request
+ * is discarded before being handled, e.g. on kernel restart.
+ */
+public interface IAbortableMessageHandler extends IMessageHandler {
+	/**
+	 * Notifies the client that the given message will not be handled.
+	 * 
+	 * @param message
+	 *            {@link Message} that was discarded.
+	 */
+	public void abort(Message message);
+
+}
@@ -26,8 +26,6 @@ import org.eclipse.ease.ui.completion.CodeCompletionAggregator;
 import org.eclipse.ease.ui.completion.ScriptCompletionProposal;
 import org.eclipse.jface.text.contentassist.ICompletionProposal;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import org.eclipse.ease.jupyter.kernel.messages.InspectRequest;
 
 /**
@@ -77,11 +75,6 @@ public class InspectRequestMessageHandler implements IMessageHandler {
 
 	}
 
-	/**
-	 * {@link ObjectMapper} to create {@link InspectRequest} from dictionary.
-	 */
-	private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
-
 	/**
 	 * Abstract channel for sending replies.
 	 */
@@ -115,7 +108,7 @@ public class InspectRequestMessageHandler implements IMessageHandler {
 		// Parse request to more easily usable format.
 		InspectRequest request;
 		try {
-			request = JSON_OBJECT_MAPPER.convertValue(message.getContent(), InspectRequest.class);
+			request = message.getContent(InspectRequest.class);
 			request.validate();
 		} catch (IOException | IllegalArgumentException e) {
 			e.printStackTrace();
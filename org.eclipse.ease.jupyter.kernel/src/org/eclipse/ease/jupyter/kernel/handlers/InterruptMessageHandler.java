@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.handlers;
+
+import java.io.IOException;
+
+import org.eclipse.ease.jupyter.kernel.IEngineProvider;
+import org.eclipse.ease.jupyter.kernel.channels.AbstractChannel;
+import org.eclipse.ease.jupyter.kernel.messages.InterruptReply;
+import org.eclipse.ease.jupyter.kernel.messages.InterruptReply.Status;
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+
+/**
+ * Custom message handler for handling interrupt requests.
+ * 
+ * Only the code currently running is terminated, the engine and all loaded
+ * modules stay available for following requests. Interrupt requests need to
+ * be sent over the control channel to be handled while code is running.
+ */
+public class InterruptMessageHandler implements IMessageHandler {
+	public static final String REQUEST_NAME = "interrupt_request";
+	private static final String REPLY_NAME = "interrupt_reply";
+
+	/**
+	 * {@link IMessageHandlerFactory} for creating
+	 * {@link InterruptMessageHandler} objects.
+	 *
+	 */
+	public static class Factory implements IMessageHandlerFactory {
+		/**
+		 * {@link AbstractChannel} the message handler is running for.
+		 */
+		private final AbstractChannel fChannel;
+
+		/**
+		 * {@link IEngineProvider} to interrupt engine.
+		 */
+		private final IEngineProvider fEngineProvider;
+
+		/**
+		 * Constructor only stores parameters to members.
+		 * 
+		 * @param channel
+		 *            {@link AbstractChannel} the message handler is running
+		 *            for.
+		 * @param engineProvider
+		 *            {@link IEngineProvider} to interrupt engine.
+		 */
+		public Factory(AbstractChannel channel, IEngineProvider engineProvider) {
+			fChannel = channel;
+			fEngineProvider = engineProvider;
+		}
+
+		/**
+		 * Creates a new {@link InterruptMessageHandler} object.
+		 */
+		@Override
+		public IMessageHandler create() {
+			return new InterruptMessageHandler(fChannel, fEngineProvider);
+		}
+
+	}
+
+	/**
+	 * Abstract channel for sending replies.
+	 */
+	private final AbstractChannel fReplyChannel;
+
+	/**
+	 * {@link IEngineProvider} to interrupt engine.
+	 */
+	private final IEngineProvider fEngineProvider;
+
+	/**
+	 * Constructor only stores parameters to members.
+	 * 
+	 * @param channel
+	 *            {@link AbstractChannel} the message handler is running for.
+	 * @param engineProvider
+	 *            {@link IEngineProvider} to interrupt engine.
+	 */
+	public InterruptMessageHandler(AbstractChannel channel, IEngineProvider engineProvider) {
+		fReplyChannel = channel;
+		fEngineProvider = engineProvider;
+	}
+
+	/**
+	 * Handles the given message by terminating the currently running code and
+	 * sending back {@link InterruptReply} message.
+	 */
+	@Override
+	public void handle(Message message) {
+		Message reply = message.createReply();
+		reply.getHeader().withMsgType(REPLY_NAME);
+
+		InterruptReply content = new InterruptReply().withStatus(Status.OK);
+		try {
+			fEngineProvider.interruptEngine();
+		} catch (RuntimeException e) {
+			// Engine could not be interrupted, let client know
+			e.printStackTrace();
+			content = content.withStatus(Status.ERROR);
+		}
+
+		reply.withContent(content);
+		try {
+			fReplyChannel.send(reply);
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+}
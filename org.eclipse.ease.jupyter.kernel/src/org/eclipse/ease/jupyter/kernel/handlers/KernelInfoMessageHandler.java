@@ -13,7 +13,7 @@ package org.eclipse.ease.jupyter.kernel.handlers;
 
 import java.io.IOException;
 
-import org.eclipse.ease.jupyter.kernel.Kernel;
+import org.eclipse.ease.jupyter.kernel.IEngineProvider;
 import org.eclipse.ease.jupyter.kernel.channels.AbstractChannel;
 import org.eclipse.ease.jupyter.kernel.messages.KernelInfoReply;
 import org.eclipse.ease.jupyter.kernel.messages.LanguageInfo;
@@ -38,9 +38,9 @@ public class KernelInfoMessageHandler implements IMessageHandler {
 		private final AbstractChannel fChannel;
 
 		/**
-		 * {@link Kernel} object to query information from.
+		 * {@link IEngineProvider} to query information from.
 		 */
-		private final Kernel fKernel;
+		private final IEngineProvider fEngineProvider;
 
 		/**
 		 * Constructor only stores parameters to members.
@@ -48,12 +48,12 @@ public class KernelInfoMessageHandler implements IMessageHandler {
 		 * @param channel
 		 *            {@link AbstractChannel} the message handler is running
 		 *            for.
-		 * @param kernel
-		 *            {@link Kernel} object to query information from.
+		 * @param engineProvider
+		 *            {@link IEngineProvider} to query information from.
 		 */
-		public Factory(AbstractChannel channel, Kernel kernel) {
+		public Factory(AbstractChannel channel, IEngineProvider engineProvider) {
 			fChannel = channel;
-			fKernel = kernel;
+			fEngineProvider = engineProvider;
 		}
 
 		/**
@@ -61,7 +61,7 @@ public class KernelInfoMessageHandler implements IMessageHandler {
 		 */
 		@Override
 		public IMessageHandler create() {
-			return new KernelInfoMessageHandler(fChannel, fKernel);
+			return new KernelInfoMessageHandler(fChannel, fEngineProvider);
 		}
 
 	}
@@ -72,21 +72,21 @@ public class KernelInfoMessageHandler implements IMessageHandler {
 	private final AbstractChannel fReplyChannel;
 
 	/**
-	 * {@link Kernel} object to query information from.
+	 * {@link IEngineProvider} to query information from.
 	 */
-	private final Kernel fKernel;
+	private final IEngineProvider fEngineProvider;
 
 	/**
 	 * Constructor only stores parameters to members.
 	 * 
 	 * @param channel
 	 *            {@link AbstractChannel} the message handler is running for.
-	 * @param kernel
-	 *            {@link Kernel} object to query information from.
+	 * @param engineProvider
+	 *            {@link IEngineProvider} to query information from.
 	 */
-	public KernelInfoMessageHandler(AbstractChannel channel, Kernel kernel) {
+	public KernelInfoMessageHandler(AbstractChannel channel, IEngineProvider engineProvider) {
 		fReplyChannel = channel;
-		fKernel = kernel;
+		fEngineProvider = engineProvider;
 	}
 
 	/**
@@ -102,7 +102,8 @@ public class KernelInfoMessageHandler implements IMessageHandler {
 		KernelInfoReply content = new KernelInfoReply().withProtocolVersion("5.0").withImplementation("ease")
 				.withImplementationVersion("0.0.1").withBanner("EASE Test Kernel")
 				.withLanguageInfo(new LanguageInfo().withMimetype("text/x-python3").withFileExtension(".py")
-						.withName("python").withVersion("0.0.0").withPygmentsLexer("py3").withNbconvertExporter("python"));
+						.withName("python").withVersion("0.0.0").withPygmentsLexer("py3").withNbconvertExporter("python"))
+				.withInterruptMode("message");
 
 		reply.withContent(content);
 		try {
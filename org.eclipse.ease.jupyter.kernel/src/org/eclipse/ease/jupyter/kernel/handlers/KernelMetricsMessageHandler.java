@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.handlers;
+
+import java.io.IOException;
+
+import org.eclipse.ease.jupyter.kernel.channels.AbstractChannel;
+import org.eclipse.ease.jupyter.kernel.messages.Message;
+import org.eclipse.ease.jupyter.kernel.metrics.KernelMetrics;
+
+/**
+ * Custom message handler for querying kernel metrics.
+ * 
+ * Not part of the Jupyter messaging protocol, replies with a snapshot of all
+ * {@link KernelMetrics} histograms and the IOPub queue counters.
+ */
+public class KernelMetricsMessageHandler implements IMessageHandler {
+	public static final String REQUEST_NAME = "kernel_metrics_request";
+	private static final String REPLY_NAME = "kernel_metrics_reply";
+
+	/**
+	 * {@link IMessageHandlerFactory} for creating
+	 * {@link KernelMetricsMessageHandler} objects.
+	 *
+	 */
+	public static class Factory implements IMessageHandlerFactory {
+		/**
+		 * {@link AbstractChannel} the message handler is running for.
+		 */
+		private final AbstractChannel fChannel;
+
+		/**
+		 * {@link KernelMetrics} to be reported.
+		 */
+		private final KernelMetrics fMetrics;
+
+		/**
+		 * Constructor only stores parameters to members.
+		 * 
+		 * @param channel
+		 *            {@link AbstractChannel} the message handler is running
+		 *            for.
+		 * @param metrics
+		 *            {@link KernelMetrics} to be reported.
+		 */
+		public Factory(AbstractChannel channel, KernelMetrics metrics) {
+			fChannel = channel;
+			fMetrics = metrics;
+		}
+
+		/**
+		 * Creates a new {@link KernelMetricsMessageHandler} object.
+		 */
+		@Override
+		public IMessageHandler create() {
+			return new KernelMetricsMessageHandler(fChannel, fMetrics);
+		}
+
+	}
+
+	/**
+	 * Abstract channel for sending replies.
+	 */
+	private final AbstractChannel fReplyChannel;
+
+	/**
+	 * {@link KernelMetrics} to be reported.
+	 */
+	private final KernelMetrics fMetrics;
+
+	/**
+	 * Constructor only stores parameters to members.
+	 * 
+	 * @param channel
+	 *            {@link AbstractChannel} the message handler is running for.
+	 * @param metrics
+	 *            {@link KernelMetrics} to be reported.
+	 */
+	public KernelMetricsMessageHandler(AbstractChannel channel, KernelMetrics metrics) {
+		fReplyChannel = channel;
+		fMetrics = metrics;
+	}
+
+	/**
+	 * Handles the given message by sending back a snapshot of the kernel
+	 * metrics.
+	 */
+	@Override
+	public void handle(Message message) {
+		Message reply = message.createReply();
+		reply.getHeader().withMsgType(REPLY_NAME);
+		reply.withContent(fMetrics.toContent());
+
+		try {
+			fReplyChannel.send(reply);
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+}
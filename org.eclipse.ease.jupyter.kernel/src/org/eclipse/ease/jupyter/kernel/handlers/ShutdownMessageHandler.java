@@ -13,7 +13,7 @@ package org.eclipse.ease.jupyter.kernel.handlers;
 
 import java.io.IOException;
 
-import org.eclipse.ease.jupyter.kernel.Kernel;
+import org.eclipse.ease.jupyter.kernel.IEngineProvider;
 import org.eclipse.ease.jupyter.kernel.channels.AbstractChannel;
 import org.eclipse.ease.jupyter.kernel.messages.InspectRequest;
 import org.eclipse.ease.jupyter.kernel.messages.KernelInfoReply;
@@ -21,8 +21,6 @@ import org.eclipse.ease.jupyter.kernel.messages.Message;
 import org.eclipse.ease.jupyter.kernel.messages.ShutdownReply;
 import org.eclipse.ease.jupyter.kernel.messages.ShutdownRequest;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 /**
  * Custom message handler for handling kernel shutdown messages.
  * 
@@ -44,21 +42,21 @@ public class ShutdownMessageHandler implements IMessageHandler {
 		private final AbstractChannel fChannel;
 
 		/**
-		 * {@link Kernel} object to be able to later shut it down.
+		 * {@link IEngineProvider} to be able to later restart or shut it down.
 		 */
-		private final Kernel fKernel;
+		private final IEngineProvider fEngineProvider;
 
 		/**
 		 * Constructor only stores parameters to members.
 		 * 
 		 * @param channel
 		 *            {@link AbstractChannel} the message handler is running for.
-		 * @param kernel
-		 *            {@link Kernel} object to query information from.
+		 * @param engineProvider
+		 *            {@link IEngineProvider} to be restarted or shut down.
 		 */
-		public Factory(AbstractChannel channel, Kernel kernel) {
+		public Factory(AbstractChannel channel, IEngineProvider engineProvider) {
 			fChannel = channel;
-			fKernel = kernel;
+			fEngineProvider = engineProvider;
 		}
 
 		/**
@@ -66,37 +64,32 @@ public class ShutdownMessageHandler implements IMessageHandler {
 		 */
 		@Override
 		public IMessageHandler create() {
-			return new ShutdownMessageHandler(fChannel, fKernel);
+			return new ShutdownMessageHandler(fChannel, fEngineProvider);
 		}
 
 	}
 
-	/**
-	 * {@link ObjectMapper} to create {@link InspectRequest} from dictionary.
-	 */
-	private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
-
 	/**
 	 * Abstract channel for sending replies.
 	 */
 	private final AbstractChannel fReplyChannel;
 
 	/**
-	 * {@link Kernel} object to query information from.
+	 * {@link IEngineProvider} to be restarted or shut down.
 	 */
-	private final Kernel fKernel;
+	private final IEngineProvider fEngineProvider;
 
 	/**
 	 * Constructor only stores parameters to members.
 	 * 
 	 * @param channel
 	 *            {@link AbstractChannel} the message handler is running for.
-	 * @param kernel
-	 *            {@link Kernel} object to query information from.
+	 * @param engineProvider
+	 *            {@link IEngineProvider} to be restarted or shut down.
 	 */
-	public ShutdownMessageHandler(AbstractChannel channel, Kernel kernel) {
+	public ShutdownMessageHandler(AbstractChannel channel, IEngineProvider engineProvider) {
 		fReplyChannel = channel;
-		fKernel = kernel;
+		fEngineProvider = engineProvider;
 	}
 
 	/**
@@ -107,14 +100,14 @@ public class ShutdownMessageHandler implements IMessageHandler {
 	public void handle(Message message) {
 		final ShutdownRequest request;
 		try {
-			request = JSON_OBJECT_MAPPER.convertValue(message.getContent(), ShutdownRequest.class);
-		} catch (IllegalArgumentException e) {
+			request = message.getContent(ShutdownRequest.class);
+		} catch (IOException | IllegalArgumentException e) {
 			e.printStackTrace();
 			return;
 		}
 
 		if (request.getRestart()) {
-			fKernel.resetEngine();
+			fEngineProvider.resetEngine();
 		}
 
 		Message reply = message.createReply();
@@ -124,7 +117,7 @@ public class ShutdownMessageHandler implements IMessageHandler {
 		try {
 			fReplyChannel.send(reply);
 			if (!request.getRestart()) {
-				fKernel.stop();
+				fEngineProvider.shutdown();
 			}
 		} catch (IOException e) {
 			// ignore
@@ -267,7 +267,7 @@ public class ExecuteReply extends Content {
 
 	public static enum Status {
 
-		OK("ok"), ERROR("error"), ABORT("abort");
+		OK("ok"), ERROR("error"), ABORT("aborted");
 		private final String value;
 		private static Map<String, ExecuteReply.Status> constants = new HashMap<String, ExecuteReply.Status>();
 
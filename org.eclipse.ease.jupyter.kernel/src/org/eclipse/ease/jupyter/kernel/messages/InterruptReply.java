@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.messages;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.JsonMappingException;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * {@link Content} for replies to interrupt requests.
+ * 
+ * Automatically generated from JSON schema using jsonschema2pojo.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({ "status" })
+public class InterruptReply extends Content {
+
+	@JsonProperty("status")
+	private InterruptReply.Status status;
+	@JsonIgnore
+	private Map<String, Object> additionalProperties = new HashMap<String, Object>();
+
+	public InterruptReply() {
+
+	}
+
+	@JsonCreator
+	public InterruptReply(@JsonProperty(value = "status", required = true) final InterruptReply.Status status) {
+		this.status = status;
+	}
+
+	/**
+	 * 
+	 * @return The status
+	 */
+	@JsonProperty("status")
+	public InterruptReply.Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * 
+	 * @param status
+	 *            The status
+	 */
+	@JsonProperty("status")
+	public void setStatus(InterruptReply.Status status) {
+		this.status = status;
+	}
+
+	public InterruptReply withStatus(InterruptReply.Status status) {
+		this.status = status;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+
+	@JsonAnyGetter
+	public Map<String, Object> getAdditionalProperties() {
+		return this.additionalProperties;
+	}
+
+	@JsonAnySetter
+	public void setAdditionalProperty(String name, Object value) {
+		this.additionalProperties.put(name, value);
+	}
+
+	public InterruptReply withAdditionalProperty(String name, Object value) {
+		this.additionalProperties.put(name, value);
+		return this;
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder().appendSuper(super.hashCode()).append(status).append(additionalProperties)
+				.toHashCode();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+		if ((other instanceof InterruptReply) == false) {
+			return false;
+		}
+		InterruptReply rhs = ((InterruptReply) other);
+		return new EqualsBuilder().appendSuper(super.equals(other)).append(status, rhs.status)
+				.append(additionalProperties, rhs.additionalProperties).isEquals();
+	}
+
+	public static enum Status {
+
+		OK("ok"), ERROR("error");
+		private final String value;
+		private static Map<String, InterruptReply.Status> constants = new HashMap<String, InterruptReply.Status>();
+
+		static {
+			for (InterruptReply.Status c : values()) {
+				constants.put(c.value, c);
+			}
+		}
+
+		private Status(String value) {
+			this.value = value;
+		}
+
+		@JsonValue
+		@Override
+		public String toString() {
+			return this.value;
+		}
+
+		@JsonCreator
+		public static InterruptReply.Status fromValue(String value) {
+			InterruptReply.Status constant = constants.get(value);
+			if (constant == null) {
+				throw new IllegalArgumentException(value);
+			} else {
+				return constant;
+			}
+		}
+
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.ease.jupyter.kernel.messages.Content#validate()
+	 */
+	@Override
+	public void validate() throws JsonMappingException {
+		if (this.status == null) {
+			throw new JsonMappingException("Missing parameter.");
+		}
+	}
+
+}
@@ -37,7 +37,7 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @JsonPropertyOrder({ "protocol_version", "implementation", "implementation_version", "language_info", "banner",
-		"help_links" })
+		"help_links", "interrupt_mode" })
 public class KernelInfoReply extends Content {
 
 	@JsonProperty("protocol_version")
@@ -53,6 +53,8 @@ public class KernelInfoReply extends Content {
 
 	@JsonProperty("help_links")
 	private List<HelpLink> helpLinks = new ArrayList<HelpLink>();
+	@JsonProperty("interrupt_mode")
+	private String interruptMode;
 	@JsonIgnore
 	private Map<String, Object> additionalProperties = new HashMap<String, Object>();
 
@@ -221,6 +223,30 @@ public class KernelInfoReply extends Content {
 		return this;
 	}
 
+	/**
+	 * 
+	 * @return The interruptMode
+	 */
+	@JsonProperty("interrupt_mode")
+	public String getInterruptMode() {
+		return interruptMode;
+	}
+
+	/**
+	 * 
+	 * @param interruptMode
+	 *            The interrupt_mode
+	 */
+	@JsonProperty("interrupt_mode")
+	public void setInterruptMode(String interruptMode) {
+		this.interruptMode = interruptMode;
+	}
+
+	public KernelInfoReply withInterruptMode(String interruptMode) {
+		this.interruptMode = interruptMode;
+		return this;
+	}
+
 	@Override
 	public String toString() {
 		return ToStringBuilder.reflectionToString(this);
@@ -245,7 +271,7 @@ public class KernelInfoReply extends Content {
 	public int hashCode() {
 		return new HashCodeBuilder().appendSuper(super.hashCode()).append(protocolVersion).append(implementation)
 				.append(implementationVersion).append(languageInfo).append(banner).append(helpLinks)
-				.append(additionalProperties).toHashCode();
+				.append(interruptMode).append(additionalProperties).toHashCode();
 	}
 
 	@Override
@@ -260,7 +286,8 @@ public class KernelInfoReply extends Content {
 		return new EqualsBuilder().appendSuper(super.equals(other)).append(protocolVersion, rhs.protocolVersion)
 				.append(implementation, rhs.implementation).append(implementationVersion, rhs.implementationVersion)
 				.append(languageInfo, rhs.languageInfo).append(banner, rhs.banner).append(helpLinks, rhs.helpLinks)
-				.append(additionalProperties, rhs.additionalProperties).isEquals();
+				.append(interruptMode, rhs.interruptMode).append(additionalProperties, rhs.additionalProperties)
+				.isEquals();
 	}
 
 	/*
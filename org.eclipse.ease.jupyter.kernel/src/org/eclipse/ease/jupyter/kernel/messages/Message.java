@@ -14,6 +14,7 @@ package org.eclipse.ease.jupyter.kernel.messages;
 
 import static org.apache.commons.lang3.Validate.notNull;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -28,9 +29,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public class Message {
 	/**
-	 * {@link ObjectMapper} to parse to and from JSON.
+	 * {@link ObjectMapper} to bind raw content to {@link Content} objects.
 	 */
-	protected static ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
+	private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
 
 	/**
 	 * List of ZMQ identities. At least one necessary for Jupyter.
@@ -58,9 +59,16 @@ public class Message {
 	private Map<String, Object> fMetadata;
 
 	/**
-	 * Actual content of message.
+	 * Actual content of message. Either a {@link Content} object for messages
+	 * created by the kernel or a dictionary for received messages.
 	 */
-	private Map<String, Object> fContent;
+	private Object fContent;
+
+	/**
+	 * Raw JSON content frame of received messages. Only parsed once content is
+	 * actually requested, <code>null</code> for messages created by the kernel.
+	 */
+	private byte[] fRawContent;
 
 	/**
 	 * Extra byte blobs for message.
@@ -149,19 +157,39 @@ public class Message {
 	 */
 	public Message withContent(Map<String, Object> content) {
 		fContent = content;
+		fRawContent = null;
 		return this;
 	}
 
 	/**
 	 * Build pattern to set content.
+	 * <p>
+	 * The {@link Content} object is stored as is and only serialized when the
+	 * message is sent, so it must not be modified afterwards.
 	 * 
 	 * @param content
 	 *            Content to be used.
 	 * @return The object itself.
 	 */
-	@SuppressWarnings("unchecked")
 	public Message withContent(Content content) {
-		this.fContent = JSON_OBJECT_MAPPER.convertValue(notNull(content, "content can't be null"), Map.class);
+		this.fContent = notNull(content, "content can't be null");
+		this.fRawContent = null;
+		return this;
+	}
+
+	/**
+	 * Build pattern to set raw JSON content of received message.
+	 * <p>
+	 * The content is not parsed until it is requested using
+	 * {@link #getContent()} or {@link #getContent(Class)}.
+	 * 
+	 * @param rawContent
+	 *            JSON encoded content frame.
+	 * @return The object itself.
+	 */
+	public Message withRawContent(byte[] rawContent) {
+		this.fRawContent = notNull(rawContent, "content can't be null");
+		this.fContent = null;
 		return this;
 	}
 
@@ -206,13 +234,54 @@ public class Message {
 
 	/**
 	 * Getter for actual content of message.
+	 * <p>
+	 * Raw content of received messages is parsed to a dictionary on first
+	 * call.
 	 * 
-	 * @return Actual content of message.
+	 * @return Actual content of message, either {@link Content} or dictionary.
+	 * @throws IllegalArgumentException
+	 *             If raw content is not a valid JSON object.
 	 */
 	public Object getContent() {
+		if (fContent == null && fRawContent != null) {
+			try {
+				fContent = JSON_OBJECT_MAPPER.readValue(fRawContent, Map.class);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Invalid content in message", e);
+			}
+		}
 		return fContent;
 	}
 
+	/**
+	 * Getter for content of message bound to the given {@link Content} class.
+	 * <p>
+	 * Raw content of received messages is parsed directly to the given class
+	 * and the result is cached, so the content is only parsed once.
+	 * 
+	 * @param contentClass
+	 *            {@link Content} class to bind content to.
+	 * @return Content of message as object of given class.
+	 * @throws IOException
+	 *             If raw content cannot be parsed to given class.
+	 * @throws IllegalArgumentException
+	 *             If content cannot be converted to given class.
+	 */
+	public <T extends Content> T getContent(Class<T> contentClass) throws IOException {
+		if (contentClass.isInstance(fContent)) {
+			return contentClass.cast(fContent);
+		}
+
+		final T content;
+		if (fRawContent != null) {
+			content = JSON_OBJECT_MAPPER.readValue(fRawContent, contentClass);
+		} else {
+			content = JSON_OBJECT_MAPPER.convertValue(fContent, contentClass);
+		}
+		fContent = content;
+		return content;
+	}
+
 	/**
 	 * Getter for all ZMQ identities used.
 	 * 
@@ -249,9 +318,18 @@ public class Message {
 		return "EASE." + UUID.randomUUID();
 	}
 
+	/**
+	 * Creates a reply for this message. The ZMQ identities are copied so the
+	 * reply is routed back to the client that sent the request.
+	 * 
+	 * @return New reply {@link Message}.
+	 */
 	public Message createReply() {
 		final Message reply = new Message().withParentHeader(getHeader());
 		reply.getHeader().withMsgId(randomId());
+		for (final byte[] zmqIdentity : fZmqIdentities) {
+			reply.withZmqIdentity(zmqIdentity);
+		}
 		return reply;
 	}
 }
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of non-negative values (e.g. durations in
+ * nanoseconds).
+ * <p>
+ * Values are counted in log-linear buckets like in HdrHistogram: every power
+ * of two range is split into {@value #SUB_BUCKET_COUNT} linear sub-buckets, so
+ * percentiles are reported with a relative error of about 3% over the whole
+ * range of <code>long</code>. All buckets are allocated up front, recording a
+ * value never allocates.
+ */
+public class Histogram {
+	/**
+	 * Number of bits used for sub-buckets.
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+
+	/**
+	 * Number of linear sub-buckets per power of two.
+	 */
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Number of buckets necessary to cover all non-negative <code>long</code>
+	 * values.
+	 */
+	private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	/**
+	 * Number of recorded values per bucket.
+	 */
+	private final AtomicLongArray fBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+	/**
+	 * Number of recorded values.
+	 */
+	private final AtomicLong fCount = new AtomicLong();
+
+	/**
+	 * Sum of all recorded values.
+	 */
+	private final AtomicLong fSum = new AtomicLong();
+
+	/**
+	 * Largest recorded value.
+	 */
+	private final AtomicLong fMax = new AtomicLong();
+
+	/**
+	 * Returns the bucket index for the given value.
+	 *
+	 * @param value
+	 *            Non-negative value.
+	 * @return Index of bucket counting value.
+	 */
+	static int indexOf(final long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+
+		// Power of two range above linear range, value >>> shift is in
+		// [SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT)
+		final int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		final int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+		return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * Returns the largest value counted in the bucket with given index.
+	 *
+	 * @param index
+	 *            Bucket index.
+	 * @return Largest value of bucket.
+	 */
+	static long highestValueOf(final int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+
+		final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+		final int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+		final long upper = ((long) SUB_BUCKET_COUNT + subBucket + 1) << shift;
+
+		// Top bucket would overflow
+		return (upper > 0) ? upper - 1 : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Records the given value. Negative values are recorded as
+	 * <code>0</code>.
+	 *
+	 * @param value
+	 *            Value to be recorded.
+	 */
+	public void record(final long value) {
+		final long recorded = Math.max(0, value);
+
+		fBuckets.incrementAndGet(indexOf(recorded));
+		fCount.incrementAndGet();
+		fSum.addAndGet(recorded);
+
+		long max = fMax.get();
+		while (recorded > max && !fMax.compareAndSet(max, recorded)) {
+			max = fMax.get();
+		}
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 *
+	 * @return Number of recorded values.
+	 */
+	public long getCount() {
+		return fCount.get();
+	}
+
+	/**
+	 * Returns the largest recorded value.
+	 *
+	 * @return Largest recorded value, <code>0</code> if empty.
+	 */
+	public long getMax() {
+		return fMax.get();
+	}
+
+	/**
+	 * Returns the mean of all recorded values.
+	 *
+	 * @return Mean value, <code>0</code> if empty.
+	 */
+	public long getMean() {
+		final long count = fCount.get();
+		return (count > 0) ? fSum.get() / count : 0;
+	}
+
+	/**
+	 * Returns the value below which the given percentage of recorded values
+	 * fall, within the precision of the buckets.
+	 *
+	 * @param percentile
+	 *            Percentile in range [0, 100].
+	 * @return Value at percentile, <code>0</code> if empty.
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		final long count = fCount.get();
+		if (count == 0) {
+			return 0;
+		}
+
+		final long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += fBuckets.get(i);
+			if (seen >= target) {
+				return Math.min(highestValueOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Removes all recorded values. Values recorded concurrently might get
+	 * lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			fBuckets.set(i, 0);
+		}
+		fCount.set(0);
+		fSum.set(0);
+		fMax.set(0);
+	}
+
+	/**
+	 * Creates a snapshot of the most important statistics.
+	 *
+	 * @return Dictionary with count, mean, max and common percentiles.
+	 */
+	public Map<String, Long> getSnapshot() {
+		final Map<String, Long> snapshot = new LinkedHashMap<String, Long>();
+		snapshot.put("count", getCount());
+		snapshot.put("mean", getMean());
+		snapshot.put("p50", getValueAtPercentile(50));
+		snapshot.put("p90", getValueAtPercentile(90));
+		snapshot.put("p99", getValueAtPercentile(99));
+		snapshot.put("p999", getValueAtPercentile(99.9));
+		snapshot.put("max", getMax());
+		return snapshot;
+	}
+}
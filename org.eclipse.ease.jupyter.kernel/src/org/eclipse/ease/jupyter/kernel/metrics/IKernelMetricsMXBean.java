@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX management interface for {@link KernelMetrics}.
+ */
+public interface IKernelMetricsMXBean {
+	/**
+	 * Returns snapshots of all histograms by name.
+	 *
+	 * @return Dictionary from histogram name to snapshot.
+	 * @see Histogram#getSnapshot()
+	 */
+	Map<String, Map<String, Long>> getHistograms();
+
+	/**
+	 * Returns the counters of the IOPub publish queue.
+	 *
+	 * @return Dictionary from counter name to value, empty if no queue
+	 *         attached.
+	 */
+	Map<String, Long> getIoPubQueue();
+
+	/**
+	 * Removes all recorded values.
+	 */
+	void reset();
+}
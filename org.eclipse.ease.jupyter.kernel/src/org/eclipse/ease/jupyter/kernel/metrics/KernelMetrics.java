@@ -0,0 +1,390 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Kloesch and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Kloesch - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ease.jupyter.kernel.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.eclipse.ease.jupyter.kernel.channels.PublishQueue;
+
+/**
+ * Latency and throughput metrics of a single kernel.
+ * <p>
+ * All durations are recorded in nanoseconds to {@link Histogram}s. Histograms
+ * for fixed measuring points are created up front, histograms per message type
+ * are only created for types registered with
+ * {@link #registerMessageType(String)}, usually those with a message handler.
+ * All other types share a single {@value #OTHER_TYPE} histogram, so clients
+ * cannot grow the metrics by sending arbitrary types. Recording a value never
+ * allocates.
+ * <p>
+ * Metrics can be queried over JMX (see {@link #register(String)}) or using a
+ * <code>kernel_metrics_request</code> message.
+ */
+public class KernelMetrics implements IKernelMetricsMXBean {
+	/**
+	 * JMX domain metrics are registered for.
+	 */
+	public static final String JMX_DOMAIN = "org.eclipse.ease.jupyter.kernel";
+
+	/**
+	 * Message type histograms of unregistered message types are recorded for.
+	 */
+	public static final String OTHER_TYPE = "other";
+
+	/**
+	 * Prefix for histograms of time between receiving and handling a request.
+	 */
+	private static final String DISPATCH_PREFIX = "dispatch.";
+
+	/**
+	 * Prefix for histograms of time spent in message handlers.
+	 */
+	private static final String HANDLER_PREFIX = "handler.";
+
+	/**
+	 * Time spent executing code on the script engine.
+	 */
+	private final Histogram fExecuteTime = new Histogram();
+
+	/**
+	 * Time spent serializing messages to JSON frames.
+	 */
+	private final Histogram fSerializeTime = new Histogram();
+
+	/**
+	 * Time spent signing outgoing messages.
+	 */
+	private final Histogram fSignTime = new Histogram();
+
+	/**
+	 * Time spent verifying signatures of incoming messages.
+	 */
+	private final Histogram fVerifyTime = new Histogram();
+
+	/**
+	 * Time spent parsing incoming messages.
+	 */
+	private final Histogram fParseTime = new Histogram();
+
+	/**
+	 * Time between queuing an IOPub message and writing it to the socket.
+	 */
+	private final Histogram fIoPubSendTime = new Histogram();
+
+	/**
+	 * Number of pending IOPub messages whenever the dispatcher takes a batch.
+	 */
+	private final Histogram fIoPubQueueDepth = new Histogram();
+
+	/**
+	 * Time between receiving a heartbeat and echoing it back.
+	 */
+	private final Histogram fHeartbeatEchoTime = new Histogram();
+
+	/**
+	 * Time between two consecutive heartbeats.
+	 */
+	private final Histogram fHeartbeatInterval = new Histogram();
+
+	/**
+	 * Time between receiving a request and starting its handler per message
+	 * type.
+	 */
+	private final ConcurrentMap<String, Histogram> fDispatchTimes = new ConcurrentHashMap<String, Histogram>();
+
+	/**
+	 * Time spent in message handlers per message type.
+	 */
+	private final ConcurrentMap<String, Histogram> fHandlerTimes = new ConcurrentHashMap<String, Histogram>();
+
+	/**
+	 * IOPub queue to report counters for, might be <code>null</code>.
+	 */
+	private volatile PublishQueue fPublishQueue;
+
+	/**
+	 * Name metrics are registered with in JMX, <code>null</code> if not
+	 * registered.
+	 */
+	private ObjectName fObjectName;
+
+	/**
+	 * Constructor creates the histograms for unregistered message types.
+	 */
+	public KernelMetrics() {
+		registerMessageType(OTHER_TYPE);
+	}
+
+	/**
+	 * Creates dispatch and handler histograms for the given message type.
+	 * Registering a type more than once has no effect.
+	 *
+	 * @param messageType
+	 *            Message type to record separate histograms for.
+	 */
+	public void registerMessageType(final String messageType) {
+		fDispatchTimes.putIfAbsent(messageType, new Histogram());
+		fHandlerTimes.putIfAbsent(messageType, new Histogram());
+	}
+
+	/**
+	 * Returns the histogram for the given message type from the given map,
+	 * falling back to the {@value #OTHER_TYPE} histogram for unregistered
+	 * types.
+	 *
+	 * @param histograms
+	 *            Histograms per message type.
+	 * @param messageType
+	 *            Message type to get histogram for.
+	 * @return {@link Histogram} for message type.
+	 */
+	private static Histogram getHistogram(final ConcurrentMap<String, Histogram> histograms,
+			final String messageType) {
+		final Histogram histogram = (messageType != null) ? histograms.get(messageType) : null;
+		return (histogram != null) ? histogram : histograms.get(OTHER_TYPE);
+	}
+
+	/**
+	 * Returns the histogram of times between receiving a request of the given
+	 * type and starting its handler.
+	 *
+	 * @param messageType
+	 *            Message type of request.
+	 * @return {@link Histogram} for message type.
+	 */
+	public Histogram getDispatchTime(final String messageType) {
+		return getHistogram(fDispatchTimes, messageType);
+	}
+
+	/**
+	 * Returns the histogram of times spent in handlers for requests of the
+	 * given type.
+	 *
+	 * @param messageType
+	 *            Message type of request.
+	 * @return {@link Histogram} for message type.
+	 */
+	public Histogram getHandlerTime(final String messageType) {
+		return getHistogram(fHandlerTimes, messageType);
+	}
+
+	/**
+	 * Returns the histogram of times spent executing code.
+	 *
+	 * @return {@link Histogram} of execution times.
+	 */
+	public Histogram getExecuteTime() {
+		return fExecuteTime;
+	}
+
+	/**
+	 * Returns the histogram of times spent serializing messages.
+	 *
+	 * @return {@link Histogram} of serialization times.
+	 */
+	public Histogram getSerializeTime() {
+		return fSerializeTime;
+	}
+
+	/**
+	 * Returns the histogram of times spent signing messages.
+	 *
+	 * @return {@link Histogram} of signing times.
+	 */
+	public Histogram getSignTime() {
+		return fSignTime;
+	}
+
+	/**
+	 * Returns the histogram of times spent verifying signatures.
+	 *
+	 * @return {@link Histogram} of verification times.
+	 */
+	public Histogram getVerifyTime() {
+		return fVerifyTime;
+	}
+
+	/**
+	 * Returns the histogram of times spent parsing messages.
+	 *
+	 * @return {@link Histogram} of parsing times.
+	 */
+	public Histogram getParseTime() {
+		return fParseTime;
+	}
+
+	/**
+	 * Returns the histogram of times between queuing and sending IOPub
+	 * messages.
+	 *
+	 * @return {@link Histogram} of IOPub send latencies.
+	 */
+	public Histogram getIoPubSendTime() {
+		return fIoPubSendTime;
+	}
+
+	/**
+	 * Returns the histogram of pending IOPub messages.
+	 *
+	 * @return {@link Histogram} of IOPub queue depths.
+	 */
+	public Histogram getIoPubQueueDepth() {
+		return fIoPubQueueDepth;
+	}
+
+	/**
+	 * Returns the histogram of times between receiving and echoing
+	 * heartbeats.
+	 *
+	 * @return {@link Histogram} of heartbeat echo times.
+	 */
+	public Histogram getHeartbeatEchoTime() {
+		return fHeartbeatEchoTime;
+	}
+
+	/**
+	 * Returns the histogram of times between consecutive heartbeats.
+	 *
+	 * @return {@link Histogram} of heartbeat intervals.
+	 */
+	public Histogram getHeartbeatInterval() {
+		return fHeartbeatInterval;
+	}
+
+	/**
+	 * Sets the IOPub queue to report counters for.
+	 *
+	 * @param publishQueue
+	 *            {@link PublishQueue} of IOPub channel.
+	 */
+	public void setPublishQueue(final PublishQueue publishQueue) {
+		fPublishQueue = publishQueue;
+	}
+
+	@Override
+	public Map<String, Map<String, Long>> getHistograms() {
+		final Map<String, Map<String, Long>> histograms = new TreeMap<String, Map<String, Long>>();
+		histograms.put("execute", fExecuteTime.getSnapshot());
+		histograms.put("protocol.serialize", fSerializeTime.getSnapshot());
+		histograms.put("protocol.sign", fSignTime.getSnapshot());
+		histograms.put("protocol.verify", fVerifyTime.getSnapshot());
+		histograms.put("protocol.parse", fParseTime.getSnapshot());
+		histograms.put("iopub.send", fIoPubSendTime.getSnapshot());
+		histograms.put("iopub.queue_depth", fIoPubQueueDepth.getSnapshot());
+		histograms.put("heartbeat.echo", fHeartbeatEchoTime.getSnapshot());
+		histograms.put("heartbeat.interval", fHeartbeatInterval.getSnapshot());
+
+		for (Map.Entry<String, Histogram> entry : fDispatchTimes.entrySet()) {
+			histograms.put(DISPATCH_PREFIX + entry.getKey(), entry.getValue().getSnapshot());
+		}
+		for (Map.Entry<String, Histogram> entry : fHandlerTimes.entrySet()) {
+			histograms.put(HANDLER_PREFIX + entry.getKey(), entry.getValue().getSnapshot());
+		}
+
+		return histograms;
+	}
+
+	@Override
+	public Map<String, Long> getIoPubQueue() {
+		final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+		final PublishQueue publishQueue = fPublishQueue;
+		if (publishQueue != null) {
+			counters.put("size", (long) publishQueue.size());
+			counters.put("queued", publishQueue.getQueuedCount());
+			counters.put("merged", publishQueue.getMergedCount());
+			counters.put("dropped", publishQueue.getDroppedCount());
+		}
+		return counters;
+	}
+
+	@Override
+	public void reset() {
+		fExecuteTime.reset();
+		fSerializeTime.reset();
+		fSignTime.reset();
+		fVerifyTime.reset();
+		fParseTime.reset();
+		fIoPubSendTime.reset();
+		fIoPubQueueDepth.reset();
+		fHeartbeatEchoTime.reset();
+		fHeartbeatInterval.reset();
+
+		for (Histogram histogram : fDispatchTimes.values()) {
+			histogram.reset();
+		}
+		for (Histogram histogram : fHandlerTimes.values()) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Creates the content of a <code>kernel_metrics_reply</code> message.
+	 *
+	 * @return Dictionary with histograms and IOPub queue counters.
+	 */
+	public Map<String, Object> toContent() {
+		final Map<String, Object> content = new LinkedHashMap<String, Object>();
+		content.put("unit", "ns");
+		content.put("histograms", getHistograms());
+		content.put("iopub_queue", getIoPubQueue());
+		return content;
+	}
+
+	/**
+	 * Registers metrics with the platform MBean server.
+	 *
+	 * @param id
+	 *            Identifier to distinguish multiple kernels in the same
+	 *            process.
+	 */
+	public synchronized void register(final String id) {
+		if (fObjectName != null) {
+			return;
+		}
+
+		try {
+			final ObjectName name = new ObjectName(
+					JMX_DOMAIN + ":type=KernelMetrics,id=" + ObjectName.quote(id));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			fObjectName = name;
+		} catch (JMException e) {
+			// Metrics still available over kernel_metrics requests
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Unregisters metrics from the platform MBean server.
+	 */
+	public synchronized void unregister() {
+		if (fObjectName == null) {
+			return;
+		}
+
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.unregisterMBean(fObjectName);
+		} catch (JMException e) {
+			// ignore
+		}
+		fObjectName = null;
+	}
+}